@@ -33,6 +33,7 @@ import org.python.pydev.parser.jython.ast.FunctionDef;
 import org.python.pydev.parser.jython.ast.exprType;
 import org.python.pydev.shared_core.structure.Location;
 
+import com.python.pydev.analysis.additionalinfo.ReferenceSearchesLucene;
 import com.python.pydev.analysis.mypy.MypyPrefInitializer;
 import com.python.pydev.analysis.pylint.PyLintPrefInitializer;
 
@@ -119,6 +120,7 @@ public class AnalysisPlugin extends Plugin {
      */
     @Override
     public void stop(BundleContext context) throws Exception {
+        ReferenceSearchesLucene.disposeAll();
         super.stop(context);
         plugin = null;
     }
@@ -26,7 +26,6 @@ import java.util.concurrent.CountDownLatch;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.python.pydev.ast.codecompletion.revisited.PyPublicTreeMap;
-import org.python.pydev.ast.codecompletion.revisited.PythonPathHelper;
 import org.python.pydev.ast.codecompletion.revisited.modules.IAbstractJavaClassModule;
 import org.python.pydev.ast.interpreter_managers.InterpreterInfo;
 import org.python.pydev.core.FastBufferedReader;
@@ -45,6 +44,7 @@ import org.python.pydev.core.cache.CompleteIndexKey;
 import org.python.pydev.core.cache.DiskCache;
 import org.python.pydev.core.log.Log;
 import org.python.pydev.core.logging.DebugSettings;
+import org.python.pydev.core.preferences.InterpreterGeneralPreferences;
 import org.python.pydev.parser.jython.SimpleNode;
 import org.python.pydev.parser.jython.ast.Name;
 import org.python.pydev.parser.jython.ast.stmtType;
@@ -76,6 +76,16 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
      */
     public DiskCache completeIndex;
 
+    /**
+     * Keeps the bases of the classes in each module (so that finding subclasses doesn't need a text search).
+     */
+    private ClassHierarchyIndex classHierarchy = new ClassHierarchyIndex();
+
+    /**
+     * The class hierarchy read in loadContentsFromFile (to be used when the info is restored).
+     */
+    private ClassHierarchyIndex classHierarchyToRestore;
+
     private volatile IReferenceSearches referenceSearches;
     private final Object referenceSearchesLock = new Object();
 
@@ -94,6 +104,26 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
         this.referenceSearches = null;
     }
 
+    /**
+     * Lets the reference searches know that the given module changed (so that its index is updated incrementally).
+     */
+    private void onModuleChanged(String moduleName) {
+        IReferenceSearches searches = referenceSearches;
+        if (searches instanceof ReferenceSearchesLucene) {
+            ((ReferenceSearchesLucene) searches).onModuleChanged(moduleName);
+        }
+    }
+
+    /**
+     * Lets the reference searches know that all the modules may have changed.
+     */
+    private void onAllModulesChanged() {
+        IReferenceSearches searches = referenceSearches;
+        if (searches instanceof ReferenceSearchesLucene) {
+            ((ReferenceSearchesLucene) searches).onAllModulesChanged();
+        }
+    }
+
     /**
      * default constructor
      * @throws MisconfigurationException
@@ -146,6 +176,8 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
             } catch (NullPointerException e) {
                 //that's ok... because it might be called before actually having any values
             }
+            classHierarchy.clear();
+            onAllModulesChanged();
         }
     }
 
@@ -166,6 +198,15 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
      */
     public void updateKeysIfNeededAndSave(PyPublicTreeMap<ModulesKey, ModulesKey> keysFound, InterpreterInfo info,
             IProgressMonitor monitor) {
+        updateKeysIfNeededAndSave(keysFound, info, monitor, InterpreterGeneralPreferences.getIndexingParallelism());
+    }
+
+    /**
+     * @param parallelism the number of threads used to read/parse the new source modules (the results are still
+     * added to the info sequentially, in the same order of the keys).
+     */
+    public void updateKeysIfNeededAndSave(PyPublicTreeMap<ModulesKey, ModulesKey> keysFound, InterpreterInfo info,
+            IProgressMonitor monitor, int parallelism) {
         Map<CompleteIndexKey, CompleteIndexKey> keys = this.completeIndex.keys();
 
         ArrayList<ModulesKey> newKeys = new ArrayList<ModulesKey>();
@@ -230,42 +271,48 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
             FastStringBuffer buffer = new FastStringBuffer();
             int currI = 0;
             int total = newKeys.size();
-            for (ModulesKey newKey : newKeys) {
-                currI += 1;
-                if (monitor.isCanceled()) {
-                    return;
-                }
-                if (PythonPathHelper.canAddAstInfoForSourceModule(newKey)) {
-                    buffer.clear().append("Indexing ").append(currI).append(" of ").append(total)
-                            .append(" (source module): ").append(newKey.name).append("  (")
-                            .append(currI).append(" of ").append(total).append(")");
-                    try {
-                        // Don't generate deltas (we'll save it in the end).
-                        this.addAstInfo(newKey, false);
-                    } catch (Exception e) {
-                        Log.log(e);
+            try (ParallelDefinitionsParser parser = new ParallelDefinitionsParser(newKeys, parallelism)) {
+                for (ModulesKey newKey : newKeys) {
+                    currI += 1;
+                    if (monitor.isCanceled()) {
+                        return;
                     }
-                } else {
-                    if (info != null) {
-                        if (isJython && ignoreFiles.contains(newKey.file)) {
-                            continue;
-                        }
+                    if (ParallelDefinitionsParser.isSourceModule(newKey)) {
                         buffer.clear().append("Indexing ").append(currI).append(" of ").append(total)
-                                .append(" (builtin module): ").append(newKey.name);
-                        monitor.setTaskName(buffer.toString());
-                        IModule builtinModule = info.getModulesManager().getModule(newKey.name,
-                                info.getModulesManager().getNature(), true);
-                        if (builtinModule != null) {
-                            if (builtinModule instanceof IAbstractJavaClassModule) {
-                                if (newKey.file != null) {
-                                    ignoreFiles.add(newKey.file);
-                                } else {
-                                    Log.log("Not expecting null file for java class module: " + newKey);
-                                }
+                                .append(" (source module): ").append(newKey.name).append("  (")
+                                .append(currI).append(" of ").append(total).append(")");
+                        try {
+                            // Parsed in parallel, but added sequentially (in the same order of the keys).
+                            SimpleNode node = parser.get(currI - 1);
+                            if (node != null) {
+                                // Don't generate deltas (we'll save it in the end).
+                                this.addAstInfo(node, newKey, false);
+                            }
+                        } catch (Exception e) {
+                            Log.log(e);
+                        }
+                    } else {
+                        if (info != null) {
+                            if (isJython && ignoreFiles.contains(newKey.file)) {
                                 continue;
                             }
-                            boolean removeFirst = keys.containsKey(new CompleteIndexKey(newKey));
-                            addAstForCompiledModule(builtinModule, info, newKey, removeFirst);
+                            buffer.clear().append("Indexing ").append(currI).append(" of ").append(total)
+                                    .append(" (builtin module): ").append(newKey.name);
+                            monitor.setTaskName(buffer.toString());
+                            IModule builtinModule = info.getModulesManager().getModule(newKey.name,
+                                    info.getModulesManager().getNature(), true);
+                            if (builtinModule != null) {
+                                if (builtinModule instanceof IAbstractJavaClassModule) {
+                                    if (newKey.file != null) {
+                                        ignoreFiles.add(newKey.file);
+                                    } else {
+                                        Log.log("Not expecting null file for java class module: " + newKey);
+                                    }
+                                    continue;
+                                }
+                                boolean removeFirst = keys.containsKey(new CompleteIndexKey(newKey));
+                                addAstForCompiledModule(builtinModule, info, newKey, removeFirst);
+                            }
                         }
                     }
                 }
@@ -278,6 +325,9 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
                         StringUtils.format(
                                 "Additional info modules. Added: %s Removed: %s", newKeys, removedKeys));
             }
+            if (DebugSettings.DEBUG_ANALYSIS_REQUESTS) {
+                org.python.pydev.shared_core.log.ToLogFile.toLogFile(this, getReadContentionInfo());
+            }
             save();
         }
     }
@@ -336,7 +386,8 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
                     completeIndexKey.lastModified = FileUtils.lastModified(key.file);
                 }
                 completeIndex.add(completeIndexKey);
-
+                classHierarchy.addModule(key.name, node);
+                onModuleChanged(key.name);
             }
         } catch (Exception e) {
             Log.log(e);
@@ -351,7 +402,9 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
                 throw new AssertionError("The module name may not be null.");
             }
             completeIndex.remove(new CompleteIndexKey(moduleName));
+            classHierarchy.removeModule(moduleName);
             super.removeInfoFromModule(moduleName, generateDelta);
+            onModuleChanged(moduleName);
         }
     }
 
@@ -362,6 +415,10 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
             writer.write(tempBuf.getInternalCharsArray(), 0, tempBuf.length());
             tempBuf.clear();
 
+            classHierarchy.writeTo(tempBuf);
+            writer.write(tempBuf.getInternalCharsArray(), 0, tempBuf.length());
+            tempBuf.clear();
+
             super.saveTo(writer, tempBuf, pathToSave);
         }
     }
@@ -387,7 +444,19 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
                 completeIndex.setFolderToPersist(shouldBeOn);
             }
 
+            ClassHierarchyIndex restoredHierarchy = classHierarchyToRestore;
+            classHierarchyToRestore = null;
+            if (restoredHierarchy == null) {
+                //Saved in an older version: the bases of all the modules are unknown.
+                restoredHierarchy = new ClassHierarchyIndex();
+                for (CompleteIndexKey key : completeIndex.keys().keySet()) {
+                    restoredHierarchy.markUnknown(key.key.name);
+                }
+            }
+            classHierarchy = restoredHierarchy;
+
             super.restoreSavedInfo(readFromFile.o1);
+            onAllModulesChanged();
         }
     }
 
@@ -464,6 +533,18 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
                                         superTupWithResults.o2 = TreeIO.loadTreeFrom(bufferedReader, dictionary,
                                                 tempBuf.clear(), objectsPoolMap, nature);
 
+                                    } else if (line.startsWith(BINARY_TREES_PREFIX)) {
+                                        File binaryTreesFile = new File(file.getParentFile(),
+                                                line.toString().substring(BINARY_TREES_PREFIX.length()).trim());
+                                        removeOldBinaryTreesFiles(file, binaryTreesFile);
+                                        ITokensIndex[] trees = TreeIO.loadTreesFromBinaryFile(binaryTreesFile,
+                                                nature);
+                                        if (trees.length != 2) {
+                                            throw new RuntimeException("Expected 2 trees in: " + binaryTreesFile);
+                                        }
+                                        superTupWithResults.o1 = trees[0];
+                                        superTupWithResults.o2 = trees[1];
+
                                     } else if (line.startsWith("-- START DICTIONARY")) {
                                         dictionary = TreeIO.loadDictFrom(bufferedReader, tempBuf.clear(),
                                                 objectsPoolMap);
@@ -474,6 +555,14 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
                                         }
                                         tupWithResults.o2 = DiskCache.loadFrom(bufferedReader, objectsPoolMap);
 
+                                    } else if (line.startsWith("-- START CLASS_HIERARCHY")) {
+                                        boolean currentVersion = ClassHierarchyIndex.isCurrentVersion(line);
+                                        ClassHierarchyIndex loaded = ClassHierarchyIndex.loadFrom(bufferedReader);
+                                        //If saved in another version just skip it (bases will be unknown).
+                                        if (currentVersion) {
+                                            classHierarchyToRestore = loaded;
+                                        }
+
                                     } else if (line.startsWith("-- VERSION_")) {
                                         if (!line.endsWith(String.valueOf(AbstractAdditionalTokensInfo.version))) {
                                             throw new RuntimeException("Expected the version to be: "
@@ -527,6 +616,9 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
         }
 
         completeIndex.add(key);
+        //The deltas only have the tokens (not the bases of the classes).
+        classHierarchy.markUnknown(data.o1.name);
+        onModuleChanged(data.o1.name);
 
         //current way (saves a list of iinfo)
         for (Iterator<IInfo> it = data.o2.iterator(); it.hasNext();) {
@@ -540,6 +632,29 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
         }
     }
 
+    /**
+     * @param baseName the name of a class (without dots).
+     * @return a tuple with the keys of the modules which have classes with a base whose last part is the given name
+     * and the names of the modules whose bases are not known (so, they may also have such classes).
+     */
+    public Tuple<List<ModulesKey>, Set<String>> getModulesWithBase(String baseName) {
+        Set<String> moduleNames;
+        Set<String> unknown;
+        synchronized (lock) {
+            moduleNames = classHierarchy.getModulesWithBase(baseName);
+            unknown = classHierarchy.getModulesWithUnknownBases();
+        }
+        List<ModulesKey> ret = new ArrayList<ModulesKey>(moduleNames.size());
+        if (moduleNames.size() > 0) {
+            Map<CompleteIndexKey, CompleteIndexKey> keys = completeIndex.keys();
+            for (String moduleName : moduleNames) {
+                CompleteIndexKey key = keys.get(new CompleteIndexKey(moduleName));
+                ret.add(key != null ? key.key : new ModulesKey(moduleName, null));
+            }
+        }
+        return new Tuple<List<ModulesKey>, Set<String>>(ret, unknown);
+    }
+
     private CountDownLatch waitForIntegrity = null;
     private static final Object waitForIntegrityLock = new Object();
 
@@ -19,17 +19,16 @@ import java.io.ObjectInputStream;
 import java.io.OutputStreamWriter;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.SortedMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.jface.text.IDocument;
-import org.python.pydev.ast.codecompletion.revisited.PyPublicTreeMap;
 import org.python.pydev.core.FileUtilsFileBuffer;
 import org.python.pydev.core.IInfo;
 import org.python.pydev.core.IPythonNature;
@@ -88,7 +87,7 @@ public abstract class AbstractAdditionalTokensInfo {
     /**
      * this is the number of initials that is used for indexing
      */
-    public static final int NUMBER_OF_INITIALS_TO_INDEX = 3;
+    public static final int NUMBER_OF_INITIALS_TO_INDEX = InitialsTokensIndex.NUMBER_OF_INITIALS_TO_INDEX;
 
     /**
      * Do you want to debug this class?
@@ -106,76 +105,146 @@ public abstract class AbstractAdditionalTokensInfo {
     public final static int INNER = 2;
 
     /**
-     * indexes used so that we can access the information faster - it is ordered through a tree map, and should be
-     * very fast to access given its initials.
+     * index used so that we can access the information faster (by default it is ordered through a tree map
+     * with the initials, but a compact index may also be used).
      *
      * It contains only top/level information for a module
      *
-     * This map is persisted.
+     * This index is persisted.
+     *
+     * Note: writers must still synchronize on the lock, but readers access it without any locking.
+     */
+    protected volatile ITokensIndex topLevelIndex = new InitialsTokensIndex();
+
+    /**
+     * index so that we can get 'inner information' from classes, such as methods or inner classes from a class
      */
-    protected SortedMap<String, Set<IInfo>> topLevelInitialsToInfo = new PyPublicTreeMap<String, Set<IInfo>>();
+    protected volatile ITokensIndex innerIndex = new InitialsTokensIndex();
 
     /**
-     * indexes so that we can get 'inner information' from classes, such as methods or inner classes from a class
+     * Whether the CompactTokensIndex should be used (instead of the InitialsTokensIndex).
      */
-    protected SortedMap<String, Set<IInfo>> innerInitialsToInfo = new PyPublicTreeMap<String, Set<IInfo>>();
+    private volatile boolean useCompactTokensIndex = false;
 
     /**
      * Should be used before re-creating the info, so that we have enough memory.
      */
     public void clearAllInfo() {
         synchronized (lock) {
-            if (topLevelInitialsToInfo != null) {
-                topLevelInitialsToInfo.clear();
-            }
-            if (innerInitialsToInfo != null) {
-                innerInitialsToInfo.clear();
+            startWrite();
+            try {
+                topLevelIndex.clear();
+                innerIndex.clear();
+            } finally {
+                endWrite();
             }
         }
     }
 
-    protected Object lock = new Object();
-
     /**
-     * The filter interface
+     * Changes the index used to keep the tokens (the tokens currently available are kept).
+     *
+     * @param useCompactTokensIndex if true, the CompactTokensIndex is used (which uses less memory and is faster to
+     * query, at the cost of having to be repacked when changed) and otherwise the InitialsTokensIndex is used.
      */
-    public interface Filter {
-        boolean doCompare(String lowerCaseQual, IInfo info);
+    public void setUseCompactTokensIndex(boolean useCompactTokensIndex) {
+        synchronized (lock) {
+            if (this.useCompactTokensIndex == useCompactTokensIndex) {
+                return;
+            }
+            startWrite();
+            try {
+                this.useCompactTokensIndex = useCompactTokensIndex;
+                this.topLevelIndex = createTokensIndex(this.topLevelIndex.getInitialsToInfo());
+                this.innerIndex = createTokensIndex(this.innerIndex.getInitialsToInfo());
+            } finally {
+                endWrite();
+            }
+        }
+    }
 
-        boolean doCompare(String lowerCaseQual, String infoName);
+    public boolean getUseCompactTokensIndex() {
+        return useCompactTokensIndex;
     }
 
     /**
-     * A filter that checks if tokens are equal
+     * @return a new index (based on the index type currently selected) with the given contents.
      */
-    private final Filter equalsFilter = new Filter() {
-        @Override
-        public boolean doCompare(String qualifier, IInfo info) {
-            return info.getName().equals(qualifier);
+    private ITokensIndex createTokensIndex(SortedMap<String, Set<IInfo>> initialsToInfo) {
+        if (!useCompactTokensIndex) {
+            return new InitialsTokensIndex(initialsToInfo);
+        }
+        List<IInfo> infos = new ArrayList<IInfo>();
+        for (Set<IInfo> set : initialsToInfo.values()) {
+            infos.addAll(set);
         }
+        return new CompactTokensIndex(infos);
+    }
 
-        @Override
-        public boolean doCompare(String qualifier, String infoName) {
-            return infoName.equals(qualifier);
+    /**
+     * @return the index restored from the binary format if the CompactTokensIndex isn't selected (and otherwise a
+     * CompactTokensIndex with its contents).
+     */
+    private ITokensIndex matchTokensIndexType(ITokensIndex index) {
+        if (!useCompactTokensIndex || index instanceof CompactTokensIndex) {
+            return index;
         }
-    };
+        List<IInfo> infos = new ArrayList<IInfo>();
+        index.getAllTokens(infos);
+        return new CompactTokensIndex(infos);
+    }
 
     /**
-     * A filter that checks if the tokens starts with a qualifier
+     * Lock used to serialize the writers (readers don't need to get it as the maps they access are concurrent).
      */
-    private final Filter startingWithFilter = new Filter() {
+    protected Object lock = new Object();
 
-        @Override
-        public boolean doCompare(String lowerCaseQual, IInfo info) {
-            return doCompare(lowerCaseQual, info.getName());
-        }
+    /**
+     * Number of write operations currently in progress (used to compute how many reads would've blocked in a
+     * lock held by a writer).
+     */
+    private final AtomicInteger writesInProgress = new AtomicInteger();
+
+    /**
+     * Total number of reads done.
+     */
+    private final AtomicLong reads = new AtomicLong();
+
+    /**
+     * Number of reads which were done while some write was in progress (those would block if readers had to
+     * get the same lock used by the writers).
+     */
+    private final AtomicLong readsConcurrentWithWrites = new AtomicLong();
+
+    /**
+     * Should be called (with the lock held) before changing the internal maps.
+     */
+    protected final void startWrite() {
+        writesInProgress.incrementAndGet();
+    }
 
-        @Override
-        public boolean doCompare(String qualifier, String infoName) {
-            return infoName.toLowerCase().startsWith(qualifier);
+    /**
+     * Should be called (with the lock held) after changing the internal maps.
+     */
+    protected final void endWrite() {
+        writesInProgress.decrementAndGet();
+    }
+
+    private void onRead() {
+        reads.incrementAndGet();
+        if (writesInProgress.get() > 0) {
+            readsConcurrentWithWrites.incrementAndGet();
         }
+    }
 
-    };
+    /**
+     * @return a string with the number of reads done and how many of those were done while a write was in
+     * progress (i.e.: would be contended if readers had to get the writers lock).
+     */
+    public String getReadContentionInfo() {
+        return StringUtils.format("Reads: %s Reads concurrent with writes: %s", reads.get(),
+                readsConcurrentWithWrites.get());
+    }
 
     /**
      * 2: because we've removed some info (the hash is no longer saved)
@@ -195,16 +264,14 @@ public abstract class AbstractAdditionalTokensInfo {
      */
     protected void add(IInfo info, int doOn) {
         synchronized (lock) {
-            String name = info.getName();
-            String initials = getInitials(name);
-            SortedMap<String, Set<IInfo>> initialsToInfo;
+            ITokensIndex index;
 
             if (doOn == TOP_LEVEL) {
                 if (info.getPath() != null && info.getPath().length() > 0) {
                     throw new RuntimeException(
                             "Error: the info being added is added as an 'top level' info, but has path. Info:" + info);
                 }
-                initialsToInfo = topLevelInitialsToInfo;
+                index = topLevelIndex;
 
             } else if (doOn == INNER) {
                 if (info.getPath() == null || info.getPath().length() == 0) {
@@ -212,41 +279,15 @@ public abstract class AbstractAdditionalTokensInfo {
                             "Error: the info being added is added as an 'inner' info, but does not have a path. Info: "
                                     + info);
                 }
-                initialsToInfo = innerInitialsToInfo;
+                index = innerIndex;
 
             } else {
                 throw new RuntimeException("List to add is invalid: " + doOn);
             }
-            Set<IInfo> listForInitials = getAndCreateListForInitials(initials, initialsToInfo);
-            listForInitials.add(info);
+            index.add(info);
         }
     }
 
-    /**
-     * @param name the name from where we want to get the initials
-     * @return the initials for the name
-     */
-    protected String getInitials(String name) {
-        if (name.length() < NUMBER_OF_INITIALS_TO_INDEX) {
-            return name;
-        }
-        return name.substring(0, NUMBER_OF_INITIALS_TO_INDEX).toLowerCase();
-    }
-
-    /**
-     * @param initials the initials we are looking for
-     * @param initialsToInfo this is the list we should use (top level or inner)
-     * @return the list of tokens with the specified initials (must be exact match)
-     */
-    protected Set<IInfo> getAndCreateListForInitials(String initials, SortedMap<String, Set<IInfo>> initialsToInfo) {
-        Set<IInfo> lInfo = initialsToInfo.get(initials);
-        if (lInfo == null) {
-            lInfo = new HashSet<IInfo>();
-            initialsToInfo.put(initials, lInfo);
-        }
-        return lInfo;
-    }
-
     private IInfo addAssignTargets(ASTEntry entry, String moduleName, int doOn, String path, boolean lastIsMethod,
             String file) {
         String rep = NodeUtils.getFullRepresentationString(entry.node);
@@ -279,6 +320,20 @@ public abstract class AbstractAdditionalTokensInfo {
     protected abstract IPythonNature getNature();
 
     public List<IInfo> addAstInfo(ModulesKey key, boolean generateDelta) throws Exception {
+        SimpleNode node = parseDefinitions(key);
+        if (node == null) {
+            return null;
+        }
+
+        return addAstInfo(node, key, generateDelta);
+    }
+
+    /**
+     * Reads the contents of the given module and parses it to get its definitions (may be called from any thread).
+     *
+     * @return the parsed node or null if it couldn't be parsed.
+     */
+    public static SimpleNode parseDefinitions(ModulesKey key) throws Exception {
         boolean isZipModule = key instanceof ModulesKeyForZip;
         ModulesKeyForZip modulesKeyForZip = null;
         if (isZipModule) {
@@ -320,12 +375,7 @@ public abstract class AbstractAdditionalTokensInfo {
             throw new RuntimeException("Don't know how to handle: " + doc + " -- " + doc.getClass());
         }
 
-        SimpleNode node = FastDefinitionsParser.parse(charArray, key.file.getName(), len, key.file);
-        if (node == null) {
-            return null;
-        }
-
-        return addAstInfo(node, key, generateDelta);
+        return FastDefinitionsParser.parse(charArray, key.file.getName(), len, key.file);
     }
 
     /**
@@ -350,90 +400,97 @@ public abstract class AbstractAdditionalTokensInfo {
                 FastStack<SimpleNode> tempStack = new FastStack<SimpleNode>(10);
 
                 synchronized (this.lock) {
-                    synchronized (ObjectsInternPool.lock) {
-                        final String file = key.file != null ? ObjectsInternPool.internUnsynched(key.file.toString())
-                                : null;
-                        key.name = ObjectsInternPool.internUnsynched(key.name);
-
-                        while (entries.hasNext()) {
-                            ASTEntry entry = entries.next();
-                            IInfo infoCreated = null;
-
-                            if (entry.parent == null) { //we only want those that are in the global scope
-                                if (entry.node instanceof ClassDef) {
-                                    //no intern construct (locked in this loop)
-                                    NameTok name = (NameTok) ((ClassDef) entry.node).name;
-                                    ClassInfo info = new ClassInfo(
-                                            ObjectsInternPool.internUnsynched(name.id),
-                                            key.name, null, false, getNature(), file, name.beginLine,
-                                            name.beginColumn);
-                                    add(info, TOP_LEVEL);
-                                    infoCreated = info;
-
-                                } else if (entry.node instanceof FunctionDef) {
-                                    //no intern construct (locked in this loop)
-                                    NameTok name = (NameTok) ((FunctionDef) entry.node).name;
-                                    FuncInfo info2 = new FuncInfo(
-                                            ObjectsInternPool.internUnsynched(name.id),
-                                            key.name, null, false, getNature(), file, name.beginLine,
-                                            name.beginColumn);
-                                    add(info2, TOP_LEVEL);
-                                    infoCreated = info2;
-
-                                } else {
-                                    //it is an assign
-                                    infoCreated = this.addAssignTargets(entry, key.name, TOP_LEVEL, null, false, file);
-
-                                }
-                            } else {
-                                if (entry.node instanceof ClassDef || entry.node instanceof FunctionDef) {
-                                    //ok, it has a parent, so, let's check to see if the path we got only has class definitions
-                                    //as the parent (and get that path)
-                                    Tuple<String, Boolean> pathToRoot = this.getPathToRoot(entry, false, false,
-                                            tempStack);
-                                    if (pathToRoot != null && pathToRoot.o1 != null && pathToRoot.o1.length() > 0) {
-                                        //if the root is not valid, it is not only classes in the path (could be a method inside
-                                        //a method, or something similar).
-
-                                        if (entry.node instanceof ClassDef) {
-                                            NameTok name = ((NameTok) ((ClassDef) entry.node).name);
-                                            ClassInfo info = new ClassInfo(
-                                                    ObjectsInternPool.internUnsynched(name.id),
-                                                    key.name, ObjectsInternPool.internUnsynched(pathToRoot.o1), false,
-                                                    getNature(), file, name.beginLine, name.beginColumn);
-                                            add(info, INNER);
-                                            infoCreated = info;
-
-                                        } else {
-                                            //FunctionDef
-                                            NameTok name = ((NameTok) ((FunctionDef) entry.node).name);
-                                            FuncInfo info2 = new FuncInfo(
-                                                    ObjectsInternPool.internUnsynched(name.id),
-                                                    key.name, ObjectsInternPool.internUnsynched(pathToRoot.o1), false,
-                                                    getNature(), file, name.beginLine, name.beginColumn);
-                                            add(info2, INNER);
-                                            infoCreated = info2;
+                    startWrite();
+                    try {
+                        synchronized (ObjectsInternPool.lock) {
+                            final String file = key.file != null
+                                    ? ObjectsInternPool.internUnsynched(key.file.toString())
+                                    : null;
+                            key.name = ObjectsInternPool.internUnsynched(key.name);
+
+                            while (entries.hasNext()) {
+                                ASTEntry entry = entries.next();
+                                IInfo infoCreated = null;
+
+                                if (entry.parent == null) { //we only want those that are in the global scope
+                                    if (entry.node instanceof ClassDef) {
+                                        //no intern construct (locked in this loop)
+                                        NameTok name = (NameTok) ((ClassDef) entry.node).name;
+                                        ClassInfo info = new ClassInfo(
+                                                ObjectsInternPool.internUnsynched(name.id),
+                                                key.name, null, false, getNature(), file, name.beginLine,
+                                                name.beginColumn);
+                                        add(info, TOP_LEVEL);
+                                        infoCreated = info;
+
+                                    } else if (entry.node instanceof FunctionDef) {
+                                        //no intern construct (locked in this loop)
+                                        NameTok name = (NameTok) ((FunctionDef) entry.node).name;
+                                        FuncInfo info2 = new FuncInfo(
+                                                ObjectsInternPool.internUnsynched(name.id),
+                                                key.name, null, false, getNature(), file, name.beginLine,
+                                                name.beginColumn);
+                                        add(info2, TOP_LEVEL);
+                                        infoCreated = info2;
+
+                                    } else {
+                                        //it is an assign
+                                        infoCreated = this.addAssignTargets(entry, key.name, TOP_LEVEL, null, false,
+                                                file);
 
-                                        }
                                     }
                                 } else {
-                                    //it is an assign
-                                    Tuple<String, Boolean> pathToRoot = this.getPathToRoot(entry, true, false,
-                                            tempStack);
-                                    if (pathToRoot != null && pathToRoot.o1 != null && pathToRoot.o1.length() > 0) {
-                                        infoCreated = this.addAssignTargets(entry, key.name, INNER, pathToRoot.o1,
-                                                pathToRoot.o2, file);
+                                    if (entry.node instanceof ClassDef || entry.node instanceof FunctionDef) {
+                                        //ok, it has a parent, so, let's check to see if the path we got only has class
+                                        //definitions as the parent (and get that path)
+                                        Tuple<String, Boolean> pathToRoot = this.getPathToRoot(entry, false, false,
+                                                tempStack);
+                                        if (pathToRoot != null && pathToRoot.o1 != null && pathToRoot.o1.length() > 0) {
+                                            //if the root is not valid, it is not only classes in the path (could be a
+                                            //method inside a method, or something similar).
+
+                                            if (entry.node instanceof ClassDef) {
+                                                NameTok name = ((NameTok) ((ClassDef) entry.node).name);
+                                                ClassInfo info = new ClassInfo(
+                                                        ObjectsInternPool.internUnsynched(name.id),
+                                                        key.name, ObjectsInternPool.internUnsynched(pathToRoot.o1),
+                                                        false, getNature(), file, name.beginLine, name.beginColumn);
+                                                add(info, INNER);
+                                                infoCreated = info;
+
+                                            } else {
+                                                //FunctionDef
+                                                NameTok name = ((NameTok) ((FunctionDef) entry.node).name);
+                                                FuncInfo info2 = new FuncInfo(
+                                                        ObjectsInternPool.internUnsynched(name.id),
+                                                        key.name, ObjectsInternPool.internUnsynched(pathToRoot.o1),
+                                                        false, getNature(), file, name.beginLine, name.beginColumn);
+                                                add(info2, INNER);
+                                                infoCreated = info2;
+
+                                            }
+                                        }
+                                    } else {
+                                        //it is an assign
+                                        Tuple<String, Boolean> pathToRoot = this.getPathToRoot(entry, true, false,
+                                                tempStack);
+                                        if (pathToRoot != null && pathToRoot.o1 != null && pathToRoot.o1.length() > 0) {
+                                            infoCreated = this.addAssignTargets(entry, key.name, INNER, pathToRoot.o1,
+                                                    pathToRoot.o2, file);
+                                        }
                                     }
                                 }
-                            }
 
-                            if (infoCreated != null) {
-                                createdInfos.add(infoCreated);
-                            }
+                                if (infoCreated != null) {
+                                    createdInfos.add(infoCreated);
+                                }
 
-                        } //end while
+                            } //end while
 
-                    } //end lock ObjectsPool.lock
+                        } //end lock ObjectsPool.lock
+                    } finally {
+                        endWrite();
+                    }
 
                 } //end this.lock
 
@@ -462,22 +519,8 @@ public abstract class AbstractAdditionalTokensInfo {
      */
     public Set<String> getAllModulesWithTokens() {
         HashSet<String> ret = new HashSet<String>();
-        synchronized (lock) {
-            Set<Entry<String, Set<IInfo>>> entrySet = this.topLevelInitialsToInfo.entrySet();
-            for (Entry<String, Set<IInfo>> entry : entrySet) {
-                Set<IInfo> value = entry.getValue();
-                for (IInfo info : value) {
-                    ret.add(info.getDeclaringModuleName());
-                }
-            }
-
-            entrySet = this.innerInitialsToInfo.entrySet();
-            for (Entry<String, Set<IInfo>> entry : entrySet) {
-                Set<IInfo> value = entry.getValue();
-                for (IInfo info : value) {
-                    ret.add(info.getDeclaringModuleName());
-                }
-            }
+        for (IInfo info : getAllTokens()) {
+            ret.add(info.getDeclaringModuleName());
         }
         return ret;
 
@@ -560,129 +603,73 @@ public abstract class AbstractAdditionalTokensInfo {
             org.python.pydev.shared_core.log.ToLogFile.toLogFile(this, "Removing ast info from: " + moduleName);
         }
         synchronized (lock) {
-            removeInfoFromMap(moduleName, topLevelInitialsToInfo);
-            removeInfoFromMap(moduleName, innerInitialsToInfo);
-        }
-
-    }
-
-    /**
-     * @param moduleName
-     * @param initialsToInfo
-     */
-    private void removeInfoFromMap(String moduleName, SortedMap<String, Set<IInfo>> initialsToInfo) {
-        Iterator<Set<IInfo>> itListOfInfo = initialsToInfo.values().iterator();
-        while (itListOfInfo.hasNext()) {
-
-            Iterator<IInfo> it = itListOfInfo.next().iterator();
-            while (it.hasNext()) {
-
-                IInfo info = it.next();
-                if (info != null && info.getDeclaringModuleName() != null) {
-                    if (info.getDeclaringModuleName().equals(moduleName)) {
-                        it.remove();
-                    }
-                }
+            startWrite();
+            try {
+                topLevelIndex.removeInfoFromModule(moduleName);
+                innerIndex.removeInfoFromModule(moduleName);
+            } finally {
+                endWrite();
             }
         }
+
     }
 
     /**
      * This is the function for which we are most optimized!
      *
+     * Note: readers don't get the lock (so, they don't block while the info is being changed -- in which case
+     * the info being currently added/removed may or may not be in the result).
+     *
      * @param qualifier the tokens returned have to start with the given qualifier
      * @return a list of info, all starting with the given qualifier
      */
     public Collection<IInfo> getTokensStartingWith(String qualifier, int getWhat) {
-        synchronized (lock) {
-            return getWithFilter(qualifier, getWhat, startingWithFilter, true, null);
-        }
+        return getTokensStartingWith(qualifier, getWhat, null);
     }
 
     public Collection<IInfo> getTokensStartingWith(String qualifier, int getWhat, Collection<IInfo> result) {
-        synchronized (lock) {
-            return getWithFilter(qualifier, getWhat, startingWithFilter, true, result);
+        onRead();
+        if (result == null) {
+            result = new ArrayList<IInfo>();
         }
-    }
 
-    public Collection<IInfo> getTokensEqualTo(String qualifier, int getWhat) {
-        synchronized (lock) {
-            return getWithFilter(qualifier, getWhat, equalsFilter, false, null);
+        if ((getWhat & TOP_LEVEL) != 0) {
+            topLevelIndex.getTokensStartingWith(qualifier, result);
         }
-    }
-
-    public Collection<IInfo> getTokensEqualTo(String qualifier, int getWhat, Collection<IInfo> result) {
-        synchronized (lock) {
-            return getWithFilter(qualifier, getWhat, equalsFilter, false, result);
+        if ((getWhat & INNER) != 0) {
+            innerIndex.getTokensStartingWith(qualifier, result);
         }
+        return result;
     }
 
-    protected Collection<IInfo> getWithFilter(String qualifier, int getWhat, Filter filter, boolean useLowerCaseQual,
-            Collection<IInfo> result) {
-        synchronized (lock) {
-            if (result == null) {
-                result = new ArrayList<IInfo>();
-            }
-
-            if ((getWhat & TOP_LEVEL) != 0) {
-                getWithFilter(qualifier, topLevelInitialsToInfo, result, filter, useLowerCaseQual);
-            }
-            if ((getWhat & INNER) != 0) {
-                getWithFilter(qualifier, innerInitialsToInfo, result, filter, useLowerCaseQual);
-            }
-            return result;
-        }
+    public Collection<IInfo> getTokensEqualTo(String qualifier, int getWhat) {
+        return getTokensEqualTo(qualifier, getWhat, null);
     }
 
-    /**
-     * @param qualifier
-     * @param initialsToInfo this is where we are going to get the info from (currently: inner or top level list)
-     * @param toks (out) the tokens will be added to this list
-     * @return
-     */
-    protected void getWithFilter(String qualifier, SortedMap<String, Set<IInfo>> initialsToInfo,
-            Collection<IInfo> toks, Filter filter, boolean useLowerCaseQual) {
-        String initials = getInitials(qualifier);
-        String qualToCompare = qualifier;
-        if (useLowerCaseQual) {
-            qualToCompare = qualifier.toLowerCase();
+    public Collection<IInfo> getTokensEqualTo(String qualifier, int getWhat, Collection<IInfo> result) {
+        onRead();
+        if (result == null) {
+            result = new ArrayList<IInfo>();
         }
 
-        //get until the end of the alphabet
-        SortedMap<String, Set<IInfo>> subMap = initialsToInfo.subMap(initials, initials + "\uffff\uffff\uffff\uffff");
-
-        for (Set<IInfo> listForInitials : subMap.values()) {
-
-            for (IInfo info : listForInitials) {
-                if (filter.doCompare(qualToCompare, info)) {
-                    toks.add(info);
-                }
-            }
+        if ((getWhat & TOP_LEVEL) != 0) {
+            topLevelIndex.getTokensEqualTo(qualifier, result);
         }
+        if ((getWhat & INNER) != 0) {
+            innerIndex.getTokensEqualTo(qualifier, result);
+        }
+        return result;
     }
 
     /**
      * @return all the tokens that are in this info (top level or inner)
      */
     public Collection<IInfo> getAllTokens() {
-        synchronized (lock) {
-            Collection<Set<IInfo>> lInfo = this.topLevelInitialsToInfo.values();
-
-            ArrayList<IInfo> toks = new ArrayList<IInfo>();
-            for (Set<IInfo> list : lInfo) {
-                for (IInfo info : list) {
-                    toks.add(info);
-                }
-            }
-
-            lInfo = this.innerInitialsToInfo.values();
-            for (Set<IInfo> list : lInfo) {
-                for (IInfo info : list) {
-                    toks.add(info);
-                }
-            }
-            return toks;
-        }
+        onRead();
+        ArrayList<IInfo> toks = new ArrayList<IInfo>();
+        topLevelIndex.getAllTokens(toks);
+        innerIndex.getAllTokens(toks);
+        return toks;
     }
 
     /**
@@ -749,24 +736,82 @@ public abstract class AbstractAdditionalTokensInfo {
                         + getAllTokens().size() + ") " + pathToSave);
             }
 
-            Map<String, Integer> dictionary = new HashMap<String, Integer>();
-            tempBuf.append("-- START TREE 1\n");
-            TreeIO.dumpTreeToBuffer(this.topLevelInitialsToInfo, tempBuf, dictionary);
+            //The trees are written in a binary file (which is memory-mapped on load so that the info is only
+            //created when actually requested). Note that a new file is always created (the current one may still
+            //be mapped by the current indexes) and the old ones are removed afterwards.
+            File binaryTreesFile = createBinaryTreesFile(pathToSave);
+            TreeIO.dumpTreesToBinaryFile(binaryTreesFile, this.topLevelIndex, this.innerIndex);
+            foldMappedTokensIndexes(binaryTreesFile);
 
-            tempBuf.append("-- START TREE 2\n");
-            TreeIO.dumpTreeToBuffer(this.innerInitialsToInfo, tempBuf, dictionary);
+            tempBuf.append(BINARY_TREES_PREFIX);
+            tempBuf.append(binaryTreesFile.getName());
+            tempBuf.append('\n');
+            writer.write(tempBuf.getInternalCharsArray(), 0, tempBuf.length());
+            writer.flush();
 
-            FastStringBuffer buf2 = new FastStringBuffer(50 * (dictionary.size() + 4));
-            TreeIO.dumpDictToBuffer(dictionary, buf2);
+            removeOldBinaryTreesFiles(pathToSave, binaryTreesFile);
+        }
+    }
 
-            //Write the dictionary before the actual trees.
-            writer.write(buf2.getInternalCharsArray(), 0, buf2.length());
-            buf2 = null;
+    /**
+     * Line which points to the file with the trees in the binary format.
+     */
+    protected static final String BINARY_TREES_PREFIX = "-- BINARY TREES ";
+
+    private static File createBinaryTreesFile(File pathToSave) {
+        long stamp = System.currentTimeMillis();
+        File file;
+        do {
+            file = new File(pathToSave.getParentFile(), pathToSave.getName() + ".trees" + stamp);
+            stamp++;
+        } while (file.exists());
+        return file;
+    }
 
-            //Note: tried LZFFileInputStream from https://github.com/ning/compress
-            //and Snappy from https://github.com/dain/snappy checking to see if by writing less we'd
-            //get a better time but it got a bit slower (gzip was slowest, then snappy and the faster was LZFFileInputStream)
-            writer.write(tempBuf.getInternalCharsArray(), 0, tempBuf.length());
+    /**
+     * If the current indexes are backed by a previous binary file, they're replaced by indexes backed by the file
+     * just written (so that the changes kept in memory since the last save are folded in).
+     */
+    private void foldMappedTokensIndexes(File binaryTreesFile) {
+        if (!(this.topLevelIndex instanceof MappedTokensIndex) && !(this.innerIndex instanceof MappedTokensIndex)) {
+            return;
+        }
+        ITokensIndex[] trees;
+        try {
+            trees = TreeIO.loadTreesFromBinaryFile(binaryTreesFile, getNature());
+        } catch (IOException e) {
+            Log.log("Unable to reload: " + binaryTreesFile, e);
+            return;
+        }
+        startWrite();
+        try {
+            if (this.topLevelIndex instanceof MappedTokensIndex) {
+                this.topLevelIndex = trees[0];
+            }
+            if (this.innerIndex instanceof MappedTokensIndex) {
+                this.innerIndex = trees[1];
+            }
+        } finally {
+            endWrite();
+        }
+    }
+
+    /**
+     * Removes the binary files with the trees which aren't the current one (on Windows those can't be removed
+     * when saving if they're still mapped, so, this is also done when the info is loaded -- before the current
+     * one is mapped).
+     */
+    protected static void removeOldBinaryTreesFiles(File pathToSave, File currentBinaryTreesFile) {
+        File[] files = pathToSave.getParentFile().listFiles();
+        if (files == null) {
+            return;
+        }
+        String prefix = pathToSave.getName() + ".trees";
+        for (File f : files) {
+            if (f.getName().startsWith(prefix) && !f.equals(currentBinaryTreesFile)) {
+                //May fail if it's still mapped (i.e.: on Windows), in which case it'll be removed in a later save.
+                f.delete();
+            }
         }
     }
 
@@ -779,8 +824,8 @@ public abstract class AbstractAdditionalTokensInfo {
     protected void restoreSavedInfo(Object o) throws MisconfigurationException {
         synchronized (lock) {
             Tuple3<Object, Object, Object> readFromFile = (Tuple3<Object, Object, Object>) o;
-            SortedMap<String, Set<IInfo>> o1 = (SortedMap<String, Set<IInfo>>) readFromFile.o1;
-            SortedMap<String, Set<IInfo>> o2 = (SortedMap<String, Set<IInfo>>) readFromFile.o2;
+            Object o1 = readFromFile.o1;
+            Object o2 = readFromFile.o2;
 
             if (o1 == null) {
                 throw new RuntimeException("Error in I/O (topLevelInitialsToInfo is null). Rebuilding internal info.");
@@ -788,8 +833,16 @@ public abstract class AbstractAdditionalTokensInfo {
             if (o2 == null) {
                 throw new RuntimeException("Error in I/O (innerInitialsToInfo is null). Rebuilding internal info.");
             }
-            this.topLevelInitialsToInfo = o1;
-            this.innerInitialsToInfo = o2;
+            startWrite();
+            try {
+                //May be an index (when restored from the binary format) or a map with the initials to info.
+                this.topLevelIndex = o1 instanceof ITokensIndex ? matchTokensIndexType((ITokensIndex) o1)
+                        : createTokensIndex((SortedMap<String, Set<IInfo>>) o1);
+                this.innerIndex = o2 instanceof ITokensIndex ? matchTokensIndexType((ITokensIndex) o2)
+                        : createTokensIndex((SortedMap<String, Set<IInfo>>) o2);
+            } finally {
+                endWrite();
+            }
             if (readFromFile.o3 != null) {
                 //may be null in new format (where that's checked during load time).
                 if (AbstractAdditionalTokensInfo.version != (Integer) readFromFile.o3) {
@@ -806,10 +859,10 @@ public abstract class AbstractAdditionalTokensInfo {
             buffer.append("AdditionalInfo{");
 
             buffer.append("topLevel=[");
-            entrySetToString(buffer, this.topLevelInitialsToInfo.entrySet());
+            entrySetToString(buffer, this.topLevelIndex.getInitialsToInfo().entrySet());
             buffer.append("]\n");
             buffer.append("inner=[");
-            entrySetToString(buffer, this.innerInitialsToInfo.entrySet());
+            entrySetToString(buffer, this.innerIndex.getInitialsToInfo().entrySet());
             buffer.append("]");
 
             buffer.append("}");
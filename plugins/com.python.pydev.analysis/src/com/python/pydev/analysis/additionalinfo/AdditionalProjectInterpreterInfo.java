@@ -63,6 +63,12 @@ public class AdditionalProjectInterpreterInfo extends AbstractAdditionalInfoWith
 
     private PythonNature nature;
 
+    /**
+     * Whether it was already logged that subclasses had to be searched for the token in modules whose bases are not
+     * in the class hierarchy index.
+     */
+    private volatile boolean loggedUnknownBases;
+
     /**
      * holds nature info (project name points to info)
      */
@@ -423,4 +429,37 @@ public class AdditionalProjectInterpreterInfo extends AbstractAdditionalInfoWith
         return search;
     }
 
+    /**
+     * @param className the name of the class whose subclasses are wanted (without dots).
+     *
+     * @return a list with the modules that may have subclasses of the given class (the modules whose bases are
+     * known are gotten from the class hierarchy index and only the others are searched for the token).
+     */
+    public List<ModulesKey> getModulesWithSubclassesOf(String className, IProgressMonitor monitor)
+            throws OperationCanceledException {
+        Tuple<List<ModulesKey>, Set<String>> modulesWithBase = getModulesWithBase(className);
+        List<ModulesKey> ret = modulesWithBase.o1;
+        Set<String> unknown = modulesWithBase.o2;
+        if (unknown.size() > 0) {
+            if (!loggedUnknownBases) {
+                loggedUnknownBases = true;
+                Log.logInfo(StringUtils.format(
+                        "%s: the bases of %s modules are not known (indexed with the fast definitions parser or "
+                                + "restored from the deltas), so, they're searched for the class name when finding "
+                                + "subclasses (rebuild to index them). Logged only once.",
+                        getUIRepresentation(), unknown.size()));
+            }
+            Set<String> found = new HashSet<>();
+            for (ModulesKey key : ret) {
+                found.add(key.name);
+            }
+            for (ModulesKey key : getModulesWithToken(className, monitor)) {
+                if (unknown.contains(key.name) && found.add(key.name)) {
+                    ret.add(key);
+                }
+            }
+        }
+        return ret;
+    }
+
 }
@@ -132,6 +132,15 @@ public class AdditionalSystemInterpreterInfo extends AbstractAdditionalInfoWithB
         persistingLocation = new File(persistingFolder, manager.getManagerRelatedName() + ".pydevsysteminfo");
 
         init();
+
+        try {
+            IInterpreterInfo interpreterInfo = manager.getInterpreterInfo(interpreter, new NullProgressMonitor());
+            if (interpreterInfo != null) {
+                setUseCompactTokensIndex(interpreterInfo.getUseCompactTokensIndex());
+            }
+        } catch (MisconfigurationException e) {
+            Log.log(e);
+        }
     }
 
     public static AbstractAdditionalDependencyInfo getAdditionalSystemInfo(IInterpreterManager manager,
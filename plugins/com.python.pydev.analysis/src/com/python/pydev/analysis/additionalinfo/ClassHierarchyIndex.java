@@ -0,0 +1,298 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.python.pydev.core.FastBufferedReader;
+import org.python.pydev.parser.jython.SimpleNode;
+import org.python.pydev.parser.jython.ast.Assign;
+import org.python.pydev.parser.jython.ast.Attribute;
+import org.python.pydev.parser.jython.ast.ClassDef;
+import org.python.pydev.parser.jython.ast.Import;
+import org.python.pydev.parser.jython.ast.ImportFrom;
+import org.python.pydev.parser.jython.ast.Module;
+import org.python.pydev.parser.jython.ast.Name;
+import org.python.pydev.parser.jython.ast.NameTok;
+import org.python.pydev.parser.jython.ast.aliasType;
+import org.python.pydev.parser.jython.ast.exprType;
+import org.python.pydev.parser.jython.ast.stmtType;
+import org.python.pydev.parser.visitors.NodeUtils;
+import org.python.pydev.parser.visitors.scope.ASTEntry;
+import org.python.pydev.parser.visitors.scope.EasyASTIteratorVisitor;
+import org.python.pydev.shared_core.string.FastStringBuffer;
+import org.python.pydev.shared_core.string.FullRepIterable;
+import org.python.pydev.shared_core.string.StringUtils;
+
+/**
+ * Keeps the bases of the classes in each module and the inverse (base -> modules), so that the modules which may
+ * have subclasses of some class are found without having to search the contents of all the modules.
+ *
+ * Bases are kept by the last part of their representation (i.e.: 'models.Model' is kept as 'Model'), so, the
+ * modules found must still be checked to know whether the base is actually the class searched.
+ *
+ * Bases which are aliases (i.e.: 'from models import Model as M' or 'Base = Model' in the module) are also kept by the
+ * name they refer to. If an alias can't be resolved (i.e.: 'Base = create_base()'), the bases of the module are
+ * marked as unknown.
+ *
+ * Modules whose bases are not known (i.e.: modules indexed with the fast definitions parser or restored from the
+ * deltas, which only have the tokens of the module) are kept apart so that clients can search them in another way.
+ *
+ * Not thread-safe (the additional info synchronizes the access to it).
+ */
+final class ClassHierarchyIndex {
+
+    public static final String VERSION = "2";
+
+    private static final String START = "-- START CLASS_HIERARCHY_" + VERSION;
+
+    private final Map<String, Set<String>> baseToModules = new HashMap<String, Set<String>>();
+    private final Map<String, Set<String>> moduleToBases = new HashMap<String, Set<String>>();
+    private final Set<String> modulesWithUnknownBases = new HashSet<String>();
+
+    /**
+     * Only names which are valid identifiers are kept (others would never match a class name).
+     */
+    private static boolean isValidBase(String base) {
+        int length = base.length();
+        if (length == 0 || !Character.isJavaIdentifierStart(base.charAt(0))) {
+            return false;
+        }
+        for (int i = 1; i < length; i++) {
+            if (!Character.isJavaIdentifierPart(base.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sets the bases of the given module from the classes in its AST.
+     */
+    public void addModule(String moduleName, SimpleNode ast) {
+        Set<String> bases = new LinkedHashSet<String>();
+        if (ast == null) {
+            setBases(moduleName, bases);
+            return;
+        }
+        EasyASTIteratorVisitor visitor = EasyASTIteratorVisitor.create(ast);
+        Map<String, String> aliases = null;
+        Iterator<ASTEntry> it = visitor.getClassesIterator();
+        while (it.hasNext()) {
+            ClassDef def = (ClassDef) it.next().node;
+            if (def.bases == null) {
+                //i.e.: created by the fast definitions parser (which doesn't get the bases).
+                markUnknown(moduleName);
+                return;
+            }
+            for (String base : NodeUtils.getParentNames(def, false)) {
+                bases.add(FullRepIterable.getLastPart(base));
+                if (base.indexOf('.') != -1) {
+                    continue;
+                }
+                if (aliases == null) {
+                    aliases = getAliases(ast, visitor);
+                }
+                if (aliases.containsKey(base)) {
+                    String resolved = resolveAlias(base, aliases);
+                    if (resolved == null) {
+                        markUnknown(moduleName);
+                        return;
+                    }
+                    bases.add(resolved);
+                }
+            }
+        }
+        setBases(moduleName, bases);
+    }
+
+    /**
+     * @return a map with the names bound by imports with 'as' and by assignments in the module level to the last
+     * part of the name they refer to (or null if it's not a name, such as in 'Base = create_base()').
+     */
+    private static Map<String, String> getAliases(SimpleNode ast, EasyASTIteratorVisitor visitor) {
+        Map<String, String> aliases = new HashMap<String, String>();
+        Iterator<ASTEntry> it = visitor.getIterator(Import.class, ImportFrom.class);
+        while (it.hasNext()) {
+            SimpleNode node = it.next().node;
+            aliasType[] names = node instanceof Import ? ((Import) node).names : ((ImportFrom) node).names;
+            if (names == null) {
+                continue;
+            }
+            for (aliasType alias : names) {
+                if (alias.asname != null) {
+                    aliases.put(((NameTok) alias.asname).id, FullRepIterable.getLastPart(((NameTok) alias.name).id));
+                }
+            }
+        }
+        if (ast instanceof Module) {
+            for (stmtType stmt : ((Module) ast).body) {
+                if (!(stmt instanceof Assign)) {
+                    continue;
+                }
+                Assign assign = (Assign) stmt;
+                String value = null;
+                if (assign.value instanceof Name || assign.value instanceof Attribute) {
+                    value = FullRepIterable.getLastPart(NodeUtils.getFullRepresentationString(assign.value));
+                }
+                for (exprType target : assign.targets) {
+                    if (target instanceof Name) {
+                        aliases.put(((Name) target).id, value);
+                    }
+                }
+            }
+        }
+        return aliases;
+    }
+
+    /**
+     * @return the name the given alias refers to (following aliases of aliases) or null if it can't be resolved.
+     */
+    private static String resolveAlias(String name, Map<String, String> aliases) {
+        Set<String> visited = new HashSet<String>();
+        while (aliases.containsKey(name)) {
+            if (!visited.add(name)) {
+                return null;
+            }
+            String next = aliases.get(name);
+            if (next == null || next.equals(name)) {
+                return next;
+            }
+            name = next;
+        }
+        return name;
+    }
+
+    public void setBases(String moduleName, Collection<String> bases) {
+        removeModule(moduleName);
+        Set<String> moduleBases = null;
+        for (String base : bases) {
+            if (!isValidBase(base)) {
+                continue;
+            }
+            if (moduleBases == null) {
+                moduleBases = new HashSet<String>();
+                moduleToBases.put(moduleName, moduleBases);
+            }
+            moduleBases.add(base);
+
+            Set<String> modules = baseToModules.get(base);
+            if (modules == null) {
+                modules = new HashSet<String>();
+                baseToModules.put(base, modules);
+            }
+            modules.add(moduleName);
+        }
+    }
+
+    /**
+     * Marks that the bases of the given module are not known.
+     */
+    public void markUnknown(String moduleName) {
+        removeModule(moduleName);
+        modulesWithUnknownBases.add(moduleName);
+    }
+
+    public void removeModule(String moduleName) {
+        modulesWithUnknownBases.remove(moduleName);
+        Set<String> bases = moduleToBases.remove(moduleName);
+        if (bases != null) {
+            for (String base : bases) {
+                Set<String> modules = baseToModules.get(base);
+                if (modules != null) {
+                    modules.remove(moduleName);
+                    if (modules.isEmpty()) {
+                        baseToModules.remove(base);
+                    }
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        baseToModules.clear();
+        moduleToBases.clear();
+        modulesWithUnknownBases.clear();
+    }
+
+    /**
+     * @return the names of the modules which have some class with a base whose last part is the given name.
+     */
+    public Set<String> getModulesWithBase(String baseName) {
+        Set<String> modules = baseToModules.get(baseName);
+        return modules != null ? new HashSet<String>(modules) : new HashSet<String>();
+    }
+
+    public Set<String> getModulesWithUnknownBases() {
+        return new HashSet<String>(modulesWithUnknownBases);
+    }
+
+    /**
+     * Writes the index in the format expected by loadFrom.
+     */
+    public void writeTo(FastStringBuffer tempBuf) {
+        tempBuf.append(START).append('\n');
+        for (Map.Entry<String, Set<String>> entry : moduleToBases.entrySet()) {
+            tempBuf.append(entry.getKey());
+            for (String base : entry.getValue()) {
+                tempBuf.append('|');
+                tempBuf.append(base);
+            }
+            tempBuf.append('\n');
+        }
+        for (String moduleName : modulesWithUnknownBases) {
+            tempBuf.append('?');
+            tempBuf.append(moduleName);
+            tempBuf.append('\n');
+        }
+        tempBuf.append("-- END CLASS_HIERARCHY\n");
+    }
+
+    /**
+     * @return whether the given '-- START CLASS_HIERARCHY' line was written in the current version.
+     */
+    public static boolean isCurrentVersion(FastStringBuffer line) {
+        return line.toString().equals(START);
+    }
+
+    /**
+     * Loads the contents written by writeTo (the '-- START CLASS_HIERARCHY' line must've been already read).
+     */
+    public static ClassHierarchyIndex loadFrom(FastBufferedReader reader) throws IOException {
+        ClassHierarchyIndex index = new ClassHierarchyIndex();
+        while (true) {
+            FastStringBuffer line = reader.readLine();
+            if (line == null || line.startsWith("-- ")) {
+                if (line != null && line.startsWith("-- END CLASS_HIERARCHY")) {
+                    return index;
+                }
+                throw new RuntimeException("Unexpected line: " + line);
+            }
+            if (line.length() == 0) {
+                continue;
+            }
+            if (line.charAt(0) == '?') {
+                index.modulesWithUnknownBases.add(line.toString().substring(1));
+                continue;
+            }
+            Iterator<String> parts = StringUtils.split(line.toString(), '|').iterator();
+            String moduleName = parts.next();
+            Set<String> bases = new HashSet<String>();
+            while (parts.hasNext()) {
+                bases.add(parts.next());
+            }
+            index.setBases(moduleName, bases);
+        }
+    }
+}
@@ -0,0 +1,355 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.python.pydev.core.IInfo;
+
+/**
+ * Tokens index which keeps the tokens in a packed structure: a sorted array with the lowercase names and a parallel
+ * array with the related info, so, lookups are done through a binary search (instead of a linear scan in the
+ * tokens with the same initials).
+ *
+ * As the packed arrays are immutable, changes are kept in a (small) structure with the tokens added and the modules
+ * removed, which is merged back into the packed arrays when it becomes too big.
+ *
+ * Readers may access it without locking (writers must be synchronized externally).
+ */
+public final class CompactTokensIndex implements ITokensIndex {
+
+    /**
+     * The packed arrays are only rebuilt after (at least) this number of changes.
+     */
+    private static final int MIN_CHANGES_TO_COMPACT = 2000;
+
+    private static final String[] EMPTY_NAMES = new String[0];
+    private static final IInfo[] EMPTY_INFOS = new IInfo[0];
+
+    /**
+     * Note: the packed arrays are immutable and the other structures are only changed by writers (a new state is
+     * created when compacting).
+     */
+    private static final class State {
+
+        /**
+         * Lowercase names (sorted).
+         */
+        private final String[] lowerNames;
+
+        /**
+         * The info for the name in the same position in lowerNames.
+         */
+        private final IInfo[] infos;
+
+        /**
+         * The modules which have info in the packed arrays.
+         */
+        private final Set<String> packedModules;
+
+        /**
+         * Lowercase name to info added after the packed arrays were created (arrays are copied on write).
+         */
+        private final ConcurrentSkipListMap<String, IInfo[]> added = new ConcurrentSkipListMap<String, IInfo[]>();
+
+        /**
+         * Modules in the packed arrays which were removed (their info in the packed arrays is no longer valid).
+         */
+        private final Set<String> removedModules = ConcurrentHashMap.newKeySet();
+
+        /**
+         * Number of changes since the packed arrays were created (only accessed by writers).
+         */
+        private int changes;
+
+        private State(String[] lowerNames, IInfo[] infos, Set<String> packedModules) {
+            this.lowerNames = lowerNames;
+            this.infos = infos;
+            this.packedModules = packedModules;
+        }
+
+        private boolean isPackedInfoValid(IInfo info) {
+            return removedModules.size() == 0 || !removedModules.contains(info.getDeclaringModuleName());
+        }
+
+        /**
+         * @return the first position in lowerNames which is >= the given name.
+         */
+        private int lowerBound(String lowerName) {
+            int low = 0;
+            int high = lowerNames.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (lowerNames[mid].compareTo(lowerName) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    private volatile State state = new State(EMPTY_NAMES, EMPTY_INFOS, new HashSet<String>());
+
+    public CompactTokensIndex() {
+    }
+
+    /**
+     * Creates an index with the given tokens already packed.
+     */
+    public CompactTokensIndex(Collection<IInfo> infos) {
+        this.state = createPackedState(infos);
+    }
+
+    private static final class NameAndInfo {
+        private final String lowerName;
+        private final IInfo info;
+
+        private NameAndInfo(String lowerName, IInfo info) {
+            this.lowerName = lowerName;
+            this.info = info;
+        }
+    }
+
+    private static State createPackedState(Collection<IInfo> infos) {
+        NameAndInfo[] entries = new NameAndInfo[infos.size()];
+        Map<String, String> lowerNamesPool = new HashMap<String, String>();
+        Set<String> packedModules = new HashSet<String>();
+        int i = 0;
+        for (IInfo info : infos) {
+            entries[i] = new NameAndInfo(getLowerName(info.getName(), lowerNamesPool), info);
+            packedModules.add(info.getDeclaringModuleName());
+            i++;
+        }
+        Arrays.sort(entries, new Comparator<NameAndInfo>() {
+
+            @Override
+            public int compare(NameAndInfo o1, NameAndInfo o2) {
+                return o1.lowerName.compareTo(o2.lowerName);
+            }
+        });
+
+        String[] lowerNames = new String[entries.length];
+        IInfo[] packedInfos = new IInfo[entries.length];
+        for (i = 0; i < entries.length; i++) {
+            lowerNames[i] = entries[i].lowerName;
+            packedInfos[i] = entries[i].info;
+        }
+        return new State(lowerNames, packedInfos, packedModules);
+    }
+
+    /**
+     * @return the lowercase name (which is the name itself if it's already lowercase or a shared instance from
+     * the pool otherwise).
+     */
+    private static String getLowerName(String name, Map<String, String> lowerNamesPool) {
+        String lower = name.toLowerCase();
+        if (lower.equals(name)) {
+            return name;
+        }
+        String pooled = lowerNamesPool.get(lower);
+        if (pooled == null) {
+            lowerNamesPool.put(lower, lower);
+            pooled = lower;
+        }
+        return pooled;
+    }
+
+    @Override
+    public void add(IInfo info) {
+        State s = this.state;
+        String lowerName = info.getName().toLowerCase();
+
+        //Check if it's already there (the info is kept as a set).
+        String[] lowerNames = s.lowerNames;
+        if (!s.removedModules.contains(info.getDeclaringModuleName())) {
+            for (int i = s.lowerBound(lowerName); i < lowerNames.length && lowerNames[i].equals(lowerName); i++) {
+                if (s.infos[i].equals(info)) {
+                    return;
+                }
+            }
+        }
+        IInfo[] current = s.added.get(lowerName);
+        if (current == null) {
+            s.added.put(lowerName, new IInfo[] { info });
+        } else {
+            for (IInfo existing : current) {
+                if (existing.equals(info)) {
+                    return;
+                }
+            }
+            IInfo[] newInfos = Arrays.copyOf(current, current.length + 1);
+            newInfos[current.length] = info;
+            s.added.put(lowerName, newInfos);
+        }
+        onChange(s);
+    }
+
+    @Override
+    public void removeInfoFromModule(String moduleName) {
+        State s = this.state;
+        Iterator<Entry<String, IInfo[]>> it = s.added.entrySet().iterator();
+        while (it.hasNext()) {
+            Entry<String, IInfo[]> entry = it.next();
+            IInfo[] current = entry.getValue();
+            List<IInfo> keep = null;
+            for (int i = 0; i < current.length; i++) {
+                IInfo info = current[i];
+                if (moduleName.equals(info.getDeclaringModuleName())) {
+                    if (keep == null) {
+                        keep = new ArrayList<IInfo>(current.length);
+                        for (int j = 0; j < i; j++) {
+                            keep.add(current[j]);
+                        }
+                    }
+                } else if (keep != null) {
+                    keep.add(info);
+                }
+            }
+            if (keep != null) {
+                if (keep.size() == 0) {
+                    it.remove();
+                } else {
+                    s.added.put(entry.getKey(), keep.toArray(new IInfo[keep.size()]));
+                }
+            }
+        }
+        if (s.packedModules.contains(moduleName) && s.removedModules.add(moduleName)) {
+            onChange(s);
+        }
+    }
+
+    /**
+     * Packs the changes done if there are too many changes since the last time it was packed.
+     */
+    private void onChange(State s) {
+        s.changes++;
+        if (s.changes > MIN_CHANGES_TO_COMPACT && s.changes > s.lowerNames.length / 4) {
+            compact();
+        }
+    }
+
+    /**
+     * Merges all the changes done into the packed arrays.
+     */
+    public void compact() {
+        List<IInfo> allTokens = new ArrayList<IInfo>();
+        getAllTokens(allTokens);
+        this.state = createPackedState(allTokens);
+    }
+
+    @Override
+    public void clear() {
+        this.state = new State(EMPTY_NAMES, EMPTY_INFOS, new HashSet<String>());
+    }
+
+    @Override
+    public void getTokensStartingWith(String qualifier, Collection<IInfo> toks) {
+        State s = this.state;
+        String lowerCaseQualifier = qualifier.toLowerCase();
+
+        String[] lowerNames = s.lowerNames;
+        for (int i = s.lowerBound(lowerCaseQualifier); i < lowerNames.length
+                && lowerNames[i].startsWith(lowerCaseQualifier); i++) {
+            IInfo info = s.infos[i];
+            if (s.isPackedInfoValid(info)) {
+                toks.add(info);
+            }
+        }
+
+        for (Entry<String, IInfo[]> entry : s.added.tailMap(lowerCaseQualifier).entrySet()) {
+            if (!entry.getKey().startsWith(lowerCaseQualifier)) {
+                break;
+            }
+            for (IInfo info : entry.getValue()) {
+                toks.add(info);
+            }
+        }
+    }
+
+    @Override
+    public void getTokensEqualTo(String qualifier, Collection<IInfo> toks) {
+        State s = this.state;
+        String lowerCaseQualifier = qualifier.toLowerCase();
+
+        String[] lowerNames = s.lowerNames;
+        for (int i = s.lowerBound(lowerCaseQualifier); i < lowerNames.length
+                && lowerNames[i].equals(lowerCaseQualifier); i++) {
+            IInfo info = s.infos[i];
+            if (info.getName().equals(qualifier) && s.isPackedInfoValid(info)) {
+                toks.add(info);
+            }
+        }
+
+        IInfo[] added = s.added.get(lowerCaseQualifier);
+        if (added != null) {
+            for (IInfo info : added) {
+                if (info.getName().equals(qualifier)) {
+                    toks.add(info);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void getAllTokens(Collection<IInfo> toks) {
+        State s = this.state;
+        for (IInfo info : s.infos) {
+            if (s.isPackedInfoValid(info)) {
+                toks.add(info);
+            }
+        }
+        for (IInfo[] added : s.added.values()) {
+            for (IInfo info : added) {
+                toks.add(info);
+            }
+        }
+    }
+
+    @Override
+    public void visitAllTokens(ITokenFieldsVisitor visitor) {
+        State s = this.state;
+        for (IInfo info : s.infos) {
+            if (s.isPackedInfoValid(info)) {
+                TreeIO.visitInfo(info, visitor);
+            }
+        }
+        for (IInfo[] added : s.added.values()) {
+            for (IInfo info : added) {
+                TreeIO.visitInfo(info, visitor);
+            }
+        }
+    }
+
+    /**
+     * Note: the map returned is created on demand (so, changes to it aren't reflected in this index).
+     */
+    @Override
+    public SortedMap<String, Set<IInfo>> getInitialsToInfo() {
+        List<IInfo> allTokens = new ArrayList<IInfo>();
+        getAllTokens(allTokens);
+        InitialsTokensIndex initialsTokensIndex = new InitialsTokensIndex();
+        for (IInfo info : allTokens) {
+            initialsTokensIndex.add(info);
+        }
+        return initialsTokensIndex.getInitialsToInfo();
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.SortedMap;
+
+import org.python.pydev.core.IInfo;
+
+/**
+ * Index used to keep the tokens (either the top level or the inner ones) of some additional info.
+ *
+ * Writers must be synchronized externally (through the lock in AbstractAdditionalTokensInfo) but readers may
+ * access it concurrently without any locking.
+ */
+public interface ITokensIndex {
+
+    /**
+     * Receives the fields of the tokens in an index (see: visitAllTokens).
+     */
+    interface ITokenFieldsVisitor {
+
+        void visit(String name, String declaringModuleName, String path, String file, int line, int col, int type);
+    }
+
+    /**
+     * Adds the given info (if an equal info is already there, it's not added again).
+     */
+    void add(IInfo info);
+
+    /**
+     * Removes all the info declared in the given module.
+     */
+    void removeInfoFromModule(String moduleName);
+
+    void clear();
+
+    /**
+     * @param qualifier the qualifier the token name must start with (case-insensitive).
+     * @param toks (out) the tokens found will be added to this collection.
+     */
+    void getTokensStartingWith(String qualifier, Collection<IInfo> toks);
+
+    /**
+     * @param qualifier the name which must be equal to the token name.
+     * @param toks (out) the tokens found will be added to this collection.
+     */
+    void getTokensEqualTo(String qualifier, Collection<IInfo> toks);
+
+    /**
+     * @param toks (out) all the tokens in this index will be added to this collection.
+     */
+    void getAllTokens(Collection<IInfo> toks);
+
+    /**
+     * Passes the fields of all the tokens in this index to the visitor (used when saving: an index which creates
+     * the info on demand doesn't need to create it for that).
+     */
+    void visitAllTokens(ITokenFieldsVisitor visitor);
+
+    /**
+     * @return the contents of this index as a map of initials to info (which is the structure that's persisted).
+     * Note: it should not be changed by clients.
+     */
+    SortedMap<String, Set<IInfo>> getInitialsToInfo();
+}
@@ -0,0 +1,176 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.python.pydev.core.IInfo;
+
+/**
+ * Default tokens index: it's ordered through a tree map which is accessed by the initials of the names (and then
+ * the info with those initials are filtered linearly).
+ *
+ * Readers may access it without locking (so, the maps and sets used are concurrent).
+ */
+public final class InitialsTokensIndex implements ITokensIndex {
+
+    /**
+     * this is the number of initials that is used for indexing
+     */
+    public static final int NUMBER_OF_INITIALS_TO_INDEX = 3;
+
+    private final SortedMap<String, Set<IInfo>> initialsToInfo;
+
+    public InitialsTokensIndex() {
+        this.initialsToInfo = createInitialsToInfo();
+    }
+
+    /**
+     * Creates an index from a map of initials to info (i.e.: as restored from the disk).
+     */
+    public InitialsTokensIndex(SortedMap<String, Set<IInfo>> initialsToInfo) {
+        this.initialsToInfo = toConcurrentInitialsToInfo(initialsToInfo);
+    }
+
+    /**
+     * @return a new map to be used as the index of initials to info (which may be read without any locking).
+     */
+    public static SortedMap<String, Set<IInfo>> createInitialsToInfo() {
+        return new ConcurrentSkipListMap<String, Set<IInfo>>();
+    }
+
+    /**
+     * @return a new set to hold the info for some initials (which may be read without any locking).
+     */
+    public static Set<IInfo> createInfoSet(int initialCapacity) {
+        return ConcurrentHashMap.newKeySet(initialCapacity);
+    }
+
+    /**
+     * Maps which were not created through createInitialsToInfo (i.e.: restored with an old format) must be
+     * converted so that they can be accessed by readers without locking.
+     */
+    private static SortedMap<String, Set<IInfo>> toConcurrentInitialsToInfo(SortedMap<String, Set<IInfo>> map) {
+        if (map instanceof ConcurrentSkipListMap) {
+            return map;
+        }
+        SortedMap<String, Set<IInfo>> ret = createInitialsToInfo();
+        for (Entry<String, Set<IInfo>> entry : map.entrySet()) {
+            Set<IInfo> value = entry.getValue();
+            Set<IInfo> set = createInfoSet(value.size());
+            set.addAll(value);
+            ret.put(entry.getKey(), set);
+        }
+        return ret;
+    }
+
+    /**
+     * @param name the name from where we want to get the initials
+     * @return the initials for the name
+     */
+    public static String getInitials(String name) {
+        if (name.length() < NUMBER_OF_INITIALS_TO_INDEX) {
+            return name;
+        }
+        return name.substring(0, NUMBER_OF_INITIALS_TO_INDEX).toLowerCase();
+    }
+
+    @Override
+    public void add(IInfo info) {
+        String initials = getInitials(info.getName());
+        Set<IInfo> lInfo = initialsToInfo.get(initials);
+        if (lInfo == null) {
+            lInfo = createInfoSet(4);
+            initialsToInfo.put(initials, lInfo);
+        }
+        lInfo.add(info);
+    }
+
+    @Override
+    public void removeInfoFromModule(String moduleName) {
+        Iterator<Set<IInfo>> itListOfInfo = initialsToInfo.values().iterator();
+        while (itListOfInfo.hasNext()) {
+
+            Iterator<IInfo> it = itListOfInfo.next().iterator();
+            while (it.hasNext()) {
+
+                IInfo info = it.next();
+                if (info != null && info.getDeclaringModuleName() != null) {
+                    if (info.getDeclaringModuleName().equals(moduleName)) {
+                        it.remove();
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        initialsToInfo.clear();
+    }
+
+    @Override
+    public void getTokensStartingWith(String qualifier, Collection<IInfo> toks) {
+        String lowerCaseQualifier = qualifier.toLowerCase();
+        for (Set<IInfo> listForInitials : getSubMap(qualifier).values()) {
+            for (IInfo info : listForInitials) {
+                if (info.getName().toLowerCase().startsWith(lowerCaseQualifier)) {
+                    toks.add(info);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void getTokensEqualTo(String qualifier, Collection<IInfo> toks) {
+        for (Set<IInfo> listForInitials : getSubMap(qualifier).values()) {
+            for (IInfo info : listForInitials) {
+                if (info.getName().equals(qualifier)) {
+                    toks.add(info);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the part of the tree which may have tokens matching the given qualifier.
+     */
+    private SortedMap<String, Set<IInfo>> getSubMap(String qualifier) {
+        String initials = getInitials(qualifier);
+        //get until the end of the alphabet
+        return initialsToInfo.subMap(initials, initials + "\uffff\uffff\uffff\uffff");
+    }
+
+    @Override
+    public void getAllTokens(Collection<IInfo> toks) {
+        for (Set<IInfo> list : initialsToInfo.values()) {
+            for (IInfo info : list) {
+                toks.add(info);
+            }
+        }
+    }
+
+    @Override
+    public void visitAllTokens(ITokenFieldsVisitor visitor) {
+        for (Set<IInfo> list : initialsToInfo.values()) {
+            for (IInfo info : list) {
+                TreeIO.visitInfo(info, visitor);
+            }
+        }
+    }
+
+    @Override
+    public SortedMap<String, Set<IInfo>> getInitialsToInfo() {
+        return initialsToInfo;
+    }
+}
@@ -0,0 +1,260 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.python.pydev.core.IInfo;
+import org.python.pydev.core.IPythonNature;
+import org.python.pydev.core.log.Log;
+
+/**
+ * Tokens index which is backed by the (memory-mapped) records of a tree saved in the binary format (see:
+ * TreeIO.dumpTreesToBinaryFile), so, the info is only materialized when it's actually requested.
+ *
+ * The records are read-only: changes are kept in an InitialsTokensIndex (for the added tokens) and in a set with
+ * the modules removed (which hides the related records) until the info is saved again.
+ *
+ * Readers may access it without locking (writers must be synchronized externally).
+ */
+public final class MappedTokensIndex implements ITokensIndex {
+
+    /**
+     * The strings shared by the trees in a binary file (created on demand).
+     */
+    static final class StringsTable {
+
+        private final ByteBuffer buffer;
+        private final int offsetsPosition;
+        private final int charsPosition;
+        private final String[] strings;
+
+        StringsTable(ByteBuffer buffer, int offsetsPosition, int count, int charsPosition) {
+            this.buffer = buffer;
+            this.offsetsPosition = offsetsPosition;
+            this.charsPosition = charsPosition;
+            this.strings = new String[count];
+        }
+
+        /**
+         * @return the string with the given index (or null if the index is negative).
+         */
+        String get(int i) {
+            if (i < 0) {
+                return null;
+            }
+            // Note: races here are benign (at most the same string is created twice).
+            String ret = strings[i];
+            if (ret == null) {
+                int start = buffer.getInt(offsetsPosition + (i * 4));
+                int end = buffer.getInt(offsetsPosition + ((i + 1) * 4));
+                char[] chars = new char[end - start];
+                int pos = charsPosition + (start * 2);
+                for (int j = 0; j < chars.length; j++, pos += 2) {
+                    chars[j] = buffer.getChar(pos);
+                }
+                ret = new String(chars);
+                strings[i] = ret;
+            }
+            return ret;
+        }
+    }
+
+    private final ByteBuffer buffer;
+    private final StringsTable strings;
+    private final int recordsPosition;
+    private final IPythonNature nature;
+
+    /**
+     * Number of records available (set to 0 on clear()).
+     */
+    private volatile int recordsCount;
+
+    /**
+     * The info already created for each record.
+     */
+    private final IInfo[] infos;
+
+    /**
+     * Tokens added after the records were saved.
+     */
+    private final InitialsTokensIndex added = new InitialsTokensIndex();
+
+    /**
+     * Modules whose records are no longer valid.
+     */
+    private final Set<String> removedModules = ConcurrentHashMap.newKeySet();
+
+    MappedTokensIndex(ByteBuffer buffer, StringsTable strings, int recordsPosition, int recordsCount,
+            IPythonNature nature) {
+        this.buffer = buffer;
+        this.strings = strings;
+        this.recordsPosition = recordsPosition;
+        this.recordsCount = recordsCount;
+        this.infos = new IInfo[recordsCount];
+        this.nature = nature;
+    }
+
+    private int getRecordField(int record, int field) {
+        return buffer.getInt(recordsPosition + (record * TreeIO.BINARY_RECORD_SIZE) + (field * 4));
+    }
+
+    private String getLowerName(int record) {
+        return strings.get(getRecordField(record, TreeIO.BINARY_FIELD_LOWER_NAME));
+    }
+
+    /**
+     * @return the info for the given record (or null if the module of the record was removed).
+     */
+    private IInfo getValidInfo(int record) {
+        IInfo info = infos[record];
+        if (info == null) {
+            // Note: races here are benign (at most the same info is created twice).
+            info = TreeIO.createInfo(getRecordField(record, TreeIO.BINARY_FIELD_TYPE),
+                    strings.get(getRecordField(record, TreeIO.BINARY_FIELD_NAME)),
+                    strings.get(getRecordField(record, TreeIO.BINARY_FIELD_MODULE)),
+                    strings.get(getRecordField(record, TreeIO.BINARY_FIELD_PATH)), nature,
+                    strings.get(getRecordField(record, TreeIO.BINARY_FIELD_FILE)),
+                    getRecordField(record, TreeIO.BINARY_FIELD_LINE), getRecordField(record, TreeIO.BINARY_FIELD_COL));
+            if (info == null) {
+                Log.log("Unexpected type: " + getRecordField(record, TreeIO.BINARY_FIELD_TYPE));
+                return null;
+            }
+            infos[record] = info;
+        }
+        if (removedModules.size() > 0 && removedModules.contains(info.getDeclaringModuleName())) {
+            return null;
+        }
+        return info;
+    }
+
+    /**
+     * @return the first record whose lowercase name is >= the given name.
+     */
+    private int lowerBound(String lowerName, int count) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (getLowerName(mid).compareTo(lowerName) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public void add(IInfo info) {
+        //Check if it's already there (the info is kept as a set).
+        String lowerName = info.getName().toLowerCase();
+        int count = recordsCount;
+        for (int i = lowerBound(lowerName, count); i < count && getLowerName(i).equals(lowerName); i++) {
+            IInfo existing = getValidInfo(i);
+            if (existing != null && existing.equals(info)) {
+                return;
+            }
+        }
+        added.add(info);
+    }
+
+    @Override
+    public void removeInfoFromModule(String moduleName) {
+        added.removeInfoFromModule(moduleName);
+        removedModules.add(moduleName);
+    }
+
+    @Override
+    public void clear() {
+        recordsCount = 0;
+        added.clear();
+        removedModules.clear();
+    }
+
+    @Override
+    public void getTokensStartingWith(String qualifier, Collection<IInfo> toks) {
+        String lowerCaseQualifier = qualifier.toLowerCase();
+        int count = recordsCount;
+        for (int i = lowerBound(lowerCaseQualifier, count); i < count
+                && getLowerName(i).startsWith(lowerCaseQualifier); i++) {
+            IInfo info = getValidInfo(i);
+            if (info != null) {
+                toks.add(info);
+            }
+        }
+        added.getTokensStartingWith(qualifier, toks);
+    }
+
+    @Override
+    public void getTokensEqualTo(String qualifier, Collection<IInfo> toks) {
+        String lowerCaseQualifier = qualifier.toLowerCase();
+        int count = recordsCount;
+        for (int i = lowerBound(lowerCaseQualifier, count); i < count
+                && getLowerName(i).equals(lowerCaseQualifier); i++) {
+            if (qualifier.equals(strings.get(getRecordField(i, TreeIO.BINARY_FIELD_NAME)))) {
+                IInfo info = getValidInfo(i);
+                if (info != null) {
+                    toks.add(info);
+                }
+            }
+        }
+        added.getTokensEqualTo(qualifier, toks);
+    }
+
+    @Override
+    public void getAllTokens(Collection<IInfo> toks) {
+        int count = recordsCount;
+        for (int i = 0; i < count; i++) {
+            IInfo info = getValidInfo(i);
+            if (info != null) {
+                toks.add(info);
+            }
+        }
+        added.getAllTokens(toks);
+    }
+
+    /**
+     * Note: the fields are read from the records (the info isn't created for the records visited).
+     */
+    @Override
+    public void visitAllTokens(ITokenFieldsVisitor visitor) {
+        int count = recordsCount;
+        for (int i = 0; i < count; i++) {
+            String moduleName = strings.get(getRecordField(i, TreeIO.BINARY_FIELD_MODULE));
+            if (removedModules.size() > 0 && removedModules.contains(moduleName)) {
+                continue;
+            }
+            visitor.visit(strings.get(getRecordField(i, TreeIO.BINARY_FIELD_NAME)), moduleName,
+                    strings.get(getRecordField(i, TreeIO.BINARY_FIELD_PATH)),
+                    strings.get(getRecordField(i, TreeIO.BINARY_FIELD_FILE)),
+                    getRecordField(i, TreeIO.BINARY_FIELD_LINE), getRecordField(i, TreeIO.BINARY_FIELD_COL),
+                    getRecordField(i, TreeIO.BINARY_FIELD_TYPE));
+        }
+        added.visitAllTokens(visitor);
+    }
+
+    /**
+     * Note: the map returned is created on demand (so, changes to it aren't reflected in this index).
+     */
+    @Override
+    public SortedMap<String, Set<IInfo>> getInitialsToInfo() {
+        List<IInfo> allTokens = new ArrayList<IInfo>();
+        getAllTokens(allTokens);
+        InitialsTokensIndex initialsTokensIndex = new InitialsTokensIndex();
+        for (IInfo info : allTokens) {
+            initialsTokensIndex.add(info);
+        }
+        return initialsTokensIndex.getInitialsToInfo();
+    }
+}
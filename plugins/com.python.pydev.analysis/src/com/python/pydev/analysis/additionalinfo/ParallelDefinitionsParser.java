@@ -0,0 +1,114 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.python.pydev.ast.codecompletion.revisited.PythonPathHelper;
+import org.python.pydev.core.ModulesKey;
+import org.python.pydev.parser.jython.SimpleNode;
+
+/**
+ * Reads and parses (with the fast definitions parser) the source modules in a list of keys in parallel.
+ *
+ * The results must be requested in the same order of the keys (so, clients can merge the results sequentially in
+ * a deterministic order). Only a window of modules ahead of the one requested is parsed at a time (so that the
+ * parsed ASTs don't take too much memory).
+ */
+final class ParallelDefinitionsParser implements AutoCloseable {
+
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    private final List<ModulesKey> keys;
+    private final int window;
+    private final ExecutorService executor;
+    private final Future<SimpleNode>[] futures;
+    private int nextToSubmit;
+
+    /**
+     * @param parallelism the number of threads to use (if <= 1 the modules are parsed in the thread which requests
+     * them).
+     */
+    @SuppressWarnings("unchecked")
+    ParallelDefinitionsParser(List<ModulesKey> keys, int parallelism) {
+        this.keys = keys;
+        if (parallelism > 1) {
+            this.window = parallelism * 4;
+            this.futures = new Future[keys.size()];
+            this.executor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "PyDev: Indexing modules " + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        } else {
+            this.window = 0;
+            this.futures = null;
+            this.executor = null;
+        }
+    }
+
+    /**
+     * @return whether the given key is of a source module (which is parsed by this class).
+     */
+    static boolean isSourceModule(ModulesKey key) {
+        return PythonPathHelper.canAddAstInfoForSourceModule(key);
+    }
+
+    /**
+     * @return the node for the key at the given index (which must be a source module).
+     */
+    SimpleNode get(int i) throws Exception {
+        if (executor == null) {
+            return AbstractAdditionalTokensInfo.parseDefinitions(keys.get(i));
+        }
+        int submitUntil = Math.min(keys.size(), i + window + 1);
+        for (; nextToSubmit < submitUntil; nextToSubmit++) {
+            final ModulesKey key = keys.get(nextToSubmit);
+            if (isSourceModule(key)) {
+                futures[nextToSubmit] = executor.submit(new Callable<SimpleNode>() {
+
+                    @Override
+                    public SimpleNode call() throws Exception {
+                        return AbstractAdditionalTokensInfo.parseDefinitions(key);
+                    }
+                });
+            }
+        }
+        Future<SimpleNode> future = futures[i];
+        futures[i] = null;
+        if (future == null) {
+            throw new RuntimeException("Not a source module: " + keys.get(i));
+        }
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -48,14 +48,117 @@ import com.python.pydev.analysis.system_info_builder.InterpreterInfoBuilder;
 public class ReferenceSearchesLucene implements IReferenceSearches {
 
     private static final Object lock = new Object();
-    private static final Map<File, Object> indexDirToLock = new HashMap<File, Object>();
+    private static final Map<File, LuceneIndex> indexDirToIndex = new HashMap<File, LuceneIndex>();
     private static final boolean DEBUG = false;
     private WeakReference<AbstractAdditionalDependencyInfo> abstractAdditionalDependencyInfo;
 
+    /**
+     * The lucene index for some index dir. It's kept open (and only updated with what changed since the
+     * last search) instead of being recreated and fully checked for each search.
+     *
+     * Access must be synchronized on the instance.
+     */
+    private static final class LuceneIndex {
+
+        private final IndexApi indexApi;
+
+        /**
+         * The modules (with the modified time) which are currently in the lucene index.
+         */
+        private final Map<ModulesKey, CompleteIndexKey> indexMap = new HashMap<>();
+
+        /**
+         * The searches which last synchronized this index (when another one uses it, a full sync is needed).
+         */
+        private ReferenceSearchesLucene syncedBy;
+
+        private LuceneIndex(IndexApi indexApi) {
+            this.indexApi = indexApi;
+        }
+    }
+
+    private final Object changedModulesLock = new Object();
+
+    /**
+     * Modules added/removed from the related info since the last search.
+     */
+    private Set<String> changedModules = new HashSet<>();
+
+    /**
+     * Whether the whole index must be checked against the related info in the next search.
+     */
+    private boolean fullSyncNeeded = true;
+
     public ReferenceSearchesLucene(AbstractAdditionalDependencyInfo abstractAdditionalDependencyInfo) {
         this.abstractAdditionalDependencyInfo = new WeakReference<>(abstractAdditionalDependencyInfo);
     }
 
+    /**
+     * Notification that the given module was added/removed/changed in the related info (so, it must be
+     * updated in the index in the next search).
+     */
+    public void onModuleChanged(String moduleName) {
+        synchronized (changedModulesLock) {
+            if (!fullSyncNeeded) {
+                changedModules.add(moduleName);
+            }
+        }
+    }
+
+    /**
+     * Notification that all the info in the related info was changed (i.e.: cleared or recreated).
+     */
+    public void onAllModulesChanged() {
+        synchronized (changedModulesLock) {
+            fullSyncNeeded = true;
+            changedModules.clear();
+        }
+    }
+
+    /**
+     * @return the index for the given dir (created and loaded only the first time it's requested).
+     */
+    private static LuceneIndex getLuceneIndex(File indexDir, boolean applyAllDeletes) throws IOException {
+        synchronized (lock) {
+            LuceneIndex index = indexDirToIndex.get(indexDir);
+            if (index == null) {
+                index = new LuceneIndex(new IndexApi(indexDir, applyAllDeletes));
+                final Map<ModulesKey, CompleteIndexKey> indexMap = index.indexMap;
+
+                IDocumentsVisitor visitor = new IDocumentsVisitor() {
+
+                    @Override
+                    public void visit(DocumentInfo documentInfo) {
+                        ModulesKey keyFromIO = ModulesKey.fromIO(documentInfo.get(FIELD_MODULES_KEY_IO));
+                        String modifiedTime = documentInfo.get(FIELD_MODIFIED_TIME);
+                        indexMap.put(keyFromIO, new CompleteIndexKey(keyFromIO, Long.parseLong(modifiedTime)));
+                    }
+                };
+                try {
+                    index.indexApi.visitAllDocs(visitor, FIELD_MODULES_KEY_IO, FIELD_MODIFIED_TIME);
+                } catch (IOException e) {
+                    Log.log(e);
+                }
+                indexDirToIndex.put(indexDir, index);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Disposes all the indexes which are kept open.
+     */
+    public static void disposeAll() {
+        synchronized (lock) {
+            for (LuceneIndex index : indexDirToIndex.values()) {
+                synchronized (index) {
+                    index.indexApi.dispose();
+                }
+            }
+            indexDirToIndex.clear();
+        }
+    }
+
     @Override
     public synchronized List<ModulesKey> search(IProject project,
             final OrderedMap<String, Set<String>> fieldNameToValues, IProgressMonitor monitor)
@@ -109,8 +212,6 @@ public class ReferenceSearchesLucene implements IReferenceSearches {
             }
         }
 
-        boolean mustCommitChange = false;
-
         final String name = "Search modules with token in: " + abstractAdditionalDependencyInfo.getUIRepresentation();
         monitor.beginTask(name, 7);
         monitor.setTaskName(name);
@@ -121,112 +222,73 @@ public class ReferenceSearchesLucene implements IReferenceSearches {
         boolean applyAllDeletes = false;
 
         String folderToPersist = completeIndex.getFolderToPersist();
-        Object indexApiLock;
         File indexDir = new File(folderToPersist, "lc");
-        synchronized (lock) {
-            indexApiLock = indexDirToLock.get(indexDir);
-            if (indexApiLock == null) {
-                try {
-                    indexApiLock = new Object();
-                    indexDirToLock.put(indexDir, indexApiLock);
-                } catch (Exception e) {
-                    Log.log(e);
-                    return ret;
-                }
-            }
+        LuceneIndex index;
+        try {
+            index = getLuceneIndex(indexDir, applyAllDeletes);
+        } catch (Exception e) {
+            Log.log(e);
+            return ret;
         }
 
-        IndexApi indexApi = null;
         try {
-            synchronized (indexApiLock) {
-                indexApi = new IndexApi(indexDir, applyAllDeletes);
-                final Map<ModulesKey, CompleteIndexKey> indexMap = new HashMap<>(); // Key to CompleteIndexKey (has modified time).
-
-                IDocumentsVisitor visitor = new IDocumentsVisitor() {
-
-                    @Override
-                    public void visit(DocumentInfo documentInfo) {
-                        ModulesKey keyFromIO = ModulesKey.fromIO(documentInfo.get(FIELD_MODULES_KEY_IO));
-                        String modifiedTime = documentInfo.get(FIELD_MODIFIED_TIME);
-                        indexMap.put(keyFromIO, new CompleteIndexKey(keyFromIO, Long.parseLong(modifiedTime)));
-                    }
-                };
-                try {
-                    indexApi.visitAllDocs(visitor, FIELD_MODULES_KEY_IO, FIELD_MODIFIED_TIME);
-                } catch (IOException e) {
-                    Log.log(e);
-                }
-
+            synchronized (index) {
+                IndexApi indexApi = index.indexApi;
                 incrementAndCheckProgress("Visited current index", monitor);
 
-                Set<CompleteIndexKey> docsToRemove = new HashSet<>();
-                Set<CompleteIndexKey> modulesToAdd = new HashSet<>();
-                Map<File, Set<CompleteIndexKey>> zipModulesToAdd = new HashMap<>();
-
                 // Wait for the integrity check before getting the keys!
                 abstractAdditionalDependencyInfo.waitForIntegrityCheck();
 
                 final Map<CompleteIndexKey, CompleteIndexKey> currentKeys = completeIndex.keys();
 
-                // Step 1: remove entries which were in the index but are already removed
-                // from the modules (or have a different time).
-                for (Entry<ModulesKey, CompleteIndexKey> entryInIndex : indexMap.entrySet()) {
-                    CompleteIndexKey indexModule = entryInIndex.getValue();
-
-                    CompleteIndexKey currentModule = currentKeys.get(indexModule);
-                    if (currentModule == null || currentModule.key == null || currentModule.key.file == null) {
-                        docsToRemove.add(indexModule);
-
-                    } else {
-                        // exists, but we also need to check the modified time
-                        boolean changed = currentModule.lastModified != indexModule.lastModified;
-                        if (!changed) {
-                            ModulesKey keyCurrentModule = currentModule.key;
-                            ModulesKey keyIndexModule = indexModule.key;
-                            boolean currentIsZip = keyCurrentModule instanceof ModulesKeyForZip;
-                            boolean indexIsZip = keyIndexModule instanceof ModulesKeyForZip;
-                            changed = currentIsZip != indexIsZip;
-
-                            if (!changed) {
-                                changed = !currentModule.key.file.equals(indexModule.key.file);
-                            }
-                        }
+                Set<String> changedModules;
+                boolean fullSync;
+                synchronized (changedModulesLock) {
+                    fullSync = fullSyncNeeded || index.syncedBy != this;
+                    changedModules = this.changedModules;
+                    this.changedModules = new HashSet<>();
+                    fullSyncNeeded = false;
+                }
+                index.syncedBy = this;
 
-                        if (changed) {
-                            // remove and add
-                            docsToRemove.add(indexModule);
+                Set<CompleteIndexKey> docsToRemove = new HashSet<>();
+                Set<CompleteIndexKey> modulesToAdd = new HashSet<>();
+                Map<File, Set<CompleteIndexKey>> zipModulesToAdd = new HashMap<>();
 
-                            add(modulesToAdd, zipModulesToAdd, currentModule);
-                        }
+                if (fullSync) {
+                    if (DEBUG) {
+                        System.out.println("Full sync: " + indexDir);
                     }
-                }
-                // --- Progress
-                incrementAndCheckProgress("Updating for removal", monitor);
-
-                // Step 2: add new entries in current and not in the index
-                for (Entry<CompleteIndexKey, CompleteIndexKey> currentEntry : currentKeys.entrySet()) {
-                    CompleteIndexKey completeIndexKey = currentEntry.getValue();
-                    if (!indexMap.containsKey(completeIndexKey.key)) {
-                        ModulesKey modulesKey = completeIndexKey.key;
-                        if (modulesKey instanceof IModulesKeyForJava || modulesKey.file == null
-                                || !modulesKey.file.isFile()) {
-                            //ignore this one (we can't do anything with it).
-                            continue;
-                        }
+                    // Step 1: remove entries which were in the index but are already removed
+                    // from the modules (or have a different time).
+                    for (CompleteIndexKey indexModule : index.indexMap.values()) {
+                        checkModule(indexModule, currentKeys.get(indexModule), docsToRemove, modulesToAdd,
+                                zipModulesToAdd);
+                    }
+                    // --- Progress
+                    incrementAndCheckProgress("Updating for removal", monitor);
 
-                        if (modulesKey instanceof ModulesKeyForZip) {
-                            ModulesKeyForZip modulesKeyForZip = (ModulesKeyForZip) modulesKey;
-                            if (!modulesKeyForZip.isFile) {
-                                continue; // Ignore folders in zips (happens for jython folders which may not have an __init__.py)
-                            }
+                    // Step 2: add new entries in current and not in the index
+                    for (CompleteIndexKey completeIndexKey : currentKeys.values()) {
+                        if (!index.indexMap.containsKey(completeIndexKey.key)) {
+                            checkModule(null, completeIndexKey, docsToRemove, modulesToAdd, zipModulesToAdd);
                         }
-
-                        add(modulesToAdd, zipModulesToAdd, completeIndexKey);
                     }
+                    // --- Progress
+                    incrementAndCheckProgress("Updating for addition", monitor);
+
+                } else {
+                    // Only check the modules which changed since the last search.
+                    for (String moduleName : changedModules) {
+                        CompleteIndexKey key = new CompleteIndexKey(moduleName);
+                        checkModule(index.indexMap.get(key.key), currentKeys.get(key), docsToRemove, modulesToAdd,
+                                zipModulesToAdd);
+                    }
+                    incrementAndCheckProgress("Updating for removal", monitor);
+                    incrementAndCheckProgress("Updating for addition", monitor);
                 }
-                // --- Progress
-                incrementAndCheckProgress("Updating for addition", monitor);
 
+                boolean mustCommitChange = false;
                 Map<String, Collection<String>> fieldToValuesToRemove = new HashMap<>();
                 Collection<String> lstToRemove = new ArrayList<>(docsToRemove.size());
 
@@ -245,6 +307,9 @@ public class ReferenceSearchesLucene implements IReferenceSearches {
                             System.out.println("Removing: " + fieldToValuesToRemove);
                         }
                         indexApi.removeDocs(fieldToValuesToRemove);
+                        for (CompleteIndexKey indexModule : docsToRemove) {
+                            index.indexMap.remove(indexModule.key);
+                        }
                     } catch (IOException e) {
                         Log.log(e);
                     }
@@ -261,6 +326,7 @@ public class ReferenceSearchesLucene implements IReferenceSearches {
                             }
                             try (BufferedReader reader = new BufferedReader(new FileReader(f));) {
                                 indexApi.index(createFieldsToIndex(key, tempBuf), reader, FIELD_CONTENTS);
+                                onIndexed(index, key);
                             } catch (Exception e) {
                                 Log.log(e);
                             }
@@ -286,6 +352,7 @@ public class ReferenceSearchesLucene implements IReferenceSearches {
                                     }
                                     indexApi.index(createFieldsToIndex(completeIndexKey2, tempBuf), reader,
                                             FIELD_CONTENTS);
+                                    onIndexed(index, completeIndexKey2);
                                 }
                             }
                         } catch (Exception e) {
@@ -313,7 +380,7 @@ public class ReferenceSearchesLucene implements IReferenceSearches {
                     if (DEBUG) {
                         System.out.println("Searching: " + fieldNameToValues);
                     }
-                    visitor = new IDocumentsVisitor() {
+                    IDocumentsVisitor visitor = new IDocumentsVisitor() {
 
                         @Override
                         public void visit(DocumentInfo documentInfo) {
@@ -341,15 +408,77 @@ public class ReferenceSearchesLucene implements IReferenceSearches {
                 }
             }
         } catch (Exception e) {
-            Log.log(e);
-        } finally {
-            if (indexApi != null) {
-                indexApi.dispose();
+            // Whatever was not synchronized must be checked again in the next search.
+            synchronized (changedModulesLock) {
+                fullSyncNeeded = true;
             }
+            Log.log(e);
         }
         return ret;
     }
 
+    /**
+     * Checks whether the given module must be removed from and/or added to the index.
+     *
+     * @param indexModule the module as it is in the index (null if not there).
+     * @param currentModule the module as it is in the current info (null if not there).
+     */
+    private void checkModule(CompleteIndexKey indexModule, CompleteIndexKey currentModule,
+            Set<CompleteIndexKey> docsToRemove, Set<CompleteIndexKey> modulesToAdd,
+            Map<File, Set<CompleteIndexKey>> zipModulesToAdd) {
+        if (indexModule != null) {
+            if (currentModule == null || currentModule.key == null || currentModule.key.file == null) {
+                docsToRemove.add(indexModule);
+
+            } else {
+                // exists, but we also need to check the modified time
+                boolean changed = currentModule.lastModified != indexModule.lastModified;
+                if (!changed) {
+                    ModulesKey keyCurrentModule = currentModule.key;
+                    ModulesKey keyIndexModule = indexModule.key;
+                    boolean currentIsZip = keyCurrentModule instanceof ModulesKeyForZip;
+                    boolean indexIsZip = keyIndexModule instanceof ModulesKeyForZip;
+                    changed = currentIsZip != indexIsZip;
+
+                    if (!changed) {
+                        changed = !currentModule.key.file.equals(indexModule.key.file);
+                    }
+                }
+
+                if (changed) {
+                    // remove and add
+                    docsToRemove.add(indexModule);
+
+                    add(modulesToAdd, zipModulesToAdd, currentModule);
+                }
+            }
+
+        } else if (currentModule != null) {
+            ModulesKey modulesKey = currentModule.key;
+            if (modulesKey instanceof IModulesKeyForJava || modulesKey.file == null || !modulesKey.file.isFile()) {
+                //ignore this one (we can't do anything with it).
+                return;
+            }
+
+            if (modulesKey instanceof ModulesKeyForZip) {
+                ModulesKeyForZip modulesKeyForZip = (ModulesKeyForZip) modulesKey;
+                if (!modulesKeyForZip.isFile) {
+                    return; // Ignore folders in zips (happens for jython folders which may not have an __init__.py)
+                }
+            }
+
+            add(modulesToAdd, zipModulesToAdd, currentModule);
+        }
+    }
+
+    /**
+     * Keeps the in-memory view of the index up to date with a module just indexed.
+     */
+    private void onIndexed(LuceneIndex index, CompleteIndexKey key) {
+        // Note: a copy is kept as the key from the info may still be changed.
+        index.indexMap.put(key.key, new CompleteIndexKey(key.key, key.lastModified));
+    }
+
     private void incrementAndCheckProgress(String msg, IProgressMonitor monitor) throws OperationCanceledException {
         // monitor.setTaskName(msg);
         monitor.worked(1);
@@ -6,16 +6,26 @@
  */
 package com.python.pydev.analysis.additionalinfo;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.SortedMap;
 
-import org.python.pydev.ast.codecompletion.revisited.PyPublicTreeMap;
 import org.python.pydev.core.FastBufferedReader;
 import org.python.pydev.core.IInfo;
 import org.python.pydev.core.IPythonNature;
@@ -38,6 +48,30 @@ public class TreeIO {
     private static final char LINE_CHAR_SEPARATOR = '#';
     private static final char COL_CHAR_SEPARATOR = '*';
 
+    /**
+     * Binary format (all values are big-endian ints unless stated otherwise):
+     *
+     * magic, binary format version, AbstractAdditionalTokensInfo.version
+     * strings count, strings offsets (count + 1 entries, in chars), total chars, chars (UTF-16)
+     * trees count and for each tree: records count, records (each with BINARY_FIELDS ints sorted by the
+     * lowercase name).
+     *
+     * Strings are referenced by their index in the strings table (-1 means null).
+     */
+    private static final int BINARY_MAGIC = 0x50594449;
+    private static final int BINARY_FORMAT_VERSION = 1;
+
+    static final int BINARY_FIELD_LOWER_NAME = 0;
+    static final int BINARY_FIELD_NAME = 1;
+    static final int BINARY_FIELD_MODULE = 2;
+    static final int BINARY_FIELD_PATH = 3;
+    static final int BINARY_FIELD_FILE = 4;
+    static final int BINARY_FIELD_LINE = 5;
+    static final int BINARY_FIELD_COL = 6;
+    static final int BINARY_FIELD_TYPE = 7;
+    private static final int BINARY_FIELDS = 8;
+    static final int BINARY_RECORD_SIZE = BINARY_FIELDS * 4;
+
     /**
      * Tree is written as:
      * line 1= tree size
@@ -134,197 +168,351 @@ public class TreeIO {
     }
 
     /**
-     * @author Fabio
-     *
+     * Note: the returned tree is created through InitialsTokensIndex.createInitialsToInfo() (so, it
+     * may be read without locking).
      */
-    private static final class MapEntry implements Map.Entry {
+    public static SortedMap<String, Set<IInfo>> loadTreeFrom(final FastBufferedReader reader,
+            final Map<Integer, String> dictionary, FastStringBuffer buf, ObjectsPoolMap objectsPoolMap,
+            IPythonNature nature)
+            throws IOException {
+        SortedMap<String, Set<IInfo>> tree = InitialsTokensIndex.createInitialsToInfo();
+        final int size = StringUtils.parsePositiveInt(reader.readLine());
 
-        private final String key;
-        private final HashSet<IInfo> set;
+        //each line is something as: cub|CubeColourDialog!13&999@CUBIC!263@cube!202&999@
+        //note: the path (2nd int in record) is optional
+        for (int iEntry = 0; iEntry < size; iEntry++) {
+            buf.clear();
+            FastStringBuffer readLine = reader.readLine();
+            if (readLine == null || readLine.startsWith("-- ")) {
+                throw new RuntimeException("Unexpected line: " + readLine);
+            }
+            char[] internalCharsArray = readLine.getInternalCharsArray();
+            int length = readLine.length();
+            String key = null;
+            String infoName = null;
+            String path = null;
+            String file = null;
+            int line = 0;
+            int col = 0;
+
+            int i = 0;
+
+            OUT: for (; i < length; i++) {
+                char c = internalCharsArray[i];
+                switch (c) {
+                    case '|':
+                        key = ObjectsInternPool.internLocal(objectsPoolMap, buf.toString());
+                        buf.clear();
+                        i++;
+                        break OUT;
+                    default:
+                        buf.appendResizeOnExc(c);
+                }
+            }
 
-        public MapEntry(String key, HashSet<IInfo> set) {
-            this.key = key;
-            this.set = set;
-        }
+            int hashSize = 0;
+            OUT2: for (; i < length; i++) {
+                char c = internalCharsArray[i];
+                switch (c) {
+                    case '|':
+                        hashSize = StringUtils.parsePositiveInt(buf);
+                        buf.clear();
+                        i++;
+                        break OUT2;
+                    default:
+                        buf.appendResizeOnExc(c);
+                }
+            }
+            Set<IInfo> set = InitialsTokensIndex.createInfoSet(hashSize);
 
-        @Override
-        public Object getKey() {
-            return key;
-        }
+            for (; i < length; i++) {
+                char c = internalCharsArray[i];
+                switch (c) {
+                    case NAME_CHAR_SEPARATOR:
+                        infoName = ObjectsInternPool.internLocal(objectsPoolMap, buf.toString());
+                        buf.clear();
+                        break;
 
-        @Override
-        public Object getValue() {
-            return set;
+                    case PATH_CHAR_SEPARATOR:
+                        path = dictionary.get(StringUtils.parsePositiveInt(buf));
+                        buf.clear();
+                        break;
+
+                    case FILE_CHAR_SEPARATOR:
+                        file = dictionary.get(StringUtils.parsePositiveInt(buf));
+                        buf.clear();
+                        break;
+
+                    case LINE_CHAR_SEPARATOR:
+                        line = StringUtils.parsePositiveInt(buf);
+                        buf.clear();
+                        break;
+
+                    case COL_CHAR_SEPARATOR:
+                        col = StringUtils.parsePositiveInt(buf);
+                        buf.clear();
+                        break;
+
+                    case END_IINFO_SEPARATOR:
+                        int dictKey = StringUtils.parsePositiveInt(buf);
+                        byte type = (byte) dictKey;
+                        type &= 0x07; //leave only the 3 least significant bits there (this is the type -- value from 0 - 8).
+
+                        dictKey = (dictKey >> 3); // the entry in the dict doesn't have the least significant bits there.
+                        buf.clear();
+                        String moduleDeclared = dictionary.get(dictKey);
+                        if (moduleDeclared == null) {
+                            throw new AssertionError("Unable to find key: " + dictKey);
+                        }
+                        if (infoName == null) {
+                            throw new AssertionError("Info name may not be null. Line: " + line);
+                        }
+                        switch (type) {
+                            case IInfo.CLASS_WITH_IMPORT_TYPE:
+                                set.add(new ClassInfo(infoName, moduleDeclared, path, false, nature, file, line,
+                                        col));
+                                break;
+                            case IInfo.METHOD_WITH_IMPORT_TYPE:
+                                set.add(new FuncInfo(infoName, moduleDeclared, path, false, nature, file, line,
+                                        col));
+                                break;
+                            case IInfo.ATTRIBUTE_WITH_IMPORT_TYPE:
+                                set.add(new AttrInfo(infoName, moduleDeclared, path, false, nature, file, line,
+                                        col));
+                                break;
+                            case IInfo.NAME_WITH_IMPORT_TYPE:
+                                set.add(new NameInfo(infoName, moduleDeclared, path, false, nature, file, line,
+                                        col));
+                                break;
+                            case IInfo.MOD_IMPORT_TYPE:
+                                set.add(new ModInfo(infoName, false, nature, file, line, col));
+                                break;
+                            default:
+                                Log.log("Unexpected type: " + type);
+                        }
+                        file = null;
+                        infoName = null;
+                        path = null;
+                        file = null;
+                        line = 0;
+                        col = 0;
+
+                        break;
+                    default:
+                        buf.appendResizeOnExc(c);
+                }
+            }
+
+            tree.put(key, set);
         }
+        return tree;
+    }
 
-        @Override
-        public Object setValue(Object value) {
-            throw new UnsupportedOperationException();
+    /**
+     * @return the info for the given type (or null if the type is not recognized).
+     */
+    static IInfo createInfo(int type, String infoName, String moduleDeclared, String path, IPythonNature nature,
+            String file, int line, int col) {
+        switch (type) {
+            case IInfo.CLASS_WITH_IMPORT_TYPE:
+                return new ClassInfo(infoName, moduleDeclared, path, false, nature, file, line, col);
+            case IInfo.METHOD_WITH_IMPORT_TYPE:
+                return new FuncInfo(infoName, moduleDeclared, path, false, nature, file, line, col);
+            case IInfo.ATTRIBUTE_WITH_IMPORT_TYPE:
+                return new AttrInfo(infoName, moduleDeclared, path, false, nature, file, line, col);
+            case IInfo.NAME_WITH_IMPORT_TYPE:
+                return new NameInfo(infoName, moduleDeclared, path, false, nature, file, line, col);
+            case IInfo.MOD_IMPORT_TYPE:
+                return new ModInfo(moduleDeclared, false, nature, file, line, col);
         }
+        return null;
     }
 
-    public static PyPublicTreeMap<String, Set<IInfo>> loadTreeFrom(final FastBufferedReader reader,
-            final Map<Integer, String> dictionary, FastStringBuffer buf, ObjectsPoolMap objectsPoolMap,
-            IPythonNature nature)
-            throws IOException {
-        PyPublicTreeMap<String, Set<IInfo>> tree = new PyPublicTreeMap<String, Set<IInfo>>();
-        final int size = StringUtils.parsePositiveInt(reader.readLine());
+    /**
+     * Passes the fields of the given info to the visitor.
+     */
+    static void visitInfo(IInfo info, ITokensIndex.ITokenFieldsVisitor visitor) {
+        visitor.visit(info.getName(), info.getDeclaringModuleName(), info.getPath(), info.getFile(), info.getLine(),
+                info.getCol(), info.getType());
+    }
 
-        try {
+    /**
+     * Creates the records of a tree (BINARY_FIELDS ints for each token) as the tokens are visited.
+     */
+    private static final class BinaryRecordsBuilder implements ITokensIndex.ITokenFieldsVisitor {
 
-            final Entry[] entries = new Entry[size];
-            //each line is something as: cub|CubeColourDialog!13&999@CUBIC!263@cube!202&999@
-            //note: the path (2nd int in record) is optional
-            for (int iEntry = 0; iEntry < size; iEntry++) {
-                buf.clear();
-                FastStringBuffer readLine = reader.readLine();
-                if (readLine == null || readLine.startsWith("-- ")) {
-                    throw new RuntimeException("Unexpected line: " + readLine);
-                }
-                char[] internalCharsArray = readLine.getInternalCharsArray();
-                int length = readLine.length();
-                String key = null;
-                String infoName = null;
-                String path = null;
-                String file = null;
-                int line = 0;
-                int col = 0;
-
-                int i = 0;
-
-                OUT: for (; i < length; i++) {
-                    char c = internalCharsArray[i];
-                    switch (c) {
-                        case '|':
-                            key = ObjectsInternPool.internLocal(objectsPoolMap, buf.toString());
-                            buf.clear();
-                            i++;
-                            break OUT;
-                        default:
-                            buf.appendResizeOnExc(c);
-                    }
-                }
+        private final Map<String, Integer> strToInt;
+        private final List<String> strings;
+        private int[] fields = new int[BINARY_FIELDS * 64];
+        private int count;
 
-                int hashSize = 0;
-                OUT2: for (; i < length; i++) {
-                    char c = internalCharsArray[i];
-                    switch (c) {
-                        case '|':
-                            hashSize = StringUtils.parsePositiveInt(buf);
-                            buf.clear();
-                            i++;
-                            break OUT2;
-                        default:
-                            buf.appendResizeOnExc(c);
-                    }
-                }
-                HashSet<IInfo> set = new HashSet<IInfo>(hashSize);
-
-                for (; i < length; i++) {
-                    char c = internalCharsArray[i];
-                    switch (c) {
-                        case NAME_CHAR_SEPARATOR:
-                            infoName = ObjectsInternPool.internLocal(objectsPoolMap, buf.toString());
-                            buf.clear();
-                            break;
-
-                        case PATH_CHAR_SEPARATOR:
-                            path = dictionary.get(StringUtils.parsePositiveInt(buf));
-                            buf.clear();
-                            break;
-
-                        case FILE_CHAR_SEPARATOR:
-                            file = dictionary.get(StringUtils.parsePositiveInt(buf));
-                            buf.clear();
-                            break;
-
-                        case LINE_CHAR_SEPARATOR:
-                            line = StringUtils.parsePositiveInt(buf);
-                            buf.clear();
-                            break;
-
-                        case COL_CHAR_SEPARATOR:
-                            col = StringUtils.parsePositiveInt(buf);
-                            buf.clear();
-                            break;
-
-                        case END_IINFO_SEPARATOR:
-                            int dictKey = StringUtils.parsePositiveInt(buf);
-                            byte type = (byte) dictKey;
-                            type &= 0x07; //leave only the 3 least significant bits there (this is the type -- value from 0 - 8).
-
-                            dictKey = (dictKey >> 3); // the entry in the dict doesn't have the least significant bits there.
-                            buf.clear();
-                            String moduleDeclared = dictionary.get(dictKey);
-                            if (moduleDeclared == null) {
-                                throw new AssertionError("Unable to find key: " + dictKey);
-                            }
-                            if (infoName == null) {
-                                throw new AssertionError("Info name may not be null. Line: " + line);
-                            }
-                            switch (type) {
-                                case IInfo.CLASS_WITH_IMPORT_TYPE:
-                                    set.add(new ClassInfo(infoName, moduleDeclared, path, false, nature, file, line,
-                                            col));
-                                    break;
-                                case IInfo.METHOD_WITH_IMPORT_TYPE:
-                                    set.add(new FuncInfo(infoName, moduleDeclared, path, false, nature, file, line,
-                                            col));
-                                    break;
-                                case IInfo.ATTRIBUTE_WITH_IMPORT_TYPE:
-                                    set.add(new AttrInfo(infoName, moduleDeclared, path, false, nature, file, line,
-                                            col));
-                                    break;
-                                case IInfo.NAME_WITH_IMPORT_TYPE:
-                                    set.add(new NameInfo(infoName, moduleDeclared, path, false, nature, file, line,
-                                            col));
-                                    break;
-                                case IInfo.MOD_IMPORT_TYPE:
-                                    set.add(new ModInfo(infoName, false, nature, file, line, col));
-                                    break;
-                                default:
-                                    Log.log("Unexpected type: " + type);
-                            }
-                            file = null;
-                            infoName = null;
-                            path = null;
-                            file = null;
-                            line = 0;
-                            col = 0;
-
-                            break;
-                        default:
-                            buf.appendResizeOnExc(c);
-                    }
+        private BinaryRecordsBuilder(Map<String, Integer> strToInt, List<String> strings) {
+            this.strToInt = strToInt;
+            this.strings = strings;
+        }
+
+        @Override
+        public void visit(String name, String declaringModuleName, String path, String file, int line, int col,
+                int type) {
+            int pos = count * BINARY_FIELDS;
+            if (pos + BINARY_FIELDS > fields.length) {
+                fields = Arrays.copyOf(fields, fields.length * 2);
+            }
+            fields[pos + BINARY_FIELD_LOWER_NAME] = getStringIndex(name.toLowerCase(), strToInt, strings);
+            fields[pos + BINARY_FIELD_NAME] = getStringIndex(name, strToInt, strings);
+            fields[pos + BINARY_FIELD_MODULE] = getStringIndex(declaringModuleName, strToInt, strings);
+            fields[pos + BINARY_FIELD_PATH] = getStringIndex(path, strToInt, strings);
+            fields[pos + BINARY_FIELD_FILE] = getStringIndex(file, strToInt, strings);
+            fields[pos + BINARY_FIELD_LINE] = line;
+            fields[pos + BINARY_FIELD_COL] = col;
+            fields[pos + BINARY_FIELD_TYPE] = type;
+            count++;
+        }
+
+        /**
+         * @return the records in the order they must be written (sorted by the lowercase name and in the order
+         * they were visited for the same name).
+         */
+        private int[] getSortedRecords() {
+            //Rank the lowercase names so that the records can be sorted as primitives.
+            int[] rank = new int[strings.size()];
+            Arrays.fill(rank, -1);
+            List<String> lowerNames = new ArrayList<String>();
+            for (int i = 0; i < count; i++) {
+                int lowerName = fields[(i * BINARY_FIELDS) + BINARY_FIELD_LOWER_NAME];
+                if (rank[lowerName] == -1) {
+                    rank[lowerName] = 0;
+                    lowerNames.add(strings.get(lowerName));
                 }
+            }
+            Collections.sort(lowerNames);
+            for (int i = 0; i < lowerNames.size(); i++) {
+                rank[strToInt.get(lowerNames.get(i))] = i;
+            }
 
-                entries[iEntry] = new MapEntry(key, set);
+            long[] keys = new long[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = ((long) rank[fields[(i * BINARY_FIELDS) + BINARY_FIELD_LOWER_NAME]] << 32) | i;
+            }
+            Arrays.sort(keys);
+            int[] records = new int[count];
+            for (int i = 0; i < count; i++) {
+                records[i] = (int) keys[i];
             }
+            return records;
+        }
+    }
 
-            tree.buildFromSorted(size, new Iterator() {
-                private int iNext;
+    /**
+     * Writes the given trees to a file in the binary format (which can be memory-mapped when loading -- see:
+     * loadTreesFromBinaryFile).
+     *
+     * Note: the tokens are gotten through ITokensIndex.visitAllTokens (so, the info of a mapped index isn't created
+     * just to be saved).
+     */
+    public static void dumpTreesToBinaryFile(File file, ITokensIndex... trees) throws IOException {
+        List<String> strings = new ArrayList<String>();
+        Map<String, Integer> strToInt = new HashMap<String, Integer>();
+
+        BinaryRecordsBuilder[] builders = new BinaryRecordsBuilder[trees.length];
+        for (int iTree = 0; iTree < trees.length; iTree++) {
+            builders[iTree] = new BinaryRecordsBuilder(strToInt, strings);
+            trees[iTree].visitAllTokens(builders[iTree]);
+        }
 
-                @Override
-                public boolean hasNext() {
-                    return iNext > size;
-                }
+        FileOutputStream stream = new FileOutputStream(file);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1024 * 64));
+            out.writeInt(BINARY_MAGIC);
+            out.writeInt(BINARY_FORMAT_VERSION);
+            out.writeInt(AbstractAdditionalTokensInfo.version);
+
+            out.writeInt(strings.size());
+            int offset = 0;
+            out.writeInt(offset);
+            for (String str : strings) {
+                offset += str.length();
+                out.writeInt(offset);
+            }
+            out.writeInt(offset);
+            for (String str : strings) {
+                out.writeChars(str);
+            }
 
-                @Override
-                public Object next() {
-                    Object o = entries[iNext];
-                    iNext++;
-                    return o;
+            out.writeInt(builders.length);
+            for (BinaryRecordsBuilder builder : builders) {
+                out.writeInt(builder.count);
+                int[] fields = builder.fields;
+                for (int record : builder.getSortedRecords()) {
+                    int pos = record * BINARY_FIELDS;
+                    for (int i = 0; i < BINARY_FIELDS; i++) {
+                        out.writeInt(fields[pos + i]);
+                    }
                 }
+            }
+            out.flush();
+        } finally {
+            stream.close();
+        }
+    }
 
-                @Override
-                public void remove() {
-                }
+    private static int getStringIndex(String str, Map<String, Integer> strToInt, List<String> strings) {
+        if (str == null) {
+            return -1;
+        }
+        Integer integer = strToInt.get(str);
+        if (integer == null) {
+            integer = strings.size();
+            strings.add(str);
+            strToInt.put(str, integer);
+        }
+        return integer;
+    }
 
-            }, null, null);
-        } catch (ClassNotFoundException e) {
-            throw new RuntimeException(e);
+    /**
+     * Maps a file written with dumpTreesToBinaryFile.
+     *
+     * @return the trees in the file (the info in those is only created when requested).
+     */
+    public static ITokensIndex[] loadTreesFromBinaryFile(File file, IPythonNature nature) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            // Note: the mapping is still valid after the channel is closed.
+            buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
         }
-        return tree;
+        if (buffer.getInt(0) != BINARY_MAGIC) {
+            throw new IOException("Unexpected contents in: " + file);
+        }
+        if (buffer.getInt(4) != BINARY_FORMAT_VERSION) {
+            throw new IOException("Binary format version does not match in: " + file);
+        }
+        if (buffer.getInt(8) != AbstractAdditionalTokensInfo.version) {
+            throw new IOException("Version does not match in: " + file);
+        }
+        int pos = 12;
+        int stringsCount = buffer.getInt(pos);
+        pos += 4;
+        int offsetsPosition = pos;
+        pos += (stringsCount + 1) * 4;
+        int totalChars = buffer.getInt(pos);
+        pos += 4;
+        int charsPosition = pos;
+        pos += totalChars * 2;
+        MappedTokensIndex.StringsTable strings = new MappedTokensIndex.StringsTable(buffer, offsetsPosition,
+                stringsCount, charsPosition);
+
+        ITokensIndex[] trees = new ITokensIndex[buffer.getInt(pos)];
+        pos += 4;
+        for (int iTree = 0; iTree < trees.length; iTree++) {
+            int recordsCount = buffer.getInt(pos);
+            pos += 4;
+            trees[iTree] = new MappedTokensIndex(buffer, strings, pos, recordsCount, nature);
+            pos += recordsCount * BINARY_RECORD_SIZE;
+        }
+        if (pos != buffer.limit()) {
+            throw new IOException("Unexpected size for: " + file);
+        }
+        return trees;
     }
 
     public static Map<Integer, String> loadDictFrom(FastBufferedReader reader, FastStringBuffer buf,
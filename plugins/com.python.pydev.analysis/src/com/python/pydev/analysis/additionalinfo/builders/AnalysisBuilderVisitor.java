@@ -39,6 +39,20 @@ public class AnalysisBuilderVisitor extends PyDevBuilderVisitor {
         return PyCodeCompletionVisitor.PRIORITY_CODE_COMPLETION + 1; //just after the code-completion priority
     }
 
+    /**
+     * The analysis of different modules already runs concurrently in a delta build (in RunnableAsJobsPoolThread),
+     * so, different resources may also be visited concurrently in a full build.
+     */
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    @Override
+    public PyDevBuilderVisitor createWorkerInstance() {
+        return new AnalysisBuilderVisitor();
+    }
+
     @Override
     public void visitChangedResource(final IResource resource, final ICallback0<IDocument> document,
             final IProgressMonitor monitor) {
@@ -231,7 +231,8 @@ public class RefactorerFinds {
                     request.pushMonitor(new SubProgressMonitor(monitor, 90));
                     if (additionalInfo instanceof AdditionalProjectInterpreterInfo) {
                         AdditionalProjectInterpreterInfo additionalProjectInterpreterInfo = (AdditionalProjectInterpreterInfo) additionalInfo;
-                        modules = additionalProjectInterpreterInfo.getModulesWithToken(model.name, monitor);
+                        modules = additionalProjectInterpreterInfo.getModulesWithSubclassesOf(model.name,
+                                monitor);
                     } else {
                         continue;
                     }
@@ -10,8 +10,19 @@
  */
 package com.python.pydev.analysis.refactoring.wizards.rename;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.SubProgressMonitor;
 import org.eclipse.ltk.core.refactoring.RefactoringStatus;
@@ -167,60 +178,9 @@ public abstract class AbstractRenameWorkspaceRefactorProcess extends AbstractRen
                 request.popMonitor().done();
             }
 
-            int total = references.size();
             try {
                 request.pushMonitor(new SubProgressMonitor(request.getMonitor(), 10));
-                request.getMonitor().beginTask("Analyzing references found", total);
-                int i = 0;
-                for (Tuple<List<ModulesKey>, IPythonNature> file : references) {
-                    i++;
-                    request.communicateWork(StringUtils.format(
-                            "Analyzing %s (%s of %s)", file.o2.getProject(), i,
-                            total));
-                    PythonNature nature = (PythonNature) file.o2;
-                    if (nature != null) {
-                        if (!nature.startRequests()) {
-                            continue;
-                        }
-                        try {
-                            for (ModulesKey key : file.o1) {
-                                IProjectModulesManager modulesManager = (IProjectModulesManager) nature.getAstManager()
-                                        .getModulesManager();
-
-                                request.checkCancelled();
-                                String modName = key.name;
-
-                                if (modName != null) {
-                                    if (!request.moduleName.equals(modName)) {
-                                        //we've already checked the module from the request...
-
-                                        request.checkCancelled();
-                                        IModule module = modulesManager
-                                                .getModuleInDirectManager(modName, nature, false);
-
-                                        if (module instanceof SourceModule) {
-
-                                            SourceModule sourceModule = (SourceModule) module;
-                                            if (sourceModule.getAst() == null) {
-                                                status.addWarning("Unable to get AST for: " + modName);
-                                                continue;
-                                            }
-                                            request.checkCancelled();
-                                            List<ASTEntry> entryOccurrences = getOccurrencesInOtherModule(status,
-                                                    request, request.initialName, (SourceModule) module, nature);
-
-                                            if (entryOccurrences.size() > 0) {
-                                                addOccurrences(entryOccurrences, key.file, modName);
-                                            }
-                                        }
-                                    }
-                                }
-                            }
-                        } finally {
-                            nature.endRequests();
-                        }
-                    }
-                }
+                analyzeReferencesFound(status, request, references);
             } finally {
                 request.popMonitor().done();
             }
@@ -234,6 +194,138 @@ public abstract class AbstractRenameWorkspaceRefactorProcess extends AbstractRen
 
     }
 
+    /**
+     * Gets the occurrences in a module which may have references (each module is analyzed with its own status
+     * which is merged later on, so, it may be analyzed in any thread).
+     */
+    private final class ModuleReferencesAnalysis implements Callable<List<ASTEntry>> {
+
+        private final RefactoringRequest request;
+        private final PythonNature nature;
+        private final ModulesKey key;
+        private final RefactoringStatus status = new RefactoringStatus();
+
+        private ModuleReferencesAnalysis(RefactoringRequest request, PythonNature nature, ModulesKey key) {
+            this.request = request;
+            this.nature = nature;
+            this.key = key;
+        }
+
+        @Override
+        public List<ASTEntry> call() throws Exception {
+            request.checkCancelled();
+            IProjectModulesManager modulesManager = (IProjectModulesManager) nature.getAstManager()
+                    .getModulesManager();
+            IModule module = modulesManager.getModuleInDirectManager(key.name, nature, false);
+            if (!(module instanceof SourceModule)) {
+                return null;
+            }
+            SourceModule sourceModule = (SourceModule) module;
+            if (sourceModule.getAst() == null) {
+                status.addWarning("Unable to get AST for: " + key.name);
+                return null;
+            }
+            request.checkCancelled();
+            return getOccurrencesInOtherModule(status, request, request.initialName, sourceModule, nature);
+        }
+    }
+
+    private static final AtomicInteger analysisThreadCount = new AtomicInteger();
+
+    /**
+     * Analyzes the modules found in a pool of threads. The occurrences (and errors) found are added in this thread
+     * in the same order the modules were found.
+     */
+    private void analyzeReferencesFound(RefactoringStatus status, RefactoringRequest request,
+            List<Tuple<List<ModulesKey>, IPythonNature>> references) throws Exception {
+        final IProgressMonitor monitor = request.getMonitor();
+        List<PythonNature> naturesInRequest = new ArrayList<PythonNature>();
+        List<ModuleReferencesAnalysis> analyses = new ArrayList<ModuleReferencesAnalysis>();
+        try {
+            for (Tuple<List<ModulesKey>, IPythonNature> file : references) {
+                PythonNature nature = (PythonNature) file.o2;
+                if (nature == null || !nature.startRequests()) {
+                    continue;
+                }
+                naturesInRequest.add(nature);
+                for (ModulesKey key : file.o1) {
+                    //we've already checked the module from the request...
+                    if (key.name != null && !request.moduleName.equals(key.name)) {
+                        analyses.add(new ModuleReferencesAnalysis(request, nature, key));
+                    }
+                }
+            }
+
+            int total = analyses.size();
+            monitor.beginTask("Analyzing references found", total);
+            int parallelism = Math.min(Runtime.getRuntime().availableProcessors(), total);
+
+            //the progress monitor is only used in this thread (workers may only check whether it was cancelled).
+            request.pushMonitor(new NullProgressMonitor() {
+                @Override
+                public boolean isCanceled() {
+                    return monitor.isCanceled();
+                }
+            });
+            ExecutorService executor = null;
+            try {
+                List<Future<List<ASTEntry>>> futures = new ArrayList<Future<List<ASTEntry>>>(total);
+                if (parallelism > 1) {
+                    executor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread t = new Thread(r, "PyDev: Rename analysis " + analysisThreadCount.incrementAndGet());
+                            t.setDaemon(true);
+                            return t;
+                        }
+                    });
+                    for (ModuleReferencesAnalysis analysis : analyses) {
+                        futures.add(executor.submit(analysis));
+                    }
+                } else {
+                    for (ModuleReferencesAnalysis analysis : analyses) {
+                        FutureTask<List<ASTEntry>> task = new FutureTask<List<ASTEntry>>(analysis);
+                        futures.add(task);
+                        task.run();
+                    }
+                }
+
+                for (int i = 0; i < total; i++) {
+                    ModuleReferencesAnalysis analysis = analyses.get(i);
+                    monitor.setTaskName(StringUtils.format("Analyzing %s (%s of %s)", analysis.key.name, i + 1, total));
+                    if (monitor.isCanceled()) {
+                        throw new OperationCanceledException();
+                    }
+                    List<ASTEntry> entryOccurrences;
+                    try {
+                        entryOccurrences = futures.get(i).get();
+                    } catch (ExecutionException e) {
+                        Throwable cause = e.getCause();
+                        if (cause instanceof RuntimeException) {
+                            throw (RuntimeException) cause;
+                        }
+                        throw new RuntimeException(cause);
+                    }
+                    status.merge(analysis.status);
+                    if (entryOccurrences != null && entryOccurrences.size() > 0) {
+                        addOccurrences(entryOccurrences, analysis.key.file, analysis.key.name);
+                    }
+                    monitor.worked(1);
+                }
+            } finally {
+                if (executor != null) {
+                    executor.shutdownNow();
+                }
+                request.popMonitor();
+            }
+        } finally {
+            for (PythonNature nature : naturesInRequest) {
+                nature.endRequests();
+            }
+        }
+    }
+
     /**
      * This method is called for each module that may have some reference to the definition
      * we're looking for.
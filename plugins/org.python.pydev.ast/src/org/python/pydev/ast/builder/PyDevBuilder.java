@@ -13,9 +13,22 @@ package org.python.pydev.ast.builder;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IFolder;
@@ -23,8 +36,10 @@ import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.IResourceDelta;
 import org.eclipse.core.resources.IncrementalProjectBuilder;
+import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.jobs.ISchedulingRule;
 import org.eclipse.jface.text.IDocument;
 import org.python.pydev.ast.codecompletion.revisited.PyCodeCompletionVisitor;
@@ -36,9 +51,11 @@ import org.python.pydev.core.FileUtilsFileBuffer;
 import org.python.pydev.core.IPythonNature;
 import org.python.pydev.core.IPythonPathNature;
 import org.python.pydev.core.log.Log;
+import org.python.pydev.core.logging.DebugSettings;
 import org.python.pydev.parser.preferences.PyDevBuilderPreferences;
 import org.python.pydev.plugin.nature.PythonNature;
 import org.python.pydev.shared_core.callbacks.ICallback0;
+import org.python.pydev.shared_core.log.ToLogFile;
 import org.python.pydev.shared_core.string.FastStringBuffer;
 
 /**
@@ -263,7 +280,89 @@ public class PyDevBuilder extends IncrementalProjectBuilder {
     }
 
     /**
-     * Default implementation. Visits each resource once at a time. May be overridden if a better implementation is needed.
+     * Keeps the time spent by each kind of visitor in a full build.
+     */
+    public static final class VisitorTimings {
+
+        /**
+         * Visitor class name to nanos spent / resources visited.
+         */
+        private final ConcurrentMap<String, AtomicLongArray> timings = new ConcurrentHashMap<String, AtomicLongArray>();
+
+        public void add(PyDevBuilderVisitor visitor, long nanos) {
+            String name = visitor.getClass().getSimpleName();
+            AtomicLongArray timing = timings.get(name);
+            if (timing == null) {
+                timing = new AtomicLongArray(2);
+                AtomicLongArray existing = timings.putIfAbsent(name, timing);
+                if (existing != null) {
+                    timing = existing;
+                }
+            }
+            timing.addAndGet(0, nanos);
+            timing.incrementAndGet(1);
+        }
+
+        /**
+         * @return the nanos spent by the visitor with the given class name (0 if it didn't visit anything).
+         */
+        public long getNanos(String visitorClassName) {
+            AtomicLongArray timing = timings.get(visitorClassName);
+            return timing == null ? 0 : timing.get(0);
+        }
+
+        @Override
+        public String toString() {
+            List<Map.Entry<String, AtomicLongArray>> entries = new ArrayList<Map.Entry<String, AtomicLongArray>>(
+                    timings.entrySet());
+            //the ones which took more time first
+            Collections.sort(entries, new Comparator<Map.Entry<String, AtomicLongArray>>() {
+
+                @Override
+                public int compare(Map.Entry<String, AtomicLongArray> o1, Map.Entry<String, AtomicLongArray> o2) {
+                    return Long.compare(o2.getValue().get(0), o1.getValue().get(0));
+                }
+            });
+            FastStringBuffer buf = new FastStringBuffer();
+            for (Map.Entry<String, AtomicLongArray> entry : entries) {
+                if (buf.length() > 0) {
+                    buf.append(", ");
+                }
+                buf.append(entry.getKey()).append(": ").append(entry.getValue().get(0) / 1000000)
+                        .append(" millis (").append(entry.getValue().get(1)).append(" resources)");
+            }
+            return buf.toString();
+        }
+    }
+
+    private static final AtomicInteger buildThreadCount = new AtomicInteger();
+
+    /**
+     * A resource being visited in a full build: the module name, memo and document are resolved only once and then
+     * shared by all the visitors of the resource.
+     *
+     * Note: nature.startRequests() was called when it was created (and nature.endRequests() must be called when all
+     * the visitors finished visiting it).
+     */
+    private static final class ResourceVisit {
+
+        private final IFile resource;
+        private final IPythonNature nature;
+        private final VisitorMemo memo;
+        private final ICallback0<IDocument> doc;
+
+        private ResourceVisit(IFile resource, IPythonNature nature, VisitorMemo memo, ICallback0<IDocument> doc) {
+            this.resource = resource;
+            this.nature = nature;
+            this.memo = memo;
+            this.doc = doc;
+        }
+    }
+
+    /**
+     * Default implementation. Visits each resource once at a time (unless a parallel full build is requested, in
+     * which case the visitors which are thread-safe visit the resources in a pool of threads while the others visit
+     * the resources in this thread). May be overridden if a better implementation is needed.
      *
      * @param resourcesToParse list of resources from project that are python files.
      * @param monitor
@@ -271,6 +370,42 @@ public class PyDevBuilder extends IncrementalProjectBuilder {
      */
     public void buildResources(List<IFile> resourcesToParse, IProgressMonitor monitor,
             List<PyDevBuilderVisitor> visitors) {
+        VisitorTimings timings = new VisitorTimings();
+        long initialTime = System.currentTimeMillis();
+
+        int parallelism = 1;
+        if (resourcesToParse.size() > 1 && PyDevBuilderPreferences.useParallelFullBuild()) {
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+
+        List<PyDevBuilderVisitor> threadSafeVisitors = new ArrayList<PyDevBuilderVisitor>();
+        List<PyDevBuilderVisitor> otherVisitors = new ArrayList<PyDevBuilderVisitor>();
+        for (PyDevBuilderVisitor visitor : visitors) {
+            if (parallelism > 1 && visitor.isThreadSafe()) {
+                threadSafeVisitors.add(visitor);
+            } else {
+                otherVisitors.add(visitor);
+            }
+        }
+
+        if (threadSafeVisitors.size() == 0) {
+            buildResourcesSequentially(resourcesToParse, monitor, visitors, timings);
+        } else {
+            buildResourcesInParallel(resourcesToParse, monitor, threadSafeVisitors, otherVisitors, parallelism,
+                    timings);
+        }
+
+        if (DebugSettings.DEBUG_ANALYSIS_REQUESTS) {
+            ToLogFile.toLogFile(this, "Full build of " + resourcesToParse.size() + " resources (parallelism: "
+                    + parallelism + ") took " + (System.currentTimeMillis() - initialTime) + " millis. " + timings);
+        }
+    }
+
+    /**
+     * Visits the resources in this thread (one resource at a time).
+     */
+    private void buildResourcesSequentially(List<IFile> resourcesToParse, IProgressMonitor monitor,
+            List<PyDevBuilderVisitor> visitors, VisitorTimings timings) {
 
         // we have 100 units here
         double inc = (visitors.size() * 100) / (double) resourcesToParse.size();
@@ -281,7 +416,7 @@ public class PyDevBuilder extends IncrementalProjectBuilder {
 
         FastStringBuffer bufferToCreateString = new FastStringBuffer();
 
-        boolean loggedMisconfiguration = false;
+        AtomicBoolean loggedMisconfiguration = new AtomicBoolean();
         long lastProgressTime = 0;
 
         Object memoSharedProjectState = null;
@@ -290,72 +425,238 @@ public class PyDevBuilder extends IncrementalProjectBuilder {
             total += inc;
             IFile r = iter.next();
 
-            CorePlugin.markAsPyDevFileIfDetected(r);
-
-            IPythonNature nature = PythonNature.getPythonNature(r);
-            if (nature == null) {
-                continue;
+            long currentTimeMillis = System.currentTimeMillis();
+            if (currentTimeMillis - lastProgressTime > 300 && !visitors.isEmpty()) {
+                communicateProgress(monitor, totalResources, i, r, visitors.get(0), bufferToCreateString);
+                lastProgressTime = currentTimeMillis;
             }
-            if (!nature.startRequests()) {
-                continue;
-            }
-            try {
-                String moduleName;
+
+            ResourceVisit visit = startVisit(r, memoSharedProjectState, loggedMisconfiguration);
+            if (visit != null) {
                 try {
-                    //we visit external because we must index them
-                    moduleName = nature.resolveModuleOnlyInProjectSources(r, true);
-                    if (moduleName == null) {
-                        continue; // we only analyze resources that are in the pythonpath
-                    }
-                } catch (Exception e1) {
-                    if (!loggedMisconfiguration) {
-                        loggedMisconfiguration = true; //No point in logging it over and over again.
-                        Log.log(e1);
-                    }
-                    continue;
+                    visitResource(visit, visitors, monitor, timings);
+                    memoSharedProjectState = visit.memo.getSharedProjectState();
+                } finally {
+                    visit.nature.endRequests();
                 }
+            }
 
-                //create new memo for each resource
-                VisitorMemo memo = new VisitorMemo();
-                memo.setSharedProjectState(memoSharedProjectState);
-                memo.put(PyDevBuilderVisitor.IS_FULL_BUILD, true); //mark it as full build
+            if (total > 1) {
+                monitor.worked((int) total);
+                total -= (int) total;
+            }
+        }
+    }
 
-                ICallback0<IDocument> doc = FileUtilsFileBuffer.getDocOnCallbackFromResource(r);
-                memo.put(PyDevBuilderVisitor.DOCUMENT_TIME, System.currentTimeMillis());
+    /**
+     * The visitors which are thread-safe visit the resources in a pool of threads (each thread with its own
+     * instances of those visitors). Each resource visited in the pool is then visited by the other visitors in this
+     * thread (in the same order of the resources to parse), reusing the memo and document already loaded.
+     *
+     * Note: the visitors in each group still visit a given resource in the order they were passed, but the
+     * thread-safe visitors visit a resource before the other visitors.
+     */
+    private void buildResourcesInParallel(List<IFile> resourcesToParse, final IProgressMonitor monitor,
+            final List<PyDevBuilderVisitor> threadSafeVisitors, final List<PyDevBuilderVisitor> otherVisitors,
+            int parallelism, final VisitorTimings timings) {
 
-                PyDevBuilderVisitor.setModuleNameInCache(memo, r, moduleName);
+        //the progress monitor is only used in this thread (workers may only check whether it was cancelled).
+        final IProgressMonitor workersMonitor = new NullProgressMonitor() {
+            @Override
+            public boolean isCanceled() {
+                return monitor.isCanceled();
+            }
+        };
 
-                for (Iterator<PyDevBuilderVisitor> it = visitors.iterator(); it.hasNext()
-                        && monitor.isCanceled() == false;) {
+        //the visitors (and the shared state of the last memo) used in each worker thread.
+        final ThreadLocal<Object[]> workerState = new ThreadLocal<Object[]>() {
+            @Override
+            protected Object[] initialValue() {
+                List<PyDevBuilderVisitor> workerVisitors = new ArrayList<PyDevBuilderVisitor>(
+                        threadSafeVisitors.size());
+                for (PyDevBuilderVisitor visitor : threadSafeVisitors) {
+                    PyDevBuilderVisitor workerVisitor = visitor.createWorkerInstance();
+                    Assert.isNotNull(workerVisitor, "No worker instance created by thread-safe visitor: " + visitor);
+                    workerVisitors.add(workerVisitor);
+                }
+                return new Object[] { workerVisitors, null };
+            }
+        };
+        final AtomicBoolean loggedMisconfiguration = new AtomicBoolean();
 
-                    try {
-                        PyDevBuilderVisitor visitor = it.next();
-                        visitor.memo = memo; //setting the memo must be the first thing.
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
 
-                        long currentTimeMillis = System.currentTimeMillis();
-                        if (currentTimeMillis - lastProgressTime > 300) {
-                            communicateProgress(monitor, totalResources, i, r, visitor, bufferToCreateString);
-                            lastProgressTime = currentTimeMillis;
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "PyDev: Full build " + buildThreadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        int totalResources = resourcesToParse.size();
+        List<Future<ResourceVisit>> futures = new ArrayList<Future<ResourceVisit>>(totalResources);
+        int consumed = 0; //the number of futures already gotten in this thread
+        try {
+            for (final IFile r : resourcesToParse) {
+                futures.add(executor.submit(new Callable<ResourceVisit>() {
+
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public ResourceVisit call() {
+                        if (workersMonitor.isCanceled()) {
+                            return null;
+                        }
+                        Object[] state = workerState.get();
+                        ResourceVisit visit = startVisit(r, state[1], loggedMisconfiguration);
+                        if (visit == null) {
+                            return null;
                         }
+                        boolean visitInBuildThread = false;
+                        try {
+                            visitResource(visit, (List<PyDevBuilderVisitor>) state[0], workersMonitor, timings);
+                            state[1] = visit.memo.getSharedProjectState();
+                            visitInBuildThread = otherVisitors.size() > 0;
+                            return visitInBuildThread ? visit : null;
+                        } finally {
+                            if (!visitInBuildThread) {
+                                visit.nature.endRequests();
+                            }
+                        }
+                    }
+                }));
+            }
 
-                        //on a full build, all visits are as some add...
-                        visitor.visitAddedResource(r, doc, monitor);
-                    } catch (Exception e) {
-                        Log.log(e);
+            // we have 100 units for each visitor
+            double inc = ((threadSafeVisitors.size() + otherVisitors.size()) * 100) / (double) totalResources;
+            double total = 0;
+            FastStringBuffer bufferToCreateString = new FastStringBuffer();
+            long lastProgressTime = 0;
+
+            for (int i = 0; i < totalResources && monitor.isCanceled() == false; i++) {
+                long currentTimeMillis = System.currentTimeMillis();
+                if (currentTimeMillis - lastProgressTime > 300) {
+                    communicateProgress(monitor, totalResources, i + 1, resourcesToParse.get(i),
+                            threadSafeVisitors.get(0), bufferToCreateString);
+                    lastProgressTime = currentTimeMillis;
+                }
+                ResourceVisit visit;
+                try {
+                    visit = futures.get(i).get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (ExecutionException e) {
+                    Log.log(e);
+                    visit = null;
+                }
+                consumed = i + 1;
+                if (visit != null) {
+                    try {
+                        visitResource(visit, otherVisitors, monitor, timings);
+                    } finally {
+                        visit.nature.endRequests();
                     }
                 }
 
+                total += inc;
                 if (total > 1) {
                     monitor.worked((int) total);
                     total -= (int) total;
                 }
-                memoSharedProjectState = memo.getSharedProjectState();
-            } finally {
+            }
+        } finally {
+            for (Runnable notStarted : executor.shutdownNow()) {
+                ((Future<?>) notStarted).cancel(false);
+            }
+            //the resources already visited in the pool which were not visited in this thread must still end the
+            //requests started.
+            for (int i = consumed; i < futures.size(); i++) {
+                try {
+                    ResourceVisit visit = futures.get(i).get();
+                    if (visit != null) {
+                        visit.nature.endRequests();
+                    }
+                } catch (CancellationException | ExecutionException e) {
+                    //ignore (not visited or already logged).
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Resolves the module name and creates the memo and document to be used by the visitors of a resource.
+     *
+     * @return the visit to be passed to the visitors or null if the resource shouldn't be visited (if it's not null,
+     * nature.endRequests() must be called when the visit finishes).
+     */
+    private ResourceVisit startVisit(IFile r, Object memoSharedProjectState, AtomicBoolean loggedMisconfiguration) {
+        CorePlugin.markAsPyDevFileIfDetected(r);
+
+        IPythonNature nature = PythonNature.getPythonNature(r);
+        if (nature == null) {
+            return null;
+        }
+        if (!nature.startRequests()) {
+            return null;
+        }
+        boolean started = false;
+        try {
+            String moduleName;
+            try {
+                //we visit external because we must index them
+                moduleName = nature.resolveModuleOnlyInProjectSources(r, true);
+                if (moduleName == null) {
+                    return null; // we only analyze resources that are in the pythonpath
+                }
+            } catch (Exception e1) {
+                if (loggedMisconfiguration.compareAndSet(false, true)) {
+                    Log.log(e1); //No point in logging it over and over again.
+                }
+                return null;
+            }
+
+            //create new memo for each resource
+            VisitorMemo memo = new VisitorMemo();
+            memo.setSharedProjectState(memoSharedProjectState);
+            memo.put(PyDevBuilderVisitor.IS_FULL_BUILD, true); //mark it as full build
+
+            ICallback0<IDocument> doc = FileUtilsFileBuffer.getDocOnCallbackFromResource(r);
+            memo.put(PyDevBuilderVisitor.DOCUMENT_TIME, System.currentTimeMillis());
+
+            PyDevBuilderVisitor.setModuleNameInCache(memo, r, moduleName);
+            started = true;
+            return new ResourceVisit(r, nature, memo, doc);
+        } finally {
+            if (!started) {
                 nature.endRequests();
             }
         }
     }
 
+    /**
+     * Visits a resource with the given visitors (the memo of the visit is set in the visitors).
+     */
+    private void visitResource(ResourceVisit visit, List<PyDevBuilderVisitor> visitors, IProgressMonitor monitor,
+            VisitorTimings timings) {
+        for (Iterator<PyDevBuilderVisitor> it = visitors.iterator(); it.hasNext() && monitor.isCanceled() == false;) {
+
+            PyDevBuilderVisitor visitor = it.next();
+            long initialTime = System.nanoTime();
+            try {
+                visitor.memo = visit.memo; //setting the memo must be the first thing.
+
+                //on a full build, all visits are as some add...
+                visitor.visitAddedResource(visit.resource, visit.doc, monitor);
+            } catch (Exception e) {
+                Log.log(e);
+            }
+            timings.add(visitor, System.nanoTime() - initialTime);
+        }
+    }
+
     /**
      * Used so that we can communicate the progress to the user
      *
@@ -99,6 +99,26 @@ public abstract class PyDevBuilderVisitor implements Comparable<PyDevBuilderVisi
         return PRIORITY_DEFAULT;
     }
 
+    /**
+     * @return whether different resources may be visited concurrently by instances of this visitor in a parallel
+     * full build (if false -- the default -- the resources are visited in the build thread).
+     *
+     * Visitors which return true must also override createWorkerInstance().
+     */
+    public boolean isThreadSafe() {
+        return false;
+    }
+
+    /**
+     * @return a new instance of this visitor to be used in a worker thread of a parallel full build (a new
+     * instance is needed because the memo is kept in the visitor). Only called if isThreadSafe() returns true.
+     *
+     * Note: visitingWillStart/visitingEnded are only called in the original instance.
+     */
+    public PyDevBuilderVisitor createWorkerInstance() {
+        return null;
+    }
+
     /**
      * This field acts like a memory.
      *
@@ -34,6 +34,7 @@ import org.python.pydev.ast.codecompletion.revisited.modules.SourceToken;
 import org.python.pydev.ast.codecompletion.revisited.visitors.Definition;
 import org.python.pydev.ast.codecompletion.revisited.visitors.FindScopeVisitor;
 import org.python.pydev.ast.codecompletion.shell.AbstractShell;
+import org.python.pydev.ast.codecompletion.shell.AbstractShell.ShellReservation;
 import org.python.pydev.ast.refactoring.PyRefactoringFindDefinition;
 import org.python.pydev.ast.refactoring.RefactoringRequest;
 import org.python.pydev.core.ExtensionHelper;
@@ -550,7 +551,6 @@ public class PyCodeCompletion extends AbstractPyCodeCompletion {
             Log.log(e);
         }
 
-        AbstractShell shell = AbstractShell.getServerShell(nature, AbstractShell.getShellId());
         String charset = "utf-8";
         //                    if (viewer instanceof PySourceViewer) {
         //                        PySourceViewer pySourceViewer = (PySourceViewer) viewer;
@@ -562,11 +562,13 @@ public class PyCodeCompletion extends AbstractPyCodeCompletion {
                 nature.getProjectInterpreter(),
                 nature.getRelatedInterpreterManager());
         List<IToken> completions;
-        try {
-            completions = shell.getJediCompletions(request.editorFile, ps,
-                    charset, completePythonPath);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+        try (ShellReservation reservation = AbstractShell.reserveServerShell(nature, AbstractShell.getShellId())) {
+            try {
+                completions = reservation.shell.getJediCompletions(request.editorFile, ps,
+                        charset, completePythonPath);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
         }
         tokensList.addAll(new TokensList(completions));
     }
@@ -52,6 +52,8 @@ public class PyCodeCompletionInitializer extends AbstractPreferenceInitializer {
         //others
         node.putInt(PyCodeCompletionPreferences.ATTEMPTS_CODECOMPLETION,
                 PyCodeCompletionPreferences.DEFAULT_ATTEMPTS_CODECOMPLETION);
+        node.putInt(PyCodeCompletionPreferences.SHELLS_FOR_OTHER_THREADS,
+                PyCodeCompletionPreferences.DEFAULT_SHELLS_FOR_OTHER_THREADS);
         node.putInt(PyCodeCompletionPreferences.AUTOCOMPLETE_DELAY,
                 PyCodeCompletionPreferences.DEFAULT_AUTOCOMPLETE_DELAY);
         node.putInt(PyCodeCompletionPreferences.ARGUMENTS_DEEP_ANALYSIS_N_CHARS,
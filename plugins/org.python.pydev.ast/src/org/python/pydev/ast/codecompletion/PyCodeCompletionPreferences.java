@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.StringTokenizer;
 
 import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+import org.python.pydev.ast.codecompletion.shell.AbstractShell;
 import org.python.pydev.core.preferences.PydevPrefs;
 import org.python.pydev.shared_core.SharedCorePlugin;
 import org.python.pydev.shared_core.callbacks.ICallback0;
@@ -16,6 +17,9 @@ public class PyCodeCompletionPreferences {
     public static final String ATTEMPTS_CODECOMPLETION = "ATTEMPTS_CODECOMPLETION";
     public static final int DEFAULT_ATTEMPTS_CODECOMPLETION = 5;
 
+    public static final String SHELLS_FOR_OTHER_THREADS = "SHELLS_FOR_OTHER_THREADS";
+    public static final int DEFAULT_SHELLS_FOR_OTHER_THREADS = 2;
+
     public static final String AUTOCOMPLETE_ON_DOT = "AUTOCOMPLETE_ON_DOT";
     public static final boolean DEFAULT_AUTOCOMPLETE_ON_DOT = true;
 
@@ -91,6 +95,23 @@ public class PyCodeCompletionPreferences {
         return ret;
     }
 
+    /**
+     * @return the number of shells among which the requests which are not done in the main thread are distributed.
+     */
+    public static int getNumberOfShellsForOtherThreads() {
+        if (SharedCorePlugin.inTestMode()) {
+            return 1;
+        }
+        int ret = getPreferences().getInt(SHELLS_FOR_OTHER_THREADS, DEFAULT_SHELLS_FOR_OTHER_THREADS);
+        if (ret < 1) {
+            ret = 1;
+        }
+        if (ret > AbstractShell.MAX_SHELLS_FOR_OTHER_THREADS) {
+            ret = AbstractShell.MAX_SHELLS_FOR_OTHER_THREADS;
+        }
+        return ret;
+    }
+
     public static int getMaximumNumberOfMillisToCompleteCodeCompletionRequest() {
         int val = getPreferences().getInt(MAX_MILLIS_FOR_COMPLETION, DEFAULT_MAX_MILLIS_FOR_COMPLETION);
         if (val <= 200) {
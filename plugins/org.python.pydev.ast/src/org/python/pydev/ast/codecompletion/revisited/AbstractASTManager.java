@@ -691,11 +691,31 @@ public abstract class AbstractASTManager implements ICodeCompletionASTManager {
             return ret.copy();
         }
 
+        //When the position in the editor doesn't matter, the completions may be kept across requests.
+        Object memoKey = null;
+        long memoGeneration = 0;
+        if (state.getLocalImportsGotten() && state.getNature() != null
+                && (state.getActivationToken().length() > 0 || state.getLine() < 0)) {
+            memoKey = new TupleN(key, state.getNature(), String.valueOf(state.getLookingFor()));
+            TokensList memoized = CompletionsMemo.get(module, memoKey);
+            if (memoized != null) {
+                state.add(key, memoized.copy());
+                return memoized;
+            }
+            memoGeneration = CompletionsMemo.getGeneration();
+        }
+        int cutOffs = state.getCutOffsCount();
+
         TokensList completionsForModule = internalGenerateGetCompletionsForModule(module, state, searchSameLevelMods,
                 lookForArgumentCompletion);
         completionsForModule = filterForWildImport(module, handleAsWildImport, completionsForModule);
 
         state.add(key, completionsForModule.copy());
+        //Results aren't kept if the analysis was cut off (i.e.: a recursion was found in this request), as those
+        //may be partial.
+        if (memoKey != null && state.getCutOffsCount() == cutOffs) {
+            CompletionsMemo.put(module, memoKey, completionsForModule, memoGeneration);
+        }
         return completionsForModule;
     }
 
@@ -71,6 +71,12 @@ public final class CompletionState implements ICompletionState {
 
     private IProgressMonitor cancelMonitor;
 
+    /**
+     * Shared with the copies done to resolve imports (the completions gotten are partial if a cut off happens in
+     * those too).
+     */
+    private int[] cutOffs = new int[1];
+
     @Override
     public void setCancelMonitor(IProgressMonitor cancelMonitor) {
         this.cancelMonitor = cancelMonitor;
@@ -87,6 +93,7 @@ public final class CompletionState implements ICompletionState {
                 this.completionCache);
         state.nature = nature;
         state.findResolveImportMemory = findResolveImportMemory;
+        state.cutOffs = cutOffs;
 
         return state;
     }
@@ -190,7 +197,7 @@ public final class CompletionState implements ICompletionState {
     @Override
     public void checkWildImportInMemory(IModule caller, IModule wild) throws CompletionRecursionException {
         if (this.wildImportMemory.isInRecursion(caller, wild)) {
-            throw new CompletionRecursionException(
+            throw cutOff(
                     "Possible recursion found -- probably programming error -- (caller: " + caller.getName()
                             + ", import: " + wild.getName() + " ) - stopping analysis.");
         }
@@ -204,7 +211,7 @@ public final class CompletionState implements ICompletionState {
     @Override
     public void checkDefinitionMemory(IModule module, IDefinition definition) throws CompletionRecursionException {
         if (this.definitionMemory.isInRecursion(module, (Definition) definition)) {
-            throw new CompletionRecursionException(
+            throw cutOff(
                     "Possible recursion found -- probably programming error --  (module: " + module.getName()
                             + ", token: " + definition + ") - stopping analysis.");
         }
@@ -217,7 +224,7 @@ public final class CompletionState implements ICompletionState {
     @Override
     public void checkFindMemory(IModule module, String value) throws CompletionRecursionException {
         if (this.findMemory.isInRecursion(module, value)) {
-            throw new CompletionRecursionException(
+            throw cutOff(
                     "Possible recursion found -- probably programming error --  (module: " + module.getName()
                             + ", value: " + value + ") - stopping analysis.");
         }
@@ -231,7 +238,7 @@ public final class CompletionState implements ICompletionState {
     @Override
     public void checkResolveImportMemory(IModule module, String value) throws CompletionRecursionException {
         if (this.resolveImportMemory.isInRecursion(module, value)) {
-            throw new CompletionRecursionException(
+            throw cutOff(
                     "Possible recursion found -- probably programming error --  (module: " + module.getName()
                             + ", value: " + value + ") - stopping analysis.");
         }
@@ -241,7 +248,7 @@ public final class CompletionState implements ICompletionState {
     @Override
     public void checkFindDefinitionMemory(IModule mod, String tok) throws CompletionRecursionException {
         if (this.findDefinitionMemory.isInRecursion(mod, tok)) {
-            throw new CompletionRecursionException(
+            throw cutOff(
                     "Possible recursion found -- probably programming error --  (module: " + mod.getName()
                             + ", value: " + tok + ") - stopping analysis.");
         }
@@ -250,7 +257,7 @@ public final class CompletionState implements ICompletionState {
     @Override
     public void checkFindLocalDefinedDefinitionMemory(IModule mod, String tok) throws CompletionRecursionException {
         if (this.findLocalDefinedDefinitionMemory.isInRecursion(mod, tok)) {
-            throw new CompletionRecursionException(
+            throw cutOff(
                     "Possible recursion found -- probably programming error --  (module: " + mod.getName()
                             + ", value: " + tok + ") - stopping analysis.");
         }
@@ -263,7 +270,7 @@ public final class CompletionState implements ICompletionState {
     @Override
     public void checkMemory(IModule module, String base) throws CompletionRecursionException {
         if (this.memory.isInRecursion(module, base)) {
-            throw new CompletionRecursionException(
+            throw cutOff(
                     "Possible recursion found -- probably programming error --  (module: " + module.getName()
                             + ", token: " + base + ") - stopping analysis.");
         }
@@ -273,7 +280,7 @@ public final class CompletionState implements ICompletionState {
     public void checkMaxTimeForCompletion() throws CompletionRecursionException {
         if (cancelMonitor != null) {
             if (cancelMonitor.isCanceled()) {
-                throw new CompletionRecursionException(
+                throw cutOff(
                         "Completion cancelled.");
             }
         }
@@ -288,7 +295,7 @@ public final class CompletionState implements ICompletionState {
         } else {
             long diff = System.currentTimeMillis() - this.initialMillis;
             if (diff > this.maxMillisToComplete) {
-                throw new CompletionRecursionException(
+                throw cutOff(
                         "Stopping analysis: completion took too much time to complete. Max set to: "
                                 + this.maxMillisToComplete + " millis. Current: " + diff + " millis. Note: this "
                                 + "value may be changed in the code-completion preferences.");
@@ -296,12 +303,31 @@ public final class CompletionState implements ICompletionState {
         }
     };
 
+    @Override
+    public int getCutOffsCount() {
+        return cutOffs[0];
+    }
+
+    @Override
+    public void addCutOff() {
+        cutOffs[0]++;
+    }
+
+    /**
+     * @return the exception to be thrown to stop the analysis (after marking that a cut off happened).
+     */
+    private CompletionRecursionException cutOff(String msg) {
+        addCutOff();
+        return new CompletionRecursionException(msg);
+    }
+
     Set<Tuple3<Integer, Integer, IModule>> foundSameDefinitionMemory = new HashSet<Tuple3<Integer, Integer, IModule>>();
 
     @Override
     public boolean checkFoudSameDefinition(int line, int col, IModule mod) {
         Tuple3<Integer, Integer, IModule> key = new Tuple3<Integer, Integer, IModule>(line, col, mod);
         if (foundSameDefinitionMemory.contains(key)) {
+            addCutOff();
             return true;
         }
         foundSameDefinitionMemory.add(key);
@@ -313,6 +339,7 @@ public final class CompletionState implements ICompletionState {
         if (!findSourceFromCompiledMemory.isInRecursion(mod, tok)) {
             return true;
         }
+        addCutOff();
         return false;
     }
 
@@ -329,7 +356,7 @@ public final class CompletionState implements ICompletionState {
             Memo<IToken> memo = it.next();
             if (memo.isInRecursion(null, token)) {
                 //                if(it.hasNext()){
-                throw new CompletionRecursionException(
+                throw cutOff(
                         "Possible recursion found -- probably programming error --  (token: " + token
                                 + ") - stopping analysis.");
                 //                }
@@ -354,7 +381,7 @@ public final class CompletionState implements ICompletionState {
     @Override
     public void checkFindModuleCompletionsMemory(IModule mod, String tok) throws CompletionRecursionException {
         if (this.findModuleCompletionsMemory.isInRecursion(mod, tok)) {
-            throw new CompletionRecursionException(
+            throw cutOff(
                     "Possible recursion found -- probably programming error --  (module: " + mod.getName()
                             + ", token: " + tok + ") - stopping analysis.");
         }
@@ -434,7 +461,7 @@ public final class CompletionState implements ICompletionState {
     @Override
     public void raiseNFindTokensOnImportedModsCalled(IModule mod, String tok) throws CompletionRecursionException {
         if (this.importedModsCalled.isInRecursion(mod, tok)) {
-            throw new CompletionRecursionException("Possible recursion found (mod: " + mod.getName() + ", tok: " + tok
+            throw cutOff("Possible recursion found (mod: " + mod.getName() + ", tok: " + tok
                     + " ) - stopping analysis.");
         }
     }
@@ -597,6 +624,7 @@ public final class CompletionState implements ICompletionState {
     public boolean getAlreadySearchedInAssign(int line, int col, IModule module, String value, String actTok) {
         AlreadySerched s = new AlreadySerched(line, col, module, value, actTok);
         if (alreadySearchedInAssign.contains(s)) {
+            addCutOff();
             return true;
         }
         alreadySearchedInAssign.add(s);
@@ -624,7 +652,7 @@ public final class CompletionState implements ICompletionState {
     public void pushGetCompletionsUnpackingObject() throws CompletionRecursionException {
         levelGetCompletionsUnpackingObject += 1;
         if (levelGetCompletionsUnpackingObject > 15) {
-            throw new CompletionRecursionException(
+            throw cutOff(
                     "Error: recursion detected getting completions unpacking object. Activation token: "
                             + this.getActivationToken());
         }
@@ -99,6 +99,16 @@ public final class CompletionStateWrapper implements ICompletionState {
         wrapped.checkMaxTimeForCompletion();
     }
 
+    @Override
+    public int getCutOffsCount() {
+        return wrapped.getCutOffsCount();
+    }
+
+    @Override
+    public void addCutOff() {
+        wrapped.addCutOff();
+    }
+
     @Override
     public void checkFindLocalDefinedDefinitionMemory(IModule mod, String tok) throws CompletionRecursionException {
         wrapped.checkFindLocalDefinedDefinitionMemory(mod, tok);
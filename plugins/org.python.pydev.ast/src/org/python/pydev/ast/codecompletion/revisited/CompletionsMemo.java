@@ -0,0 +1,134 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.ast.codecompletion.revisited;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.python.pydev.core.IModule;
+import org.python.pydev.core.TokensList;
+import org.python.pydev.shared_core.cache.LRUMap;
+
+/**
+ * Keeps the completions gotten for modules across completion requests (the CompletionCache only keeps them during
+ * a single request).
+ *
+ * The entries are keyed by the module instance (a new instance is created whenever a module changes, and it's only
+ * weakly referenced) and by the lookup done in it. As the completions for a module also depend on the modules it
+ * imports, all the entries are invalidated whenever some module is added/removed in any modules manager.
+ */
+public final class CompletionsMemo {
+
+    public static boolean USE_COMPLETIONS_MEMO = true;
+
+    private static final int MAX_ENTRIES = 500;
+
+    /**
+     * The module is only weakly referenced and the completions are softly referenced (the tokens may reference the
+     * module and its AST), so, the memo doesn't keep modules which are no longer used alive.
+     */
+    private static final class Key extends WeakReference<IModule> {
+
+        private final Object lookup;
+        private final int hash;
+
+        private Key(IModule module, Object lookup, ReferenceQueue<IModule> queue) {
+            super(module, queue);
+            this.lookup = lookup;
+            this.hash = System.identityHashCode(module) * 31 + lookup.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            IModule module = get();
+            return module != null && module == other.get() && lookup.equals(other.lookup);
+        }
+    }
+
+    private static final Object lock = new Object();
+    private static final LRUMap<Key, SoftReference<TokensList>> memo = new LRUMap<Key, SoftReference<TokensList>>(
+            MAX_ENTRIES);
+    private static final ReferenceQueue<IModule> collectedModules = new ReferenceQueue<IModule>();
+    private static final AtomicLong generation = new AtomicLong();
+
+    private CompletionsMemo() {
+    }
+
+    /**
+     * @return the current generation (which must be passed to put() after the completions are computed so that
+     * completions computed while some module changed aren't kept).
+     */
+    public static long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * @return a copy of the completions kept for the given module/lookup or null if not available.
+     */
+    public static TokensList get(IModule module, Object lookup) {
+        if (!USE_COMPLETIONS_MEMO) {
+            return null;
+        }
+        TokensList ret = null;
+        synchronized (lock) {
+            SoftReference<TokensList> ref = memo.get(new Key(module, lookup, null));
+            if (ref != null) {
+                ret = ref.get();
+            }
+        }
+        return ret != null ? ret.copy() : null;
+    }
+
+    public static void put(IModule module, Object lookup, TokensList completions, long computedInGeneration) {
+        if (!USE_COMPLETIONS_MEMO) {
+            return;
+        }
+        TokensList copy = completions.copy();
+        synchronized (lock) {
+            removeCollected();
+            if (generation.get() == computedInGeneration) {
+                memo.put(new Key(module, lookup, collectedModules), new SoftReference<TokensList>(copy));
+            }
+        }
+    }
+
+    /**
+     * Removes the entries whose module was garbage-collected (must be called with the lock held).
+     */
+    private static void removeCollected() {
+        Reference<? extends IModule> ref;
+        while ((ref = collectedModules.poll()) != null) {
+            memo.remove(ref);
+        }
+    }
+
+    /**
+     * Clears all the completions kept (must be called whenever some module changes).
+     */
+    public static void invalidate() {
+        synchronized (lock) {
+            generation.incrementAndGet();
+            memo.clear();
+            removeCollected();
+        }
+    }
+}
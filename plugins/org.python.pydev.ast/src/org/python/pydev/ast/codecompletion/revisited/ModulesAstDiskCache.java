@@ -0,0 +1,285 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.ast.codecompletion.revisited;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.python.pydev.core.log.Log;
+import org.python.pydev.parser.jython.SimpleNode;
+import org.python.pydev.parser.jython.SimpleNodeSerializer;
+import org.python.pydev.shared_core.io.FileUtils;
+
+/**
+ * Keeps the ASTs of source modules on disk (so that a module which was removed from the memory can be recreated
+ * without having to parse it again).
+ *
+ * Each entry is keyed by the path, modification time, size and grammar version used to parse the module (if any
+ * of those doesn't match, the entry is ignored and is overwritten with the new AST later on).
+ *
+ * The entry is saved in a file named by the hash of the path (the path is saved in it too, and a few slots are
+ * available for paths with the same hash). Entries not used for some time are removed and the oldest entries are
+ * removed when the total size is above the maximum (checked when the cache is opened and after some writes).
+ */
+final class ModulesAstDiskCache {
+
+    private static final int MAGIC = 0x50594153;
+
+    /**
+     * Number of files available for paths with the same hash.
+     */
+    private static final int SLOTS = 4;
+
+    private static final long DEFAULT_MAX_SIZE = 256L * 1024 * 1024;
+
+    private static final long MAX_UNUSED_MILLIS = 30L * 24 * 60 * 60 * 1000;
+
+    /**
+     * The modification time of an entry is updated when it's used (with this granularity) so that entries which are
+     * still used aren't removed.
+     */
+    private static final long TOUCH_GRANULARITY_MILLIS = 24 * 60 * 60 * 1000;
+
+    private static final long MAX_TEMP_FILE_AGE_MILLIS = 60 * 60 * 1000;
+
+    private final File dir;
+    private final long maxSize;
+
+    /**
+     * Bytes written since the last time old entries were removed.
+     */
+    private final AtomicLong bytesWritten = new AtomicLong();
+
+    ModulesAstDiskCache(File dir) {
+        this(dir, DEFAULT_MAX_SIZE);
+    }
+
+    /*default*/ ModulesAstDiskCache(File dir, long maxSize) {
+        this.dir = dir;
+        this.maxSize = maxSize;
+        removeOldEntries();
+    }
+
+    private File getCacheFile(String path, int grammarVersion, int slot) {
+        return new File(dir, Integer.toHexString(path.hashCode()) + "_" + grammarVersion + "_" + slot + ".ast");
+    }
+
+    /**
+     * @return the AST saved for the given file (or null if it's not available or if it's no longer valid).
+     */
+    SimpleNode get(File file, int grammarVersion, long lastModified, long size) {
+        String path = FileUtils.getFileAbsolutePath(file);
+        for (int slot = 0; slot < SLOTS; slot++) {
+            File cacheFile = getCacheFile(path, grammarVersion, slot);
+            try (FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ)) {
+                long length = channel.size();
+                if (length > Integer.MAX_VALUE) {
+                    continue;
+                }
+                ByteBuffer buffer = ByteBuffer.allocate((int) length);
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    //read it all
+                }
+                buffer.flip();
+
+                if (buffer.remaining() < 28 || buffer.getInt() != MAGIC
+                        || buffer.getInt() != SimpleNodeSerializer.FORMAT_VERSION
+                        || buffer.getInt() != grammarVersion) {
+                    continue;
+                }
+                long cachedLastModified = buffer.getLong();
+                long cachedSize = buffer.getLong();
+                if (!path.equals(readPath(buffer))) {
+                    continue; //Another file with the same hash.
+                }
+                if (cachedLastModified != lastModified || cachedSize != size) {
+                    return null;
+                }
+                SimpleNode ast = SimpleNodeSerializer.read(buffer);
+                long now = System.currentTimeMillis();
+                if (now - cacheFile.lastModified() > TOUCH_GRANULARITY_MILLIS) {
+                    cacheFile.setLastModified(now);
+                }
+                return ast;
+
+            } catch (NoSuchFileException e) {
+                continue;
+            } catch (Exception e) {
+                Log.log("Error reading cached AST for: " + path + " (" + e.getMessage() + ")");
+                cacheFile.delete();
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static String readPath(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length * 2 > buffer.remaining()) {
+            return null;
+        }
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = buffer.getChar();
+        }
+        return new String(chars);
+    }
+
+    /**
+     * @return the path saved in the given cache file (or null if it's not available).
+     */
+    private static String readPath(File cacheFile) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+            if (in.readInt() != MAGIC) {
+                return null;
+            }
+            in.readInt(); //format version
+            in.readInt(); //grammar version
+            in.readLong(); //last modified
+            in.readLong(); //size
+            int length = in.readInt();
+            if (length < 0 || length > cacheFile.length()) {
+                return null;
+            }
+            char[] chars = new char[length];
+            for (int i = 0; i < length; i++) {
+                chars[i] = in.readChar();
+            }
+            return new String(chars);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the file where the entry for the given path should be saved (the one which already has it, an unused
+     * one or the first one if all are used by other paths).
+     */
+    private File getCacheFileToWrite(String path, int grammarVersion) {
+        File unused = null;
+        for (int slot = 0; slot < SLOTS; slot++) {
+            File cacheFile = getCacheFile(path, grammarVersion, slot);
+            if (!cacheFile.exists()) {
+                if (unused == null) {
+                    unused = cacheFile;
+                }
+            } else if (path.equals(readPath(cacheFile))) {
+                return cacheFile;
+            }
+        }
+        return unused != null ? unused : getCacheFile(path, grammarVersion, 0);
+    }
+
+    /**
+     * Saves the AST for the given file (the modification time and size must be the ones the file had before it was
+     * read for the parsing).
+     */
+    void put(File file, int grammarVersion, long lastModified, long size, SimpleNode ast) {
+        String path = FileUtils.getFileAbsolutePath(file);
+        File tempFile = null;
+        try {
+            if (!dir.exists()) {
+                dir.mkdirs();
+            }
+            File cacheFile = getCacheFileToWrite(path, grammarVersion);
+            //Write to a temporary file and then move it so that readers never see a partially written file.
+            tempFile = File.createTempFile("ast", ".tmp", dir);
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tempFile), 64 * 1024))) {
+                out.writeInt(MAGIC);
+                out.writeInt(SimpleNodeSerializer.FORMAT_VERSION);
+                out.writeInt(grammarVersion);
+                out.writeLong(lastModified);
+                out.writeLong(size);
+                out.writeInt(path.length());
+                out.writeChars(path);
+                SimpleNodeSerializer.write(ast, out);
+            }
+            long written = tempFile.length();
+            Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            tempFile = null;
+            if (bytesWritten.addAndGet(written) > maxSize / 4) {
+                removeOldEntries();
+            }
+        } catch (Exception e) {
+            //Not critical (the module will just be parsed again when needed).
+            Log.log("Error caching AST for: " + path + " (" + e.getMessage() + ")");
+        } finally {
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Removes the entries not used for some time (and the oldest ones if the total size is above the maximum).
+     */
+    /*default*/ void removeOldEntries() {
+        bytesWritten.set(0);
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        final Map<File, Long> entries = new HashMap<File, Long>();
+        long total = 0;
+        for (File f : files) {
+            String name = f.getName();
+            long lastModified = f.lastModified();
+            if (name.endsWith(".ast")) {
+                if (now - lastModified > MAX_UNUSED_MILLIS) {
+                    f.delete();
+                } else {
+                    entries.put(f, lastModified);
+                    total += f.length();
+                }
+            } else if (name.endsWith(".tmp") && now - lastModified > MAX_TEMP_FILE_AGE_MILLIS) {
+                f.delete(); //Left behind by a process which was killed while writing.
+            }
+        }
+        if (total <= maxSize) {
+            return;
+        }
+        List<File> sorted = new ArrayList<File>(entries.keySet());
+        Collections.sort(sorted, new Comparator<File>() {
+
+            @Override
+            public int compare(File o1, File o2) {
+                return Long.compare(entries.get(o1), entries.get(o2));
+            }
+        });
+        long target = maxSize * 3 / 4;
+        for (File f : sorted) {
+            if (total <= target) {
+                break;
+            }
+            long length = f.length();
+            if (f.delete()) {
+                total -= length;
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.ast.codecompletion.revisited;
+
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.python.pydev.core.ModulesKey;
+import org.python.pydev.core.ObjectsInternPool;
+
+/**
+ * Shares the keys created by the modules managers (along with their names and files).
+ *
+ * The same folders are usually in the pythonpath of many interpreters (i.e.: virtual environments created from the
+ * same base interpreter share its standard library), so, without this, the same name/file would be kept in memory
+ * for each of those.
+ *
+ * Note: the keys gotten from here are shared, so, clients must never change them.
+ *
+ * The pool is split in stripes (by the hash of the file), each with its own lock, so that the managers of different
+ * interpreters/projects being restored at the same time don't contend on a single lock.
+ */
+public final class ModulesKeysPool {
+
+    /**
+     * Number of stripes (must be a power of 2).
+     */
+    private static final int STRIPES = 16;
+
+    private static final class Stripe {
+
+        /**
+         * Weak in the file (which is referenced by the key itself), so, entries are removed when the key is
+         * collected.
+         */
+        private final Map<File, WeakReference<ModulesKey>> keys = new WeakHashMap<File, WeakReference<ModulesKey>>();
+
+        private final Map<File, WeakReference<File>> files = new WeakHashMap<File, WeakReference<File>>();
+    }
+
+    private static final Stripe[] stripes = new Stripe[STRIPES];
+
+    static {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    private ModulesKeysPool() {
+    }
+
+    private static Stripe getStripe(File file) {
+        int h = file.hashCode();
+        h ^= (h >>> 16);
+        return stripes[h & (STRIPES - 1)];
+    }
+
+    /**
+     * @return a key (which may be shared) with the given name and file.
+     */
+    public static ModulesKey getKey(String name, File file) {
+        if (file == null) {
+            return new ModulesKey(ObjectsInternPool.intern(name), null);
+        }
+        Stripe stripe = getStripe(file);
+        synchronized (stripe) {
+            WeakReference<ModulesKey> ref = stripe.keys.get(file);
+            if (ref != null) {
+                ModulesKey key = ref.get();
+                if (key != null && key.getClass() == ModulesKey.class && key.name.equals(name)) {
+                    return key;
+                }
+                stripe.keys.remove(file);
+            }
+            ModulesKey key = new ModulesKey(ObjectsInternPool.intern(name), file);
+            stripe.keys.put(file, new WeakReference<ModulesKey>(key));
+            return key;
+        }
+    }
+
+    /**
+     * @return a file (which may be shared) with the given path (used for the zip files and the folders which have
+     * many modules).
+     */
+    public static File getFile(String path) {
+        File file = new File(path);
+        Stripe stripe = getStripe(file);
+        synchronized (stripe) {
+            WeakReference<File> ref = stripe.files.get(file);
+            if (ref != null) {
+                File existing = ref.get();
+                if (existing != null) {
+                    return existing;
+                }
+            }
+            stripe.files.put(file, new WeakReference<File>(file));
+            return file;
+        }
+    }
+}
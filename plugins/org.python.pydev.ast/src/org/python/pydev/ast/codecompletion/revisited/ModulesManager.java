@@ -11,8 +11,11 @@
  */
 package org.python.pydev.ast.codecompletion.revisited;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
 import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -49,6 +52,7 @@ import org.python.pydev.core.IPythonNature;
 import org.python.pydev.core.MisconfigurationException;
 import org.python.pydev.core.ModulesKey;
 import org.python.pydev.core.ModulesKeyForZip;
+import org.python.pydev.core.ObjectsInternPool;
 import org.python.pydev.core.log.Log;
 import org.python.pydev.core.preferences.FileTypesPreferences;
 import org.python.pydev.parser.PyParser;
@@ -63,6 +67,7 @@ import org.python.pydev.parser.jython.ast.aliasType;
 import org.python.pydev.parser.jython.ast.exprType;
 import org.python.pydev.parser.jython.ast.stmtType;
 import org.python.pydev.parser.visitors.NodeUtils;
+import org.python.pydev.shared_core.SharedCorePlugin;
 import org.python.pydev.shared_core.cache.LRUMap;
 import org.python.pydev.shared_core.callbacks.ICallback2;
 import org.python.pydev.shared_core.callbacks.ICallbackListener;
@@ -84,7 +89,13 @@ public abstract class ModulesManager implements IModulesManager {
     /**
      * Note: MODULES_MANAGER_V1 had a bug when writing/reading ModulesKeyForZip entries.
      */
-    private static final String MODULES_MANAGER_V2 = "MODULES_MANAGER_V2\n";
+    private static final String MODULES_MANAGER_V2_LINE = "MODULES_MANAGER_V2";
+
+    /**
+     * V3: the folder of each module is written only once in the common tokens (the module line just references it).
+     */
+    private static final String MODULES_MANAGER_V3_LINE = "MODULES_MANAGER_V3";
+    private static final String MODULES_MANAGER_V3 = MODULES_MANAGER_V3_LINE + "\n";
 
     private final static boolean DEBUG_BUILD = false;
 
@@ -199,6 +210,68 @@ public abstract class ModulesManager implements IModulesManager {
     protected final PyPublicTreeMap<ModulesKey, ModulesKey> modulesKeys = new PyPublicTreeMap<ModulesKey, ModulesKey>();
     protected final Object modulesKeysLock = new Object();
 
+    /**
+     * The keys restored from the disk which still weren't added to modulesKeys (null if there are none).
+     *
+     * Guarded by modulesKeysLock.
+     */
+    private PendingModulesKeys pendingModulesKeys;
+
+    /**
+     * Adds to modulesKeys the pending keys in the same top-level package of the given module.
+     */
+    /*default*/void loadPendingKeys(String moduleName) {
+        synchronized (modulesKeysLock) {
+            if (pendingModulesKeys != null) {
+                addPendingKeys(pendingModulesKeys.take(moduleName));
+            }
+        }
+    }
+
+    /**
+     * Adds to modulesKeys the pending keys which may have a name in the range [fromName, toName).
+     */
+    private void loadPendingKeys(String fromName, String toName) {
+        synchronized (modulesKeysLock) {
+            if (pendingModulesKeys != null) {
+                addPendingKeys(pendingModulesKeys.take(fromName, toName));
+            }
+        }
+    }
+
+    /**
+     * Adds all the pending keys to modulesKeys (needed before going through all the keys).
+     */
+    /*default*/void loadAllPendingKeys() {
+        synchronized (modulesKeysLock) {
+            if (pendingModulesKeys != null) {
+                addPendingKeys(pendingModulesKeys.takeAll());
+            }
+        }
+    }
+
+    private void addPendingKeys(List<ModulesKey> keys) {
+        for (ModulesKey key : keys) {
+            //A module added after the keys were restored has priority (although it usually loads the pending ones
+            //in its package before being added).
+            if (!modulesKeys.containsKey(key)) {
+                modulesKeys.put(key, key);
+            }
+        }
+        if (pendingModulesKeys.isEmpty()) {
+            pendingModulesKeys = null;
+        }
+    }
+
+    /**
+     * Discards the pending keys (must be called when the keys are replaced).
+     */
+    protected void clearPendingKeys() {
+        synchronized (modulesKeysLock) {
+            pendingModulesKeys = null;
+        }
+    }
+
     protected static final ModulesManagerCache cache = new ModulesManagerCache();
     private static final CachePyiModules cachePyiModules = new CachePyiModules();
 
@@ -231,8 +304,9 @@ public abstract class ModulesManager implements IModulesManager {
         HashMap<String, Integer> commonTokens = new HashMap<String, Integer>();
 
         synchronized (modulesKeysLock) {
+            loadAllPendingKeys();
             buf = new FastStringBuffer(this.modulesKeys.size() * 50);
-            buf.append(MODULES_MANAGER_V2);
+            buf.append(MODULES_MANAGER_V3);
 
             for (Iterator<ModulesKey> iter = this.modulesKeys.keySet().iterator(); iter.hasNext();) {
                 ModulesKey next = iter.next();
@@ -256,7 +330,22 @@ public abstract class ModulesManager implements IModulesManager {
                             buf.append(modulesKeyForZip.isFile ? '1' : '0');
                         }
                     } else {
-                        buf.append(next.file.toString());
+                        File parentFile = next.file.getParentFile();
+                        if (parentFile == null) {
+                            buf.append(next.file.toString());
+                        } else {
+                            //i.e.: name|*token|file_name
+                            String parentStr = parentFile.toString();
+                            Integer t = commonTokens.get(parentStr);
+                            if (t == null) {
+                                t = commonTokens.size();
+                                commonTokens.put(parentStr, t);
+                            }
+                            buf.append('*');
+                            buf.append(t);
+                            buf.append('|');
+                            buf.append(next.file.getName());
+                        }
                     }
                 }
                 buf.append('\n');
@@ -264,7 +353,7 @@ public abstract class ModulesManager implements IModulesManager {
         }
         if (commonTokens.size() > 0) {
             FastStringBuffer header = new FastStringBuffer(buf.length() + (commonTokens.size() * 50));
-            header.append(MODULES_MANAGER_V2);
+            header.append(MODULES_MANAGER_V3);
             header.append("--COMMON--\n");
             for (Map.Entry<String, Integer> entries : commonTokens.entrySet()) {
                 header.append(entries.getValue());
@@ -299,21 +388,21 @@ public abstract class ModulesManager implements IModulesManager {
             throw new IOException("Expecting: " + pythonpatHelperFile + " to exist (and be a file).");
         }
 
-        String fileContents = FileUtils.getFileContents(modulesKeysFile);
-        if (!fileContents.startsWith(MODULES_MANAGER_V2)) {
+        //Only the contents are kept for now: the keys of a top-level package are created when some module in it is
+        //requested (the file isn't memory-mapped because it wouldn't be possible to overwrite it on Windows).
+        byte[] contents = Files.readAllBytes(modulesKeysFile.toPath());
+        int[] offset = new int[] { 0 };
+        String version = readLine(contents, offset);
+        if (!MODULES_MANAGER_V3_LINE.equals(version) && !MODULES_MANAGER_V2_LINE.equals(version)) {
             throw new RuntimeException(
                     "Could not load modules manager from " + modulesKeysFile + " (version changed).");
         }
 
         HashMap<Integer, String> intToString = new HashMap<Integer, String>();
-        fileContents = fileContents.substring(MODULES_MANAGER_V2.length());
-        if (fileContents.startsWith("--COMMON--\n")) {
-            String header = fileContents.substring("--COMMON--\n".length());
-            header = header.substring(0, header.indexOf("--END-COMMON--\n"));
-            fileContents = fileContents.substring(fileContents.indexOf("--END-COMMON--\n")
-                    + "--END-COMMON--\n".length());
-
-            for (String line : StringUtils.iterLines(header)) {
+        int start = offset[0];
+        if ("--COMMON--".equals(readLine(contents, offset))) {
+            String line;
+            while ((line = readLine(contents, offset)) != null && !line.equals("--END-COMMON--")) {
                 line = line.trim();
                 List<String> split = StringUtils.split(line, '=');
                 if (split.size() == 2) {
@@ -324,14 +413,18 @@ public abstract class ModulesManager implements IModulesManager {
                         Log.log(e);
                     }
                 }
-
             }
-            if (fileContents.startsWith(MODULES_MANAGER_V2)) {
-                fileContents = fileContents.substring(MODULES_MANAGER_V2.length());
+            start = offset[0];
+            if (version.equals(readLine(contents, offset))) {
+                start = offset[0];
             }
         }
 
-        handleFileContents(modulesManager, fileContents, intToString);
+        PendingModulesKeys pending = new PendingModulesKeys(contents, start, intToString);
+        synchronized (modulesManager.modulesKeysLock) {
+            modulesManager.modulesKeys.clear();
+            modulesManager.pendingModulesKeys = pending.isEmpty() ? null : pending;
+        }
 
         if (modulesManager.pythonPathHelper == null) {
             throw new IOException("Pythonpath helper not properly restored. " + modulesManager.getClass().getName()
@@ -349,86 +442,69 @@ public abstract class ModulesManager implements IModulesManager {
                     + modulesManager.getClass().getName() + " dir:" + workspaceMetadataFile);
         }
 
-        if (modulesManager.modulesKeys.size() < 2) { //if we have few modules, that may indicate a problem...
+        if (pending.size() < 2) { //if we have few modules, that may indicate a problem...
             //if the project is really small, modulesManager will be fast, otherwise, it'll fix the problem.
             //Note: changed to a really low value because we now make a check after it's restored anyways.
-            throw new IOException("Only " + modulesManager.modulesKeys.size() + " modules restored in I/O. "
+            throw new IOException("Only " + pending.size() + " modules restored in I/O. "
                     + modulesManager.getClass().getName() + " dir:" + workspaceMetadataFile);
         }
 
     }
 
     /**
-     * This method was simply:
-     *
-     *  for(String line:StringUtils.iterLines(fileContents)){
-     *      line = line.trim();
-     *      List<String> split = StringUtils.split(line, '|');
-     *      handleLineParts(modulesManager, intToString, split);
-     *  }
-     *
-     *  and was changed to be faster (as this was one of the slow things in startup).
+     * @return the line starting at offset[0] (which is updated to the start of the next line) or null if there are
+     * no more lines.
+     */
+    private static String readLine(byte[] contents, int[] offset) {
+        int start = offset[0];
+        if (start >= contents.length) {
+            return null;
+        }
+        int i = start;
+        while (i < contents.length && contents[i] != '\n' && contents[i] != '\r') {
+            i++;
+        }
+        String line = new String(contents, start, i - start);
+        if (i < contents.length && contents[i] == '\r') {
+            i++;
+        }
+        if (i < contents.length && contents[i] == '\n') {
+            i++;
+        }
+        offset[0] = i;
+        return line;
+    }
+
+    /**
+     * Builds the keys from the given contents (the lines as written in the modulesKeys file).
      */
-    /*default*/@SuppressWarnings("rawtypes")
-    static void handleFileContents(ModulesManager modulesManager, String fileContents,
+    /*default*/static void handleFileContents(ModulesManager modulesManager, String fileContents,
             HashMap<Integer, String> intToString) {
-        String string = fileContents;
-        int len = string.length();
+        try {
+            handleFileContents(modulesManager, new BufferedReader(new StringReader(fileContents)), intToString);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
 
+    /**
+     * Builds the keys from the lines in the reader (each line is: name|file or name|*token|file_name or
+     * name|token|path_in_zip|is_file).
+     */
+    @SuppressWarnings("rawtypes")
+    private static void handleFileContents(ModulesManager modulesManager, BufferedReader reader,
+            HashMap<Integer, String> intToString) throws IOException {
         final ArrayList<ModulesKey> lst = new ArrayList<ModulesKey>();
-
-        char c;
-        int start = 0;
-        int i = 0;
+        //The files for the common tokens (folders and zips) are shared by all the keys referencing them.
+        HashMap<Integer, File> intToFile = new HashMap<Integer, File>();
 
         String[] parts = new String[4];
-        int partsFound = 0;
-
-        for (; i < len; i++) {
-            c = string.charAt(i);
-
-            if (c == '\r') {
-                String trimmed = string.substring(start, i).trim();
-                if (trimmed.length() > 0) {
-                    parts[partsFound] = trimmed;
-                    partsFound++;
-                }
-                handleLineParts(modulesManager, intToString, parts, partsFound, lst);
-                partsFound = 0;
-
-                if (i < len - 1 && string.charAt(i + 1) == '\n') {
-                    i++;
-                }
-                start = i + 1;
-
-            } else if (c == '\n') {
-                String trimmed = string.substring(start, i).trim();
-                if (trimmed.length() > 0) {
-                    parts[partsFound] = trimmed;
-                    partsFound++;
-                }
-                handleLineParts(modulesManager, intToString, parts, partsFound, lst);
-                partsFound = 0;
-
-                start = i + 1;
-
-            } else if (c == '|') {
-                String trimmed = string.substring(start, i).trim();
-                if (trimmed.length() > 0) {
-                    parts[partsFound] = trimmed;
-                    partsFound++;
-                }
-                start = i + 1;
-            }
-        }
-
-        if (start < len && start != i) {
-            String trimmed = string.substring(start, i).trim();
-            if (trimmed.length() > 0) {
-                parts[partsFound] = trimmed;
-                partsFound++;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            int partsFound = splitLineParts(line, parts);
+            if (partsFound > 0) {
+                handleLineParts(intToString, intToFile, parts, partsFound, lst);
             }
-            handleLineParts(modulesManager, intToString, parts, partsFound, lst);
         }
 
         try {
@@ -477,24 +553,36 @@ public abstract class ModulesManager implements IModulesManager {
         }
     }
 
-    private static void handleLineParts(ModulesManager modulesManager, HashMap<Integer, String> intToString,
-            String[] split, int size, ArrayList<ModulesKey> lst) {
+    /*default*/static void handleLineParts(HashMap<Integer, String> intToString, HashMap<Integer, File> intToFile,
+            String[] split, int size, List<ModulesKey> lst) {
         if (size > 0 && split[0].length() > 0) { //Just making sure we have something there.
             ModulesKey key;
             if (size == 1) {
-                key = new ModulesKey(split[0], null);
+                key = ModulesKeysPool.getKey(split[0], null);
                 //restore with empty modules.
                 lst.add(key);
 
             } else if (size == 2) {
-                key = new ModulesKey(split[0], new File(split[1]));
+                key = ModulesKeysPool.getKey(split[0], new File(split[1]));
                 //restore with empty modules.
                 lst.add(key);
 
+            } else if (size == 3 && split[1].startsWith("*")) {
+                try {
+                    File folder = getCommonFile(intToString, intToFile, Integer.parseInt(split[1].substring(1)));
+                    key = ModulesKeysPool.getKey(split[0], new File(folder, split[2]));
+                    //restore with empty modules.
+                    lst.add(key);
+                } catch (NumberFormatException e) {
+                    Log.log(e);
+                }
+
             } else if (size == 4) {
                 try {
-                    key = new ModulesKeyForZip(split[0], //module name
-                            new File(intToString.get(Integer.parseInt(split[1]))), //zip file (usually repeated over and over again)
+                    //zip file (usually repeated over and over again)
+                    File zipFile = getCommonFile(intToString, intToFile, Integer.parseInt(split[1]));
+                    key = new ModulesKeyForZip(ObjectsInternPool.intern(split[0]), //module name
+                            zipFile, //zip file
                             split[2], //path in zip
                             split[3].equals("1")); //is file (false = folder)
                     //restore with empty modules.
@@ -506,6 +594,41 @@ public abstract class ModulesManager implements IModulesManager {
         }
     }
 
+    /**
+     * Splits the line in the '|' char, filling the given parts with the ones which are not empty (trimmed).
+     *
+     * @return the number of parts found (or -1 if the line has more parts than expected).
+     */
+    /*default*/static int splitLineParts(String line, String[] parts) {
+        int partsFound = 0;
+        int start = 0;
+        int len = line.length();
+        for (int i = 0; i <= len; i++) {
+            if (i == len || line.charAt(i) == '|') {
+                String trimmed = line.substring(start, i).trim();
+                if (trimmed.length() > 0) {
+                    if (partsFound == parts.length) {
+                        return -1;
+                    }
+                    parts[partsFound] = trimmed;
+                    partsFound++;
+                }
+                start = i + 1;
+            }
+        }
+        return partsFound;
+    }
+
+    private static File getCommonFile(HashMap<Integer, String> intToString, HashMap<Integer, File> intToFile,
+            int i) {
+        File file = intToFile.get(i);
+        if (file == null) {
+            file = ModulesKeysPool.getFile(intToString.get(i));
+            intToFile.put(i, file);
+        }
+        return file;
+    }
+
     /**
      * @return Returns the modules.
      */
@@ -534,9 +657,11 @@ public abstract class ModulesManager implements IModulesManager {
         synchronized (modulesKeysLock) {
             cache.clear();
             //assign to instance variable
+            this.pendingModulesKeys = null;
             this.modulesKeys.clear();
             this.modulesKeys.putAll(keys);
         }
+        CompletionsMemo.invalidate();
 
     }
 
@@ -552,6 +677,7 @@ public abstract class ModulesManager implements IModulesManager {
         Iterator<ModulesKey> it = keysFound.keySet().iterator();
 
         synchronized (modulesKeysLock) {
+            loadAllPendingKeys();
             while (it.hasNext()) {
                 ModulesKey next = it.next();
                 ModulesKey modulesKey = modulesKeys.get(next);
@@ -619,7 +745,7 @@ public abstract class ModulesManager implements IModulesManager {
                         continue;
                     }
                 }
-                ModulesKey modulesKey = new ModulesKey(m, f);
+                ModulesKey modulesKey = ModulesKeysPool.getKey(m, f);
 
                 //no conflict (easy)
                 if (!keys.containsKey(modulesKey)) {
@@ -674,9 +800,11 @@ public abstract class ModulesManager implements IModulesManager {
             if (DEBUG_BUILD) {
                 System.out.println("Removing module:" + key + " - " + this.getClass());
             }
+            loadPendingKeys(key.name);
             this.modulesKeys.remove(key);
             ModulesManager.cache.remove(key, this);
         }
+        CompletionsMemo.invalidate();
     }
 
     /**
@@ -706,6 +834,7 @@ public abstract class ModulesManager implements IModulesManager {
     @Override
     public boolean hasModule(ModulesKey key) {
         synchronized (modulesKeysLock) {
+            loadPendingKeys(key.name);
             return this.modulesKeys.containsKey(key);
         }
     }
@@ -721,10 +850,14 @@ public abstract class ModulesManager implements IModulesManager {
         if (DEBUG_BUILD) {
             System.out.println("Adding module:" + key + " - " + this.getClass());
         }
+        //Computed before getting the lock (may access the filesystem).
+        long size = ModulesManagerCache.estimateSize(n);
         synchronized (modulesKeysLock) {
+            loadPendingKeys(key.name);
             this.modulesKeys.put(key, key);
-            ModulesManager.cache.add(key, n, this);
+            ModulesManager.cache.add(key, n, this, size);
         }
+        CompletionsMemo.invalidate();
     }
 
     /**
@@ -736,6 +869,7 @@ public abstract class ModulesManager implements IModulesManager {
     public Set<String> getAllModuleNames(boolean addDependencies, String partStartingWithLowerCase) {
         Set<String> s = new HashSet<String>();
         synchronized (modulesKeysLock) {
+            loadAllPendingKeys();
             for (ModulesKey key : this.modulesKeys.keySet()) {
                 if (key.hasPartStartingWith(partStartingWithLowerCase)) {
                     s.add(key.name);
@@ -749,6 +883,7 @@ public abstract class ModulesManager implements IModulesManager {
     public SortedMap<ModulesKey, ModulesKey> getAllDirectModulesStartingWith(String strStartingWith) {
         if (strStartingWith.length() == 0) {
             synchronized (modulesKeysLock) {
+                loadAllPendingKeys();
                 //we don't want it to be backed up by the same set (because it may be changed, so, we may get
                 //a java.util.ConcurrentModificationException on places that use it)
                 return new PyPublicTreeMap<ModulesKey, ModulesKey>(modulesKeys);
@@ -757,6 +892,7 @@ public abstract class ModulesManager implements IModulesManager {
         ModulesKey startingWith = new ModulesKey(strStartingWith, null);
         ModulesKey endingWith = new ModulesKey(strStartingWith + "\uffff\uffff\uffff\uffff", null);
         synchronized (modulesKeysLock) {
+            loadPendingKeys(startingWith.name, endingWith.name);
             //we don't want it to be backed up by the same set (because it may be changed, so, we may get
             //a java.util.ConcurrentModificationException on places that use it)
             return new PyPublicTreeMap<ModulesKey, ModulesKey>(modulesKeys.subMap(startingWith, endingWith));
@@ -771,6 +907,7 @@ public abstract class ModulesManager implements IModulesManager {
     @Override
     public ModulesKey[] getOnlyDirectModules() {
         synchronized (modulesKeysLock) {
+            loadAllPendingKeys();
             return this.modulesKeys.keySet().toArray(new ModulesKey[0]);
         }
     }
@@ -781,7 +918,7 @@ public abstract class ModulesManager implements IModulesManager {
     @Override
     public int getSize(boolean addDependenciesSize) {
         synchronized (modulesKeysLock) {
-            return this.modulesKeys.size();
+            return this.modulesKeys.size() + (pendingModulesKeys != null ? pendingModulesKeys.size() : 0);
         }
     }
 
@@ -948,7 +1085,7 @@ public abstract class ModulesManager implements IModulesManager {
                             try {
                                 //NOTE: The nature (and so the grammar to be used) must be defined by this modules
                                 //manager (and not by the initial caller)!!
-                                n = AbstractModule.createModule(name, e.f, this.getNature(), true);
+                                n = createModuleFromFile(name, e.f);
                                 n = decorateModule(n, nature);
                             } catch (IOException exc) {
                                 keyForCacheAccess.name = name;
@@ -1106,6 +1243,64 @@ public abstract class ModulesManager implements IModulesManager {
         return n;
     }
 
+    /**
+     * Creates the module for the given file (for source modules the AST is gotten from the disk cache if
+     * available).
+     */
+    private AbstractModule createModuleFromFile(String name, File f) throws IOException, MisconfigurationException {
+        IPythonNature thisNature = this.getNature();
+        ModulesAstDiskCache diskCache = getAstDiskCache();
+        if (diskCache == null || !PythonPathHelper.isValidFileMod(f.getName())
+                || !PythonPathHelper.isValidSourceFile(f.getName())) {
+            return AbstractModule.createModule(name, f, thisNature, true);
+        }
+
+        int grammarVersion = thisNature.getGrammarVersion();
+        long lastModified = FileUtils.lastModified(f);
+        long size = f.length();
+        SimpleNode ast = diskCache.get(f, grammarVersion, lastModified, size);
+        if (ast != null) {
+            return new SourceModule(name, f, ast, null, thisNature);
+        }
+
+        AbstractModule module = AbstractModule.createModule(name, f, thisNature, true);
+        if (module instanceof SourceModule) {
+            SourceModule sourceModule = (SourceModule) module;
+            //Only cache it if it was parsed without errors and the file wasn't changed while parsing.
+            if (sourceModule.parseError == null && sourceModule.getAst() != null
+                    && FileUtils.lastModified(f) == lastModified) {
+                diskCache.put(f, grammarVersion, lastModified, size, sourceModule.getAst());
+            }
+        }
+        return module;
+    }
+
+    private volatile ModulesAstDiskCache astDiskCache;
+
+    private ModulesAstDiskCache getAstDiskCache() {
+        ModulesAstDiskCache diskCache = astDiskCache;
+        if (diskCache == null) {
+            if (SharedCorePlugin.inTestMode()) {
+                return null;
+            }
+            File dir = getAstCacheDir();
+            if (dir == null) {
+                return null;
+            }
+            diskCache = new ModulesAstDiskCache(dir);
+            astDiskCache = diskCache;
+        }
+        return diskCache;
+    }
+
+    /**
+     * @return the directory where the ASTs of the source modules may be cached (or null if they shouldn't be
+     * cached on disk).
+     */
+    protected File getAstCacheDir() {
+        return null;
+    }
+
     /**
      * Hook called to give clients a chance to override the module created (still experimenting, so, it's not public).
      */
@@ -1116,6 +1311,7 @@ public abstract class ModulesManager implements IModulesManager {
     private ModulesKey createModulesKey(String name, File f) {
         ModulesKey newEntry = new ModulesKey(name, f);
         synchronized (modulesKeysLock) {
+            loadPendingKeys(name);
             Entry<ModulesKey, ModulesKey> oldEntry = this.modulesKeys.getEntry(newEntry);
             if (oldEntry != null) {
                 return oldEntry.getKey();
@@ -1132,6 +1328,14 @@ public abstract class ModulesManager implements IModulesManager {
     public static void clearCache() {
         ModulesManager.cache.clear();
         ModulesManager.cachePyiModules.clear();
+        CompletionsMemo.invalidate();
+    }
+
+    /**
+     * @return the current size, hits, misses and evictions of the modules cache shared by all the managers.
+     */
+    public static String getCacheStatistics() {
+        return ModulesManager.cache.toString();
     }
 
     /**
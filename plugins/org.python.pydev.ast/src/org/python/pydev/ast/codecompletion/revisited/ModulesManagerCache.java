@@ -6,71 +6,255 @@
  */
 package org.python.pydev.ast.codecompletion.revisited;
 
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.python.pydev.ast.codecompletion.revisited.modules.AbstractModule;
+import org.python.pydev.ast.codecompletion.revisited.modules.EmptyModule;
+import org.python.pydev.ast.codecompletion.revisited.modules.SourceModule;
 import org.python.pydev.core.ModulesKey;
-import org.python.pydev.shared_core.cache.LRUCache;
+import org.python.pydev.core.preferences.InterpreterGeneralPreferences;
 import org.python.pydev.shared_core.structure.Tuple;
 
 /**
- * This is a 'global' cache implementation, that can have at most n objects in
- * the memory at any time.
+ * This is a 'global' cache implementation (shared by all the managers), which keeps at most an (approximate)
+ * number of bytes of modules in the memory at any time.
+ *
+ * The cache is split in stripes (each with its own lock and a part of the budget), each evicting the least
+ * recently used modules when its part of the budget is exceeded.
  */
 final class ModulesManagerCache {
+
+    /**
+     * Number of stripes (must be a power of 2).
+     */
+    private static final int STRIPES = 16;
+
     /**
-     * Defines the maximum amount of modules that can be in the memory at any time (for all the managers)
+     * Approximate size of an empty module (which just has the name/file).
      */
-    private static final int MAX_NUMBER_OF_MODULES = 400;
+    private static final long EMPTY_MODULE_SIZE = 256;
 
     /**
-     * The access to the cache is synchronized
+     * Approximate size of the AST for each byte in the source of a module.
      */
-    private LRUCache<Tuple<ModulesKey, ModulesManager>, AbstractModule> internalCache;
-    private final Object lock = new Object();
+    private static final long AST_BYTES_PER_SOURCE_BYTE = 20;
+
+    /**
+     * Size used when it's not possible to estimate the size of a module (i.e.: compiled modules or modules
+     * without a file).
+     */
+    private static final long DEFAULT_MODULE_SIZE = 64 * 1024;
+
+    private static final class Entry {
+        private final AbstractModule module;
+        private final long size;
+
+        private Entry(AbstractModule module, long size) {
+            this.module = module;
+            this.size = size;
+        }
+    }
+
+    private static final class Stripe {
+
+        /**
+         * Access ordered (the eldest entry is the least recently used).
+         */
+        private final Map<Tuple<ModulesKey, ModulesManager>, Entry> map;
+
+        private long size;
+
+        private Stripe() {
+            map = new LinkedHashMap<Tuple<ModulesKey, ModulesManager>, Entry>(16, 0.75f, true);
+        }
+    }
+
+    private final Stripe[] stripes;
+    private final long maxBytesPerStripe;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
 
     ModulesManagerCache() {
-        internalCache = new LRUCache<Tuple<ModulesKey, ModulesManager>, AbstractModule>(MAX_NUMBER_OF_MODULES);
+        this(InterpreterGeneralPreferences.getModulesCacheMaxBytes());
+    }
+
+    /**
+     * @param maxBytes the (approximate) maximum number of bytes of the modules kept in the cache.
+     */
+    ModulesManagerCache(long maxBytes) {
+        stripes = new Stripe[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+        maxBytesPerStripe = Math.max(1, maxBytes / STRIPES);
+    }
+
+    private Stripe getStripe(Tuple<ModulesKey, ModulesManager> keyTuple) {
+        int h = keyTuple.hashCode();
+        h ^= (h >>> 16);
+        return stripes[h & (STRIPES - 1)];
+    }
+
+    /**
+     * @return the (approximate) number of bytes the given module takes in memory.
+     */
+    static long estimateSize(AbstractModule module) {
+        if (module instanceof EmptyModule) {
+            return EMPTY_MODULE_SIZE;
+        }
+        if (module instanceof SourceModule) {
+            File file = module.getFile();
+            if (file != null) {
+                long length = file.length();
+                if (length > 0) {
+                    return EMPTY_MODULE_SIZE + (length * AST_BYTES_PER_SOURCE_BYTE);
+                }
+            }
+        }
+        return DEFAULT_MODULE_SIZE;
     }
 
     /**
      * Overridden so that if we do not find the key, we have the chance to create it.
      */
     public AbstractModule getObj(ModulesKey key, ModulesManager modulesManager) {
+        Tuple<ModulesKey, ModulesManager> keyTuple = new Tuple<ModulesKey, ModulesManager>(key, modulesManager);
+        Stripe stripe = getStripe(keyTuple);
+        synchronized (stripe) {
+            Entry entry = stripe.map.get(keyTuple);
+            if (entry != null) {
+                hits.incrementAndGet();
+                return entry.module;
+            }
+        }
+
+        //Not there: we need the modules keys lock to check whether it's in the manager (the lock is always
+        //obtained before the stripe lock).
         synchronized (modulesManager.modulesKeysLock) {
-            Tuple<ModulesKey, ModulesManager> keyTuple = new Tuple<ModulesKey, ModulesManager>(key, modulesManager);
-
-            synchronized (lock) {
-                AbstractModule obj = internalCache.getObj(keyTuple);
-                if (obj == null && modulesManager.modulesKeys.containsKey(key)) {
-                    key = modulesManager.modulesKeys.get(key); //get the 'real' key
-                    obj = AbstractModule.createEmptyModule(key);
-                    internalCache.add(keyTuple, obj);
+            modulesManager.loadPendingKeys(key.name);
+            synchronized (stripe) {
+                Entry entry = stripe.map.get(keyTuple);
+                if (entry != null) {
+                    hits.incrementAndGet();
+                    return entry.module;
+                }
+                misses.incrementAndGet();
+                if (!modulesManager.modulesKeys.containsKey(key)) {
+                    return null;
                 }
+                key = modulesManager.modulesKeys.get(key); //get the 'real' key
+                AbstractModule obj = AbstractModule.createEmptyModule(key);
+                put(stripe, keyTuple, obj);
                 return obj;
             }
         }
     }
 
     public void remove(ModulesKey key, ModulesManager modulesManager) {
-        synchronized (modulesManager.modulesKeysLock) {
-            Tuple<ModulesKey, ModulesManager> keyTuple = new Tuple<ModulesKey, ModulesManager>(key, modulesManager);
-            synchronized (lock) {
-                internalCache.remove(keyTuple);
+        Tuple<ModulesKey, ModulesManager> keyTuple = new Tuple<ModulesKey, ModulesManager>(key, modulesManager);
+        Stripe stripe = getStripe(keyTuple);
+        synchronized (stripe) {
+            Entry entry = stripe.map.remove(keyTuple);
+            if (entry != null) {
+                stripe.size -= entry.size;
             }
         }
     }
 
     public void add(ModulesKey key, AbstractModule n, ModulesManager modulesManager) {
-        synchronized (modulesManager.modulesKeysLock) {
-            Tuple<ModulesKey, ModulesManager> keyTuple = new Tuple<ModulesKey, ModulesManager>(key, modulesManager);
-            synchronized (lock) {
-                internalCache.add(keyTuple, n);
+        add(key, n, modulesManager, estimateSize(n));
+    }
+
+    /**
+     * @param size the size of the module as gotten from estimateSize (which may access the filesystem, so, callers
+     * holding the modulesKeysLock should compute it before getting that lock).
+     */
+    public void add(ModulesKey key, AbstractModule n, ModulesManager modulesManager, long size) {
+        Tuple<ModulesKey, ModulesManager> keyTuple = new Tuple<ModulesKey, ModulesManager>(key, modulesManager);
+        Stripe stripe = getStripe(keyTuple);
+        synchronized (stripe) {
+            put(stripe, keyTuple, n, size);
+        }
+    }
+
+    /**
+     * Used only for empty modules (so, estimating the size doesn't access the filesystem with the locks held).
+     */
+    private void put(Stripe stripe, Tuple<ModulesKey, ModulesManager> keyTuple, AbstractModule n) {
+        put(stripe, keyTuple, n, estimateSize(n));
+    }
+
+    /**
+     * Puts the module in the stripe and evicts the least recently used modules if the stripe is too big.
+     * The stripe lock must be held.
+     */
+    private void put(Stripe stripe, Tuple<ModulesKey, ModulesManager> keyTuple, AbstractModule n, long size) {
+        Entry old = stripe.map.put(keyTuple, new Entry(n, size));
+        if (old != null) {
+            stripe.size -= old.size;
+        }
+        stripe.size += size;
+
+        Iterator<Map.Entry<Tuple<ModulesKey, ModulesManager>, Entry>> it = stripe.map.entrySet().iterator();
+        //Note: always keep at least the one just added (even if it's bigger than the budget).
+        while (stripe.size > maxBytesPerStripe && stripe.map.size() > 1 && it.hasNext()) {
+            Map.Entry<Tuple<ModulesKey, ModulesManager>, Entry> eldest = it.next();
+            if (eldest.getKey().equals(keyTuple)) {
+                continue;
             }
+            it.remove();
+            stripe.size -= eldest.getValue().size;
+            evictions.incrementAndGet();
         }
     }
 
     public void clear() {
-        synchronized (lock) {
-            internalCache.clear();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.map.clear();
+                stripe.size = 0;
+            }
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * @return the (approximate) number of bytes of the modules currently in the cache.
+     */
+    public long getSize() {
+        long size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size;
+            }
         }
+        return size;
+    }
+
+    public long getMaxSize() {
+        return maxBytesPerStripe * STRIPES;
+    }
+
+    @Override
+    public String toString() {
+        return "ModulesManagerCache[size=" + getSize() + ", maxSize=" + getMaxSize() + ", hits=" + getHits()
+                + ", misses=" + getMisses() + ", evictions=" + getEvictions() + "]";
     }
-}
\ No newline at end of file
+}
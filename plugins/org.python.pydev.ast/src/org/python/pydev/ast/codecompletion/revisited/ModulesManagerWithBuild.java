@@ -214,6 +214,7 @@ public abstract class ModulesManagerWithBuild extends ModulesManager implements
 
         List<ModulesKey> toRem = new ArrayList<ModulesKey>();
         synchronized (modulesKeysLock) {
+            loadAllPendingKeys();
 
             for (Iterator<ModulesKey> iter = modulesKeys.keySet().iterator(); iter.hasNext();) {
                 ModulesKey key = iter.next();
@@ -239,6 +240,7 @@ public abstract class ModulesManagerWithBuild extends ModulesManager implements
         List<ModulesKey> toRem = new ArrayList<ModulesKey>();
 
         synchronized (modulesKeysLock) {
+            loadAllPendingKeys();
 
             for (ModulesKey key : modulesKeys.keySet()) {
                 if (key.file != null && FileUtils.getFileAbsolutePath(key.file).startsWith(absolutePath)) {
@@ -260,6 +262,7 @@ public abstract class ModulesManagerWithBuild extends ModulesManager implements
 
         } else if (f != null) { //ok, remove the module that has a key with this file, as it can no longer be resolved
             synchronized (modulesKeysLock) {
+                loadAllPendingKeys();
                 Set<ModulesKey> toRemove = new HashSet<ModulesKey>();
                 for (Iterator<ModulesKey> iter = modulesKeys.keySet().iterator(); iter.hasNext();) {
                     ModulesKey key = iter.next();
@@ -0,0 +1,198 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.ast.codecompletion.revisited;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.python.pydev.core.ModulesKey;
+
+/**
+ * The keys restored from the modulesKeys file which were still not added to the modules manager.
+ *
+ * The lines of the file are grouped by the top-level package of the module and the keys of a group are only created
+ * when some module in it is requested (so, a modules manager may be used right after being restored, without having
+ * to create all its keys first).
+ *
+ * Not thread-safe (used with the modulesKeysLock of the modules manager held).
+ */
+final class PendingModulesKeys {
+
+    /**
+     * The ranges [start, end) of the file with the lines of a top-level package (as the lines are saved sorted,
+     * usually there's a single range).
+     */
+    private static final class Lines {
+
+        private int[] ranges = new int[2];
+        private int rangesSize;
+        private int count;
+
+        private void add(int start, int end) {
+            if (rangesSize > 0 && ranges[rangesSize - 1] == start) {
+                ranges[rangesSize - 1] = end;
+            } else {
+                if (rangesSize == ranges.length) {
+                    ranges = Arrays.copyOf(ranges, rangesSize * 2);
+                }
+                ranges[rangesSize++] = start;
+                ranges[rangesSize++] = end;
+            }
+            count++;
+        }
+    }
+
+    private final byte[] contents;
+    private final HashMap<Integer, String> intToString;
+    private final HashMap<Integer, File> intToFile = new HashMap<Integer, File>();
+    private final Map<String, Lines> topLevelToLines = new HashMap<String, Lines>();
+    private int size;
+
+    /**
+     * @param contents the contents of the modulesKeys file.
+     * @param start the offset of the first line with a key.
+     * @param intToString the common tokens of the file.
+     */
+    PendingModulesKeys(byte[] contents, int start, HashMap<Integer, String> intToString) {
+        this.contents = contents;
+        this.intToString = intToString;
+
+        int len = contents.length;
+        int lineStart = start;
+        Lines lines = null;
+        int topLevelStart = -1;
+        int topLevelLen = -1;
+        while (lineStart < len) {
+            int i = lineStart;
+            int topLevelEnd = -1;
+            for (; i < len && contents[i] != '\n' && contents[i] != '\r'; i++) {
+                if (topLevelEnd == -1 && (contents[i] == '.' || contents[i] == '|')) {
+                    topLevelEnd = i;
+                }
+            }
+            if (topLevelEnd == -1) {
+                topLevelEnd = i;
+            }
+            for (; i < len && (contents[i] == '\n' || contents[i] == '\r'); i++) {
+                //skip the new lines (and empty lines).
+            }
+
+            //Consecutive lines usually have the same top-level package (no need to create the string again).
+            int currLen = topLevelEnd - lineStart;
+            if (lines == null || currLen != topLevelLen
+                    || !regionMatches(contents, topLevelStart, lineStart, currLen)) {
+                String topLevel = new String(contents, lineStart, currLen).trim();
+                lines = null;
+                if (topLevel.length() > 0) {
+                    lines = topLevelToLines.get(topLevel);
+                    if (lines == null) {
+                        lines = new Lines();
+                        topLevelToLines.put(topLevel, lines);
+                    }
+                    topLevelStart = lineStart;
+                    topLevelLen = currLen;
+                }
+            }
+            if (lines != null) {
+                lines.add(lineStart, i);
+                size++;
+            }
+            lineStart = i;
+        }
+    }
+
+    private static boolean regionMatches(byte[] contents, int start1, int start2, int len) {
+        for (int i = 0; i < len; i++) {
+            if (contents[start1 + i] != contents[start2 + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of keys still pending.
+     */
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the keys in the same top-level package of the given module name (which are no longer pending).
+     */
+    List<ModulesKey> take(String moduleName) {
+        int i = moduleName.indexOf('.');
+        Lines lines = topLevelToLines.remove(i == -1 ? moduleName : moduleName.substring(0, i));
+        List<ModulesKey> ret = new ArrayList<ModulesKey>(lines != null ? lines.count : 0);
+        if (lines != null) {
+            createKeys(lines, ret);
+        }
+        return ret;
+    }
+
+    /**
+     * @return the keys which may have a name in the range [fromName, toName) (which are no longer pending).
+     */
+    List<ModulesKey> take(String fromName, String toName) {
+        List<ModulesKey> ret = new ArrayList<ModulesKey>();
+        for (Iterator<Map.Entry<String, Lines>> it = topLevelToLines.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<String, Lines> entry = it.next();
+            String topLevel = entry.getKey();
+            //The names in the top-level are the top-level itself or start with 'topLevel.' ('.' < '/').
+            if (topLevel.compareTo(toName) < 0 && (topLevel + '/').compareTo(fromName) > 0) {
+                it.remove();
+                createKeys(entry.getValue(), ret);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @return all the keys still pending (which are no longer pending).
+     */
+    List<ModulesKey> takeAll() {
+        List<ModulesKey> ret = new ArrayList<ModulesKey>(size);
+        for (Lines lines : topLevelToLines.values()) {
+            createKeys(lines, ret);
+        }
+        topLevelToLines.clear();
+        return ret;
+    }
+
+    private void createKeys(Lines lines, List<ModulesKey> lst) {
+        String[] parts = new String[4];
+        for (int r = 0; r < lines.rangesSize; r += 2) {
+            int end = lines.ranges[r + 1];
+            int lineStart = lines.ranges[r];
+            while (lineStart < end) {
+                int i = lineStart;
+                for (; i < end && contents[i] != '\n' && contents[i] != '\r'; i++) {
+                }
+                if (i > lineStart) {
+                    int partsFound = ModulesManager.splitLineParts(new String(contents, lineStart, i - lineStart),
+                            parts);
+                    if (partsFound > 0) {
+                        ModulesManager.handleLineParts(intToString, intToFile, parts, partsFound, lst);
+                    }
+                }
+                for (; i < end && (contents[i] == '\n' || contents[i] == '\r'); i++) {
+                }
+                lineStart = i;
+            }
+        }
+        size -= lines.count;
+    }
+}
@@ -109,6 +109,19 @@ public final class ProjectModulesManager extends ModulesManagerWithBuild impleme
         return nature;
     }
 
+    @Override
+    protected File getAstCacheDir() {
+        IPythonNature n = nature;
+        if (n == null) {
+            return null;
+        }
+        File completionsCacheDir = n.getCompletionsCacheDir();
+        if (completionsCacheDir == null) {
+            return null; //project was deleted.
+        }
+        return new File(completionsCacheDir, "v1_ast_cache");
+    }
+
     /**
      * @param defaultSelectedInterpreter
      * @see org.python.pydev.core.IProjectModulesManager#getSystemModulesManager()
@@ -41,6 +41,20 @@ public class PyCodeCompletionVisitor extends PyDevBuilderVisitor {
         return PRIORITY_CODE_COMPLETION;
     }
 
+    /**
+     * The modules manager is updated holding its modulesKeysLock (and the modules manager deltas are disabled
+     * in the original instance in visitingWillStart).
+     */
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    @Override
+    public PyDevBuilderVisitor createWorkerInstance() {
+        return new PyCodeCompletionVisitor();
+    }
+
     /**
      * On a full build we'll stop generating deltas (the build is much faster this way).
      */
@@ -12,7 +12,6 @@
 package org.python.pydev.ast.codecompletion.revisited;
 
 import java.io.File;
-import java.io.FileFilter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -24,6 +23,13 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -40,7 +46,9 @@ import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Path;
 import org.python.pydev.ast.codecompletion.IPythonModuleResolver;
 import org.python.pydev.ast.codecompletion.revisited.ModulesFoundStructure.ZipContents;
+import org.python.pydev.ast.listing_utils.DirectorySnapshots;
 import org.python.pydev.ast.listing_utils.PyFileListing;
+import org.python.pydev.ast.listing_utils.PyFileListing.IPyFileListingFilter;
 import org.python.pydev.ast.listing_utils.PyFileListing.PyFileInfo;
 import org.python.pydev.core.ExtensionHelper;
 import org.python.pydev.core.IPythonPathNature;
@@ -103,6 +111,15 @@ public final class PythonPathHelper implements IPythonPathHelper {
      */
     public static PyFileListing getModulesBelow(File root, IProgressMonitor monitor,
             List<String> allPythonpathEntries) {
+        return getModulesBelow(root, monitor, allPythonpathEntries, null);
+    }
+
+    /**
+     * @param snapshots if given, directories which didn't change since they were last listed aren't listed again.
+     * @see #getModulesBelow(File, IProgressMonitor, List)
+     */
+    public static PyFileListing getModulesBelow(File root, IProgressMonitor monitor,
+            List<String> allPythonpathEntries, DirectorySnapshots snapshots) {
         if (!root.exists()) {
             return null;
         }
@@ -114,30 +131,122 @@ public final class PythonPathHelper implements IPythonPathHelper {
             }
             otherRoots.remove(root);
 
-            FileFilter filter = new FileFilter() {
+            IPyFileListingFilter filter = new IPyFileListingFilter() {
 
                 @Override
-                public boolean accept(File file) {
-                    if (file.isFile()) {
-                        return isValidFileMod(FileUtils.getFileAbsolutePath(file));
-                    } else if (file.isDirectory()) {
-                        if (otherRoots.contains(file)) {
-                            // We should not go into other roots.
-                            return false;
-                        }
-                        return isValidModuleLastPart(file.getName());
-                    } else {
+                public boolean accept(File file, boolean isDirectory) {
+                    if (!isDirectory) {
+                        return isValidFileMod(file.getName());
+                    }
+                    if (otherRoots.contains(file)) {
+                        // We should not go into other roots.
                         return false;
                     }
+                    return isValidModuleLastPart(file.getName());
                 }
 
             };
-            return PyFileListing.getPyFilesBelow(root, filter, monitor);
+            DirectorySnapshots.RootSnapshots rootSnapshots = null;
+            if (snapshots != null) {
+                rootSnapshots = snapshots.getRootSnapshots(root, getListingFilterKey(root, otherRoots));
+            }
+            return PyFileListing.getPyFilesBelow(root, filter, monitor, rootSnapshots);
 
         }
         return null;
     }
 
+    /**
+     * @return a key which identifies what's accepted by the filter used in getModulesBelow for the given root (the
+     * valid extensions and the other roots inside it).
+     */
+    private static String getListingFilterKey(File root, Set<File> otherRoots) {
+        FastStringBuffer buf = new FastStringBuffer();
+        for (String ext : FileTypesPreferences.getDottedValidSourceFiles()) {
+            buf.append(ext);
+        }
+        String rootPrefix = root.getPath() + File.separatorChar;
+        Set<String> nestedRoots = new TreeSet<String>();
+        for (File otherRoot : otherRoots) {
+            if (otherRoot.getPath().startsWith(rootPrefix)) {
+                nestedRoots.add(otherRoot.getPath());
+            }
+        }
+        for (String nestedRoot : nestedRoots) {
+            buf.append('|').append(nestedRoot);
+        }
+        return buf.toString();
+    }
+
+    private static ExecutorService listingExecutor;
+
+    /**
+     * @return the executor used to list the pythonpath roots in parallel.
+     */
+    private static synchronized ExecutorService getListingExecutor() {
+        if (listingExecutor == null) {
+            int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+            listingExecutor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "PythonPathHelper: list pythonpath root");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return listingExecutor;
+    }
+
+    /**
+     * Lists the modules below each one of the given roots (in parallel).
+     *
+     * @return the listing for each root (in the same order, null for roots which aren't directories).
+     */
+    private static List<PyFileListing> getModulesBelowRoots(final List<String> pythonpathList,
+            final IProgressMonitor monitor) {
+        final DirectorySnapshots snapshots = DirectorySnapshots.getDefault();
+        // Progress monitors are not thread-safe: the workers only check for cancellation.
+        final IProgressMonitor workersMonitor = new NullProgressMonitor() {
+            @Override
+            public boolean isCanceled() {
+                return monitor.isCanceled();
+            }
+        };
+
+        List<Future<PyFileListing>> futures = new ArrayList<>(pythonpathList.size());
+        ExecutorService executor = getListingExecutor();
+        for (final String element : pythonpathList) {
+            futures.add(executor.submit(new Callable<PyFileListing>() {
+
+                @Override
+                public PyFileListing call() throws Exception {
+                    return getModulesBelow(new File(element), workersMonitor, pythonpathList, snapshots);
+                }
+            }));
+        }
+
+        List<PyFileListing> ret = new ArrayList<>(futures.size());
+        for (int i = 0; i < futures.size(); i++) {
+            PyFileListing listing = null;
+            try {
+                listing = futures.get(i).get();
+            } catch (InterruptedException e) {
+                Log.log(e);
+            } catch (ExecutionException e) {
+                Log.log("Error listing: " + pythonpathList.get(i), e);
+            }
+            monitor.setTaskName("Listed: " + pythonpathList.get(i));
+            monitor.worked(1);
+            ret.add(listing);
+        }
+        if (!monitor.isCanceled()) {
+            snapshots.save();
+        }
+        return ret;
+    }
+
     /**
      * @param root the zip file to analyze
      * @param monitor the monitor, to keep track of what is happening
@@ -611,17 +720,18 @@ public final class PythonPathHelper implements IPythonPathHelper {
         ModulesFoundStructure ret = new ModulesFoundStructure();
 
         List<String> pythonpathList = getPythonpath();
+        //the slow part is getting the files (so, the roots are listed in parallel).
+        List<PyFileListing> listings = getModulesBelowRoots(pythonpathList, monitor);
         FastStringBuffer tempBuf = new FastStringBuffer();
-        for (Iterator<String> iter = pythonpathList.iterator(); iter.hasNext();) {
-            String element = iter.next();
+        for (int i = 0; i < pythonpathList.size(); i++) {
+            String element = pythonpathList.get(i);
 
             if (monitor.isCanceled()) {
                 break;
             }
 
-            //the slow part is getting the files... not much we can do (I think).
             File root = new File(element);
-            PyFileListing below = getModulesBelow(root, monitor, pythonpathList);
+            PyFileListing below = listings.get(i);
             if (below != null) {
 
                 Iterator<PyFileInfo> e1 = below.getFoundPyFileInfos().iterator();
@@ -13,6 +13,7 @@ package org.python.pydev.ast.codecompletion.revisited;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -21,6 +22,7 @@ import java.util.SortedMap;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.jface.text.IDocument;
 import org.python.pydev.ast.codecompletion.revisited.modules.AbstractModule;
 import org.python.pydev.ast.codecompletion.revisited.modules.CompiledModule;
@@ -43,15 +45,18 @@ import org.python.pydev.core.IterTokenEntry;
 import org.python.pydev.core.MisconfigurationException;
 import org.python.pydev.core.ModulesKey;
 import org.python.pydev.core.TokensList;
+import org.python.pydev.core.cache.CompiledModulesPack;
+import org.python.pydev.core.concurrency.IRunnableWithMonitor;
+import org.python.pydev.core.concurrency.RunnableAsJobsPoolThread;
 import org.python.pydev.core.log.Log;
 import org.python.pydev.parser.PyParser;
 import org.python.pydev.parser.jython.SimpleNode;
 import org.python.pydev.plugin.nature.SystemPythonNature;
+import org.python.pydev.shared_core.SharedCorePlugin;
 import org.python.pydev.shared_core.cache.LRUCache;
 import org.python.pydev.shared_core.io.FileUtils;
 import org.python.pydev.shared_core.parsing.BaseParser.ParseOutput;
 import org.python.pydev.shared_core.string.FastStringBuffer;
-import org.python.pydev.shared_core.string.StringUtils;
 import org.python.pydev.shared_core.structure.Tuple;
 
 /**
@@ -61,6 +66,10 @@ public final class SystemModulesManager extends ModulesManagerWithBuild implemen
 
     private static final String DIR_NAME_FOR_COMPILED_CACHE = "shell";
 
+    private static final String FILE_NAME_FOR_COMPILED_PACK = "compiled_modules.pack";
+
+    private static final String DIR_NAME_FOR_AST_CACHE = "v1_ast_cache";
+
     /**
      * The system modules manager may have a nature if we create a SystemASTManager
      */
@@ -71,6 +80,10 @@ public final class SystemModulesManager extends ModulesManagerWithBuild implemen
      */
     private InterpreterInfo info;
 
+    private transient CompiledModulesPack compiledModulesPack;
+
+    private final Object compiledModulesPackLock = new Object();
+
     public SystemModulesManager(InterpreterInfo info) {
         this.info = info;
     }
@@ -421,11 +434,21 @@ public final class SystemModulesManager extends ModulesManagerWithBuild implemen
         return info.getIoDirectory();
     }
 
+    @Override
+    protected File getAstCacheDir() {
+        File ioDirectory = getIoDirectory();
+        if (ioDirectory == null) {
+            return null;
+        }
+        return new File(ioDirectory, DIR_NAME_FOR_AST_CACHE);
+    }
+
     /**
      * @param keysFound
      */
     public void updateKeysAndSave(PyPublicTreeMap<ModulesKey, ModulesKey> keysFound) {
         synchronized (modulesKeysLock) {
+            clearPendingKeys();
             modulesKeys.clear();
             modulesKeys.putAll(keysFound);
         }
@@ -446,7 +469,8 @@ public final class SystemModulesManager extends ModulesManagerWithBuild implemen
                         for (int i = 0; i < files.length; ++i) {
                             File f = files[i];
 
-                            if (f.isFile()) {
+                            //The pack is cleared below (files there are from the previous format).
+                            if (f.isFile() && !f.getName().equals(FILE_NAME_FOR_COMPILED_PACK)) {
                                 try {
                                     FileUtils.deleteFile(f);
                                 } catch (IOException e) {
@@ -457,41 +481,80 @@ public final class SystemModulesManager extends ModulesManagerWithBuild implemen
                     }
                 }
             }
+            CompiledModulesPack pack = getCompiledModulesPack();
+            if (pack != null) {
+                pack.clear();
+            }
         } catch (Exception e) {
             Log.log(e);
         }
         super.changePythonPath(pythonpath, project, monitor);
+        schedulePrewarmCompiledModules();
     }
 
     /**
-     * Gets the directory where compiled modules should be saved.
+     * Number of compiled modules requested to the shell at once when pre-warming the cache.
      */
-    @Override
-    public File getCompiledModuleCacheFile(String name) {
-        File ioDirectory = getIoDirectory();
-        if (ioDirectory != null) {
-            File d = new File(ioDirectory, DIR_NAME_FOR_COMPILED_CACHE);
-            if (!d.exists()) {
-                d.mkdirs();
-            }
-            int len = name.length();
-            String pre = "";
-            if (len >= 3) {
-                pre = name.substring(0, 3);
+    private static final int PREWARM_BATCH_SIZE = 20;
+
+    public static boolean PREWARM_COMPILED_MODULES = true;
+
+    /**
+     * Fills the cache of compiled modules for the forced builtins in the background (so that the first code
+     * completion requests which need those don't have to wait for the shell).
+     */
+    private void schedulePrewarmCompiledModules() {
+        if (!PREWARM_COMPILED_MODULES || SharedCorePlugin.inTestMode() || this.info == null) {
+            return;
+        }
+        String[] builtins = getBuiltins();
+        if (builtins == null || builtins.length == 0) {
+            return;
+        }
+        final List<String> names = Arrays.asList(builtins);
+        IRunnableWithMonitor runnable = new IRunnableWithMonitor() {
 
-            } else if (len >= 2) {
-                pre = name.substring(0, 2);
+            private IProgressMonitor monitor = new NullProgressMonitor();
 
-            } else if (len >= 1) {
-                pre = name.substring(0, 1);
+            @Override
+            public void run() {
+                try {
+                    int size = names.size();
+                    for (int i = 0; i < size && !monitor.isCanceled(); i += PREWARM_BATCH_SIZE) {
+                        List<String> batch = names.subList(i, Math.min(size, i + PREWARM_BATCH_SIZE));
+                        CompiledModule.prewarmCache(batch, SystemModulesManager.this, monitor);
+                    }
+                } catch (Exception e) {
+                    Log.log(e);
+                }
+            }
 
+            @Override
+            public void setMonitor(IProgressMonitor monitor) {
+                this.monitor = monitor;
             }
+        };
+        RunnableAsJobsPoolThread.getSingleton().scheduleToRun(runnable,
+                "Pre-warm compiled modules for: " + this.info.getName());
+    }
 
-            //Already separate dotted from non dotted (i.e.: top level) modules.
-            String post = name.contains(".") ? ".top" : ".inn";
-            return new File(d, StringUtils.join("", pre, "_", StringUtils.md5(name), post));
+    /**
+     * Gets the pack where compiled modules should be saved.
+     */
+    @Override
+    public CompiledModulesPack getCompiledModulesPack() {
+        synchronized (compiledModulesPackLock) {
+            if (compiledModulesPack == null) {
+                File ioDirectory = getIoDirectory();
+                if (ioDirectory == null) {
+                    return null;
+                }
+                File d = new File(ioDirectory, DIR_NAME_FOR_COMPILED_CACHE);
+                //Shared with the other managers of the same interpreter (i.e.: copies of the interpreter info).
+                compiledModulesPack = CompiledModulesPack.getPack(new File(d, FILE_NAME_FOR_COMPILED_PACK));
+            }
+            return compiledModulesPack;
         }
-        return null;
     }
 
 }
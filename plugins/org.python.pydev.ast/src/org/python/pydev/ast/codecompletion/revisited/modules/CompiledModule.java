@@ -13,14 +13,13 @@ package org.python.pydev.ast.codecompletion.revisited.modules;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
-import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -37,6 +36,7 @@ import org.eclipse.jface.text.Document;
 import org.python.pydev.ast.codecompletion.revisited.CompletionStateFactory;
 import org.python.pydev.ast.codecompletion.revisited.visitors.Definition;
 import org.python.pydev.ast.codecompletion.shell.AbstractShell;
+import org.python.pydev.ast.codecompletion.shell.AbstractShell.ShellReservation;
 import org.python.pydev.core.ExtensionHelper;
 import org.python.pydev.core.ICodeCompletionASTManager;
 import org.python.pydev.core.ICompletionCache;
@@ -52,6 +52,7 @@ import org.python.pydev.core.ModulesKey;
 import org.python.pydev.core.ObjectsInternPool;
 import org.python.pydev.core.PythonNatureWithoutProjectException;
 import org.python.pydev.core.TokensList;
+import org.python.pydev.core.cache.CompiledModulesPack;
 import org.python.pydev.core.concurrency.IRunnableWithMonitor;
 import org.python.pydev.core.concurrency.RunnableAsJobsPoolThread;
 import org.python.pydev.core.log.Log;
@@ -115,6 +116,16 @@ public class CompiledModule extends AbstractModule {
         BUILTIN_REPLACEMENTS.put("str.zfill", "str");
     }
 
+    /**
+     * Modules with this many tokens or less aren't cached (getting them from the shell is fast enough).
+     */
+    private static final int MIN_TOKENS_TO_CACHE = 10;
+
+    /**
+     * Stored in the cache for the modules which were gotten in a prewarm but weren't cached.
+     */
+    private static final byte[] NOT_CACHED = new byte[0];
+
     /**
      * These are the tokens the compiled module has.
      */
@@ -203,12 +214,12 @@ public class CompiledModule extends AbstractModule {
     }
 
     /**
-     * @return the file to be used to write/read the cache.
+     * @return the pack to be used to write/read the cache.
      */
-    private static File getCacheFile(String name, IModulesManager manager) {
+    private static CompiledModulesPack getCachePack(IModulesManager manager) {
         if (manager instanceof ISystemModulesManager) {
             ISystemModulesManager systemModulesManager = (ISystemModulesManager) manager;
-            return systemModulesManager.getCompiledModuleCacheFile(name);
+            return systemModulesManager.getCompiledModulesPack();
         }
         return null;
     }
@@ -218,11 +229,11 @@ public class CompiledModule extends AbstractModule {
      */
     private static void updateCache(final String name, IModulesManager manager, final Tuple<File, IToken[]> info) {
         try {
-            if (info != null && info.o2 != null && info.o2.length > 10) { //Don't cache anything less than 10 tokens.
-                File f = getCacheFile(name, manager);
+            if (info != null && info.o2 != null && info.o2.length > MIN_TOKENS_TO_CACHE) {
+                CompiledModulesPack pack = getCachePack(manager);
 
                 //Only cache modules that are in the system modules manager.
-                if (f == null && !(manager instanceof ISystemModulesManager)) {
+                if (pack == null && !(manager instanceof ISystemModulesManager)) {
                     ISystemModulesManager systemModulesManager = manager.getSystemModulesManager();
                     manager = null; //i.e.: just making sure it won't be used later on...
 
@@ -230,52 +241,51 @@ public class CompiledModule extends AbstractModule {
                     //a project we don't cache it for now).
                     for (String part : new FullRepIterable(name)) {
                         if (systemModulesManager.hasModule(new ModulesKey(part, null))) {
-                            f = getCacheFile(name, systemModulesManager);
+                            pack = getCachePack(systemModulesManager);
                             break;
                         }
                         if (!part.contains(".")) {
                             part += ".__init__";
                             if (systemModulesManager.hasModule(new ModulesKey(part, null))) {
-                                f = getCacheFile(name, systemModulesManager);
+                                pack = getCachePack(systemModulesManager);
                                 break;
                             }
                         }
                     }
                 }
 
-                if (f != null) {
-                    final File cacheFile = f;
+                if (pack != null) {
+                    final CompiledModulesPack cachePack = pack;
                     IRunnableWithMonitor runnable = new IRunnableWithMonitor() {
 
                         @Override
                         public void run() {
-                            try (OutputStream out = new FileOutputStream(cacheFile)) {
-                                try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
-                                    try (BufferedOutputStream buf = new BufferedOutputStream(gzip)) {
-                                        try (ObjectOutputStream stream = new ObjectOutputStream(buf)) {
-                                            stream.writeObject(name);
-                                            stream.writeObject(info.o1);
-
-                                            IToken[] toks = info.o2;
-                                            int size = toks.length;
-                                            stream.writeInt(size);
-
-                                            //Write in 2 batches (leave the docstring in a separate batch as it's usually
-                                            //the big part of the info -- that way we can partially read it without reading
-                                            //the docstrings later on).
-                                            for (int i = 0; i < size; i++) {
-                                                IToken tok = toks[i];
-                                                stream.writeObject(tok.getRepresentation());
-                                                stream.writeInt(tok.getType());
-                                                stream.writeObject(tok.getArgs());
-                                                stream.writeObject(tok.getParentPackage());
-                                            }
-                                            for (int i = 0; i < size; i++) {
-                                                stream.writeObject(toks[i].getDocStr());
-                                            }
-                                        }
+                            ByteArrayOutputStream out = new ByteArrayOutputStream();
+                            try {
+                                try (ObjectOutputStream stream = new ObjectOutputStream(
+                                        new BufferedOutputStream(new GZIPOutputStream(out)))) {
+                                    stream.writeObject(name);
+                                    stream.writeObject(info.o1);
+
+                                    IToken[] toks = info.o2;
+                                    int size = toks.length;
+                                    stream.writeInt(size);
+
+                                    //Write in 2 batches (leave the docstring in a separate batch as it's usually
+                                    //the big part of the info -- that way we can partially read it without reading
+                                    //the docstrings later on).
+                                    for (int i = 0; i < size; i++) {
+                                        IToken tok = toks[i];
+                                        stream.writeObject(tok.getRepresentation());
+                                        stream.writeInt(tok.getType());
+                                        stream.writeObject(tok.getArgs());
+                                        stream.writeObject(tok.getParentPackage());
+                                    }
+                                    for (int i = 0; i < size; i++) {
+                                        stream.writeObject(toks[i].getDocStr());
                                     }
                                 }
+                                cachePack.put(name, info.o1, out.toByteArray());
                             } catch (Exception e) {
                                 Log.log(e);
                             }
@@ -298,14 +308,15 @@ public class CompiledModule extends AbstractModule {
      */
     private static Tuple<File, IToken[]> getCached(String name, IModulesManager manager) {
         ISystemModulesManager systemModulesManager = manager.getSystemModulesManager();
-        File f = getCacheFile(name, systemModulesManager);
+        CompiledModulesPack pack = getCachePack(systemModulesManager);
+        byte[] bytes = pack != null ? pack.get(name) : null;
 
-        if (f != null && f.exists()) {
+        if (bytes != null && bytes.length > 0) { //Empty: NOT_CACHED.
             try {
                 IToken[] toks = null;
                 File file = null;
-                try (FileInputStream fin = new FileInputStream(f)) {
-                    try (InputStream in = new BufferedInputStream(new GZIPInputStream(fin))) {
+                try (ByteArrayInputStream bin = new ByteArrayInputStream(bytes)) {
+                    try (InputStream in = new BufferedInputStream(new GZIPInputStream(bin))) {
                         try (ObjectInputStream stream = new ObjectInputStream(in)) {
                             ObjectsInternPool.ObjectsPoolMap map = new ObjectsInternPool.ObjectsPoolMap();
                             @SuppressWarnings("unused")
@@ -331,7 +342,7 @@ public class CompiledModule extends AbstractModule {
                 }
                 return new Tuple<File, IToken[]>(file, toks);
             } catch (Exception e) {
-                Log.log("Unable to read contents from: " + f, e); //Unable to read: just log it
+                Log.log("Unable to read contents of: " + name + " from: " + pack.getFile(), e); //Just log it
             }
         }
         return null;
@@ -341,9 +352,12 @@ public class CompiledModule extends AbstractModule {
             String act,
             String tokenToCompletion) throws Exception, MisconfigurationException, PythonNatureWithoutProjectException {
         IToken[] toks;
-        AbstractShell shell = AbstractShell.getServerShell(nature, CompletionProposalFactory.get().getShellId());
-        List<String[]> completions = shell.getImportCompletions(tokenToCompletion,
-                getCompletePythonpath(manager.getModulesManager(), nature)).o2;
+        List<String[]> completions;
+        try (ShellReservation reservation = AbstractShell.reserveServerShell(nature,
+                CompletionProposalFactory.get().getShellId())) {
+            completions = reservation.shell.getImportCompletions(tokenToCompletion,
+                    getCompletePythonpath(manager.getModulesManager(), nature)).o2;
+        }
 
         List<IToken> lst = new ArrayList<IToken>();
 
@@ -372,10 +386,67 @@ public class CompiledModule extends AbstractModule {
             Log.log(IStatus.INFO, ("Compiled modules: getting info for:" + name), null);
         }
         final IPythonNature nature = manager.getNature();
-        AbstractShell shell = AbstractShell.getServerShell(nature, AbstractShell.getShellId());
-        Tuple<String, List<String[]>> completions = shell.getImportCompletions(name,
-                getCompletePythonpath(manager, nature)); //default
+        Tuple<String, List<String[]>> completions;
+        try (ShellReservation reservation = AbstractShell.reserveServerShell(nature, AbstractShell.getShellId())) {
+            completions = reservation.shell.getImportCompletions(name,
+                    getCompletePythonpath(manager, nature)); //default
+        }
+        return createTokensFromCompletions(name, completions, nature);
+    }
+
+    /**
+     * Gets the info for the given modules from the shell with a single request and writes it to the cache of
+     * compiled modules (the modules which are already in the cache are skipped).
+     *
+     * @return the number of modules whose info was gotten from the shell.
+     */
+    public static int prewarmCache(List<String> names, ISystemModulesManager manager, IProgressMonitor monitor)
+            throws Exception {
+        if (!COMPILED_MODULES_ENABLED) {
+            return 0;
+        }
+        CompiledModulesPack pack = getCachePack(manager);
+        if (pack == null) {
+            return 0;
+        }
+        List<String> missing = new ArrayList<String>(names.size());
+        for (String name : names) {
+            if (!pack.contains(name)) {
+                missing.add(name);
+            }
+        }
+        if (missing.isEmpty() || monitor.isCanceled()) {
+            return 0;
+        }
+        IPythonNature nature = manager.getNature();
+        List<Tuple<String, List<String[]>>> results;
+        try (ShellReservation reservation = AbstractShell.reserveServerShell(nature, AbstractShell.getShellId())) {
+            results = reservation.shell.getImportCompletionsBatch(missing, getCompletePythonpath(manager, nature));
+        }
+        if (results == null) {
+            return 0;
+        }
+        int size = results.size();
+        for (int i = 0; i < size; i++) {
+            String name = missing.get(i);
+            synchronized (manager.getCompiledModuleCreationLock(name)) {
+                //Someone may have created it in the meantime.
+                if (!pack.contains(name)) {
+                    Tuple<File, IToken[]> info = createTokensFromCompletions(name, results.get(i), nature);
+                    if (info.o2 != null && info.o2.length > MIN_TOKENS_TO_CACHE) {
+                        updateCache(name, manager, info);
+                    } else {
+                        //Not worth caching, but mark it so that it's not requested again in the next prewarm.
+                        pack.put(name, info.o1, NOT_CACHED);
+                    }
+                }
+            }
+        }
+        return size;
+    }
 
+    private static Tuple<File, IToken[]> createTokensFromCompletions(String name,
+            Tuple<String, List<String[]>> completions, final IPythonNature nature) {
         if (TRACE_COMPILED_MODULES) {
             Log.log(IStatus.INFO, ("Compiled modules: " + name + " file: " + completions.o1 + " found: "
                     + completions.o2.size() + " completions."), null);
@@ -607,9 +678,12 @@ public class CompiledModule extends AbstractModule {
             return found;
         }
 
-        AbstractShell shell = AbstractShell.getServerShell(nature, AbstractShell.getShellId());
-        Tuple<String[], int[]> def = shell.getLineCol(this.name, token, nature.getAstManager().getModulesManager()
-                .getCompletePythonPath(nature.getProjectInterpreter(), nature.getRelatedInterpreterManager())); //default
+        Tuple<String[], int[]> def;
+        try (ShellReservation reservation = AbstractShell.reserveServerShell(nature, AbstractShell.getShellId())) {
+            def = reservation.shell.getLineCol(this.name, token, nature.getAstManager().getModulesManager()
+                    .getCompletePythonPath(nature.getProjectInterpreter(),
+                            nature.getRelatedInterpreterManager())); //default
+        }
         if (def == null) {
             if (TRACE_COMPILED_MODULES) {
                 System.out.println("CompiledModule.findDefinition:" + token + " = empty");
@@ -916,6 +916,7 @@ public class SourceModule extends AbstractModule implements ISourceModule {
                         //see: http://sourceforge.net/tracker/?func=detail&aid=2992629&group_id=85796&atid=577329
                         int dotsFound = StringUtils.count(checkFor, '.');
                         if (dotsFound > 15) {
+                            state.addCutOff();
                             throw new CompletionRecursionException("Trying to go to deep to find definition.\n"
                                     + "We probably started entering a recursion.\n" + "Module: "
                                     + definition.module.getName() + "\n" + "Token: " + checkFor);
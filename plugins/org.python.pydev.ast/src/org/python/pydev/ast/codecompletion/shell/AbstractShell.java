@@ -19,8 +19,13 @@ import java.net.SocketTimeoutException;
 import java.net.URLEncoder;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -39,6 +44,7 @@ import org.python.pydev.core.log.Log;
 import org.python.pydev.core.logging.DebugSettings;
 import org.python.pydev.core.proposals.CompletionProposalFactory;
 import org.python.pydev.shared_core.SharedCorePlugin;
+import org.python.pydev.shared_core.callbacks.ICallback;
 import org.python.pydev.shared_core.io.FileUtils;
 import org.python.pydev.shared_core.net.SocketUtil;
 import org.python.pydev.shared_core.string.FastStringBuffer;
@@ -63,8 +69,24 @@ public abstract class AbstractShell {
 
     public static final int OTHER_THREADS_SHELL = 2;
 
+    /**
+     * The requests from other threads may be distributed among up to this number of shells (the additional shells
+     * have ids starting at POOLED_SHELLS_BASE_ID + 1).
+     *
+     * @see PyCodeCompletionPreferences#getNumberOfShellsForOtherThreads()
+     */
+    public static final int MAX_SHELLS_FOR_OTHER_THREADS = 8;
+
+    /*default*/static final int POOLED_SHELLS_BASE_ID = 100;
+
     public static int[] getAllShellIds() {
-        return new int[] { MAIN_THREAD_SHELL, OTHER_THREADS_SHELL };
+        int[] ret = new int[MAX_SHELLS_FOR_OTHER_THREADS + 1];
+        ret[0] = MAIN_THREAD_SHELL;
+        ret[1] = OTHER_THREADS_SHELL;
+        for (int i = 1; i < MAX_SHELLS_FOR_OTHER_THREADS; i++) {
+            ret[i + 1] = POOLED_SHELLS_BASE_ID + i;
+        }
+        return ret;
     }
 
     public static int getShellId() {
@@ -103,6 +125,15 @@ public abstract class AbstractShell {
 
     private final Object ioLock = new Object();
 
+    /**
+     * The number of requests using or waiting to use this shell.
+     */
+    private final AtomicInteger pendingRequests = new AtomicInteger();
+
+    private static final AtomicLong totalRequests = new AtomicLong();
+    private static final AtomicLong totalQueueingNanos = new AtomicLong();
+    private static final AtomicLong maxQueueingNanos = new AtomicLong();
+
     private static void dbg(String string, int priority) {
         if (priority <= DEBUG_SHELL) {
             System.out.println(string);
@@ -223,6 +254,15 @@ public abstract class AbstractShell {
         return ShellsContainer.getServerShell(nature, id);
     }
 
+    /**
+     * Same as getServerShell, but if the shell is chosen among the pooled shells, it's reserved until the returned
+     * reservation is closed (so, it must be used in a try-with-resources).
+     */
+    public static ShellReservation reserveServerShell(IPythonNature nature, int id) throws IOException,
+            JDTNotAvailableException, CoreException, MisconfigurationException, PythonNatureWithoutProjectException {
+        return ShellsContainer.reserveServerShell(nature, id);
+    }
+
     /**
      * This method creates the python server process and starts the sockets, so that we
      * can talk with the server.
@@ -415,6 +455,29 @@ public abstract class AbstractShell {
     protected abstract ProcessCreationInfo createServerProcess(IInterpreterInfo interpreter, int port)
             throws IOException, JDTNotAvailableException, MisconfigurationException;
 
+    private void checkValidStateToRead() {
+        if (finishedForGood) {
+            throw new RuntimeException(
+                    "Shells are already finished for good, so, it is an invalid state to try to read from it.");
+        }
+        if (inStart) {
+            throw new RuntimeException(
+                    "The shell is still not completely started, so, it is an invalid state to try to read from it.");
+        }
+        if (!isConnected) {
+            throw new RuntimeException(
+                    "The shell is still not connected, so, it is an invalid state to try to read from it.");
+        }
+        if (isInRead) {
+            throw new RuntimeException(
+                    "The shell is already in read mode, so, it is an invalid state to try to read from it.");
+        }
+        if (isInWrite) {
+            throw new RuntimeException(
+                    "The shell is already in write mode, so, it is an invalid state to try to read from it.");
+        }
+    }
+
     /**
      * @param operation
      * @return
@@ -422,27 +485,7 @@ public abstract class AbstractShell {
      */
     private FastStringBuffer read(IProgressMonitor monitor) throws IOException {
         synchronized (ioLock) {
-
-            if (finishedForGood) {
-                throw new RuntimeException(
-                        "Shells are already finished for good, so, it is an invalid state to try to read from it.");
-            }
-            if (inStart) {
-                throw new RuntimeException(
-                        "The shell is still not completely started, so, it is an invalid state to try to read from it.");
-            }
-            if (!isConnected) {
-                throw new RuntimeException(
-                        "The shell is still not connected, so, it is an invalid state to try to read from it.");
-            }
-            if (isInRead) {
-                throw new RuntimeException(
-                        "The shell is already in read mode, so, it is an invalid state to try to read from it.");
-            }
-            if (isInWrite) {
-                throw new RuntimeException(
-                        "The shell is already in write mode, so, it is an invalid state to try to read from it.");
-            }
+            checkValidStateToRead();
 
             isInRead = true;
 
@@ -499,6 +542,71 @@ public abstract class AbstractShell {
         }
     }
 
+    private static final byte[] END_BYTES = "END@@".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * @return the index of the given pattern in buf[from:len] or -1 if not found.
+     */
+    private static int indexOf(byte[] buf, int len, byte[] pattern, int from) {
+        int last = len - pattern.length;
+        for (int i = from; i <= last; i++) {
+            int j = 0;
+            while (j < pattern.length && buf[i + j] == pattern[j]) {
+                j++;
+            }
+            if (j == pattern.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reads the given number of messages (each one ended with END@@ and without the @@COMPLETIONS prefix), which
+     * are passed to the collector as soon as each one is received.
+     */
+    private void readMessages(int count, ICallback<Object, FastStringBuffer> collector) throws IOException {
+        synchronized (ioLock) {
+            checkValidStateToRead();
+            isInRead = true;
+
+            try {
+                //The bytes are only decoded when a message is complete (a chunk may end in the middle of a char).
+                byte[] buf = new byte[AbstractShell.BUFFER_SIZE];
+                int bufLen = 0;
+                int searchFrom = 0;
+                int found = 0;
+                while (found < count) {
+                    int endIndex = indexOf(buf, bufLen, END_BYTES, searchFrom);
+                    if (endIndex == -1) {
+                        if (bufLen == buf.length) {
+                            buf = Arrays.copyOf(buf, buf.length * 2);
+                        }
+                        int len = this.socket.getInputStream().read(buf, bufLen, buf.length - bufLen);
+                        if (len <= 0) {
+                            throw new IOException("Connection closed with " + found + " of " + count
+                                    + " messages read.");
+                        }
+                        searchFrom = Math.max(0, bufLen - END_BYTES.length);
+                        bufLen += len;
+                        continue;
+                    }
+                    FastStringBuffer message = new FastStringBuffer(
+                            new String(buf, 0, endIndex, StandardCharsets.UTF_8), 0);
+                    message.replaceFirst("@@COMPLETIONS", "");
+                    int next = endIndex + END_BYTES.length;
+                    System.arraycopy(buf, next, buf, 0, bufLen - next);
+                    bufLen -= next;
+                    searchFrom = 0;
+                    found++;
+                    collector.call(message);
+                }
+            } finally {
+                isInRead = false;
+            }
+        }
+    }
+
     /**
      * @return s string with the contents read.
      * @throws IOException
@@ -663,10 +771,120 @@ public abstract class AbstractShell {
         }
     }
 
+    /**
+     * @return the number of requests using or waiting to use this shell.
+     */
+    public int getPendingRequests() {
+        return pendingRequests.get();
+    }
+
+    /**
+     * A shell chosen for some request(s). While it's not closed, it's counted as a pending request of the shell (so
+     * that other threads choose another shell among the pooled shells).
+     */
+    public static final class ShellReservation implements AutoCloseable {
+
+        public final AbstractShell shell;
+        private final AtomicBoolean reserved;
+
+        private ShellReservation(AbstractShell shell, boolean reserved) {
+            this.shell = shell;
+            this.reserved = new AtomicBoolean(reserved);
+        }
+
+        @Override
+        public void close() {
+            if (reserved.compareAndSet(true, false)) {
+                shell.pendingRequests.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Reserves the given shell: it's counted as a pending request (so that other threads choose another shell)
+     * until the returned reservation is closed.
+     *
+     * Must be called with the shells lock held (when the shell is chosen).
+     */
+    /*default*/static ShellReservation reserve(AbstractShell shell) {
+        shell.pendingRequests.incrementAndGet();
+        return new ShellReservation(shell, true);
+    }
+
+    /**
+     * @return a reservation which doesn't count as a pending request of the shell.
+     */
+    /*default*/static ShellReservation notReserved(AbstractShell shell) {
+        return new ShellReservation(shell, false);
+    }
+
+    /**
+     * Restarts the shell if its process is no longer alive (after the request currently using it finishes).
+     */
+    /*default*/void restartIfNotHealthy(IInterpreterInfo interpreter)
+            throws IOException, JDTNotAvailableException, CoreException, MisconfigurationException {
+        semaphore.acquire();
+        try {
+            if (!isHealthy()) {
+                Log.log("Restarting shell which is not alive. Interpreter: " + interpreter.getExecutableOrJar());
+                endIt();
+                startIt(interpreter);
+            }
+        } finally {
+            semaphore.release();
+        }
+    }
+
+    /**
+     * @return whether the shell process is alive and connected (or still being started/restarted).
+     */
+    public boolean isHealthy() {
+        if (inStart || isInRestart) {
+            return true;
+        }
+        ProcessCreationInfo p = process;
+        if (!isConnected || p == null) {
+            return false;
+        }
+        try {
+            p.exitValue();
+            return false; //the process already exited
+        } catch (IllegalThreadStateException e) {
+            return true; //still running
+        }
+    }
+
+    /**
+     * @return a string with the number of requests done to the shells and the time they waited for a shell to be
+     * available.
+     */
+    public static String getQueueingStatistics() {
+        long requests = totalRequests.get();
+        long totalMillis = totalQueueingNanos.get() / 1000000;
+        return StringUtils.format("Shell requests: %s - total queueing: %sms - average: %sms - max: %sms", requests,
+                totalMillis, requests > 0 ? totalMillis / requests : 0, maxQueueingNanos.get() / 1000000);
+    }
+
+    private static void addQueueingTime(long nanos, String msg) {
+        totalRequests.incrementAndGet();
+        totalQueueingNanos.addAndGet(nanos);
+        long max = maxQueueingNanos.get();
+        while (nanos > max && !maxQueueingNanos.compareAndSet(max, nanos)) {
+            max = maxQueueingNanos.get();
+        }
+        if (DebugSettings.DEBUG_CODE_COMPLETION) {
+            org.python.pydev.shared_core.log.ToLogFile.toLogFile(
+                    "Waited " + (nanos / 1000000) + "ms for shell to: " + msg, AbstractShell.class);
+        }
+    }
+
     @SuppressWarnings("unused")
-    private AutoCloseable acquire(String msg) {
+    /*default*/AutoCloseable acquire(String msg) {
         final Timer timer = new Timer();
+        pendingRequests.incrementAndGet();
+        long initialNanos = System.nanoTime();
         semaphore.acquire();
+        addQueueingTime(System.nanoTime() - initialNanos, msg);
         if (DEBUG_SHELL >= 1) {
             String name = Thread.currentThread().getName();
             msg += " (" + name + ")";
@@ -681,6 +899,7 @@ public abstract class AbstractShell {
                     timer.printDiff("-- Time to execute: " + s);
                 }
                 semaphore.release();
+                pendingRequests.decrementAndGet();
             }
         };
     }
@@ -759,6 +978,57 @@ public abstract class AbstractShell {
         return ShellConvert.convertStringToCompletions(read);
     }
 
+    /**
+     * Gets the completions for the given modules with a single request to the shell (the shell sends the results of
+     * each module as soon as it has them).
+     *
+     * @return a list with the same size of the passed modules with the file and completions for each module (or null
+     * if it wasn't possible to get the results).
+     */
+    public List<Tuple<String, List<String[]>>> getImportCompletionsBatch(List<String> modules,
+            List<String> pythonpath) throws Exception {
+        final List<Tuple<String, List<String[]>>> ret = new ArrayList<Tuple<String, List<String[]>>>(modules.size());
+        if (modules.isEmpty()) {
+            return ret;
+        }
+        String str = URLEncoder.encode(StringUtils.join("|", modules), ENCODING_UTF_8);
+
+        try (AutoCloseable permit = acquire(StringUtils.join("", "getImportCompletionsBatch: ", modules.size()))) {
+            internalChangePythonPath(pythonpath);
+            try {
+                synchronized (ioLock) {
+                    this.write(StringUtils.join("", "@@IMPORTS_BATCH:", str, "\nEND@@"));
+                    readMessages(modules.size(), new ICallback<Object, FastStringBuffer>() {
+
+                        @Override
+                        public Object call(FastStringBuffer message) {
+                            try {
+                                ret.add(ShellConvert.convertStringToCompletions(message));
+                            } catch (IOException e) {
+                                throw new RuntimeException(e);
+                            }
+                            return null;
+                        }
+                    });
+                }
+            } catch (Exception e) {
+                String message = "ERROR reading shell batch for: " + StringUtils.join(", ", modules) + "\n";
+                if (process != null) {
+                    message += "\n" + process.getProcessLog();
+                }
+                Log.log(IStatus.ERROR, message, e);
+
+                restartShell();
+                return null;
+            } finally {
+                if (process != null) {
+                    process.clearOutput();
+                }
+            }
+        }
+        return ret;
+    }
+
     /**
      * @param moduleName the name of the module where the token is defined
      * @param token the token we are looking for
@@ -7,7 +7,9 @@ import java.util.Map;
 
 import org.eclipse.core.runtime.CoreException;
 import org.python.copiedfromeclipsesrc.JDTNotAvailableException;
+import org.python.pydev.ast.codecompletion.PyCodeCompletionPreferences;
 import org.python.pydev.ast.codecompletion.revisited.ModulesManager;
+import org.python.pydev.ast.codecompletion.shell.AbstractShell.ShellReservation;
 import org.python.pydev.ast.interpreter_managers.InterpreterManagersAPI;
 import org.python.pydev.core.IInterpreterInfo;
 import org.python.pydev.core.IInterpreterManager;
@@ -28,7 +30,7 @@ public class ShellsContainer {
      * and then we have the id with the shell type that points to the actual shell
      *
      * @see #MAIN_THREAD_SHELL
-     * @see #OTHER_THREADS_SHELL
+     * @see #OTHER_THREADS_SHELL (requests with this id may be distributed among a pool of shells)
      */
     private static Map<String, Map<Integer, AbstractShell>> shells = new HashMap<String, Map<Integer, AbstractShell>>();
 
@@ -141,6 +143,41 @@ public class ShellsContainer {
         }
     }
 
+    /**
+     * Chooses the shell to be used by a request from a thread which is not the main thread: an idle shell is
+     * preferred, then a new shell (if there are less shells than configured) and at last the shell with less
+     * requests pending.
+     *
+     * Must be called with the shells lock held (and the shell chosen must be reserved before releasing it).
+     *
+     * @return the id of the shell chosen.
+     */
+    /*default*/static int chooseShellIdForOtherThreads(Map<Integer, AbstractShell> typeToShell,
+            int shellsForOtherThreads) {
+        int notCreatedId = -1;
+        int leastBusyId = AbstractShell.OTHER_THREADS_SHELL;
+        int leastPending = Integer.MAX_VALUE;
+        for (int i = 0; i < shellsForOtherThreads; i++) {
+            int id = i == 0 ? AbstractShell.OTHER_THREADS_SHELL : AbstractShell.POOLED_SHELLS_BASE_ID + i;
+            AbstractShell shell = typeToShell.get(id);
+            if (shell == null) {
+                if (notCreatedId == -1) {
+                    notCreatedId = id;
+                }
+                continue;
+            }
+            int pending = shell.getPendingRequests();
+            if (pending == 0) {
+                return id;
+            }
+            if (pending < leastPending) {
+                leastPending = pending;
+                leastBusyId = id;
+            }
+        }
+        return notCreatedId != -1 ? notCreatedId : leastBusyId;
+    }
+
     /**
      * register a shell and give it an id
      *
@@ -164,7 +201,16 @@ public class ShellsContainer {
 
     public static AbstractShell getServerShell(IPythonNature nature, int id) throws IOException,
             JDTNotAvailableException, CoreException, MisconfigurationException, PythonNatureWithoutProjectException {
-        return getServerShell(nature.getProjectInterpreter(), nature.getInterpreterType(), id);
+        return getServerShell(nature.getProjectInterpreter(), nature.getInterpreterType(), id, false).shell;
+    }
+
+    /**
+     * Same as getServerShell, but if the shell is chosen among the pooled shells, it's reserved until the returned
+     * reservation is closed.
+     */
+    public static ShellReservation reserveServerShell(IPythonNature nature, int id) throws IOException,
+            JDTNotAvailableException, CoreException, MisconfigurationException, PythonNatureWithoutProjectException {
+        return getServerShell(nature.getProjectInterpreter(), nature.getInterpreterType(), id, true);
     }
 
     /**
@@ -178,15 +224,19 @@ public class ShellsContainer {
      * @see #MAIN_THREAD_SHELL
      * @see #OTHER_THREADS_SHELL
      *
+     * @param reserve whether a shell chosen among the pooled shells should be reserved
+     *
      * @return the shell with the given id related to some nature
      *
      * @throws CoreException
      * @throws IOException
      * @throws MisconfigurationException
      */
-    private static AbstractShell getServerShell(IInterpreterInfo interpreter, int relatedTo, int id)
-            throws IOException, JDTNotAvailableException, CoreException, MisconfigurationException {
+    private static ShellReservation getServerShell(IInterpreterInfo interpreter, int relatedTo, int id,
+            boolean reserve) throws IOException, JDTNotAvailableException, CoreException, MisconfigurationException {
         AbstractShell pythonShell = null;
+        ShellReservation reservation;
+        boolean restart = false;
         synchronized (shells) {
             if (DebugSettings.DEBUG_CODE_COMPLETION) {
                 org.python.pydev.shared_core.log.ToLogFile.toLogFile("Synchronizing on shells...", AbstractShell.class);
@@ -210,8 +260,20 @@ public class ShellsContainer {
                         AbstractShell.class);
             }
             Map<Integer, AbstractShell> typeToShell = getTypeToShellFromId(interpreter);
+            boolean pooled = false;
+            if (id == AbstractShell.OTHER_THREADS_SHELL) {
+                int shellsForOtherThreads = PyCodeCompletionPreferences.getNumberOfShellsForOtherThreads();
+                if (shellsForOtherThreads > 1) {
+                    id = chooseShellIdForOtherThreads(typeToShell, shellsForOtherThreads);
+                    pooled = true;
+                }
+            }
             pythonShell = typeToShell.get(id);
 
+            //i.e.: the process died: it's restarted (in the same shell) outside of the lock. If some request is
+            //using it, that request will restart it.
+            restart = pythonShell != null && !pythonShell.isHealthy() && pythonShell.getPendingRequests() == 0;
+
             if (pythonShell == null) {
                 if (DebugSettings.DEBUG_CODE_COMPLETION) {
                     org.python.pydev.shared_core.log.ToLogFile.toLogFile("pythonShell == null", AbstractShell.class);
@@ -242,9 +304,25 @@ public class ShellsContainer {
                 //then make it accessible
                 typeToShell.put(id, pythonShell);
             }
-
+            if (pooled && reserve) {
+                //Reserved while still in the lock so that other threads don't choose it as an idle shell.
+                reservation = AbstractShell.reserve(pythonShell);
+            } else {
+                reservation = AbstractShell.notReserved(pythonShell);
+            }
+        }
+        if (restart) {
+            boolean restarted = false;
+            try {
+                pythonShell.restartIfNotHealthy(interpreter);
+                restarted = true;
+            } finally {
+                if (!restarted) {
+                    reservation.close();
+                }
+            }
         }
-        return pythonShell;
+        return reservation;
     }
 
 }
@@ -0,0 +1,301 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.ast.formatter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jface.text.Document;
+import org.python.pydev.ast.codecompletion.revisited.PythonPathHelper;
+import org.python.pydev.ast.listing_utils.PyFileListing;
+import org.python.pydev.ast.listing_utils.PyFileListing.IPyFileListingFilter;
+import org.python.pydev.ast.listing_utils.PyFileListing.PyFileInfo;
+import org.python.pydev.core.IPythonNature;
+import org.python.pydev.core.docutils.PySelection;
+import org.python.pydev.core.docutils.SyntaxErrorException;
+import org.python.pydev.core.formatter.FormatStd;
+import org.python.pydev.core.log.Log;
+import org.python.pydev.shared_core.io.FileUtils;
+
+/**
+ * Formats many files at once (outside of editors), using all the available cores.
+ *
+ * The contents are formatted in parallel (with the PyDev formatter, autopep8 or black -- as specified in the
+ * FormatStd of each request) and only the files whose contents actually changed are reported as formatted
+ * (so, only those need to be written).
+ */
+public final class PyBatchFormatter {
+
+    public static enum Status {
+        UNCHANGED, FORMATTED, SYNTAX_ERROR, ERROR, CANCELLED
+    }
+
+    /**
+     * The contents to be formatted along with the information on how to format it.
+     */
+    public static class FormatRequest {
+
+        /**
+         * Used for reporting (i.e.: the file path).
+         */
+        public final String name;
+        public final String contents;
+        public final FormatStd formatStd;
+
+        /**
+         * May be null (used for formatting with black).
+         */
+        public final IPythonNature nature;
+
+        /**
+         * May be null (used for formatting with black).
+         */
+        public final File workingDir;
+
+        public FormatRequest(String name, String contents, FormatStd formatStd, IPythonNature nature,
+                File workingDir) {
+            this.name = name;
+            this.contents = contents;
+            this.formatStd = formatStd;
+            this.nature = nature;
+            this.workingDir = workingDir;
+        }
+    }
+
+    public static final class FormatResult {
+
+        public final FormatRequest request;
+        public final Status status;
+
+        /**
+         * Only available if the status is FORMATTED.
+         */
+        public final String formatted;
+
+        public final long nanos;
+
+        public FormatResult(FormatRequest request, Status status, String formatted, long nanos) {
+            this.request = request;
+            this.status = status;
+            this.formatted = formatted;
+            this.nanos = nanos;
+        }
+    }
+
+    /**
+     * A request for a file in the filesystem (which is written back when formatted).
+     */
+    private static final class FileFormatRequest extends FormatRequest {
+
+        private final File file;
+        private final String encoding;
+
+        private FileFormatRequest(File file, String contents, String encoding, FormatStd formatStd) {
+            super(file.toString(), contents, formatStd, null, file.getParentFile());
+            this.file = file;
+            this.encoding = encoding;
+        }
+    }
+
+    private static ExecutorService formatExecutor;
+
+    private PyBatchFormatter() {
+    }
+
+    /**
+     * @return the executor used to format the contents in parallel.
+     */
+    private static synchronized ExecutorService getFormatExecutor() {
+        if (formatExecutor == null) {
+            int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+            formatExecutor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "PyBatchFormatter: format");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return formatExecutor;
+    }
+
+    /**
+     * Formats the given contents (in the current thread).
+     */
+    public static FormatResult format(FormatRequest request) {
+        long initial = System.nanoTime();
+        Document doc = new Document(request.contents);
+        String delimiter = PySelection.getDelimiter(doc);
+        try {
+            String formatted = PyFormatter.formatStrAutopep8OrPyDev(request.nature, request.formatStd, true, doc,
+                    delimiter, true, request.workingDir, true);
+            if (formatted == null) {
+                //autopep8/black failed (the error was already logged).
+                return new FormatResult(request, Status.ERROR, null, System.nanoTime() - initial);
+            }
+            if (formatted.equals(request.contents)) {
+                return new FormatResult(request, Status.UNCHANGED, null, System.nanoTime() - initial);
+            }
+            return new FormatResult(request, Status.FORMATTED, formatted, System.nanoTime() - initial);
+        } catch (SyntaxErrorException e) {
+            return new FormatResult(request, Status.SYNTAX_ERROR, null, System.nanoTime() - initial);
+        } catch (Exception e) {
+            Log.log("Error formatting: " + request.name, e);
+            return new FormatResult(request, Status.ERROR, null, System.nanoTime() - initial);
+        }
+    }
+
+    /**
+     * Formats the given contents in parallel.
+     *
+     * @return the results (in the same order of the requests).
+     */
+    public static List<FormatResult> format(List<? extends FormatRequest> requests, final IProgressMonitor monitor) {
+        // Progress monitors are not thread-safe: the workers only check for cancellation.
+        final IProgressMonitor workersMonitor = new NullProgressMonitor() {
+            @Override
+            public boolean isCanceled() {
+                return monitor.isCanceled();
+            }
+        };
+
+        List<Future<FormatResult>> futures = new ArrayList<>(requests.size());
+        ExecutorService executor = getFormatExecutor();
+        for (final FormatRequest request : requests) {
+            futures.add(executor.submit(new Callable<FormatResult>() {
+
+                @Override
+                public FormatResult call() throws Exception {
+                    if (workersMonitor.isCanceled()) {
+                        return new FormatResult(request, Status.CANCELLED, null, 0);
+                    }
+                    return format(request);
+                }
+            }));
+        }
+
+        List<FormatResult> ret = new ArrayList<>(futures.size());
+        for (int i = 0; i < futures.size(); i++) {
+            FormatRequest request = requests.get(i);
+            FormatResult result;
+            try {
+                result = futures.get(i).get();
+            } catch (InterruptedException e) {
+                result = new FormatResult(request, Status.CANCELLED, null, 0);
+            } catch (ExecutionException e) {
+                Log.log("Error formatting: " + request.name, e);
+                result = new FormatResult(request, Status.ERROR, null, 0);
+            }
+            monitor.setTaskName("Formatted: " + request.name);
+            monitor.worked(1);
+            ret.add(result);
+        }
+        return ret;
+    }
+
+    /**
+     * @return the python files found in the given files/folders (recursively).
+     */
+    public static List<File> collectFiles(List<File> roots, IProgressMonitor monitor) {
+        IPyFileListingFilter filter = new IPyFileListingFilter() {
+
+            @Override
+            public boolean accept(File file, boolean isDirectory) {
+                if (isDirectory) {
+                    return !file.getName().startsWith(".");
+                }
+                return PythonPathHelper.isValidSourceFile(file.getName());
+            }
+        };
+        List<File> ret = new ArrayList<>();
+        for (File root : roots) {
+            if (root.isDirectory()) {
+                PyFileListing listing = PyFileListing.getPyFilesBelow(root, filter, monitor, null);
+                for (PyFileInfo info : listing.getFoundPyFileInfos()) {
+                    ret.add(info.getFile());
+                }
+            } else if (root.isFile()) {
+                ret.add(root);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @throws CharacterCodingException if the bytes are not valid in the given encoding (in which case the file
+     * must not be formatted as it couldn't be written back without changing the contents which couldn't be decoded).
+     */
+    private static String decode(byte[] bytes, String encoding) throws CharacterCodingException {
+        CharsetDecoder decoder = Charset.forName(encoding).newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        return decoder.decode(ByteBuffer.wrap(bytes)).toString();
+    }
+
+    /**
+     * Formats the given files in parallel (writing the ones whose contents changed).
+     *
+     * @return the result for each file.
+     */
+    public static List<FormatResult> formatFiles(List<File> files, FormatStd formatStd, IProgressMonitor monitor) {
+        List<FormatRequest> requests = new ArrayList<>(files.size());
+        List<FormatResult> errors = new ArrayList<>();
+        for (File file : files) {
+            try {
+                byte[] bytes = Files.readAllBytes(file.toPath());
+                String encoding = FileUtils.getPythonFileEncoding(bytes);
+                if (encoding == null) {
+                    encoding = "utf-8";
+                }
+                requests.add(new FileFormatRequest(file, decode(bytes, encoding), encoding, formatStd));
+            } catch (CharacterCodingException e) {
+                Log.log("Unable to decode (not formatted): " + file, e);
+                errors.add(new FormatResult(new FormatRequest(file.toString(), null, formatStd, null, null),
+                        Status.ERROR, null, 0));
+            } catch (IOException e) {
+                Log.log("Error reading: " + file, e);
+                errors.add(new FormatResult(new FormatRequest(file.toString(), null, formatStd, null, null),
+                        Status.ERROR, null, 0));
+            }
+        }
+
+        List<FormatResult> results = format(requests, monitor);
+        List<FormatResult> ret = new ArrayList<>(files.size());
+        for (FormatResult result : results) {
+            if (result.status == Status.FORMATTED) {
+                FileFormatRequest request = (FileFormatRequest) result.request;
+                try {
+                    Files.write(request.file.toPath(), result.formatted.getBytes(request.encoding));
+                } catch (IOException e) {
+                    Log.log("Error writing: " + request.file, e);
+                    result = new FormatResult(request, Status.ERROR, null, result.nanos);
+                }
+            }
+            ret.add(result);
+        }
+        ret.addAll(errors);
+        return ret;
+    }
+}
@@ -4,6 +4,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -12,10 +13,13 @@ import java.util.Set;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.Document;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.IRegion;
+import org.python.pydev.ast.formatter.PyBatchFormatter.FormatResult;
+import org.python.pydev.ast.formatter.PyBatchFormatter.Status;
 import org.python.pydev.core.IPyFormatStdProvider;
 import org.python.pydev.core.IPythonNature;
 import org.python.pydev.core.MisconfigurationException;
@@ -898,11 +902,25 @@ public class PyFormatter {
     /*default*/public static String formatStrAutopep8OrPyDev(IPythonNature nature, IDocument doc, FormatStd std,
             String delimiter, boolean throwSyntaxError, boolean allowChangingBlankLines, File workingDir)
             throws SyntaxErrorException {
+        return formatStrAutopep8OrPyDev(nature, doc, std, delimiter, throwSyntaxError, allowChangingBlankLines,
+                workingDir, false);
+    }
+
+    /**
+     * @param nullIfFormatterFails if true, null is returned if autopep8/black fail (otherwise the contents of the
+     * document are returned unchanged).
+     */
+    private static String formatStrAutopep8OrPyDev(IPythonNature nature, IDocument doc, FormatStd std,
+            String delimiter, boolean throwSyntaxError, boolean allowChangingBlankLines, File workingDir,
+            boolean nullIfFormatterFails) throws SyntaxErrorException {
         switch (std.formatterStyle) {
             case AUTOPEP8:
                 String parameters = std.autopep8Parameters;
                 String formatted = Pep8Runner.runWithPep8BaseScript(doc, parameters, "autopep8.py");
                 if (formatted == null) {
+                    if (nullIfFormatterFails) {
+                        return null;
+                    }
                     formatted = doc.get();
                 }
 
@@ -912,6 +930,9 @@ public class PyFormatter {
             case BLACK:
                 formatted = BlackRunner.formatWithBlack(nature, doc, std, workingDir);
                 if (formatted == null) {
+                    if (nullIfFormatterFails) {
+                        return null;
+                    }
                     formatted = doc.get();
                 }
 
@@ -954,8 +975,22 @@ public class PyFormatter {
     public static String formatStrAutopep8OrPyDev(IPythonNature nature, FormatStd formatStd, boolean throwSyntaxError,
             IDocument doc, String delimiter, boolean allowChangingBlankLines, File workingDir)
             throws SyntaxErrorException {
+        return formatStrAutopep8OrPyDev(nature, formatStd, throwSyntaxError, doc, delimiter, allowChangingBlankLines,
+                workingDir, false);
+    }
+
+    /**
+     * @param nullIfFormatterFails if true, null is returned if autopep8/black fail (otherwise the contents of the
+     * document are returned unchanged).
+     */
+    /*default*/static String formatStrAutopep8OrPyDev(IPythonNature nature, FormatStd formatStd,
+            boolean throwSyntaxError, IDocument doc, String delimiter, boolean allowChangingBlankLines,
+            File workingDir, boolean nullIfFormatterFails) throws SyntaxErrorException {
         String formatted = formatStrAutopep8OrPyDev(nature, doc, formatStd, delimiter, throwSyntaxError,
-                allowChangingBlankLines, workingDir);
+                allowChangingBlankLines, workingDir, nullIfFormatterFails);
+        if (formatted == null) {
+            return null;
+        }
         //To finish, check the end of line.
         if (formatStd.addNewLineAtEndOfFile) {
             try {
@@ -1002,8 +1037,9 @@ public class PyFormatter {
      */
     public static void main(String[] args) {
         try {
-            if (args.length != 1) {
-                throw new AssertionError("Expected either -multiple or -single in args.");
+            if (args.length == 0 || (args.length != 1 && !args[0].equals("-batch"))) {
+                throw new AssertionError(
+                        "Expected either -multiple, -single or -batch <files or folders> in args.");
             }
             FormatStd formatStd = new FormatStd();
             formatStd.spaceAfterComma = true;
@@ -1019,7 +1055,29 @@ public class PyFormatter {
             formatStd.blankLinesTopLevel = 2;
             formatStd.blankLinesInner = 1;
 
-            if (args[0].equals("-multiple")) {
+            if (args[0].equals("-batch")) {
+                // Format the given files/folders in place (in parallel) and print the time taken for each file.
+                List<File> roots = new ArrayList<>();
+                for (int i = 1; i < args.length; i++) {
+                    roots.add(new File(args[i]));
+                }
+                long initial = System.nanoTime();
+                List<File> files = PyBatchFormatter.collectFiles(roots, new NullProgressMonitor());
+                List<FormatResult> results = PyBatchFormatter.formatFiles(files, formatStd,
+                        new NullProgressMonitor());
+                int failed = 0;
+                for (FormatResult result : results) {
+                    if (result.status == Status.SYNTAX_ERROR || result.status == Status.ERROR) {
+                        failed++;
+                    }
+                    System.out.println(StringUtils.format("%s\t%s ms\t%s", result.status,
+                            result.nanos / 1000000, result.request.name));
+                }
+                System.out.println(StringUtils.format("Processed %s files in %s ms (%s failed).", results.size(),
+                        (System.nanoTime() - initial) / 1000000, failed));
+                System.exit(failed == 0 ? 0 : 1);
+
+            } else if (args[0].equals("-multiple")) {
 
                 // Continuously read contents from the input using an http-like protocol.
                 // i.e.:
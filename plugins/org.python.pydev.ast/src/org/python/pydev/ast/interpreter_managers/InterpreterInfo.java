@@ -229,6 +229,10 @@ public class InterpreterInfo implements IInterpreterInfo {
             return false;
         }
 
+        if (info.useCompactTokensIndex != this.useCompactTokensIndex) {
+            return false;
+        }
+
         if (info.libs.equals(this.libs) == false) {
             return false;
         }
@@ -348,6 +352,7 @@ public class InterpreterInfo implements IInterpreterInfo {
                     String infoVersion = null;
                     String pipenvTargetDir = null;
                     boolean activateCondaEnv = false;
+                    boolean useCompactTokensIndex = false;
                     List<String> selection = new ArrayList<String>();
                     List<String> toAsk = new ArrayList<String>();
                     List<String> forcedLibs = new ArrayList<String>();
@@ -376,6 +381,9 @@ public class InterpreterInfo implements IInterpreterInfo {
                         } else if ("activate_conda".equals(name)) {
                             activateCondaEnv = data.equals("true");
 
+                        } else if ("compact_tokens_index".equals(name)) {
+                            useCompactTokensIndex = data.equals("true");
+
                         } else if ("lib".equals(name)) {
                             NamedNodeMap attributes = xmlChild.getAttributes();
                             Node pathIncludeItem = attributes.getNamedItem("path");
@@ -485,6 +493,7 @@ public class InterpreterInfo implements IInterpreterInfo {
                             new ArrayList<String>(), forcedLibs, envVars, stringSubstitutionVars);
                     info.setName(infoName);
                     info.setActivateCondaEnv(activateCondaEnv);
+                    info.setUseCompactTokensIndex(useCompactTokensIndex);
                     info.pipenvTargetDir = pipenvTargetDir;
                     for (String s : predefinedPaths) {
                         info.addPredefinedCompletionsPath(s);
@@ -772,6 +781,11 @@ public class InterpreterInfo implements IInterpreterInfo {
             buffer.append("<activate_conda>" + activateCondaEnv + "</activate_conda>\n");
         }
 
+        if (useCompactTokensIndex) {
+            // Only add tag if actually true (to preserve backward compatibility).
+            buffer.append("<compact_tokens_index>" + useCompactTokensIndex + "</compact_tokens_index>\n");
+        }
+
         if (pipenvTargetDir != null) {
             buffer.append("<pipenv_target_dir>");
             buffer.append(escape(pipenvTargetDir));
@@ -1891,6 +1905,8 @@ public class InterpreterInfo implements IInterpreterInfo {
 
     private boolean activateCondaEnv;
 
+    private boolean useCompactTokensIndex;
+
     private String pipenvTargetDir;
 
     public void setLoadFinished(boolean b) {
@@ -1999,6 +2015,16 @@ public class InterpreterInfo implements IInterpreterInfo {
         return null;
     }
 
+    @Override
+    public boolean getUseCompactTokensIndex() {
+        return this.useCompactTokensIndex;
+    }
+
+    @Override
+    public void setUseCompactTokensIndex(boolean useCompactTokensIndex) {
+        this.useCompactTokensIndex = useCompactTokensIndex;
+    }
+
     @Override
     public void setPipenvTargetDir(String pipenvTargetDir) {
         this.pipenvTargetDir = pipenvTargetDir;
@@ -0,0 +1,287 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.ast.listing_utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.python.pydev.core.CorePlugin;
+import org.python.pydev.core.log.Log;
+
+/**
+ * Keeps the entries found in directories along with the modification time of the directory when they were listed.
+ *
+ * The modification time of a directory changes when an entry is added, removed or renamed in it (but not when
+ * something changes in its subdirectories), so, if it didn't change, the entries from the snapshot may be used
+ * instead of listing it again (its subdirectories must still be checked).
+ *
+ * The snapshots are kept for each root listed (and the filter used to list it, as only the entries accepted by the
+ * filter are kept). The snapshots of directories which weren't found in the last listing of a root are removed and
+ * roots which no longer exist or which weren't listed for some time are dropped when saving.
+ */
+public final class DirectorySnapshots {
+
+    private static final int VERSION = 2;
+
+    /**
+     * A directory modified less than this time before it's listed isn't kept (as another change could happen with
+     * the same modification time in file systems with a coarse granularity).
+     */
+    private static final long MIN_AGE_TO_KEEP_MILLIS = 2000;
+
+    /**
+     * The snapshots of a root which isn't listed for this time are dropped.
+     */
+    private static final long MAX_UNUSED_MILLIS = 30L * 24 * 60 * 60 * 1000;
+
+    /**
+     * The last time a root was used is only updated (and saved) with this granularity.
+     */
+    private static final long LAST_USED_GRANULARITY_MILLIS = 24 * 60 * 60 * 1000;
+
+    public static final class Snapshot {
+
+        public final long lastModified;
+        public final String[] files;
+        public final String[] dirs;
+
+        public Snapshot(long lastModified, String[] files, String[] dirs) {
+            this.lastModified = lastModified;
+            this.files = files;
+            this.dirs = dirs;
+        }
+    }
+
+    /**
+     * The snapshots of the directories below some root (listed with some filter).
+     */
+    public static final class RootSnapshots {
+
+        private final DirectorySnapshots owner;
+        private final String root;
+        private final String filterKey;
+        private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<String, Snapshot>();
+        private volatile long lastUsed;
+
+        private RootSnapshots(DirectorySnapshots owner, String root, String filterKey, long lastUsed) {
+            this.owner = owner;
+            this.root = root;
+            this.filterKey = filterKey;
+            this.lastUsed = lastUsed;
+        }
+
+        /**
+         * @return the snapshot of the given directory if it's still valid for the given modification time (or null).
+         */
+        public Snapshot get(String dir, long lastModified) {
+            Snapshot snapshot = snapshots.get(dir);
+            if (snapshot != null && snapshot.lastModified == lastModified) {
+                return snapshot;
+            }
+            return null;
+        }
+
+        public void put(String dir, long lastModified, String[] files, String[] dirs) {
+            if (System.currentTimeMillis() - lastModified < MIN_AGE_TO_KEEP_MILLIS) {
+                if (snapshots.remove(dir) != null) {
+                    owner.dirty = true;
+                }
+                return;
+            }
+            snapshots.put(dir, new Snapshot(lastModified, files, dirs));
+            owner.dirty = true;
+        }
+
+        /**
+         * Removes the snapshots of the directories not found in a (complete) listing of the root.
+         */
+        public void retain(Set<String> listedDirs) {
+            if (snapshots.keySet().retainAll(listedDirs)) {
+                owner.dirty = true;
+            }
+        }
+
+        public int size() {
+            return snapshots.size();
+        }
+    }
+
+    private final Map<String, RootSnapshots> roots = new ConcurrentHashMap<String, RootSnapshots>();
+
+    /**
+     * Where the snapshots are saved (may be null).
+     */
+    private final File file;
+
+    private volatile boolean dirty;
+
+    private static DirectorySnapshots defaultSnapshots;
+
+    /**
+     * @return the snapshots shared in the process (persisted in the workspace metadata if available).
+     */
+    public static synchronized DirectorySnapshots getDefault() {
+        if (defaultSnapshots == null) {
+            File file = null;
+            if (CorePlugin.pydevStatelocation != null) {
+                file = CorePlugin.getWorkspaceMetadataFile("directory_snapshots.dat");
+            }
+            defaultSnapshots = new DirectorySnapshots(file);
+        }
+        return defaultSnapshots;
+    }
+
+    public DirectorySnapshots(File file) {
+        this.file = file;
+        if (file != null && file.exists()) {
+            try {
+                load();
+            } catch (IOException e) {
+                Log.log("Error loading: " + file, e);
+                roots.clear();
+            }
+        }
+    }
+
+    /**
+     * @param filterKey identifies the filter used to list the root (the snapshots are kept apart for each filter).
+     * @return the snapshots of the directories below the given root.
+     */
+    public RootSnapshots getRootSnapshots(File root, String filterKey) {
+        String key = root.getPath() + '|' + filterKey;
+        RootSnapshots rootSnapshots = roots.get(key);
+        long now = System.currentTimeMillis();
+        if (rootSnapshots == null) {
+            synchronized (roots) {
+                rootSnapshots = roots.get(key);
+                if (rootSnapshots == null) {
+                    rootSnapshots = new RootSnapshots(this, root.getPath(), filterKey, now);
+                    roots.put(key, rootSnapshots);
+                }
+            }
+        } else if (now - rootSnapshots.lastUsed > LAST_USED_GRANULARITY_MILLIS) {
+            rootSnapshots.lastUsed = now;
+            dirty = true;
+        }
+        return rootSnapshots;
+    }
+
+    /**
+     * @return the number of directories with snapshots (in all the roots).
+     */
+    public int size() {
+        int size = 0;
+        for (RootSnapshots rootSnapshots : roots.values()) {
+            size += rootSnapshots.size();
+        }
+        return size;
+    }
+
+    /**
+     * Drops the snapshots of roots which no longer exist or which weren't listed for some time.
+     */
+    private void prune() {
+        long now = System.currentTimeMillis();
+        for (Iterator<RootSnapshots> it = roots.values().iterator(); it.hasNext();) {
+            RootSnapshots rootSnapshots = it.next();
+            if (now - rootSnapshots.lastUsed > MAX_UNUSED_MILLIS || !new File(rootSnapshots.root).isDirectory()) {
+                it.remove();
+                dirty = true;
+            }
+        }
+    }
+
+    /**
+     * Saves the snapshots if something changed since the last save.
+     */
+    public synchronized void save() {
+        prune();
+        if (file == null || !dirty) {
+            return;
+        }
+        dirty = false;
+        File tempFile = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tempFile))))) {
+            out.writeInt(VERSION);
+            out.writeInt(roots.size());
+            for (RootSnapshots rootSnapshots : roots.values()) {
+                out.writeUTF(rootSnapshots.root);
+                out.writeUTF(rootSnapshots.filterKey);
+                out.writeLong(rootSnapshots.lastUsed);
+                out.writeInt(rootSnapshots.snapshots.size());
+                for (Map.Entry<String, Snapshot> entry : rootSnapshots.snapshots.entrySet()) {
+                    Snapshot snapshot = entry.getValue();
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(snapshot.lastModified);
+                    writeNames(out, snapshot.files);
+                    writeNames(out, snapshot.dirs);
+                }
+            }
+        } catch (IOException e) {
+            Log.log("Error saving: " + file, e);
+            return;
+        }
+        if (file.exists() && !file.delete()) {
+            Log.log("Unable to delete: " + file);
+        }
+        if (!tempFile.renameTo(file)) {
+            Log.log("Unable to rename: " + tempFile + " to: " + file);
+        }
+    }
+
+    private void load() throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))))) {
+            if (in.readInt() != VERSION) {
+                return;
+            }
+            int rootsSize = in.readInt();
+            for (int i = 0; i < rootsSize; i++) {
+                String root = in.readUTF();
+                String filterKey = in.readUTF();
+                RootSnapshots rootSnapshots = new RootSnapshots(this, root, filterKey, in.readLong());
+                int size = in.readInt();
+                for (int j = 0; j < size; j++) {
+                    String dir = in.readUTF();
+                    long lastModified = in.readLong();
+                    String[] files = readNames(in);
+                    String[] dirs = readNames(in);
+                    rootSnapshots.snapshots.put(dir, new Snapshot(lastModified, files, dirs));
+                }
+                roots.put(root + '|' + filterKey, rootSnapshots);
+            }
+        }
+    }
+
+    private static void writeNames(DataOutputStream out, String[] names) throws IOException {
+        out.writeInt(names.length);
+        for (String name : names) {
+            out.writeUTF(name);
+        }
+    }
+
+    private static String[] readNames(DataInputStream in) throws IOException {
+        String[] names = new String[in.readInt()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = in.readUTF();
+        }
+        return names;
+    }
+}
@@ -9,8 +9,17 @@ package org.python.pydev.ast.listing_utils;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Deque;
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -23,10 +32,10 @@ import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.python.pydev.ast.codecompletion.revisited.PythonPathHelper;
+import org.python.pydev.core.log.Log;
 import org.python.pydev.core.preferences.FileTypesPreferences;
 import org.python.pydev.shared_core.string.FastStringBuffer;
 import org.python.pydev.shared_core.string.StringUtils;
-import org.python.pydev.shared_core.structure.LinkedListWarningOnSlowOperations;
 
 /**
  * Helper class for finding out about python files below some source folder.
@@ -83,111 +92,269 @@ public class PyFileListing {
     }
 
     /**
-     * Returns the directories and python files in a list.
-     *
-     * @param addSubFolders indicates if sub-folders should be added
-     * @param canonicalFolders used to know if we entered a loop in the listing (with symlinks)
-     * @return An object with the results of making that listing.
+     * Filter for the entries found in the listing (receives whether the entry is a directory, so, the filter
+     * doesn't need to query the file system again for it).
      */
-    private static PyFileListing getPyFilesBelow(PyFileListing result, File file, FileFilter filter,
-            IProgressMonitor monitor, boolean addSubFolders, int level, String currModuleRep,
-            Set<File> canonicalFolders) {
+    public static interface IPyFileListingFilter {
 
-        if (monitor == null) {
-            monitor = new NullProgressMonitor();
-        }
+        boolean accept(File file, boolean isDirectory);
+    }
 
-        if (file != null && file.exists()) {
-            //only check files that actually exist
+    /**
+     * Walks the directories with the attributes gotten by Files.walkFileTree (so, there's no additional query for
+     * the file system for each entry found).
+     *
+     * When snapshots are given, a directory whose modification time didn't change since the last listing isn't
+     * listed again (the entries from the snapshot are used and only its subdirectories are checked).
+     *
+     * Directories reached through symlinks are only walked after the others, so, a directory reached both through
+     * a symlink and through its real path is listed in its real path.
+     */
+    private static final class PyFilesWalker extends SimpleFileVisitor<Path> {
 
-            if (file.isDirectory()) {
-                FastStringBuffer buf = new FastStringBuffer(currModuleRep, 128);
-                if (level != 0) {
-                    FastStringBuffer newModuleRep = buf;
-                    if (newModuleRep.length() != 0) {
-                        newModuleRep.append('.');
-                    }
-                    newModuleRep.append(file.getName());
-                    currModuleRep = newModuleRep.toString();
-                }
+        private static final class DirState {
 
-                // check if it is a symlink loop
-                try {
-                    File canonicalizedDir = file.getCanonicalFile();
-                    if (!canonicalizedDir.equals(file)) {
-                        if (canonicalFolders.contains(canonicalizedDir)) {
-                            return result;
-                        }
-                    }
-                    canonicalFolders.add(canonicalizedDir);
-                } catch (IOException e) {
-                    // See: https://www.brainwy.com/tracker/PyDev/921
-                    // java.io.IOException: Too many levels of symbolic links at java.io.UnixFileSystem.canonicalize0(Native Method)
-                    // at java.io.UnixFileSystem.canonicalize(UnixFileSystem.java:172)
-                    // at java.io.File.getCanonicalPath(File.java:618)
-                    // at java.io.File.getCanonicalFile(File.java:643)
-                    // at org.python.pydev.ast.listing_utils.PyFileListing.getPyFilesBelow(PyFileListing.java:117)
-                    return result;
-                }
+            private final String moduleRep;
+            private final long lastModified;
 
-                File[] files;
+            /**
+             * The entries accepted in the directory (only kept if snapshots are being created).
+             */
+            private final List<String> files;
+            private final List<String> dirs;
 
-                if (filter != null) {
-                    files = file.listFiles(filter);
-                } else {
-                    files = file.listFiles();
-                }
+            private DirState(String moduleRep, long lastModified, boolean createSnapshot) {
+                this.moduleRep = moduleRep;
+                this.lastModified = lastModified;
+                this.files = createSnapshot ? new ArrayList<String>() : null;
+                this.dirs = createSnapshot ? new ArrayList<String>() : null;
+            }
+        }
 
-                List<File> foldersLater = new LinkedListWarningOnSlowOperations<File>();
+        private final PyFileListing result;
+        private final IPyFileListingFilter filter;
+        private final IProgressMonitor monitor;
+        private final boolean addSubFolders;
+        private final DirectorySnapshots.RootSnapshots snapshots;
 
-                if (files != null) {
-                    for (File file2 : files) {
+        /**
+         * Used to know if a directory was already visited (with symlinks).
+         */
+        private final Set<Object> visitedDirs = new HashSet<Object>();
+        private final Deque<DirState> dirs = new ArrayDeque<DirState>();
+        private final FastStringBuffer buf = new FastStringBuffer(128);
 
-                        if (monitor.isCanceled()) {
-                            break;
-                        }
+        /**
+         * The directories reached through symlinks (and their module representation) still to be walked.
+         */
+        private final Deque<Object[]> symlinkedDirs = new ArrayDeque<Object[]>();
 
-                        if (file2.isFile()) {
-                            result.addPyFileInfo(new PyFileInfo(file2, currModuleRep));
+        /**
+         * The directories found (only kept if snapshots are being used).
+         */
+        private final Set<String> listedDirs;
+
+        private Path walkStart;
+        private String walkStartModuleRep;
+
+        private PyFilesWalker(PyFileListing result, IPyFileListingFilter filter, IProgressMonitor monitor,
+                boolean addSubFolders, DirectorySnapshots.RootSnapshots snapshots) {
+            this.result = result;
+            this.filter = filter;
+            this.monitor = monitor;
+            this.addSubFolders = addSubFolders;
+            this.snapshots = snapshots;
+            this.listedDirs = snapshots != null ? new HashSet<String>() : null;
+        }
 
-                            monitor.worked(1);
-                            monitor.setTaskName(buf.clear().append("Found:").append(file2.toString()).toString());
+        /**
+         * Walks the given root (and then the directories reached through symlinks).
+         */
+        private void walkRoot(Path root) throws IOException {
+            walk(root, "");
+            while (!symlinkedDirs.isEmpty() && !monitor.isCanceled()) {
+                Object[] symlinkedDir = symlinkedDirs.removeFirst();
+                walk((Path) symlinkedDir[0], (String) symlinkedDir[1]);
+            }
+            if (snapshots != null && !monitor.isCanceled()) {
+                snapshots.retain(listedDirs);
+            }
+        }
 
-                        } else {
-                            foldersLater.add(file2);
-                        }
-                    }
-                    result.foldersFound.add(file);
+        /**
+         * Walks the given directory (or postpones it if it's a symlink).
+         */
+        private void walkSubDir(Path subDir, String moduleRep) throws IOException {
+            if (Files.isSymbolicLink(subDir)) {
+                symlinkedDirs.add(new Object[] { subDir, moduleRep });
+            } else {
+                walk(subDir, moduleRep);
+            }
+        }
 
-                    for (File folder : foldersLater) {
+        private void walk(Path start, String moduleRep) throws IOException {
+            Path previousStart = walkStart;
+            String previousModuleRep = walkStartModuleRep;
+            walkStart = start;
+            walkStartModuleRep = moduleRep;
+            try {
+                Files.walkFileTree(start, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, this);
+            } finally {
+                walkStart = previousStart;
+                walkStartModuleRep = previousModuleRep;
+            }
+        }
 
-                        if (monitor.isCanceled()) {
-                            break;
-                        }
+        private String createModuleRep(String parentModuleRep, String name) {
+            if (parentModuleRep.length() == 0) {
+                return name;
+            }
+            return buf.clear().append(parentModuleRep).append('.').append(name).toString();
+        }
 
-                        if (folder.isDirectory() && addSubFolders) {
+        private boolean addFile(File file, String moduleRep) {
+            if (filter == null || filter.accept(file, false)) {
+                result.addPyFileInfo(new PyFileInfo(file, moduleRep));
+                monitor.worked(1);
+                return true;
+            }
+            return false;
+        }
 
-                            getPyFilesBelow(result, folder, filter, monitor, addSubFolders, level + 1,
-                                    currModuleRep, canonicalFolders);
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+            if (monitor.isCanceled()) {
+                return FileVisitResult.TERMINATE;
+            }
+            String moduleRep;
+            if (dir.equals(walkStart)) {
+                moduleRep = walkStartModuleRep;
+            } else {
+                DirState parent = dirs.peek();
+                String name = dir.getFileName().toString();
+                if (!addSubFolders || (filter != null && !filter.accept(dir.toFile(), true))) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                if (parent.dirs != null) {
+                    parent.dirs.add(name);
+                }
+                moduleRep = createModuleRep(parent.moduleRep, name);
+                if (Files.isSymbolicLink(dir)) {
+                    symlinkedDirs.add(new Object[] { dir, moduleRep });
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+            }
 
-                            monitor.worked(1);
+            Object fileKey = attrs.fileKey();
+            if (fileKey != null && !visitedDirs.add(fileKey)) {
+                return FileVisitResult.SKIP_SUBTREE; //Already visited through some other path.
+            }
+            result.foldersFound.add(dir.toFile());
+            monitor.setTaskName(buf.clear().append("Listing: ").append(dir.toString()).toString());
+
+            long lastModified = attrs.lastModifiedTime().toMillis();
+            if (snapshots != null) {
+                listedDirs.add(dir.toString());
+                DirectorySnapshots.Snapshot snapshot = snapshots.get(dir.toString(), lastModified);
+                if (snapshot != null) {
+                    for (String name : snapshot.files) {
+                        addFile(dir.resolve(name).toFile(), moduleRep);
+                    }
+                    if (addSubFolders) {
+                        for (String name : snapshot.dirs) {
+                            if (monitor.isCanceled()) {
+                                return FileVisitResult.TERMINATE;
+                            }
+                            walkSubDir(dir.resolve(name), createModuleRep(moduleRep, name));
                         }
                     }
+                    return FileVisitResult.SKIP_SUBTREE;
                 }
+            }
+            dirs.push(new DirState(moduleRep, lastModified, snapshots != null));
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+            if (!attrs.isRegularFile()) {
+                return FileVisitResult.CONTINUE;
+            }
+            DirState parent = dirs.peek();
+            if (parent == null || file.equals(walkStart)) {
+                //The walk was started in a file.
+                addFile(file.toFile(), walkStartModuleRep);
+                return FileVisitResult.CONTINUE;
+            }
+            if (addFile(file.toFile(), parent.moduleRep) && parent.files != null) {
+                parent.files.add(file.getFileName().toString());
+            }
+            return FileVisitResult.CONTINUE;
+        }
 
-            } else { // not dir: must be file
-                result.addPyFileInfo(new PyFileInfo(file, currModuleRep));
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+            //i.e.: no permission, broken link or symlink loop (just ignore it).
+            return FileVisitResult.CONTINUE;
+        }
 
+        @Override
+        public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+            DirState state = dirs.pop();
+            if (exc == null && state.files != null && !monitor.isCanceled()) {
+                snapshots.put(dir.toString(), state.lastModified, state.files.toArray(new String[0]),
+                        state.dirs.toArray(new String[0]));
             }
+            return FileVisitResult.CONTINUE;
         }
+    }
 
+    /**
+     * Returns the directories and python files in a list.
+     *
+     * @param addSubFolders indicates if sub-folders should be added
+     * @param snapshots if given, used to skip listing directories which didn't change (may be null).
+     * @return An object with the results of making that listing.
+     */
+    private static PyFileListing getPyFilesBelow(File file, IPyFileListingFilter filter, IProgressMonitor monitor,
+            boolean addSubFolders, DirectorySnapshots.RootSnapshots snapshots) {
+        if (monitor == null) {
+            monitor = new NullProgressMonitor();
+        }
+        PyFileListing result = new PyFileListing();
+        if (file != null && file.exists()) {
+            //only check files that actually exist
+            try {
+                new PyFilesWalker(result, filter, monitor, addSubFolders, snapshots).walkRoot(file.toPath());
+            } catch (IOException e) {
+                Log.log("Error listing: " + file, e);
+            }
+        }
         return result;
     }
 
-    private static PyFileListing getPyFilesBelow(File file, FileFilter filter, IProgressMonitor monitor,
+    private static PyFileListing getPyFilesBelow(File file, final FileFilter filter, IProgressMonitor monitor,
             boolean addSubFolders) {
-        PyFileListing result = new PyFileListing();
-        return getPyFilesBelow(result, file, filter, monitor, addSubFolders, 0, "", new HashSet<File>());
+        IPyFileListingFilter listingFilter = null;
+        if (filter != null) {
+            listingFilter = new IPyFileListingFilter() {
+
+                @Override
+                public boolean accept(File file, boolean isDirectory) {
+                    return filter.accept(file);
+                }
+            };
+        }
+        return getPyFilesBelow(file, listingFilter, monitor, addSubFolders, null);
+    }
+
+    /**
+     * @param snapshots if given, used to skip listing directories which didn't change (may be null). Must've been
+     * gotten for the given file and a key which identifies the filter.
+     */
+    public static PyFileListing getPyFilesBelow(File file, IPyFileListingFilter filter, IProgressMonitor monitor,
+            DirectorySnapshots.RootSnapshots snapshots) {
+        return getPyFilesBelow(file, filter, monitor, true, snapshots);
     }
 
     public static PyFileListing getPyFilesBelow(File file, FileFilter filter, IProgressMonitor monitor) {
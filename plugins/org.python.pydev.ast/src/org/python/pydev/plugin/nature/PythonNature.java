@@ -629,7 +629,7 @@ public class PythonNature extends AbstractPythonNature implements IPythonNature
                     astManager.setProject(getProject(), this, true); // this is the project related to it, restore the deltas (we may have some crash)
 
                     //just a little validation so that we restore the needed info if we did not get the modules
-                    if (astManager.getModulesManager().getOnlyDirectModules().length < 15) {
+                    if (astManager.getModulesManager().getSize(false) < 15) {
                         astManager = null;
                     }
 
@@ -7,7 +7,7 @@ from _pydevd_bundle import pydevd_utils, pydevd_source_mapping
 from _pydevd_bundle.pydevd_additional_thread_info import set_additional_thread_info
 from _pydevd_bundle.pydevd_comm import (InternalGetThreadStack, internal_get_completions,
     pydevd_find_thread_by_id, InternalSetNextStatementThread, internal_reload_code,
-    InternalGetVariable, InternalGetArray, InternalLoadFullValue,
+    InternalGetVariable, InternalGetVariablePage, InternalGetArray, InternalLoadFullValue,
     internal_get_description, internal_get_frame, internal_evaluate_expression, InternalConsoleExec,
     internal_get_variable_json, internal_change_variable, internal_change_variable_json,
     internal_evaluate_expression_json, internal_set_expression_json, internal_get_exception_details_json,
@@ -253,6 +253,10 @@ class PyDevdAPI(object):
         int_cmd = InternalGetVariable(seq, thread_id, frame_id, scope, attrs)
         py_db.post_internal_command(int_cmd, thread_id)
 
+    def request_get_variable_page(self, py_db, seq, offset, limit, thread_id, frame_id, scope, attrs):
+        int_cmd = InternalGetVariablePage(seq, offset, limit, thread_id, frame_id, scope, attrs)
+        py_db.post_internal_command(int_cmd, thread_id)
+
     def request_get_array(self, py_db, seq, roffset, coffset, rows, cols, fmt, thread_id, frame_id, scope, attrs):
         int_cmd = InternalGetArray(seq, roffset, coffset, rows, cols, fmt, thread_id, frame_id, scope, attrs)
         py_db.post_internal_command(int_cmd, thread_id)
@@ -764,6 +764,37 @@ class InternalGetVariable(InternalThreadCommand):
             dbg.writer.add_command(cmd)
 
 
+class InternalGetVariablePage(InternalThreadCommand):
+    ''' gets a range of the items of a container '''
+
+    def __init__(self, seq, offset, limit, thread_id, frame_id, scope, attrs):
+        self.sequence = seq
+        self.offset = offset
+        self.limit = limit
+        self.thread_id = thread_id
+        self.frame_id = frame_id
+        self.scope = scope
+        self.attributes = attrs
+
+    def do_it(self, dbg):
+        try:
+            total, items = pydevd_vars.resolve_compound_variable_page(
+                dbg, self.thread_id, self.frame_id, self.scope, self.attributes, self.offset, self.limit)
+            xml = StringIO.StringIO()
+            xml.write('<xml><page offset="%s" total="%s" />' % (self.offset, total))
+            for k, val in items:
+                evaluate_full_value = pydevd_xml.should_evaluate_full_value(val)
+                xml.write(pydevd_xml.var_to_xml(val, k, evaluate_full_value=evaluate_full_value))
+            xml.write("</xml>")
+            cmd = dbg.cmd_factory.make_get_variable_page_message(self.sequence, xml.getvalue())
+            xml.close()
+            dbg.writer.add_command(cmd)
+        except Exception:
+            cmd = dbg.cmd_factory.make_error_message(
+                self.sequence, "Error resolving variables %s" % (get_exception_traceback_str(),))
+            dbg.writer.add_command(cmd)
+
+
 class InternalGetArray(InternalThreadCommand):
 
     def __init__(self, seq, roffset, coffset, rows, cols, format, thread_id, frame_id, scope, attrs):
@@ -87,6 +87,9 @@ CMD_PROCESS_EVENT = 204
 
 CMD_AUTHENTICATE = 205
 
+# Gets a range of the items of a container (text: offset\tlimit\tthread_id\tframe_id\tscope\tattrs).
+CMD_GET_VARIABLE_PAGE = 206
+
 CMD_VERSION = 501
 CMD_RETURN = 502
 CMD_SET_PROTOCOL = 503
@@ -174,6 +177,7 @@ ID_TO_MEANING = {
     '204': 'CMD_PROCESS_EVENT',  # DAP process event.
 
     '205': 'CMD_AUTHENTICATE',
+    '206': 'CMD_GET_VARIABLE_PAGE',
 
     '501': 'CMD_VERSION',
     '502': 'CMD_RETURN',
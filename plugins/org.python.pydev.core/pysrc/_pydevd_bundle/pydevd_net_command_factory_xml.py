@@ -17,7 +17,7 @@ from _pydevd_bundle.pydevd_comm_constants import (
     CMD_THREAD_RESUME_SINGLE_NOTIFICATION,
     CMD_GET_NEXT_STATEMENT_TARGETS, CMD_VERSION,
     CMD_RETURN, CMD_SET_PROTOCOL, CMD_ERROR, MAX_IO_MSG_SIZE, VERSION_STRING,
-    CMD_RELOAD_CODE)
+    CMD_RELOAD_CODE, CMD_GET_VARIABLE_PAGE)
 from _pydevd_bundle.pydevd_constants import (DebugInfoHolder, get_thread_id, IS_IRONPYTHON,
     get_global_debugger, GetGlobalDebugger, set_global_debugger)  # Keep for backward compatibility @UnusedImport
 from _pydevd_bundle.pydevd_net_command import NetCommand, NULL_NET_COMMAND, NULL_EXIT_COMMAND
@@ -287,6 +287,12 @@ class NetCommandFactory(object):
         except Exception:
             return self.make_error_message(seq, get_exception_traceback_str())
 
+    def make_get_variable_page_message(self, seq, payload):
+        try:
+            return NetCommand(CMD_GET_VARIABLE_PAGE, seq, payload)
+        except Exception:
+            return self.make_error_message(seq, get_exception_traceback_str())
+
     def make_get_array_message(self, seq, payload):
         try:
             return NetCommand(CMD_GET_ARRAY, seq, payload)
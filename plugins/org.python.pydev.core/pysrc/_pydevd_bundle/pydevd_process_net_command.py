@@ -187,6 +187,17 @@ class _PyDevCommandProcessor(object):
 
         self.api.request_get_variable(py_db, seq, thread_id, frame_id, scope, attrs)
 
+    def cmd_get_variable_page(self, py_db, cmd_id, seq, text):
+        # the text is: offset\tlimit\tthread_id\tframe_id\tFRAME|GLOBAL\tattributes*
+        offset, limit, thread_id, frame_id, scopeattrs = text.split('\t', 4)
+
+        if scopeattrs.find('\t') != -1:  # there are attributes beyond scope
+            scope, attrs = scopeattrs.split('\t', 1)
+        else:
+            scope, attrs = (scopeattrs, None)
+
+        self.api.request_get_variable_page(py_db, seq, int(offset), int(limit), thread_id, frame_id, scope, attrs)
+
     def cmd_get_array(self, py_db, cmd_id, seq, text):
         # Note: untested and unused in pydev
         # we received some command to get an array variable
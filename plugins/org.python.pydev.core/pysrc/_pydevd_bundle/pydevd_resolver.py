@@ -7,6 +7,7 @@ import traceback
 from os.path import basename
 
 from functools import partial
+from itertools import islice
 from _pydevd_bundle.pydevd_constants import dict_iter_items, dict_keys, xrange
 from _pydevd_bundle.pydevd_safe_repr import SafeRepr
 
@@ -322,6 +323,16 @@ class DictResolver:
         ret.update(additional_fields)
         return ret
 
+    def get_page(self, dict, offset, limit):
+        '''
+        :return list(tuple(name:str, value:object)) with the items in the range (names are the same ones
+        from get_dictionary).
+        '''
+        ret = []
+        for key, val in islice(dict_iter_items(dict), offset, offset + limit):
+            ret.append(('%s (%s)' % (self.key_to_str(key), id(key)), val))
+        return ret
+
 
 def _apply_evaluate_name(parent_name, evaluate_name):
     return evaluate_name % (parent_name,)
@@ -396,6 +407,17 @@ class TupleResolver:  # to enumerate tuples and lists
         d.update(additional_fields)
         return d
 
+    def get_page(self, var, offset, limit):
+        '''
+        :return list(tuple(name:str, value:object)) with the items in the range (names are the same ones
+        from get_dictionary).
+        '''
+        format_str = '%0' + str(int(len(str(len(var) - 1)))) + 'd'
+        ret = []
+        for i, item in enumerate(islice(var, offset, offset + limit)):
+            ret.append((format_str % (offset + i), item))
+        return ret
+
 
 #=======================================================================================================================
 # SetResolver
@@ -452,6 +474,13 @@ class SetResolver:
         d.update(additional_fields)
         return d
 
+    def get_page(self, var, offset, limit):
+        '''
+        :return list(tuple(name:str, value:object)) with the items in the range (names are the same ones
+        from get_dictionary).
+        '''
+        return [(str(id(item)), item) for item in islice(var, offset, offset + limit)]
+
     def change_var_from_name(self, container, name, new_value):
         # The name given in this case must be the id(item), so, we can actually
         # iterate in the set and see which item matches the given id.
@@ -143,6 +143,19 @@ def resolve_compound_variable_fields(dbg, thread_id, frame_id, scope, attrs):
             thread_id, frame_id, scope, attrs)
 
 
+def resolve_compound_variable_page(dbg, thread_id, frame_id, scope, attrs, offset, limit):
+    """
+    Resolve a range of the items of a container (only for containers whose resolver has get_page).
+
+    :return: tuple(total number of items, list(tuple(name, value)) with the items in the range)
+    """
+    var = getVariable(dbg, thread_id, frame_id, scope, attrs)
+    _type, _typeName, resolver = get_type(var)
+    if not hasattr(resolver, 'get_page'):
+        raise VariableError('Unable to get page of %s (%s)' % (attrs, _typeName))
+    return len(var), resolver.get_page(var, offset, limit)
+
+
 def resolve_var_object(var, attrs):
     """
     Resolve variable's attribute
@@ -373,6 +373,13 @@ def var_to_xml(val, name, trim_if_too_big=True, additional_in_xml='', evaluate_f
     else:
         if resolver is not None:
             xml_container = ' isContainer="True"'
+            if hasattr(resolver, 'get_page'):
+                try:
+                    container_len = len(val)
+                except:
+                    container_len = -1
+                if container_len > pydevd_resolver.MAX_ITEMS_TO_HANDLE:
+                    xml_container += ' containerLen="%s"' % (container_len,)
         else:
             xml_container = ''
 
@@ -87,6 +87,7 @@ MSG_JYTHON_INVALID_REQUEST = '@@JYTHON_INVALID_REQUEST'
 MSG_CHANGE_DIR = '@@CHANGE_DIR:'
 MSG_OK = '@@MSG_OK_END@@'
 MSG_IMPORTS = '@@IMPORTS:'
+MSG_IMPORTS_BATCH = '@@IMPORTS_BATCH:'
 MSG_PYTHONPATH = '@@PYTHONPATH_END@@'
 MSG_CHANGE_PYTHONPATH = '@@CHANGE_PYTHONPATH:'
 MSG_JEDI = '@@MSG_JEDI:'
@@ -281,7 +282,21 @@ class CompletionServer:
                         else:
                             data = data[:data.rfind(MSG_END)]
 
-                            if data.startswith(MSG_IMPORTS):
+                            if data.startswith(MSG_IMPORTS_BATCH):
+                                # Module names separated by '|': one completions message is sent for each module
+                                # (in the same order) as soon as it's available.
+                                data = data[len(MSG_IMPORTS_BATCH):]
+                                data = unquote_plus(data)
+                                for mod in data.split('|'):
+                                    try:
+                                        defFile, comps = _pydev_imports_tipper.generate_tip(mod, log)
+                                    except:
+                                        s = StringIO.StringIO()
+                                        traceback.print_exc(file=s)
+                                        defFile, comps = None, [('ERROR:', s.getvalue(), '')]
+                                    self.send(self.get_completions_message(defFile, comps))
+
+                            elif data.startswith(MSG_IMPORTS):
                                 data = data[len(MSG_IMPORTS):]
                                 data = unquote_plus(data)
                                 defFile, comps = _pydev_imports_tipper.generate_tip(data, log)
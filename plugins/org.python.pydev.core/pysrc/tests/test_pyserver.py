@@ -89,6 +89,21 @@ class TestCPython(unittest.TestCase):
 
         return msg
 
+    def read_msgs(self, count):
+        msgs = []
+        pending = ''
+        while len(msgs) < count:
+            i = pending.find('END@@')
+            if i == -1:
+                m = self.socket.recv(1024 * 4)
+                if IS_PYTHON_3_ONWARDS:
+                    m = m.decode('utf-8')
+                pending += m
+            else:
+                msgs.append(pending[:i + len('END@@')])
+                pending = pending[i + len('END@@'):]
+        return msgs
+
     def test_completion_sockets_and_messages(self):
         t, socket = self.create_connections()
         self.socket = socket
@@ -123,6 +138,14 @@ class TestCPython(unittest.TestCase):
             found = self.read_msg()
             self.assertTrue('sort' in found, 'Could not find sort in: %s' % (found,))
 
+            # now, test the batch (one message for each module, in the same order)
+            msg = quote_plus('%s|inspect|%s.list' % (BUILTIN_MOD, BUILTIN_MOD))
+            send(socket, '@@IMPORTS_BATCH:%s\nEND@@' % msg)
+            found = self.read_msgs(3)
+            self.assertEqual(3, len(found))
+            self.assertTrue('ismodule' in found[1], 'Could not find ismodule in: %s' % (found[1],))
+            self.assertTrue('sort' in found[2], 'Could not find sort in: %s' % (found[2],))
+
             # now, test search
             msg = quote_plus('inspect.ismodule')
             send(socket, '@@SEARCH%sEND@@' % msg)  # math completions
@@ -296,3 +296,26 @@ def test_tuple_resolver_mixed():
     check_len_entry(len_entry, ('__len__', 2))
     assert contents_debug_adapter_protocol == [
         ('some_value', 10, '.some_value'), ('0', 1, '[0]'), ('1', 2, '[1]'), ]
+
+
+def test_get_page():
+    from _pydevd_bundle.pydevd_resolver import TupleResolver, DictResolver, SetResolver, MAX_ITEMS_TO_HANDLE
+    from _pydevd_bundle import pydevd_xml
+    lst = list(range(1000))
+    assert TupleResolver().get_page(lst, 998, 10) == [('998', 998), ('999', 999)]
+    assert TupleResolver().get_page(lst, 5, 2) == [('005', 5), ('006', 6)]
+    assert TupleResolver().get_page(lst, 5, 2)[0][0] in TupleResolver().get_dictionary(lst)
+
+    dct = dict((i, i * 2) for i in range(1000))
+    page = DictResolver().get_page(dct, 500, 3)
+    assert len(page) == 3
+    for name, val in page:
+        assert name.startswith('%s (' % (val // 2,))
+
+    st = set(range(1000))
+    page = SetResolver().get_page(st, 0, 5)
+    assert len(page) == 5
+    assert page[0][0] == str(id(page[0][1]))
+
+    assert 'containerLen="1000"' in pydevd_xml.var_to_xml(lst, 'lst')
+    assert 'containerLen' not in pydevd_xml.var_to_xml(lst[:MAX_ITEMS_TO_HANDLE], 'lst')
@@ -87,6 +87,17 @@ public interface ICompletionState extends ICompletionCache {
 
     void checkMaxTimeForCompletion() throws CompletionRecursionException;
 
+    /**
+     * @return the number of times the analysis was cut off in this request (by a recursion guard, the time limit,
+     * something already searched...), in which case the completions gotten may be partial.
+     */
+    int getCutOffsCount();
+
+    /**
+     * Marks that the analysis was cut off (see: getCutOffsCount()).
+     */
+    void addCutOff();
+
     /**
      * Doesn't throw an exception, returns true if the given line and column have already been found previously.
      */
@@ -149,4 +149,12 @@ public interface IInterpreterInfo {
 
     public File getCondaPrefix();
 
+    /**
+     * @return whether the additional info (used for context-insensitive completions, auto-import, etc) should be
+     * kept in a compact index (which uses less memory and is faster to query, but is slower to change).
+     */
+    public boolean getUseCompactTokensIndex();
+
+    public void setUseCompactTokensIndex(boolean useCompactTokensIndex);
+
 }
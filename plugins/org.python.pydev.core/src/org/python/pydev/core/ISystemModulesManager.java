@@ -12,6 +12,8 @@ package org.python.pydev.core;
 import java.io.File;
 import java.io.IOException;
 
+import org.python.pydev.core.cache.CompiledModulesPack;
+
 public interface ISystemModulesManager extends IModulesManager {
 
     /**
@@ -44,5 +46,8 @@ public interface ISystemModulesManager extends IModulesManager {
 
     public abstract IInterpreterManager getInterpreterManager();
 
-    public abstract File getCompiledModuleCacheFile(String name);
+    /**
+     * @return the pack where the information on compiled modules is cached.
+     */
+    public abstract CompiledModulesPack getCompiledModulesPack();
 }
\ No newline at end of file
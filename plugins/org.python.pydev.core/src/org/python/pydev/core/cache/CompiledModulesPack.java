@@ -0,0 +1,408 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.core.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.python.pydev.core.log.Log;
+
+/**
+ * Keeps the contents cached for the compiled modules of an interpreter in a single file.
+ *
+ * Entries are only appended to the file (an entry replaces a previous entry with the same name) and the position
+ * of the current entry of each name is kept in an index in memory (created by scanning the file when it's first
+ * accessed). Contents are read through a memory-mapped buffer.
+ *
+ * Each entry also has the file of the module and its modification time: if the file changed, the entry is stale
+ * and isn't returned (so that it's rebuilt). When most of the file is composed of replaced entries, it's compacted
+ * when opened.
+ *
+ * There's a single instance for each file (gotten through getPack) as the index and the size of the file are kept
+ * in memory (so, 2 instances for the same file would overwrite the entries of each other).
+ */
+public final class CompiledModulesPack {
+
+    private static final int MAGIC = 0x50594350;
+
+    public static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 8;
+
+    /**
+     * Minimum size of the replaced entries for a compaction to be done.
+     */
+    private static final long MIN_DEAD_BYTES_TO_COMPACT = 64 * 1024;
+
+    private static final class Entry {
+
+        private final long recordOffset;
+        private final int recordSize;
+        private final int dataLength;
+        private final String modulePath;
+        private final long lastModified;
+
+        private Entry(long recordOffset, int recordSize, int dataLength, String modulePath, long lastModified) {
+            this.recordOffset = recordOffset;
+            this.recordSize = recordSize;
+            this.dataLength = dataLength;
+            this.modulePath = modulePath;
+            this.lastModified = lastModified;
+        }
+
+        private long getDataOffset() {
+            return recordOffset + recordSize - dataLength;
+        }
+
+        private boolean isStale() {
+            return modulePath.length() > 0 && new File(modulePath).lastModified() != lastModified;
+        }
+    }
+
+    private final File file;
+    private final Object lock = new Object();
+
+    /**
+     * Only available after the file is opened.
+     */
+    private Map<String, Entry> index;
+    private RandomAccessFile raf;
+    private MappedByteBuffer mapped;
+    private long size;
+    private long deadBytes;
+
+    private static final Map<File, CompiledModulesPack> packs = new HashMap<File, CompiledModulesPack>();
+
+    private CompiledModulesPack(File file) {
+        this.file = file;
+    }
+
+    /**
+     * @return the pack for the given file (shared by all the clients of the same file).
+     */
+    public static CompiledModulesPack getPack(File file) {
+        File key;
+        try {
+            key = file.getCanonicalFile();
+        } catch (IOException e) {
+            key = file.getAbsoluteFile();
+        }
+        synchronized (packs) {
+            CompiledModulesPack pack = packs.get(key);
+            if (pack == null) {
+                pack = new CompiledModulesPack(key);
+                packs.put(key, pack);
+            }
+            return pack;
+        }
+    }
+
+    /**
+     * Closes all the packs (i.e.: when the plugin is stopped).
+     */
+    public static void closeAll() {
+        List<CompiledModulesPack> lst;
+        synchronized (packs) {
+            lst = new ArrayList<CompiledModulesPack>(packs.values());
+        }
+        for (CompiledModulesPack pack : lst) {
+            pack.close();
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return the contents stored for the given name or null if not available (or if the module changed after it
+     * was stored).
+     */
+    public byte[] get(String name) {
+        synchronized (lock) {
+            try {
+                open();
+                Entry entry = index.get(name);
+                if (entry == null || entry.isStale()) {
+                    return null;
+                }
+                long dataOffset = entry.getDataOffset();
+                if (mapped == null || dataOffset + entry.dataLength > mapped.capacity()) {
+                    unmap(mapped);
+                    mapped = raf.getChannel().map(MapMode.READ_ONLY, 0, size);
+                }
+                byte[] data = new byte[entry.dataLength];
+                ByteBuffer buffer = mapped.duplicate();
+                buffer.position((int) dataOffset);
+                buffer.get(data);
+                return data;
+            } catch (IOException e) {
+                Log.log("Error reading: " + name + " from: " + file, e);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * @return whether there's a (not stale) entry for the given name.
+     */
+    public boolean contains(String name) {
+        synchronized (lock) {
+            try {
+                open();
+            } catch (IOException e) {
+                Log.log(e);
+                return false;
+            }
+            Entry entry = index.get(name);
+            return entry != null && !entry.isStale();
+        }
+    }
+
+    /**
+     * Stores the given contents for the given name.
+     *
+     * @param moduleFile the file of the module (if it changes, the entry is considered stale). May be null.
+     */
+    public void put(String name, File moduleFile, byte[] data) {
+        String modulePath = moduleFile != null ? moduleFile.getAbsolutePath() : "";
+        long lastModified = moduleFile != null ? moduleFile.lastModified() : 0;
+        synchronized (lock) {
+            try {
+                open();
+                append(name, modulePath, lastModified, data);
+            } catch (IOException e) {
+                Log.log("Error writing: " + name + " to: " + file, e);
+            }
+        }
+    }
+
+    /**
+     * Removes all the entries (the space is reclaimed in a later compaction).
+     */
+    public void clear() {
+        synchronized (lock) {
+            try {
+                open();
+                //An entry without a name marks that the previous entries were removed.
+                append("", "", 0, new byte[0]);
+            } catch (IOException e) {
+                Log.log("Error clearing: " + file, e);
+            }
+        }
+    }
+
+    /**
+     * Releases the file (and the mapped buffer). The pack may still be used afterwards (in which case the file is
+     * opened again and its index is recreated).
+     */
+    public void close() {
+        synchronized (lock) {
+            unmap(mapped);
+            mapped = null;
+            index = null;
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException e) {
+                    Log.log("Error closing: " + file, e);
+                }
+                raf = null;
+            }
+        }
+    }
+
+    /**
+     * Releases the memory mapped by the given buffer (the buffer may not be used afterwards).
+     *
+     * There's no public API for that in Java 8, so, it's done through reflection (if it fails, the mapping is only
+     * released when the buffer is garbage-collected -- and on Windows the file can't be deleted until then).
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        if (buffer == null) {
+            return;
+        }
+        try {
+            //Java 9 onwards.
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            return;
+        } catch (Throwable e) {
+            //Not available: try the Java 8 way.
+        }
+        try {
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (Throwable e) {
+            //Ignore: released when garbage-collected.
+        }
+    }
+
+    private void append(String name, String modulePath, long lastModified, byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length + name.length() + modulePath.length()
+                + 32);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(name);
+            out.writeUTF(modulePath);
+            out.writeLong(lastModified);
+            out.writeInt(data.length);
+            out.write(data);
+        }
+        byte[] record = bytes.toByteArray();
+        raf.seek(size);
+        raf.writeInt(record.length);
+        raf.write(record);
+
+        addToIndex(new Entry(size, 4 + record.length, data.length, modulePath, lastModified), name);
+        size += 4 + record.length;
+    }
+
+    private void addToIndex(Entry entry, String name) {
+        if (name.length() == 0) {
+            deadBytes = size + entry.recordSize - HEADER_SIZE;
+            index.clear();
+            return;
+        }
+        Entry previous = index.put(name, entry);
+        if (previous != null) {
+            deadBytes += previous.recordSize;
+        }
+    }
+
+    private void open() throws IOException {
+        if (index != null) {
+            return;
+        }
+        index = new HashMap<String, Entry>();
+        size = HEADER_SIZE;
+        deadBytes = 0;
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+
+        long fileLength = file.length();
+        if (fileLength >= HEADER_SIZE) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                if (in.readInt() == MAGIC && in.readInt() == VERSION) {
+                    scan(in, fileLength);
+                }
+            }
+        }
+        if (deadBytes >= MIN_DEAD_BYTES_TO_COMPACT && deadBytes > size / 2) {
+            try {
+                compact();
+            } catch (IOException e) {
+                Log.log("Error compacting: " + file, e);
+                index.clear();
+                size = HEADER_SIZE;
+            }
+        }
+
+        raf = new RandomAccessFile(file, "rw");
+        if (size == HEADER_SIZE) {
+            raf.setLength(0);
+            raf.writeInt(MAGIC);
+            raf.writeInt(VERSION);
+        } else if (raf.length() != size) {
+            raf.setLength(size); //Remove a partially written entry.
+        }
+    }
+
+    /**
+     * Fills the index with the entries in the file (stops at the first entry which is not complete).
+     */
+    private void scan(DataInputStream in, long fileLength) {
+        long pos = HEADER_SIZE;
+        try {
+            while (pos + 4 <= fileLength) {
+                int recordLength = in.readInt();
+                if (recordLength <= 0 || pos + 4 + recordLength > fileLength) {
+                    break;
+                }
+                String name = in.readUTF();
+                String modulePath = in.readUTF();
+                long lastModified = in.readLong();
+                int dataLength = in.readInt();
+                in.skipBytes(dataLength);
+
+                size = pos; //addToIndex uses it when an entry without a name is found.
+                addToIndex(new Entry(pos, 4 + recordLength, dataLength, modulePath, lastModified), name);
+                pos += 4 + recordLength;
+            }
+        } catch (IOException e) {
+            //Incomplete entry: ignore it (and everything after it).
+        }
+        size = pos;
+    }
+
+    /**
+     * Rewrites the file with only the current entries.
+     */
+    private void compact() throws IOException {
+        List<Map.Entry<String, Entry>> entries = new ArrayList<Map.Entry<String, Entry>>(index.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, Entry>>() {
+
+            @Override
+            public int compare(Map.Entry<String, Entry> o1, Map.Entry<String, Entry> o2) {
+                return Long.compare(o1.getValue().recordOffset, o2.getValue().recordOffset);
+            }
+        });
+
+        File tempFile = new File(file.getPath() + ".tmp");
+        Map<String, Entry> newIndex = new HashMap<String, Entry>();
+        long pos = HEADER_SIZE;
+        try (RandomAccessFile in = new RandomAccessFile(file, "r");
+                DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            for (Map.Entry<String, Entry> mapEntry : entries) {
+                Entry entry = mapEntry.getValue();
+                byte[] record = new byte[entry.recordSize];
+                in.seek(entry.recordOffset);
+                in.readFully(record);
+                out.write(record);
+                newIndex.put(mapEntry.getKey(), new Entry(pos, entry.recordSize, entry.dataLength, entry.modulePath,
+                        entry.lastModified));
+                pos += entry.recordSize;
+            }
+        }
+        if (!file.delete() || !tempFile.renameTo(file)) {
+            throw new IOException("Unable to replace: " + file + " with: " + tempFile);
+        }
+        index = newIndex;
+        size = pos;
+        deadBytes = 0;
+    }
+}
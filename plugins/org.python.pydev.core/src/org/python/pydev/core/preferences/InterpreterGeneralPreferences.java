@@ -1,6 +1,7 @@
 package org.python.pydev.core.preferences;
 
 import org.python.pydev.core.IPythonNature;
+import org.python.pydev.shared_core.SharedCorePlugin;
 
 public class InterpreterGeneralPreferences {
 
@@ -24,6 +25,12 @@ public class InterpreterGeneralPreferences {
     public static final String UPDATE_INTERPRETER_INFO_ON_FILESYSTEM_CHANGES = "UPDATE_INTERPRETER_INFO_ON_FILESYSTEM_CHANGES";
     public final static boolean DEFAULT_UPDATE_INTERPRETER_INFO_ON_FILESYSTEM_CHANGES = true;
 
+    public static final String INDEXING_PARALLELISM = "INDEXING_PARALLELISM";
+    public final static int DEFAULT_INDEXING_PARALLELISM = 0; // 0 means the number of available processors.
+
+    public static final String MODULES_CACHE_SIZE_MB = "MODULES_CACHE_SIZE_MB";
+    public final static int DEFAULT_MODULES_CACHE_SIZE_MB = 0; // 0 means 1/8 of the max heap.
+
     public static boolean getCheckConsistentOnStartup() {
         return PydevPrefs.getEclipsePreferences().getBoolean(CHECK_CONSISTENT_ON_STARTUP,
                 DEFAULT_CHECK_CONSISTENT_ON_STARTUP);
@@ -34,4 +41,35 @@ public class InterpreterGeneralPreferences {
                 DEFAULT_UPDATE_INTERPRETER_INFO_ON_FILESYSTEM_CHANGES);
     }
 
+    /**
+     * @return the number of threads to be used to parse the modules when indexing (always >= 1).
+     */
+    public static int getIndexingParallelism() {
+        int parallelism = DEFAULT_INDEXING_PARALLELISM;
+        if (!SharedCorePlugin.inTestMode()) {
+            parallelism = PydevPrefs.getEclipsePreferences().getInt(INDEXING_PARALLELISM,
+                    DEFAULT_INDEXING_PARALLELISM);
+        }
+        if (parallelism <= 0) {
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+        return Math.max(1, parallelism);
+    }
+
+    /**
+     * @return the (approximate) maximum number of bytes of the modules kept in the cache shared by all the modules
+     * managers.
+     */
+    public static long getModulesCacheMaxBytes() {
+        int sizeInMb = DEFAULT_MODULES_CACHE_SIZE_MB;
+        if (!SharedCorePlugin.inTestMode()) {
+            sizeInMb = PydevPrefs.getEclipsePreferences().getInt(MODULES_CACHE_SIZE_MB,
+                    DEFAULT_MODULES_CACHE_SIZE_MB);
+        }
+        if (sizeInMb <= 0) {
+            return Runtime.getRuntime().maxMemory() / 8;
+        }
+        return sizeInMb * 1024L * 1024L;
+    }
+
 }
@@ -86,6 +86,10 @@ public class PyDevCorePreferencesInitializer {
 
         node.putBoolean(InterpreterGeneralPreferences.UPDATE_INTERPRETER_INFO_ON_FILESYSTEM_CHANGES,
                 InterpreterGeneralPreferences.DEFAULT_UPDATE_INTERPRETER_INFO_ON_FILESYSTEM_CHANGES);
+        node.putInt(InterpreterGeneralPreferences.INDEXING_PARALLELISM,
+                InterpreterGeneralPreferences.DEFAULT_INDEXING_PARALLELISM);
+        node.putInt(InterpreterGeneralPreferences.MODULES_CACHE_SIZE_MB,
+                InterpreterGeneralPreferences.DEFAULT_MODULES_CACHE_SIZE_MB);
 
     }
 
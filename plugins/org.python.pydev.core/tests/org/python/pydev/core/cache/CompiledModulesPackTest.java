@@ -0,0 +1,119 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.core.cache;
+
+import java.io.File;
+
+import org.python.pydev.shared_core.io.FileUtils;
+
+import junit.framework.TestCase;
+
+public class CompiledModulesPackTest extends TestCase {
+    private File baseDir;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        baseDir = FileUtils.getTempFileAt(new File("."), "data_compiled_modules_pack_test");
+        if (baseDir.exists()) {
+            FileUtils.deleteDirectoryTree(baseDir);
+        }
+        baseDir.mkdir();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        //The file must be released before being deleted (on Windows it can't be deleted while open/mapped).
+        CompiledModulesPack.closeAll();
+        if (baseDir.exists()) {
+            FileUtils.deleteDirectoryTree(baseDir);
+        }
+        super.tearDown();
+    }
+
+    public void testPutAndGet() throws Exception {
+        File packFile = new File(baseDir, "compiled.pack");
+        File moduleFile = new File(baseDir, "mod2.py");
+        FileUtils.writeStrToFile("a = 10", moduleFile);
+
+        CompiledModulesPack pack = CompiledModulesPack.getPack(packFile);
+        assertNull(pack.get("mod1"));
+        pack.put("mod1", null, new byte[] { 1, 2, 3 });
+        pack.put("mod2", moduleFile, new byte[] { 4 });
+        pack.put("mod1", null, new byte[] { 5, 6 });
+        assertEquals(2, pack.get("mod1").length);
+        assertEquals(4, pack.get("mod2")[0]);
+
+        //Reopen it (the index must be recreated from the file).
+        pack.close();
+        pack = CompiledModulesPack.getPack(packFile);
+        assertEquals(5, pack.get("mod1")[0]);
+        assertTrue(pack.contains("mod2"));
+
+        //Stale after the module changes.
+        moduleFile.setLastModified(moduleFile.lastModified() - 10000);
+        assertNull(pack.get("mod2"));
+        assertFalse(pack.contains("mod2"));
+
+        pack.clear();
+        assertNull(pack.get("mod1"));
+        pack.close();
+        assertNull(pack.get("mod1"));
+    }
+
+    public void testEmptyEntry() throws Exception {
+        File packFile = new File(baseDir, "compiled.pack");
+        CompiledModulesPack pack = CompiledModulesPack.getPack(packFile);
+        pack.put("mod1", null, new byte[0]);
+        pack.put("mod2", null, new byte[] { 2 });
+        assertTrue(pack.contains("mod1"));
+        assertEquals(0, pack.get("mod1").length);
+
+        pack.close();
+        pack = CompiledModulesPack.getPack(packFile);
+        assertTrue(pack.contains("mod1"));
+        assertEquals(0, pack.get("mod1").length);
+        assertEquals(2, pack.get("mod2")[0]);
+    }
+
+    public void testCompact() throws Exception {
+        File packFile = new File(baseDir, "compiled.pack");
+        CompiledModulesPack pack = CompiledModulesPack.getPack(packFile);
+        byte[] data = new byte[10 * 1024];
+        for (int i = 0; i < 20; i++) {
+            data[0] = (byte) i;
+            pack.put("mod1", null, data);
+        }
+        pack.put("mod2", null, new byte[] { 7 });
+        long sizeBefore = packFile.length();
+
+        pack.close();
+        pack = CompiledModulesPack.getPack(packFile);
+        assertEquals(19, pack.get("mod1")[0]);
+        assertEquals(7, pack.get("mod2")[0]);
+        assertTrue(packFile.length() < sizeBefore / 10);
+    }
+
+    public void testSharedPack() throws Exception {
+        File packFile = new File(baseDir, "compiled.pack");
+        CompiledModulesPack pack1 = CompiledModulesPack.getPack(packFile);
+        CompiledModulesPack pack2 = CompiledModulesPack.getPack(new File(new File(baseDir, "."), "compiled.pack"));
+        assertSame(pack1, pack2);
+
+        pack1.put("mod1", null, new byte[] { 1 });
+        pack2.put("mod2", null, new byte[] { 2 });
+        pack1.close();
+
+        //Both entries must be there after the index is recreated from the file.
+        assertEquals(1, pack2.get("mod1")[0]);
+        assertEquals(2, pack2.get("mod2")[0]);
+
+        //Closed: the file may be removed.
+        pack2.close();
+        assertTrue(packFile.delete());
+    }
+}
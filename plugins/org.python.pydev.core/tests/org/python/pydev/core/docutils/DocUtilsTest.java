@@ -6,24 +6,90 @@
  */
 package org.python.pydev.core.docutils;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
+import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.Document;
 import org.eclipse.jface.text.IDocument;
+import org.python.pydev.shared_core.string.FastStringBuffer;
 import org.python.pydev.shared_core.string.StringUtils;
+import org.python.pydev.shared_core.structure.Tuple;
 import org.python.pydev.shared_core.utils.DocUtils;
 import org.python.pydev.shared_core.utils.DocUtils.EmptyLinesComputer;
+import org.python.pydev.shared_core.utils.DocUtils.IDocumentUpdateAPI;
+import org.python.pydev.shared_core.utils.LinesDiff;
+import org.python.pydev.shared_core.utils.diff_match_patch;
 
 import junit.framework.TestCase;
 
 public class DocUtilsTest extends TestCase {
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("-benchmark")) {
+            //Compare with the previous way of updating the document (patches on the whole contents).
+            Tuple<String, String> contents = createFormattedContents(20000);
+            for (int i = 0; i < 5; i++) {
+                IDocument doc = new Document(contents.o1);
+                long initial = System.nanoTime();
+                diff_match_patch diff_match_patch = new diff_match_patch();
+                diff_match_patch.Diff_Timeout = 0.5f;
+                diff_match_patch.Match_Distance = 200;
+                diff_match_patch.Patch_Margin = 10;
+                diff_match_patch.Diff_EditCost = 8;
+                diff_match_patch.patch_apply(diff_match_patch.patch_make(contents.o1, contents.o2), contents.o1,
+                        createUpdateAPI(doc, new ArrayList<String>()));
+                long patchesNanos = System.nanoTime() - initial;
+
+                doc = new Document(contents.o1);
+                initial = System.nanoTime();
+                DocUtils.updateDocRangeWithContents(doc, contents.o1, contents.o2, "\n");
+                long linesNanos = System.nanoTime() - initial;
+                System.out.println(StringUtils.format("Patches: %s ms. Lines diff: %s ms.", patchesNanos / 1000000,
+                        linesNanos / 1000000));
+            }
+            return;
+        }
         junit.textui.TestRunner.run(DocUtilsTest.class);
     }
 
+    /**
+     * @return contents and the contents as a formatter could change it (a few lines changed and added).
+     */
+    private static Tuple<String, String> createFormattedContents(int lines) {
+        FastStringBuffer contents = new FastStringBuffer();
+        FastStringBuffer formatted = new FastStringBuffer();
+        for (int i = 0; i < lines; i++) {
+            String line = "    value_" + i + " = call(a,b, c)  # comment " + (i % 17) + "\n";
+            contents.append(line);
+            formatted.append(i % 50 == 0 ? line.replace("a,b, c", "a, b, c") : line);
+            if (i % 500 == 0) {
+                formatted.append('\n');
+            }
+        }
+        return new Tuple<String, String>(contents.toString(), formatted.toString());
+    }
+
+    private static IDocumentUpdateAPI createUpdateAPI(final IDocument doc, final List<String> changes) {
+        return new IDocumentUpdateAPI() {
+
+            @Override
+            public void set(String text) {
+                changes.add("set");
+                doc.set(text);
+            }
+
+            @Override
+            public void replace(int offset, int length, String text) throws BadLocationException {
+                changes.add(doc.get(offset, length) + "->" + text);
+                doc.replace(offset, length, text);
+            }
+        };
+    }
+
     @Override
     protected void setUp() throws Exception {
         super.setUp();
@@ -443,6 +509,34 @@ public class DocUtilsTest extends TestCase {
         assertEquals(newDocContents, doc.get());
     }
 
+    public void testUpdateDocWithContentsOnlyChangedChars() throws Exception {
+        String docContents = "a\nb = c(d,e)\nf\ng\n";
+        String newDocContents = "a\nb = c(d, e)\nf\n\ng\n";
+        IDocument doc = new Document(docContents);
+        List<String> changes = new ArrayList<String>();
+        DocUtils.updateDocRangeWithContents(createUpdateAPI(doc, changes), doc, docContents, newDocContents, "\n");
+        assertEquals(newDocContents, doc.get());
+        assertEquals(Arrays.asList("->\n", "-> "), changes);
+    }
+
+    public void testUpdateDocWithContentsBigDocument() throws Exception {
+        Tuple<String, String> contents = createFormattedContents(5000);
+        IDocument doc = new Document(contents.o1);
+        List<String> changes = new ArrayList<String>();
+        DocUtils.updateDocRangeWithContents(createUpdateAPI(doc, changes), doc, contents.o1, contents.o2, "\n");
+        assertEquals(contents.o2, doc.get());
+        //100 lines changed and 10 lines added.
+        assertEquals(110, changes.size());
+    }
+
+    public void testLinesDiff() throws Exception {
+        List<String> oldLines = Arrays.asList("a\n", "b\n", "c\n", "d\n", "e\n");
+        List<String> newLines = Arrays.asList("a\n", "x\n", "c\n", "d\n", "e\n", "f\n");
+        assertEquals("[Hunk[1, 2 -> 1, 2], Hunk[5, 5 -> 5, 6]]", LinesDiff.diff(oldLines, newLines, 10).toString());
+        assertNull(LinesDiff.diff(oldLines, newLines, 2));
+        assertEquals("[]", LinesDiff.diff(oldLines, oldLines, 0).toString());
+    }
+
     public void testEmptyLinesAround() {
         IDocument doc = new Document(""
                 + "a\n"
@@ -513,7 +513,8 @@ public abstract class AbstractDebugTarget extends AbstractDebugTargetWithTransmi
         }
 
         // Hide Pydevd threads if requested
-        if (PydevDebugPlugin.getDefault().getPreferenceStore()
+        PydevDebugPlugin plugin = PydevDebugPlugin.getDefault();
+        if (plugin != null && plugin.getPreferenceStore()
                 .getBoolean(PydevDebugPreferencesInitializer.HIDE_PYDEVD_THREADS)) {
             int removeThisMany = 0;
 
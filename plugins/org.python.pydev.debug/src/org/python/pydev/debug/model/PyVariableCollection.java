@@ -10,25 +10,57 @@
  */
 package org.python.pydev.debug.model;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.debug.core.DebugEvent;
 import org.eclipse.debug.core.DebugException;
+import org.eclipse.debug.core.model.IIndexedValue;
 import org.eclipse.debug.core.model.IVariable;
 import org.python.pydev.debug.core.PydevDebugPlugin;
 import org.python.pydev.debug.model.remote.AbstractDebuggerCommand;
 import org.python.pydev.debug.model.remote.GetVariableCommand;
+import org.python.pydev.debug.model.remote.GetVariablePageCommand;
+import org.python.pydev.debug.model.remote.ICommandResponseListener;
+import org.python.pydev.shared_core.log.Log;
+import org.python.pydev.shared_core.structure.Tuple;
 
 /**
  * PyVariableCollection represents container variables.
  * 
  * It knows how to fetch its contents over the network.
  * 
+ * Containers which are too large to be gotten at once (pydevd only sends the first items of those) are
+ * presented as an indexed value, so, the variables view splits them in partitions and only the items of the
+ * partitions which are expanded are requested (as pages).
  */
 public class PyVariableCollection extends PyVariable
-        implements IVariableLocator, IVariablesContainerParent {
+        implements IVariableLocator, IVariablesContainerParent, IIndexedValue {
+
+    /**
+     * Containers with up to this number of items are gotten at once (same limit used in pydevd).
+     */
+    public static final int MAX_ITEMS_TO_HANDLE = 300;
 
     private final ContainerOfVariables variableContainer = new ContainerOfVariables(this, false);
 
+    /**
+     * The number of items in the container (only available when it's larger than MAX_ITEMS_TO_HANDLE).
+     */
+    private volatile int containerLen = -1;
+
+    /**
+     * Index of the item -> variable of the items already gotten in pages (cleared when new variables are requested).
+     */
+    private final Map<Integer, PyVariable> items = new HashMap<Integer, PyVariable>();
+
+    /**
+     * Time to wait for a page to be gotten (if it takes more, the view is asked to be updated when it arrives).
+     */
+    private static final int PAGE_TIMEOUT_MILLIS = 3000;
+
     public PyVariableCollection(AbstractDebugTarget target, String name, String type, String value,
             IVariableLocator locator) {
         super(target, name, type, value, locator);
@@ -76,9 +108,151 @@ public class PyVariableCollection extends PyVariable
 
     @Override
     public void forceGetNewVariables() {
+        synchronized (items) {
+            items.clear();
+        }
         this.variableContainer.forceGetNewVariables();
     }
 
+    public void setContainerLen(int containerLen) {
+        this.containerLen = containerLen;
+    }
+
+    @Override
+    public void copyValueString(PyVariable newVariable) {
+        super.copyValueString(newVariable);
+        if (newVariable instanceof PyVariableCollection) {
+            this.containerLen = ((PyVariableCollection) newVariable).containerLen;
+        }
+    }
+
+    /**
+     * @return the number of items if the container is paged (0 otherwise, in which case its contents are gotten
+     * through getVariables()).
+     */
+    @Override
+    public int getSize() throws DebugException {
+        int len = containerLen;
+        return len > MAX_ITEMS_TO_HANDLE ? len : 0;
+    }
+
+    @Override
+    public int getInitialOffset() {
+        return 0;
+    }
+
+    @Override
+    public IVariable getVariable(int offset) throws DebugException {
+        return getVariables(offset, 1)[0];
+    }
+
+    /**
+     * @return exactly length variables for the items in the given range (requested to the backend if not already
+     * available). Items which aren't available (i.e.: if the backend didn't answer in time) are presented as an
+     * error variable.
+     */
+    @Override
+    public IVariable[] getVariables(int offset, int length) throws DebugException {
+        synchronized (items) {
+            if (hasItems(offset, length)) {
+                return getItems(offset, length);
+            }
+        }
+        final GetVariablePageCommand cmd = new GetVariablePageCommand(target, getPyDBLocation(), offset, length);
+        // waiting, completed
+        final boolean[] state = new boolean[] { true, false };
+        cmd.setCompletionListener(new ICommandResponseListener() {
+
+            @Override
+            public void commandComplete(AbstractDebuggerCommand c) {
+                Tuple<PyVariable[], Integer> page = getCommandPage(c);
+                boolean notify;
+                synchronized (items) {
+                    if (page != null) {
+                        for (int i = 0; i < page.o1.length; i++) {
+                            items.put(cmd.getOffset() + i, page.o1[i]);
+                        }
+                    }
+                    state[1] = true;
+                    notify = !state[0];
+                    items.notifyAll();
+                }
+                if (page != null && page.o2 >= 0 && page.o2 != containerLen) {
+                    //The container changed: the view must be updated with the new size.
+                    containerLen = page.o2;
+                    notify = true;
+                }
+                if (notify) {
+                    //Arrived after we stopped waiting for it: ask for the view to be updated.
+                    target.fireEvent(new DebugEvent(PyVariableCollection.this, DebugEvent.CHANGE, DebugEvent.CONTENT));
+                }
+            }
+        });
+        target.postCommand(cmd);
+
+        synchronized (items) {
+            try {
+                long until = System.currentTimeMillis() + PAGE_TIMEOUT_MILLIS;
+                while (!state[1]) {
+                    long timeout = until - System.currentTimeMillis();
+                    if (timeout <= 0) {
+                        break;
+                    }
+                    items.wait(timeout);
+                }
+            } catch (InterruptedException e) {
+                Log.log(e);
+            }
+            state[0] = false;
+            return getItems(offset, length);
+        }
+    }
+
+    /**
+     * Must be called synchronized on the items.
+     */
+    private boolean hasItems(int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            if (!items.containsKey(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Must be called synchronized on the items.
+     */
+    private PyVariable[] getItems(int offset, int length) {
+        PyVariable[] ret = new PyVariable[length];
+        for (int i = 0; i < length; i++) {
+            PyVariable variable = items.get(offset + i);
+            if (variable == null) {
+                variable = new PyVariable(target, String.valueOf(offset + i), "pydev ERROR",
+                        "Could not resolve variable", this);
+            }
+            ret[i] = variable;
+        }
+        return ret;
+    }
+
+    /**
+     * @return the variables gotten in a page and the total number of items reported by the backend (-1 if not
+     * available) or null if the page couldn't be gotten.
+     */
+    private Tuple<PyVariable[], Integer> getCommandPage(AbstractDebuggerCommand cmd) {
+        try {
+            String payload = ((GetVariableCommand) cmd).getResponse();
+            return XMLUtils.XMLToVariablesPage(target, this, payload);
+        } catch (CoreException e) {
+            String msg = e.getMessage(); //we don't want to show this error
+            if (msg == null || (msg.indexOf("Error resolving frame:") == -1 && msg.indexOf("from thread:") == -1)) {
+                PydevDebugPlugin.log(IStatus.ERROR, "Error fetching the items of: " + name, e);
+            }
+            return null;
+        }
+    }
+
     @Override
     public boolean hasVariables() throws DebugException {
         return true;
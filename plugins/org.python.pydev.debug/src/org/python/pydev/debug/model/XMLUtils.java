@@ -13,6 +13,7 @@ package org.python.pydev.debug.model;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
@@ -33,7 +34,9 @@ import org.python.pydev.debug.core.PydevDebugPlugin;
 import org.python.pydev.debug.newconsole.EvaluateDebugConsoleExpression;
 import org.python.pydev.shared_core.io.FileUtils;
 import org.python.pydev.shared_core.string.FastStringBuffer;
+import org.python.pydev.shared_core.structure.Tuple;
 import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXNotRecognizedException;
 import org.xml.sax.SAXNotSupportedException;
@@ -73,6 +76,22 @@ public class XMLUtils {
         return parser;
     }
 
+    private static final ThreadLocal<SAXParser> reusableParser = new ThreadLocal<SAXParser>();
+
+    /**
+     * @return a parser which is reused in the current thread (so, it can't be used to parse while in a handler).
+     */
+    private static SAXParser getReusableSAXParser() throws CoreException {
+        SAXParser parser = reusableParser.get();
+        if (parser == null) {
+            parser = getSAXParser();
+            reusableParser.set(parser);
+        } else {
+            parser.reset();
+        }
+        return parser;
+    }
+
     private static String decode(String value) {
         if (value != null) {
             try {
@@ -152,7 +171,16 @@ public class XMLUtils {
         String value = decodeIgnoreError(attributes.getValue("value"));
         String isContainer = attributes.getValue("isContainer");
         if ("True".equals(isContainer)) {
-            var = new PyVariableCollection(target, name, type, value, locator);
+            PyVariableCollection collection = new PyVariableCollection(target, name, type, value, locator);
+            String containerLen = attributes.getValue("containerLen");
+            if (containerLen != null) {
+                try {
+                    collection.setContainerLen(Integer.parseInt(containerLen));
+                } catch (NumberFormatException e) {
+                    Log.log("Unexpected containerLen: " + containerLen);
+                }
+            }
+            var = collection;
         } else {
             var = new PyVariable(target, name, type, value, locator);
         }
@@ -367,6 +395,11 @@ public class XMLUtils {
         private IVariableLocator locator;
         public List<PyVariable> vars;
 
+        /**
+         * The total number of items in the container (only available in the response to a page request).
+         */
+        public int pageTotal = -1;
+
         public XMLToVariableInfo(AbstractDebugTarget target, IVariableLocator locator) {
             this.target = target;
             this.locator = locator;
@@ -380,16 +413,47 @@ public class XMLUtils {
             // create a local variable, and add it to locals
             if (qName.equals("var")) {
                 vars.add(createVariable(target, locator, attributes));
+
+            } else if (qName.equals("page")) {
+                // <page offset="0" total="1000" />
+                String total = attributes.getValue("total");
+                if (total != null) {
+                    try {
+                        pageTotal = Integer.parseInt(total);
+                    } catch (NumberFormatException e) {
+                        Log.log("Unexpected page total: " + total);
+                    }
+                }
             }
         }
     }
 
+    /**
+     * @return the variables in the response to a page request and the total number of items in the container
+     * (-1 if not available).
+     */
+    public static Tuple<PyVariable[], Integer> XMLToVariablesPage(AbstractDebugTarget target,
+            IVariableLocator locator, String payload) throws CoreException {
+        try {
+            SAXParser parser = getReusableSAXParser();
+            XMLToVariableInfo info = new XMLToVariableInfo(target, locator);
+            parser.parse(new InputSource(new StringReader(payload)), info);
+            return new Tuple<PyVariable[], Integer>(info.vars.toArray(new PyVariable[0]), info.pageTotal);
+        } catch (CoreException e) {
+            throw e;
+        } catch (SAXException e) {
+            throw new CoreException(PydevDebugPlugin.makeStatus(IStatus.ERROR, "Unexpected XML error", e));
+        } catch (IOException e) {
+            throw new CoreException(PydevDebugPlugin.makeStatus(IStatus.ERROR, "Unexpected XML error", e));
+        }
+    }
+
     public static PyVariable[] XMLToVariables(AbstractDebugTarget target, IVariableLocator locator, String payload)
             throws CoreException {
         try {
-            SAXParser parser = getSAXParser();
+            SAXParser parser = getReusableSAXParser();
             XMLToVariableInfo info = new XMLToVariableInfo(target, locator);
-            parser.parse(new ByteArrayInputStream(payload.getBytes()), info);
+            parser.parse(new InputSource(new StringReader(payload)), info);
             PyVariable[] vars = new PyVariable[info.vars.size()];
             for (int i = 0; i < info.vars.size(); i++) {
                 vars[i] = info.vars.get(i);
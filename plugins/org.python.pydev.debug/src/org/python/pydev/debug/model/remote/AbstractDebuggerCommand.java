@@ -87,6 +87,8 @@ public abstract class AbstractDebuggerCommand {
     static public final int CMD_INPUT_REQUESTED = 147;
     static public final int CMD_PROCESS_CREATED = 149;
 
+    static public final int CMD_GET_VARIABLE_PAGE = 206;
+
     static public final int CMD_ERROR = 901;
     static public final int CMD_VERSION = 501;
     static public final int CMD_RETURN = 502;
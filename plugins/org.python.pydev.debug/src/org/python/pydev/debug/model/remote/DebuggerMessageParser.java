@@ -0,0 +1,207 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.debug.model.remote;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses the messages sent by pydevd (in the 'http' protocol) directly from the bytes read from a channel.
+ *
+ * Each message has a 'Content-Length: <len>' header followed by an empty line and by the contents:
+ * '<command id>\t<sequence>\t<payload>' (the payload is the only part converted to a String).
+ *
+ * Note: the payload is still the XML parsed afterwards by XMLUtils. A binary/JSON framing negotiated with
+ * SetProtocolCommand and parsed straight into the PyVariables (without the payload String) is still to be done
+ * (pydevd's JSON protocols use the Debug Adapter Protocol command set, so, it needs a framing of its own in pydevd).
+ */
+public final class DebuggerMessageParser {
+
+    private static final byte[] CONTENT_LENGTH = "Content-Length: ".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int INITIAL_BUFFER_SIZE = 32 * 1024;
+
+    /**
+     * After a big message is read, the buffer is shrunk back if it's bigger than this.
+     */
+    private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
+    public static final class Message {
+
+        public final int cmdCode;
+        public final int seqCode;
+        public final String payload;
+
+        public Message(int cmdCode, int seqCode, String payload) {
+            this.cmdCode = cmdCode;
+            this.seqCode = seqCode;
+            this.payload = payload;
+        }
+    }
+
+    private final ReadableByteChannel channel;
+
+    /**
+     * Always in read mode: the bytes from position to limit weren't parsed yet.
+     */
+    private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+
+    public DebuggerMessageParser(ReadableByteChannel channel) {
+        this.channel = channel;
+        buffer.flip();
+    }
+
+    /**
+     * @return the next message or null if the channel was closed.
+     * @throws ProtocolException if an unexpected header is found (the exception message is the header).
+     */
+    public Message next() throws IOException {
+        int bytesToRead = -1;
+        while (true) {
+            int lineEnd = findLineEnd();
+            while (lineEnd == -1) {
+                if (!fill()) {
+                    return null;
+                }
+                lineEnd = findLineEnd();
+            }
+            int lineStart = buffer.position();
+            int lineLength = lineEnd - lineStart;
+            if (lineLength > 0 && buffer.get(lineEnd - 1) == '\r') {
+                lineLength--;
+            }
+            buffer.position(lineEnd + 1);
+
+            if (lineLength == 0) {
+                if (bytesToRead == -1) {
+                    throw new IOException(
+                            "Error. pydevd did not respect protocol (Content-Length not passed in header).");
+                }
+                return readContents(bytesToRead);
+            }
+            if (!startsWith(lineStart, lineLength, CONTENT_LENGTH)) {
+                throw new ProtocolException(new String(buffer.array(), lineStart, lineLength,
+                        StandardCharsets.UTF_8));
+            }
+            bytesToRead = parseInt(lineStart + CONTENT_LENGTH.length, lineStart + lineLength);
+            if (bytesToRead < 0) {
+                throw new IOException("Error getting number of bytes to load. Found: "
+                        + new String(buffer.array(), lineStart, lineLength, StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    private Message readContents(int length) throws IOException {
+        while (buffer.remaining() < length) {
+            if (!fill()) {
+                throw new IOException("Channel closed while reading message with " + length + " bytes.");
+            }
+        }
+        byte[] array = buffer.array();
+        int start = buffer.position();
+        int end = start + length;
+        buffer.position(end);
+
+        int firstTab = indexOf(start, end, (byte) '\t');
+        int secondTab = firstTab == -1 ? -1 : indexOf(firstTab + 1, end, (byte) '\t');
+        if (secondTab == -1) {
+            throw new IOException("Unexpected message: " + new String(array, start, length, StandardCharsets.UTF_8));
+        }
+        int cmdCode = parseInt(start, firstTab);
+        int seqCode = parseInt(firstTab + 1, secondTab);
+        if (cmdCode < 0 || seqCode < 0) {
+            throw new IOException("Unexpected message: " + new String(array, start, length, StandardCharsets.UTF_8));
+        }
+        String payload = new String(array, secondTab + 1, end - secondTab - 1, StandardCharsets.UTF_8);
+        if (buffer.capacity() > MAX_RETAINED_BUFFER_SIZE && buffer.remaining() < INITIAL_BUFFER_SIZE) {
+            ByteBuffer newBuffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+            newBuffer.put(buffer);
+            newBuffer.flip();
+            buffer = newBuffer;
+        }
+        return new Message(cmdCode, seqCode, payload);
+    }
+
+    /**
+     * Reads more bytes from the channel (growing the buffer if it's full).
+     *
+     * @return false if the channel was closed.
+     */
+    private boolean fill() throws IOException {
+        if (buffer.position() == 0 && buffer.limit() == buffer.capacity()) {
+            ByteBuffer newBuffer = ByteBuffer.allocate(buffer.capacity() * 2);
+            newBuffer.put(buffer);
+            buffer = newBuffer;
+        } else {
+            buffer.compact();
+        }
+        try {
+            int read;
+            do {
+                read = channel.read(buffer);
+            } while (read == 0);
+            return read > 0;
+        } finally {
+            buffer.flip();
+        }
+    }
+
+    private int findLineEnd() {
+        return indexOf(buffer.position(), buffer.limit(), (byte) '\n');
+    }
+
+    private int indexOf(int start, int end, byte b) {
+        byte[] array = buffer.array();
+        for (int i = start; i < end; i++) {
+            if (array[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean startsWith(int start, int length, byte[] prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        byte[] array = buffer.array();
+        for (int i = 0; i < prefix.length; i++) {
+            if (array[start + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the (non-negative) int in the given range (surrounding spaces are ignored) or -1 if it's not valid.
+     */
+    private int parseInt(int start, int end) {
+        byte[] array = buffer.array();
+        while (start < end && array[start] == ' ') {
+            start++;
+        }
+        while (end > start && array[end - 1] == ' ') {
+            end--;
+        }
+        if (start == end || end - start > 9) {
+            return -1;
+        }
+        int ret = 0;
+        for (int i = start; i < end; i++) {
+            int digit = array[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            ret = ret * 10 + digit;
+        }
+        return ret;
+    }
+}
@@ -6,26 +6,34 @@
  */
 package org.python.pydev.debug.model.remote;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.ProtocolException;
 import java.net.Socket;
-import java.nio.charset.StandardCharsets;
-import java.util.Dictionary;
-import java.util.Hashtable;
+import java.nio.channels.Channels;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
 
 import org.eclipse.core.runtime.IStatus;
 import org.python.pydev.core.log.Log;
 import org.python.pydev.debug.core.PydevDebugPlugin;
 import org.python.pydev.debug.model.AbstractDebugTarget;
 import org.python.pydev.debug.model.AbstractDebugTargetWithTransmission;
-import org.python.pydev.shared_core.io.FileUtils;
-import org.python.pydev.shared_core.string.FastStringBuffer;
 import org.python.pydev.shared_ui.utils.RunInUiThread;
 import org.python.pydev.ui.dialogs.PyDialogHelpers;
 
 /**
  * Reads and dispatches commands
+ *
+ * The reader thread only reads the messages from the socket: the messages (responses to commands and events such
+ * as thread suspended) are processed in a dispatcher thread of the session, so, a slow handler doesn't stop other
+ * messages from being read.
+ *
+ * Responses and events are processed in the order they're received (i.e.: the frames gotten in a response can't
+ * be applied after the thread was resumed or killed in a later event).
  */
 public class DebuggerReader implements Runnable {
     /**
@@ -46,7 +54,20 @@ public class DebuggerReader implements Runnable {
     /**
      * commands waiting for response. Their keys are the sequence ids
      */
-    private Dictionary<Integer, AbstractDebuggerCommand> responseQueue = new Hashtable<Integer, AbstractDebuggerCommand>();
+    private final ConcurrentHashMap<Integer, AbstractDebuggerCommand> responseQueue = new ConcurrentHashMap<>();
+
+    /**
+     * Processes the messages of this session (in the order they're received).
+     */
+    private final ExecutorService dispatcher = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "pydevd.dispatcher");
+            t.setDaemon(true);
+            return t;
+        }
+    });
 
     /**
      * we read from this
@@ -70,6 +91,7 @@ public class DebuggerReader implements Runnable {
         remote = (AbstractDebugTarget) r;
         socket = s;
         in = socket.getInputStream();
+        parser = new DebuggerMessageParser(Channels.newChannel(in));
     }
 
     /**
@@ -83,40 +105,35 @@ public class DebuggerReader implements Runnable {
      * @param cmd
      */
     public void addToResponseQueue(AbstractDebuggerCommand cmd) {
-        int sequence = cmd.getSequence();
-        synchronized (responseQueue) {
-            responseQueue.put(sequence, cmd);
-        }
+        responseQueue.put(cmd.getSequence(), cmd);
     }
 
     /**
-     * Parses & dispatches the command
+     * Dispatches the command (the actual processing is done in another thread).
      */
-    private void processCommand(String cmdLine) {
+    private void processCommand(final int cmdCode, final int seqCode, final String payload) {
+        // is there a response waiting
+        final AbstractDebuggerCommand cmd = responseQueue.remove(seqCode);
         try {
-            String[] cmdParsed = cmdLine.split("\t", 3);
-            int cmdCode = Integer.parseInt(cmdParsed[0]);
-            int seqCode = Integer.parseInt(cmdParsed[1]);
-            String payload = cmdParsed[2];
-
-            // is there a response waiting
-            AbstractDebuggerCommand cmd;
-            synchronized (responseQueue) {
-                cmd = responseQueue.remove(new Integer(seqCode));
-            }
+            dispatcher.execute(new Runnable() {
 
-            if (cmd == null) {
-                if (remote != null) {
-                    remote.processCommand(cmdParsed[0], cmdParsed[1], payload);
-                } else {
-                    PydevDebugPlugin.log(IStatus.ERROR, "internal error, command received no target", null);
+                @Override
+                public void run() {
+                    try {
+                        if (cmd != null) {
+                            cmd.processResponse(cmdCode, payload);
+                        } else if (remote != null) {
+                            remote.processCommand(Integer.toString(cmdCode), Integer.toString(seqCode), payload);
+                        } else {
+                            PydevDebugPlugin.log(IStatus.ERROR, "internal error, command received no target", null);
+                        }
+                    } catch (Exception e) {
+                        Log.log(e);
+                    }
                 }
-            } else {
-                cmd.processResponse(cmdCode, payload);
-            }
-        } catch (Exception e) {
-            Log.log(e);
-            throw new RuntimeException(e);
+            });
+        } catch (RejectedExecutionException e) {
+            //Already terminated.
         }
     }
 
@@ -130,14 +147,12 @@ public class DebuggerReader implements Runnable {
     public void run() {
         try {
             while (!done) {
-                String contents;
+                DebuggerMessageParser.Message message;
                 try {
-                    if ((contents = readContents()) == null) {
+                    if ((message = readMessage()) == null) {
                         done = true;
                     } else {
-                        if (contents.length() > 0) {
-                            processCommand(contents.toString());
-                        }
+                        processCommand(message.cmdCode, message.seqCode, message.payload);
                     }
                 } catch (Exception e1) {
                     done = true;
@@ -148,72 +163,45 @@ public class DebuggerReader implements Runnable {
                 }
 
                 if (done || socket == null || !socket.isConnected()) {
-                    AbstractDebugTarget target = remote;
+                    final AbstractDebugTarget target = remote;
 
                     if (target != null) {
-                        target.terminate();
+                        //Terminate only after the events already read are processed.
+                        dispatcher.execute(new Runnable() {
+
+                            @Override
+                            public void run() {
+                                target.terminate();
+                            }
+                        });
                     }
                     done = true;
                 }
             }
         } finally {
-            buffer = null;
-            contents = null;
-            byteArrayOutputStream = null;
+            parser = null;
+            dispatcher.shutdown();
         }
     }
 
-    private byte[] buffer = new byte[32 * 1024];
-    private FastStringBuffer contents = new FastStringBuffer();
-    private ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+    private DebuggerMessageParser parser;
 
-    private String readContents() throws IOException {
-        int bytesToRead = -1;
-
-        while (true) {
-            FileUtils.readLine(in, contents.clear());
-            contents.trim(); // Remove the \r\n in the end.
-
-            if (contents.length() == 0) {
-                // Ok, real payload ahead.
-                // Read once from stdin and print result to stdout
-                if (bytesToRead == -1) {
-                    Log.log("Error. pydevd did not respect protocol (Content-Length not passed in header).");
-                    return null;
-                }
-
-                int bytesRead;
-                while ((bytesRead = in.read(buffer, 0, Math.min(bytesToRead, buffer.length))) > 0) {
-                    byteArrayOutputStream.write(buffer, 0, bytesRead);
-                    bytesToRead -= bytesRead;
-                }
-                byte[] bytes = byteArrayOutputStream.toByteArray();
-                byteArrayOutputStream.reset();
-                return new String(bytes, StandardCharsets.UTF_8);
-            } else {
-                // Header found
-                String contentLen = "Content-Length: ";
-                if (contents.startsWith(contentLen)) {
-                    if (DEBUG) {
-                        System.err.println("receive cmd: " + contents);
-                    }
-                    contents.deleteFirstChars(contentLen.length());
-                    try {
-                        bytesToRead = Integer.parseInt(contents.trim().toString());
-                    } catch (NumberFormatException e) {
-                        throw new IOException("Error getting number of bytes to load. Found: " + contents);
-                    }
-                } else {
-                    // Unexpected header.
-                    String msg = "It seems an old version of the PyDev Debugger is being used (please update the pydevd package being used).\n\nFound message:\n"
-                            + contents;
-                    RunInUiThread.async(() -> {
-                        PyDialogHelpers.openCritical("Error", msg);
-                    });
-                    Log.log(msg);
-                    return null;
-                }
+    private DebuggerMessageParser.Message readMessage() throws IOException {
+        try {
+            DebuggerMessageParser.Message message = parser.next();
+            if (DEBUG && message != null) {
+                System.err.println("receive cmd: " + message.cmdCode + " seq: " + message.seqCode);
             }
+            return message;
+        } catch (ProtocolException e) {
+            // Unexpected header.
+            String msg = "It seems an old version of the PyDev Debugger is being used "
+                    + "(please update the pydevd package being used).\n\nFound message:\n" + e.getMessage();
+            RunInUiThread.async(() -> {
+                PyDialogHelpers.openCritical("Error", msg);
+            });
+            Log.log(msg);
+            return null;
         }
     }
 
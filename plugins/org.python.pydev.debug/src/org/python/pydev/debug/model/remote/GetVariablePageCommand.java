@@ -0,0 +1,43 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.debug.model.remote;
+
+import org.python.pydev.debug.model.AbstractDebugTarget;
+
+/**
+ * Gets only a range of the items of a container (used for containers which are too large to be
+ * gotten at once).
+ */
+public class GetVariablePageCommand extends GetVariableCommand {
+
+    private final int offset;
+    private final int limit;
+
+    public GetVariablePageCommand(AbstractDebugTarget debugger, String locator, int offset, int limit) {
+        super(debugger, locator);
+        this.offset = offset;
+        this.limit = limit;
+    }
+
+    @Override
+    public String getOutgoing() {
+        return makeCommand(getCommandId(), sequence, offset + "\t" + limit + "\t" + locator);
+    }
+
+    @Override
+    protected int getCommandId() {
+        return CMD_GET_VARIABLE_PAGE;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+}
@@ -0,0 +1,422 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.debug.model;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.debug.core.DebugEvent;
+import org.eclipse.debug.core.ILaunch;
+import org.eclipse.debug.core.model.IProcess;
+import org.python.pydev.debug.model.remote.AbstractDebuggerCommand;
+import org.python.pydev.debug.model.remote.GetFrameCommand;
+import org.python.pydev.debug.model.remote.ICommandResponseListener;
+import org.python.pydev.debug.model.remote.ThreadRunCommand;
+import org.python.pydev.shared_core.net.SocketUtil;
+import org.python.pydev.shared_core.string.FastStringBuffer;
+
+import junit.framework.TestCase;
+
+/**
+ * Stress benchmark for a debug session with many threads hitting breakpoints at the same time.
+ *
+ * A fake pydevd (in-process, connected through a local socket) replays the traffic of a session: each of its
+ * threads is created, then repeatedly sends a thread suspended event, answers the frame request done by the
+ * client and waits for the thread to be resumed. The client side is the actual AbstractDebugTarget (with the
+ * DebuggerReader/DebuggerWriter) and, when a thread is suspended, it does what the UI does: gets the variables of
+ * the top frame and then resumes the thread.
+ *
+ * Reports events per second, the latency from the suspend being written by pydevd to the model being updated and
+ * the bytes allocated (by the pydevd.* threads of the client) per event.
+ *
+ * Run main() to benchmark (args: threads rounds); the test case does a small run to check that it works.
+ */
+public class DebugSessionStressBenchmark extends TestCase {
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 128;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        for (int i = 0; i < 3; i++) {
+            System.out.println(run(threads, rounds, 60));
+        }
+    }
+
+    public void testStress() throws Exception {
+        Result result = run(16, 3, 30);
+        assertEquals(result.toString(), 16 * 3, result.suspends);
+        assertEquals(result.toString(), 16 * 3, result.resumes);
+        assertEquals(result.toString(), 0, result.lost);
+    }
+
+    public static final class Result {
+
+        public final int threads;
+        public final int suspends;
+        public final int resumes;
+        public final int lost;
+        public final int events;
+        public final long elapsedNanos;
+        public final long[] latenciesNanos;
+        public final long allocatedBytes;
+
+        private Result(int threads, int suspends, int resumes, int lost, int events, long elapsedNanos,
+                long[] latenciesNanos, long allocatedBytes) {
+            this.threads = threads;
+            this.suspends = suspends;
+            this.resumes = resumes;
+            this.lost = lost;
+            this.events = events;
+            this.elapsedNanos = elapsedNanos;
+            this.latenciesNanos = latenciesNanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        private long percentileMicros(double percentile) {
+            if (latenciesNanos.length == 0) {
+                return 0;
+            }
+            int i = (int) Math.min(latenciesNanos.length - 1, Math.round(percentile * (latenciesNanos.length - 1)));
+            return latenciesNanos[i] / 1000;
+        }
+
+        @Override
+        public String toString() {
+            FastStringBuffer buf = new FastStringBuffer();
+            buf.append("Threads: ").append(threads);
+            buf.append(" suspends: ").append(suspends);
+            buf.append(" resumes: ").append(resumes);
+            buf.append(" lost: ").append(lost);
+            buf.append(" time: ").append(elapsedNanos / 1000000).append("ms");
+            buf.append(" events/sec: ").append(elapsedNanos > 0 ? (long) (events * 1e9 / elapsedNanos) : 0);
+            buf.append(" suspend->model latency (us) p50: ").append(percentileMicros(.5));
+            buf.append(" p99: ").append(percentileMicros(.99));
+            buf.append(" max: ").append(percentileMicros(1));
+            buf.append(" bytes/event: ");
+            if (allocatedBytes >= 0 && events > 0) {
+                buf.append(allocatedBytes / events);
+            } else {
+                buf.append("n/a");
+            }
+            return buf.toString();
+        }
+    }
+
+    /**
+     * The client side: updates the model as the actual target and requests what the UI would request.
+     */
+    private static class StressDebugTarget extends AbstractDebugTarget {
+
+        private final FakePydevd pydevd;
+        private final AtomicInteger suspends = new AtomicInteger();
+        private final AtomicInteger resumes = new AtomicInteger();
+        private final AtomicInteger events = new AtomicInteger();
+        private final List<Long> latencies = new ArrayList<Long>();
+
+        private StressDebugTarget(FakePydevd pydevd) {
+            this.pydevd = pydevd;
+        }
+
+        @Override
+        public void fireEvent(DebugEvent event) {
+            events.incrementAndGet();
+            Object source = event.getSource();
+            if (!(source instanceof PyThread)) {
+                return;
+            }
+            final PyThread thread = (PyThread) source;
+            if (event.getKind() == DebugEvent.SUSPEND) {
+                Long sent = pydevd.suspendSentAt.get(thread.getId());
+                if (sent != null) {
+                    long latency = System.nanoTime() - sent;
+                    synchronized (latencies) {
+                        latencies.add(latency);
+                    }
+                }
+                suspends.incrementAndGet();
+
+                final PyStackFrame frame = (PyStackFrame) thread.getTopStackFrame();
+                if (frame == null) {
+                    return;
+                }
+                GetFrameCommand cmd = new GetFrameCommand(this, frame.getFrameLocator().getPyDBLocation());
+                cmd.setCompletionListener(new ICommandResponseListener() {
+
+                    @Override
+                    public void commandComplete(AbstractDebuggerCommand cmd) {
+                        events.incrementAndGet();
+                        PyVariableCollection.getCommandVariables(cmd, StressDebugTarget.this,
+                                frame.getFrameLocator());
+                        postCommand(new ThreadRunCommand(StressDebugTarget.this, thread.getId()));
+                    }
+                });
+                postCommand(cmd);
+
+            } else if (event.getKind() == DebugEvent.RESUME) {
+                resumes.incrementAndGet();
+            }
+        }
+
+        @Override
+        public IProcess getProcess() {
+            return null;
+        }
+
+        @Override
+        public void launchRemoved(ILaunch launch) {
+        }
+
+        @Override
+        public boolean canTerminate() {
+            return true;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return socket == null;
+        }
+    }
+
+    /**
+     * Replays the messages a pydevd with the given number of threads would send.
+     */
+    private static class FakePydevd {
+
+        private static final int VARIABLES_PER_FRAME = 40;
+        private static final int FRAMES_PER_STACK = 12;
+
+        private final int threads;
+        private final int rounds;
+        private final Socket socket;
+        private final OutputStream out;
+        private final Semaphore[] resumed;
+        private final ConcurrentHashMap<String, Long> suspendSentAt = new ConcurrentHashMap<String, Long>();
+        private final AtomicLong lost = new AtomicLong();
+        private final CountDownLatch finished;
+        private final String frameVariables;
+
+        private FakePydevd(Socket socket, int threads, int rounds) throws IOException {
+            this.socket = socket;
+            this.out = socket.getOutputStream();
+            this.threads = threads;
+            this.rounds = rounds;
+            this.finished = new CountDownLatch(threads);
+            this.resumed = new Semaphore[threads];
+            for (int i = 0; i < threads; i++) {
+                resumed[i] = new Semaphore(0);
+            }
+            FastStringBuffer buf = new FastStringBuffer();
+            buf.append("<xml>");
+            for (int i = 0; i < VARIABLES_PER_FRAME; i++) {
+                if (i % 4 == 0) {
+                    buf.append("<var name=\"lst").append(i)
+                            .append("\" type=\"list\" qualifier=\"builtins\" value=\"list%3A+%5B1%2C+2%2C+3%5D\"")
+                            .append(" isContainer=\"True\" />");
+                } else {
+                    buf.append("<var name=\"var").append(i)
+                            .append("\" type=\"int\" qualifier=\"builtins\" value=\"int%3A+").append(i)
+                            .append("\" />");
+                }
+            }
+            buf.append("</xml>");
+            frameVariables = buf.toString();
+        }
+
+        private static String threadId(int i) {
+            return "pid1_seq" + (i + 1);
+        }
+
+        private void send(int cmdCode, int seq, String payload) throws IOException {
+            byte[] body = (cmdCode + "\t" + seq + "\t" + payload + "\n").getBytes(StandardCharsets.UTF_8);
+            byte[] header = ("Content-Length: " + body.length + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+            synchronized (out) {
+                out.write(header);
+                out.write(body);
+                out.flush();
+            }
+        }
+
+        private String createStack(int thread, int round) {
+            FastStringBuffer buf = new FastStringBuffer();
+            buf.append("<xml><thread id=\"").append(threadId(thread)).append("\" stop_reason=\"")
+                    .append(AbstractDebuggerCommand.CMD_SET_BREAK).append("\">");
+            for (int i = 0; i < FRAMES_PER_STACK; i++) {
+                buf.append("<frame id=\"").append(thread * 1000 + i).append("\" name=\"method").append(i)
+                        .append("\" file=\"%2Ftmp%2Fproject%2Fmodule").append(i).append(".py\" line=\"")
+                        .append(10 + round).append("\" />");
+            }
+            buf.append("</thread></xml>");
+            return buf.toString();
+        }
+
+        /**
+         * Starts the threads which send the events and the thread which answers the requests.
+         */
+        private void start() throws IOException {
+            FastStringBuffer buf = new FastStringBuffer();
+            buf.append("<xml>");
+            for (int i = 0; i < threads; i++) {
+                buf.append("<thread name=\"Thread-").append(i).append("\" id=\"").append(threadId(i)).append("\" />");
+            }
+            buf.append("</xml>");
+            send(AbstractDebuggerCommand.CMD_THREAD_CREATED, 0, buf.toString());
+
+            Thread requestsThread = new Thread("fake pydevd: requests") {
+                @Override
+                public void run() {
+                    answerRequests();
+                }
+            };
+            requestsThread.setDaemon(true);
+            requestsThread.start();
+
+            for (int i = 0; i < threads; i++) {
+                final int thread = i;
+                Thread t = new Thread("fake pydevd: " + threadId(i)) {
+                    @Override
+                    public void run() {
+                        try {
+                            for (int round = 0; round < rounds; round++) {
+                                suspendSentAt.put(threadId(thread), System.nanoTime());
+                                send(AbstractDebuggerCommand.CMD_THREAD_SUSPEND, 0, createStack(thread, round));
+                                if (!resumed[thread].tryAcquire(5, TimeUnit.SECONDS)) {
+                                    //The request (or its response) was lost: go on with the next round.
+                                    lost.incrementAndGet();
+                                    continue;
+                                }
+                                send(AbstractDebuggerCommand.CMD_THREAD_RUN, 0,
+                                        threadId(thread) + "\t" + AbstractDebuggerCommand.CMD_THREAD_RUN);
+                            }
+                        } catch (Exception e) {
+                            e.printStackTrace();
+                        } finally {
+                            finished.countDown();
+                        }
+                    }
+                };
+                t.setDaemon(true);
+                t.start();
+            }
+        }
+
+        /**
+         * Reads the commands sent by the client (cmd\tseq\tpayload per line).
+         */
+        private void answerRequests() {
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isEmpty()) {
+                        continue;
+                    }
+                    String[] split = line.split("\t", 3);
+                    int cmdCode = Integer.parseInt(split[0]);
+                    int seq = Integer.parseInt(split[1]);
+                    String payload = split.length > 2 ? split[2] : "";
+                    if (cmdCode == AbstractDebuggerCommand.CMD_GET_FRAME) {
+                        send(cmdCode, seq, frameVariables);
+
+                    } else if (cmdCode == AbstractDebuggerCommand.CMD_THREAD_RUN) {
+                        String id = payload.trim();
+                        for (int i = 0; i < threads; i++) {
+                            if (threadId(i).equals(id)) {
+                                resumed[i].release();
+                                break;
+                            }
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                //Finished.
+            }
+        }
+    }
+
+    /**
+     * @return the bytes allocated so far by the threads of the client (or -1 if not available).
+     */
+    private static long getClientAllocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+        if (!sunBean.isThreadAllocatedMemorySupported() || !sunBean.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        long[] ids = bean.getAllThreadIds();
+        ThreadInfo[] infos = bean.getThreadInfo(ids);
+        long[] allocated = sunBean.getThreadAllocatedBytes(ids);
+        long total = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (infos[i] != null && infos[i].getThreadName().startsWith("pydevd.") && allocated[i] > 0) {
+                total += allocated[i];
+            }
+        }
+        return total;
+    }
+
+    public static Result run(int threads, int rounds, int timeoutSeconds) throws Exception {
+        try (ServerSocket serverSocket = SocketUtil.createLocalServerSocket()) {
+            serverSocket.setSoTimeout(5000);
+            Socket pydevdSocket = new Socket("127.0.0.1", serverSocket.getLocalPort());
+            Socket clientSocket = serverSocket.accept();
+
+            FakePydevd pydevd = new FakePydevd(pydevdSocket, threads, rounds);
+            StressDebugTarget target = new StressDebugTarget(pydevd);
+            target.startTransmission(clientSocket);
+            try {
+                //The pydevd.* threads (whose allocations are measured) are all started at this point.
+                long allocatedBefore = getClientAllocatedBytes();
+                long initial = System.nanoTime();
+                pydevd.start();
+                pydevd.finished.await(timeoutSeconds, TimeUnit.SECONDS);
+
+                //Wait for the last resume events to be processed.
+                long until = System.currentTimeMillis() + 2000;
+                while (target.resumes.get() + pydevd.lost.get() < threads * rounds
+                        && System.currentTimeMillis() < until) {
+                    Thread.sleep(5);
+                }
+                long elapsed = System.nanoTime() - initial;
+                long allocatedAfter = getClientAllocatedBytes();
+
+                long[] latencies;
+                synchronized (target.latencies) {
+                    latencies = new long[target.latencies.size()];
+                    for (int i = 0; i < latencies.length; i++) {
+                        latencies[i] = target.latencies.get(i);
+                    }
+                }
+                Arrays.sort(latencies);
+                return new Result(threads, target.suspends.get(), target.resumes.get(), (int) pydevd.lost.get(),
+                        target.events.get(), elapsed, latencies,
+                        allocatedBefore >= 0 && allocatedAfter >= 0 ? allocatedAfter - allocatedBefore : -1);
+            } finally {
+                target.terminate();
+                pydevdSocket.close();
+            }
+        }
+    }
+}
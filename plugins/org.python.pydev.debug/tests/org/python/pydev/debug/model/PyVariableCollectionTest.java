@@ -0,0 +1,151 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.debug.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.debug.core.DebugEvent;
+import org.eclipse.debug.core.ILaunch;
+import org.eclipse.debug.core.model.IProcess;
+import org.eclipse.debug.core.model.IVariable;
+import org.python.pydev.debug.model.remote.AbstractDebuggerCommand;
+import org.python.pydev.debug.model.remote.GetVariablePageCommand;
+import org.python.pydev.shared_core.string.FastStringBuffer;
+
+import junit.framework.TestCase;
+
+public class PyVariableCollectionTest extends TestCase {
+
+    /**
+     * Answers the page requests right away with the items of a container with the given size.
+     */
+    private static class PagesDebugTarget extends AbstractDebugTarget {
+
+        private int containerSize;
+        private final List<GetVariablePageCommand> requests = new ArrayList<GetVariablePageCommand>();
+        private final List<DebugEvent> events = new ArrayList<DebugEvent>();
+
+        private PagesDebugTarget(int containerSize) {
+            this.containerSize = containerSize;
+        }
+
+        @Override
+        public void postCommand(AbstractDebuggerCommand cmd) {
+            GetVariablePageCommand pageCmd = (GetVariablePageCommand) cmd;
+            requests.add(pageCmd);
+
+            FastStringBuffer buf = new FastStringBuffer();
+            buf.append("<xml><page offset=\"").append(pageCmd.getOffset()).append("\" total=\"")
+                    .append(containerSize).append("\" />");
+            int end = Math.min(containerSize, pageCmd.getOffset() + pageCmd.getLimit());
+            for (int i = pageCmd.getOffset(); i < end; i++) {
+                buf.append("<var name=\"").append(i).append("\" type=\"int\" value=\"").append(i).append("\" />");
+            }
+            buf.append("</xml>");
+            pageCmd.processResponse(AbstractDebuggerCommand.CMD_GET_VARIABLE_PAGE, buf.toString());
+        }
+
+        @Override
+        public void fireEvent(DebugEvent event) {
+            events.add(event);
+        }
+
+        @Override
+        public IProcess getProcess() {
+            return null;
+        }
+
+        @Override
+        public void launchRemoved(ILaunch launch) {
+        }
+
+        @Override
+        public boolean canTerminate() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+    }
+
+    private static PyVariableCollection createCollection(PagesDebugTarget target, int containerLen) {
+        IVariableLocator locator = new IVariableLocator() {
+
+            @Override
+            public String getThreadId() {
+                return "thread1";
+            }
+
+            @Override
+            public String getPyDBLocation() {
+                return "thread1\tframe1\tFRAME";
+            }
+        };
+        PyVariableCollection collection = new PyVariableCollection(target, "lst", "list", "list: [...]", locator);
+        collection.setContainerLen(containerLen);
+        return collection;
+    }
+
+    private static void checkItems(IVariable[] variables, int offset, int length) throws Exception {
+        assertEquals(length, variables.length);
+        for (int i = 0; i < length; i++) {
+            assertEquals(String.valueOf(offset + i), variables[i].getName());
+        }
+    }
+
+    public void testPagesCache() throws Exception {
+        PagesDebugTarget target = new PagesDebugTarget(1000);
+        PyVariableCollection collection = createCollection(target, 1000);
+        assertEquals(1000, collection.getSize());
+
+        checkItems(collection.getVariables(100, 100), 100, 100);
+        assertEquals(1, target.requests.size());
+
+        //Already available: no new request.
+        checkItems(collection.getVariables(100, 100), 100, 100);
+        checkItems(collection.getVariables(150, 10), 150, 10);
+        assertEquals("150", collection.getVariable(150).getName());
+        assertEquals(1, target.requests.size());
+
+        //A page which was only partially gotten must be requested (and exactly the length asked returned).
+        checkItems(collection.getVariables(150, 100), 150, 100);
+        assertEquals(2, target.requests.size());
+
+        collection.forceGetNewVariables();
+        checkItems(collection.getVariables(100, 100), 100, 100);
+        assertEquals(3, target.requests.size());
+        assertEquals(0, target.events.size());
+    }
+
+    public void testShortPageCachedFirst() throws Exception {
+        PagesDebugTarget target = new PagesDebugTarget(1000);
+        PyVariableCollection collection = createCollection(target, 1000);
+
+        checkItems(new IVariable[] { collection.getVariable(0) }, 0, 1);
+        checkItems(collection.getVariables(0, 100), 0, 100);
+        assertEquals(2, target.requests.size());
+    }
+
+    public void testTotalReportedByBackend() throws Exception {
+        PagesDebugTarget target = new PagesDebugTarget(1000);
+        PyVariableCollection collection = createCollection(target, 1000);
+
+        //The container was changed in the backend (it now has fewer items).
+        target.containerSize = 950;
+        IVariable[] variables = collection.getVariables(900, 100);
+        assertEquals(100, variables.length);
+        checkItems(collection.getVariables(900, 50), 900, 50);
+        assertEquals("pydev ERROR", variables[50].getReferenceTypeName());
+
+        assertEquals(950, collection.getSize());
+        assertEquals(1, target.events.size());
+        assertEquals(DebugEvent.CHANGE, target.events.get(0).getKind());
+    }
+}
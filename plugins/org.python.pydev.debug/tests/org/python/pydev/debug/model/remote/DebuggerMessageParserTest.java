@@ -0,0 +1,171 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.debug.model.remote;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+import org.python.pydev.shared_core.io.FileUtils;
+import org.python.pydev.shared_core.string.FastStringBuffer;
+
+import junit.framework.TestCase;
+
+public class DebuggerMessageParserTest extends TestCase {
+
+    public static void main(String[] args) throws Exception {
+        //Benchmark: compare with the previous way of reading the messages (line by line from the stream).
+        byte[] contents = createVariablesMessages(2000, 200);
+        for (int i = 0; i < 5; i++) {
+            long initial = System.nanoTime();
+            DebuggerMessageParser parser = new DebuggerMessageParser(
+                    Channels.newChannel(new ByteArrayInputStream(contents)));
+            int messages = 0;
+            while (parser.next() != null) {
+                messages++;
+            }
+            long parserNanos = System.nanoTime() - initial;
+
+            initial = System.nanoTime();
+            InputStream in = new ByteArrayInputStream(contents);
+            int linesMessages = 0;
+            while (readWithLines(in) != null) {
+                linesMessages++;
+            }
+            long linesNanos = System.nanoTime() - initial;
+
+            System.out.println(String.format("%s messages (%s MB). Parser: %s ms. Lines: %s ms (%s messages).",
+                    messages, contents.length / (1024 * 1024), parserNanos / 1000000, linesNanos / 1000000,
+                    linesMessages));
+        }
+    }
+
+    /**
+     * The way messages were read before the parser.
+     */
+    private static String[] readWithLines(InputStream in) throws IOException {
+        FastStringBuffer contents = new FastStringBuffer();
+        int bytesToRead = -1;
+        while (true) {
+            try {
+                FileUtils.readLine(in, contents.clear());
+            } catch (IOException e) {
+                return null;
+            }
+            contents.trim();
+            if (contents.length() == 0) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[32 * 1024];
+                int bytesRead;
+                while ((bytesRead = in.read(buffer, 0, Math.min(bytesToRead, buffer.length))) > 0) {
+                    out.write(buffer, 0, bytesRead);
+                    bytesToRead -= bytesRead;
+                }
+                return new String(out.toByteArray(), StandardCharsets.UTF_8).split("\t", 3);
+            }
+            contents.deleteFirstChars("Content-Length: ".length());
+            bytesToRead = Integer.parseInt(contents.trim().toString());
+        }
+    }
+
+    private static void appendMessage(ByteArrayOutputStream out, int cmd, int seq, String payload)
+            throws IOException {
+        byte[] body = (cmd + "\t" + seq + "\t" + payload + "\n").getBytes(StandardCharsets.UTF_8);
+        out.write(("Content-Length: " + body.length + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.write(body);
+    }
+
+    private static byte[] createVariablesMessages(int messages, int varsPerMessage) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FastStringBuffer buf = new FastStringBuffer();
+        for (int i = 0; i < messages; i++) {
+            buf.clear().append("<xml>");
+            for (int j = 0; j < varsPerMessage; j++) {
+                buf.append("<var name=\"var").append(j).append("\" type=\"int\" value=\"int%3A+").append(j)
+                        .append("\" />");
+            }
+            buf.append("</xml>");
+            appendMessage(out, AbstractDebuggerCommand.CMD_GET_VARIABLE, i * 2, buf.toString());
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * A channel which only gives a few bytes at each read.
+     */
+    private static ReadableByteChannel createSlowChannel(final byte[] contents) {
+        return new ReadableByteChannel() {
+
+            private int pos = 0;
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() throws IOException {
+            }
+
+            @Override
+            public int read(ByteBuffer dst) throws IOException {
+                if (pos >= contents.length) {
+                    return -1;
+                }
+                int len = Math.min(Math.min(3, dst.remaining()), contents.length - pos);
+                dst.put(contents, pos, len);
+                pos += len;
+                return len;
+            }
+        };
+    }
+
+    public void testParse() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        appendMessage(out, 101, 2, "<xml><thread name=\"a\u00e7\u00e3o\" id=\"1\"/></xml>");
+        appendMessage(out, 502, 4, "with\ttab");
+        FastStringBuffer big = new FastStringBuffer();
+        for (int i = 0; i < 20000; i++) {
+            big.append("0123456789");
+        }
+        appendMessage(out, 110, 6, big.toString());
+
+        DebuggerMessageParser parser = new DebuggerMessageParser(createSlowChannel(out.toByteArray()));
+        DebuggerMessageParser.Message message = parser.next();
+        assertEquals(101, message.cmdCode);
+        assertEquals(2, message.seqCode);
+        assertEquals("<xml><thread name=\"a\u00e7\u00e3o\" id=\"1\"/></xml>\n", message.payload);
+
+        message = parser.next();
+        assertEquals(502, message.cmdCode);
+        assertEquals("with\ttab\n", message.payload);
+
+        message = parser.next();
+        assertEquals(6, message.seqCode);
+        assertEquals(big.length() + 1, message.payload.length());
+
+        assertNull(parser.next());
+    }
+
+    public void testUnexpectedHeader() throws Exception {
+        byte[] contents = "101\t2\tpayload\n".getBytes(StandardCharsets.UTF_8);
+        DebuggerMessageParser parser = new DebuggerMessageParser(
+                Channels.newChannel(new ByteArrayInputStream(contents)));
+        try {
+            parser.next();
+            fail("Expected ProtocolException");
+        } catch (ProtocolException e) {
+            assertEquals("101\t2\tpayload", e.getMessage());
+        }
+    }
+}
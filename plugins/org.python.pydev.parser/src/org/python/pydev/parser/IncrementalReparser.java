@@ -0,0 +1,347 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.parser;
+
+import org.python.pydev.core.IGrammarVersionProvider;
+import org.python.pydev.core.log.Log;
+import org.python.pydev.parser.jython.SimpleNode;
+import org.python.pydev.parser.jython.SimpleNodeCopier;
+import org.python.pydev.parser.jython.ast.ClassDef;
+import org.python.pydev.parser.jython.ast.FunctionDef;
+import org.python.pydev.parser.jython.ast.Module;
+import org.python.pydev.parser.jython.ast.decoratorsType;
+import org.python.pydev.parser.jython.ast.stmtType;
+import org.python.pydev.shared_core.io.FileUtils;
+
+/**
+ * Reparses a document reusing the top-level statements which were not changed since a previous parse (only the
+ * top-level statements in the region changed are parsed again).
+ *
+ * The region parsed is always delimited by lines which start a top-level statement (at column 0) in the previous
+ * AST and whose previous line has no comments nor continuations (so that the result is the same one a full parse
+ * would give). Whenever that's not possible (or the region can't be parsed without errors), null is returned and a
+ * full parse must be done.
+ */
+public final class IncrementalReparser {
+
+    /**
+     * The contents and AST of a parse which may be used as the base for an incremental reparse.
+     */
+    public static final class Snapshot {
+
+        private final String contents;
+        private final Module ast;
+        private final int grammarVersion;
+
+        /**
+         * @param ast the AST for the given contents (must've been parsed without any error).
+         */
+        public Snapshot(String contents, Module ast, int grammarVersion) {
+            this.contents = contents;
+            this.ast = ast;
+            this.grammarVersion = grammarVersion;
+        }
+    }
+
+    /**
+     * The contents being parsed with the offsets where each line starts.
+     */
+    private static final class Lines {
+
+        private final String contents;
+        private final int[] starts;
+        private final int count;
+
+        private Lines(String contents) {
+            this.contents = contents;
+            int length = contents.length();
+            int[] lineStarts = new int[64];
+            int lines = 1;
+            for (int i = 0; i < length; i++) {
+                char c = contents.charAt(i);
+                if (c == '\r' && i + 1 < length && contents.charAt(i + 1) == '\n') {
+                    continue;
+                }
+                if ((c == '\r' || c == '\n') && i + 1 < length) {
+                    if (lines == lineStarts.length) {
+                        int[] newStarts = new int[lineStarts.length * 2];
+                        System.arraycopy(lineStarts, 0, newStarts, 0, lineStarts.length);
+                        lineStarts = newStarts;
+                    }
+                    lineStarts[lines] = i + 1;
+                    lines++;
+                }
+            }
+            this.starts = lineStarts;
+            this.count = lines;
+        }
+
+        /**
+         * @param line 1-based
+         */
+        private int getLineStart(int line) {
+            return line > count ? contents.length() : starts[line - 1];
+        }
+
+        /**
+         * @return the 1-based line of the given offset.
+         */
+        private int getLineOfOffset(int offset) {
+            int low = 0;
+            int high = count - 1;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (starts[mid] <= offset) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return low + 1;
+        }
+
+        /**
+         * @return the first char of the given line (or ' ' for an empty line).
+         */
+        private char getFirstChar(int line) {
+            int start = getLineStart(line);
+            return start < contents.length() ? contents.charAt(start) : ' ';
+        }
+
+        /**
+         * @return the contents of the given line (without the new line chars).
+         */
+        private String getLine(int line) {
+            int end = getLineStart(line + 1);
+            while (end > getLineStart(line)) {
+                char c = contents.charAt(end - 1);
+                if (c != '\r' && c != '\n') {
+                    break;
+                }
+                end--;
+            }
+            return contents.substring(getLineStart(line), end);
+        }
+
+        /**
+         * @return whether the last non-blank line before the given line doesn't have comments nor continuations.
+         */
+        private boolean isCleanBefore(int line) {
+            for (int i = line - 1; i >= 1; i--) {
+                String lineContents = getLine(i);
+                if (lineContents.trim().length() > 0) {
+                    return lineContents.indexOf('#') == -1 && !lineContents.endsWith("\\");
+                }
+            }
+            return true;
+        }
+    }
+
+    private IncrementalReparser() {
+    }
+
+    /**
+     * @return the 1-based line where the given top-level statement starts (considering its decorators).
+     */
+    private static int getStartLine(stmtType stmt) {
+        decoratorsType[] decs = null;
+        if (stmt instanceof FunctionDef) {
+            decs = ((FunctionDef) stmt).decs;
+        } else if (stmt instanceof ClassDef) {
+            decs = ((ClassDef) stmt).decs;
+        }
+        int line = stmt.beginLine;
+        if (decs != null) {
+            for (decoratorsType dec : decs) {
+                int decLine = dec.beginLine > 0 ? dec.beginLine : (dec.func != null ? dec.func.beginLine : 0);
+                if (decLine > 0 && decLine < line) {
+                    line = decLine;
+                }
+            }
+        }
+        return line;
+    }
+
+    /**
+     * @return whether the statement at the given index of the previous AST starts a line at column 0 in the
+     * previous contents (and in the passed contents, where it's at the given line) and can be used as a boundary
+     * for the region parsed.
+     */
+    private static boolean isBoundary(stmtType[] body, int[] startLines, int i, Lines previous, Lines current,
+            int lineInCurrent) {
+        if (i == 0 || startLines[i] <= startLines[i - 1] || startLines[i] <= 0 || lineInCurrent <= 1) {
+            return false;
+        }
+        int line = startLines[i];
+        if (line > previous.count || lineInCurrent > current.count) {
+            return false;
+        }
+        char firstChar = previous.getFirstChar(line);
+        boolean decorated = line != body[i].beginLine;
+        if (decorated ? firstChar != '@' : body[i].beginColumn != 1) {
+            return false;
+        }
+        char currentFirstChar = current.getFirstChar(lineInCurrent);
+        if (Character.isWhitespace(currentFirstChar) || currentFirstChar == '#') {
+            return false;
+        }
+        return previous.isCleanBefore(line) && current.isCleanBefore(lineInCurrent);
+    }
+
+    private static boolean hasSpecials(SimpleNode node) {
+        return (node.specialsBefore != null && node.specialsBefore.size() > 0)
+                || (node.specialsAfter != null && node.specialsAfter.size() > 0);
+    }
+
+    private static boolean startsWithBOM(String contents) {
+        return contents.startsWith(FileUtils.BOM_UTF8) || contents.startsWith(FileUtils.BOM_UNICODE);
+    }
+
+    /**
+     * @return the AST for the given contents or null if it couldn't be computed incrementally (in which case a full
+     * parse is needed).
+     */
+    public static Module reparse(Snapshot previous, String contents, int grammarVersion) {
+        if (previous == null || previous.grammarVersion != grammarVersion || previous.ast.body == null
+                || previous.ast.body.length == 0 || hasSpecials(previous.ast)) {
+            return null;
+        }
+        if (startsWithBOM(contents) || startsWithBOM(previous.contents)) {
+            return null;
+        }
+        if (grammarVersion <= IGrammarVersionProvider.LATEST_GRAMMAR_PY2_VERSION
+                && contents.indexOf("__future__") != -1) {
+            return null; //The future imports change how the remainder of the module is parsed.
+        }
+        try {
+            return reparse(previous, new Lines(previous.contents), new Lines(contents), grammarVersion);
+        } catch (Throwable e) {
+            Log.log(e);
+            return null;
+        }
+    }
+
+    private static Module reparse(Snapshot previous, Lines previousLines, Lines lines, int grammarVersion)
+            throws Exception {
+        String previousContents = previous.contents;
+        String contents = lines.contents;
+        int previousLength = previousContents.length();
+        int length = contents.length();
+
+        int max = Math.min(previousLength, length);
+        int prefix = 0;
+        while (prefix < max && previousContents.charAt(prefix) == contents.charAt(prefix)) {
+            prefix++;
+        }
+        if (prefix == previousLength && prefix == length) {
+            return null; //Nothing changed: let the caller decide what to do.
+        }
+        int suffix = 0;
+        while (suffix < max - prefix
+                && previousContents.charAt(previousLength - 1 - suffix) == contents.charAt(length - 1 - suffix)) {
+            suffix++;
+        }
+        int lineDelta = lines.count - previousLines.count;
+
+        //The first line which may have changed (the line of the char before the change is also considered changed
+        //as the change may have touched its new line chars).
+        int firstChangedLine = lines.getLineOfOffset(Math.max(0, prefix - 1));
+
+        //The first line whose contents and previous new line chars are all in the unchanged suffix.
+        int firstUnchangedLine = lines.count + 1;
+        int suffixStart = length - suffix;
+        for (int line = lines.getLineOfOffset(suffixStart) + 1; line <= lines.count; line++) {
+            if (lines.getLineStart(line) - 2 >= suffixStart) {
+                firstUnchangedLine = line;
+                break;
+            }
+        }
+        if (firstUnchangedLine <= lines.count && (firstUnchangedLine - lineDelta < 1
+                || previousLines.getLineStart(firstUnchangedLine - lineDelta) + (length - previousLength) != lines
+                        .getLineStart(firstUnchangedLine))) {
+            return null;
+        }
+
+        stmtType[] body = previous.ast.body;
+        int[] startLines = new int[body.length];
+        for (int i = 0; i < body.length; i++) {
+            startLines[i] = getStartLine(body[i]);
+        }
+
+        //Statements [0, firstReparsed) are kept as is.
+        int firstReparsed = 0;
+        for (int i = body.length - 1; i > 0; i--) {
+            if (startLines[i] <= firstChangedLine
+                    && isBoundary(body, startLines, i, previousLines, lines, startLines[i])) {
+                firstReparsed = i;
+                break;
+            }
+        }
+        //Statements [firstKept, body.length) are kept (with the lines moved by lineDelta).
+        int firstKept = body.length;
+        for (int i = firstReparsed + 1; i < body.length; i++) {
+            if (startLines[i] >= firstUnchangedLine - lineDelta
+                    && isBoundary(body, startLines, i, previousLines, lines, startLines[i] + lineDelta)) {
+                firstKept = i;
+                break;
+            }
+        }
+        if (firstReparsed == 0 && firstKept == body.length) {
+            return null; //Everything would be reparsed.
+        }
+
+        int startLine = firstReparsed == 0 ? 1 : startLines[firstReparsed];
+        int endLine = firstKept == body.length ? lines.count + 1 : startLines[firstKept] + lineDelta;
+        if (endLine <= startLine) {
+            return null;
+        }
+
+        //Parse only the region changed (with new lines before it so that the lines in the AST are already correct).
+        int regionStart = lines.getLineStart(startLine);
+        int regionEnd = lines.getLineStart(endLine);
+        int padding = startLine - 1;
+        boolean addNewLine = regionEnd == length && !contents.endsWith("\n") && !contents.endsWith("\r");
+        char[] charArray = new char[padding + (regionEnd - regionStart) + (addNewLine ? 1 : 0)];
+        for (int i = 0; i < padding; i++) {
+            charArray[i] = '\n';
+        }
+        contents.getChars(regionStart, regionEnd, charArray, padding);
+        if (addNewLine) {
+            charArray[charArray.length - 1] = '\n';
+        }
+
+        IGrammar grammar = PyParser.createGrammar(true, grammarVersion, charArray);
+        Module region;
+        try {
+            region = (Module) grammar.file_input();
+        } catch (Throwable e) {
+            return null;
+        }
+        if (grammar.getErrorOnParsing() != null || region == null || region.body == null || hasSpecials(region)) {
+            return null;
+        }
+
+        int keptAtEnd = body.length - firstKept;
+        stmtType[] newBody = new stmtType[firstReparsed + region.body.length + keptAtEnd];
+        System.arraycopy(body, 0, newBody, 0, firstReparsed);
+        System.arraycopy(region.body, 0, newBody, firstReparsed, region.body.length);
+        for (int i = 0; i < keptAtEnd; i++) {
+            stmtType stmt = body[firstKept + i];
+            if (lineDelta != 0) {
+                //The previous AST may still be in use, so, the statements moved must be copied.
+                stmt = (stmtType) SimpleNodeCopier.copy(stmt, lineDelta);
+            }
+            newBody[firstReparsed + region.body.length + i] = stmt;
+        }
+
+        Module ret = new Module(newBody);
+        SimpleNode positionFrom = firstReparsed == 0 ? region : previous.ast;
+        ret.beginLine = positionFrom.beginLine;
+        ret.beginColumn = positionFrom.beginColumn;
+        return ret;
+    }
+}
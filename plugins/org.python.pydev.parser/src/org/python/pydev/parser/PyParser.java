@@ -14,9 +14,19 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.eclipse.core.internal.resources.ResourceException;
 import org.eclipse.core.resources.IFile;
@@ -97,6 +107,17 @@ public class PyParser extends BaseParser implements IPyParser {
      */
     public static boolean ENABLE_TRACING = false;
 
+    /**
+     * Defines whether the editor reparses should reuse the top-level statements which weren't changed since the
+     * last successful parse.
+     */
+    public static boolean USE_INCREMENTAL_REPARSE = true;
+
+    /**
+     * The last successful parse (used as the base for an incremental reparse).
+     */
+    private volatile IncrementalReparser.Snapshot lastParse;
+
     /**
      * This is the version of the grammar that should be used for this parser
      */
@@ -283,7 +304,13 @@ public class PyParser extends BaseParser implements IPyParser {
             version = IGrammarVersionProvider.LATEST_GRAMMAR_PY3_VERSION;
         }
         long documentTime = System.currentTimeMillis();
-        ParseOutput obj = reparseDocument(new ParserInfo(document, version, true, additionalGrammarsToCheck));
+        ParserInfo parserInfo = new ParserInfo(document, version, true, additionalGrammarsToCheck);
+        if (USE_INCREMENTAL_REPARSE) {
+            parserInfo.incremental = true;
+            parserInfo.previousParse = lastParse;
+        }
+        ParseOutput obj = reparseDocument(parserInfo);
+        lastParse = parserInfo.currentParse;
 
         IFile original = null;
         IAdaptable adaptable = null;
@@ -390,6 +417,16 @@ public class PyParser extends BaseParser implements IPyParser {
 
         public final AdditionalGrammarVersionsToCheck additionalGrammarVersionsToCheck;
 
+        /**
+         * Whether the statements from previousParse may be reused (in which case currentParse is set after the
+         * parse so that it can be passed as the previousParse in the next parse of the same document).
+         */
+        public boolean incremental;
+
+        public IncrementalReparser.Snapshot previousParse;
+
+        public IncrementalReparser.Snapshot currentParse;
+
         /**
          * @param grammarVersion: see IPythonNature.GRAMMAR_XXX constants
          */
@@ -449,6 +486,175 @@ public class PyParser extends BaseParser implements IPyParser {
      */
     public final static List<ICallback<Object, Tuple3<ISimpleNode, Throwable, ParserInfo>>> successfulParseListeners = new ArrayList<ICallback<Object, Tuple3<ISimpleNode, Throwable, ParserInfo>>>();
 
+    private static void notifySuccessfulParse(Tuple<ISimpleNode, Throwable> returnVar, ParserInfo info) {
+        if (successfulParseListeners.size() > 0) {
+            Tuple3<ISimpleNode, Throwable, ParserInfo> param = new Tuple3<ISimpleNode, Throwable, ParserInfo>(
+                    returnVar.o1, returnVar.o2, info);
+
+            for (ICallback<Object, Tuple3<ISimpleNode, Throwable, ParserInfo>> callback : successfulParseListeners) {
+                callback.call(param);
+            }
+        }
+    }
+
+    /**
+     * @return whether grammar versions other than the one used to generate the tree should be checked.
+     */
+    private static boolean hasAdditionalGrammarVersionsToCheck(ParserInfo info) {
+        if (info.additionalGrammarVersionsToCheck != null) {
+            for (int grammarVersion : info.additionalGrammarVersionsToCheck.getGrammarVersions()) {
+                if (grammarVersion != info.grammarVersion) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The checks of the additional grammar versions for a document modification stamp.
+     */
+    private static final class AdditionalGrammarVersionsChecks {
+
+        private final long modificationStamp;
+
+        /**
+         * grammar version -> future with the error found (or null if there was no error).
+         */
+        private final Map<Integer, Future<Throwable>> checks = new ConcurrentHashMap<>();
+
+        private AdditionalGrammarVersionsChecks(long modificationStamp) {
+            this.modificationStamp = modificationStamp;
+        }
+    }
+
+    /**
+     * The latest checks of the additional grammar versions for each document (reused while the document isn't
+     * changed). Access synchronized on the map itself.
+     */
+    private static final Map<IDocument, AdditionalGrammarVersionsChecks> checksByDocument = new WeakHashMap<>();
+
+    private static ExecutorService additionalGrammarVersionsExecutor;
+
+    private static synchronized ExecutorService getAdditionalGrammarVersionsExecutor() {
+        if (additionalGrammarVersionsExecutor == null) {
+            int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+            additionalGrammarVersionsExecutor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "PyParser: check additional grammar versions");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return additionalGrammarVersionsExecutor;
+    }
+
+    private static AdditionalGrammarVersionsChecks getAdditionalGrammarVersionsChecks(IDocument document,
+            long modificationStamp) {
+        if (modificationStamp == IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP) {
+            return new AdditionalGrammarVersionsChecks(modificationStamp); //Can't be reused.
+        }
+        synchronized (checksByDocument) {
+            AdditionalGrammarVersionsChecks checks = checksByDocument.get(document);
+            if (checks == null || checks.modificationStamp != modificationStamp) {
+                checks = new AdditionalGrammarVersionsChecks(modificationStamp);
+                checksByDocument.put(document, checks);
+            }
+            return checks;
+        }
+    }
+
+    /**
+     * Starts checking the additional grammar versions (other than the main grammar version) in other threads.
+     * The checks already done (or in progress) for the same document modification stamp are reused.
+     *
+     * @return a map with the grammar version -> future with the error found (or null if there was no error), in the
+     * order in which the versions should be reported, or null if there's nothing to check.
+     */
+    private static Map<Integer, Future<Throwable>> startAdditionalGrammarVersionsChecks(ParserInfo info,
+            long modificationStamp, final char[] charArray) {
+        if (!hasAdditionalGrammarVersionsToCheck(info)) {
+            return null;
+        }
+        AdditionalGrammarVersionsChecks checks = getAdditionalGrammarVersionsChecks(info.document, modificationStamp);
+        Map<Integer, Future<Throwable>> ret = new LinkedHashMap<>();
+        for (final int grammarVersion : info.additionalGrammarVersionsToCheck.getGrammarVersions()) {
+            if (grammarVersion == info.grammarVersion) {
+                continue;
+            }
+            Future<Throwable> future = checks.checks.get(grammarVersion);
+            if (future == null || future.isCancelled()) {
+                future = getAdditionalGrammarVersionsExecutor().submit(new Callable<Throwable>() {
+
+                    @Override
+                    public Throwable call() throws Exception {
+                        return checkGrammarVersion(grammarVersion, charArray);
+                    }
+                });
+                checks.checks.put(grammarVersion, future);
+            }
+            ret.put(grammarVersion, future);
+        }
+        return ret;
+    }
+
+    /**
+     * @return the error found when parsing the given contents with the given grammar version (or null if there was
+     * no error).
+     */
+    private static Throwable checkGrammarVersion(int grammarVersion, char[] charArray) {
+        IGrammar grammar = createGrammar(false, grammarVersion, charArray);
+        try {
+            try {
+                grammar.file_input();
+            } catch (OutOfMemoryError e) {
+                OnExpectedOutOfMemory.clearCacheOnOutOfMemory.call(null);
+                grammar.file_input(); //retry now with caches cleared...
+            }
+        } catch (Throwable e) {
+            Throwable errorOnParsing = grammar.getErrorOnParsing();
+            if (errorOnParsing != null) {
+                return errorOnParsing;
+            }
+            if (e instanceof ParseException || e instanceof TokenMgrError) {
+                return e;
+            }
+            if (e.getClass().getName().indexOf("LookaheadSuccess") == -1) {
+                Log.log(e);
+            }
+            return null;
+        }
+        return grammar.getErrorOnParsing();
+    }
+
+    /**
+     * Waits for the checks of the additional grammar versions.
+     *
+     * @return the error of the first grammar version with an error (or null if no errors were found).
+     */
+    private static Throwable getAdditionalGrammarVersionsError(Map<Integer, Future<Throwable>> checks,
+            char[] charArray) throws InterruptedException {
+        Throwable ret = null;
+        for (Map.Entry<Integer, Future<Throwable>> entry : checks.entrySet()) {
+            if (ret != null) {
+                entry.getValue().cancel(false);
+                continue;
+            }
+            try {
+                ret = entry.getValue().get();
+            } catch (CancellationException e) {
+                //Cancelled by a concurrent parse of the same contents which failed (just check it here).
+                ret = checkGrammarVersion(entry.getKey(), charArray);
+            } catch (ExecutionException e) {
+                Log.log(e);
+            }
+        }
+        return ret;
+    }
+
     /**
      * Create the char array to parse based on the initial document and our parser limitations.
      */
@@ -544,7 +750,21 @@ public class PyParser extends BaseParser implements IPyParser {
             //If empty, don't bother to parse!
             return new ParseOutput(new Module(new stmtType[0]), null, modifiedTime);
         }
-        Set<Integer> parsedVersions = new HashSet<>();
+
+        String parsedDoc = null;
+        if (info.incremental && info.generateTree) {
+            parsedDoc = startDoc;
+            if (!hasAdditionalGrammarVersionsToCheck(info)) {
+                Module module = IncrementalReparser.reparse(info.previousParse, startDoc, info.grammarVersion);
+                if (module != null) {
+                    info.currentParse = new IncrementalReparser.Snapshot(startDoc, module, info.grammarVersion);
+                    Tuple<ISimpleNode, Throwable> returnVar = new Tuple<ISimpleNode, Throwable>(module, null);
+                    notifySuccessfulParse(returnVar, info);
+                    return new ParseOutput(returnVar, modifiedTime);
+                }
+            }
+        }
+
         char[] charArray;
         try {
             charArray = createCharArrayToParse(startDoc);
@@ -553,12 +773,15 @@ public class PyParser extends BaseParser implements IPyParser {
             charArray = createCharArrayToParse(startDoc); //retry now with caches cleared...
         }
 
-        startDoc = null; //it can be garbage-collected now.
+        startDoc = null; //it can be garbage-collected now (unless kept for an incremental reparse).
+
+        //The additional grammar versions are checked in other threads while the main grammar is parsed.
+        Map<Integer, Future<Throwable>> additionalGrammarVersionsChecks = startAdditionalGrammarVersionsChecks(info,
+                modifiedTime, charArray);
 
         Tuple<ISimpleNode, Throwable> returnVar = new Tuple<ISimpleNode, Throwable>(null, null);
         IGrammar grammar = null;
         try {
-            parsedVersions.add(info.grammarVersion);
             grammar = createGrammar(info.generateTree, info.grammarVersion, charArray);
             SimpleNode newRoot;
             try {
@@ -570,38 +793,13 @@ public class PyParser extends BaseParser implements IPyParser {
             returnVar.o1 = newRoot;
 
             //only notify successful parses
-            if (successfulParseListeners.size() > 0) {
-                Tuple3<ISimpleNode, Throwable, ParserInfo> param = new Tuple3<ISimpleNode, Throwable, ParserInfo>(
-                        returnVar.o1, returnVar.o2, info);
-
-                for (ICallback<Object, Tuple3<ISimpleNode, Throwable, ParserInfo>> callback : successfulParseListeners) {
-                    callback.call(param);
-                }
-            }
+            notifySuccessfulParse(returnVar, info);
 
             returnVar.o2 = grammar.getErrorOnParsing();
 
-            if (returnVar.o2 == null) {
-                AdditionalGrammarVersionsToCheck additionalGrammarVersionsToCheck = info.additionalGrammarVersionsToCheck;
-                if (additionalGrammarVersionsToCheck != null) {
-                    for (int grammarVersion : additionalGrammarVersionsToCheck.getGrammarVersions()) {
-                        if (parsedVersions.contains(grammarVersion)) {
-                            continue;
-                        }
-                        parsedVersions.add(grammarVersion);
-                        grammar = createGrammar(false, grammarVersion, charArray);
-                        try {
-                            grammar.file_input();
-                        } catch (OutOfMemoryError e) {
-                            OnExpectedOutOfMemory.clearCacheOnOutOfMemory.call(null);
-                            grammar.file_input(); //retry now with caches cleared...
-                        }
-                        returnVar.o2 = grammar.getErrorOnParsing();
-                        if (returnVar.o2 != null) {
-                            break;
-                        }
-                    }
-                }
+            if (returnVar.o2 == null && additionalGrammarVersionsChecks != null) {
+                returnVar.o2 = getAdditionalGrammarVersionsError(additionalGrammarVersionsChecks, charArray);
+                additionalGrammarVersionsChecks = null;
             }
 
         } catch (Throwable e) {
@@ -636,6 +834,13 @@ public class PyParser extends BaseParser implements IPyParser {
                 Log.log(e);
             }
 
+        } finally {
+            if (additionalGrammarVersionsChecks != null) {
+                //The main parse failed: the additional grammar versions don't need to be checked.
+                for (Future<Throwable> future : additionalGrammarVersionsChecks.values()) {
+                    future.cancel(false);
+                }
+            }
         }
 
         if (DEBUG_SHOW_PARSE_ERRORS) {
@@ -643,6 +848,9 @@ public class PyParser extends BaseParser implements IPyParser {
                 System.out.println("Unable to parse " + info);
             }
         }
+        if (parsedDoc != null && returnVar.o1 instanceof Module && returnVar.o2 == null) {
+            info.currentParse = new IncrementalReparser.Snapshot(parsedDoc, (Module) returnVar.o1, info.grammarVersion);
+        }
         //        System.out.println("Output grammar: "+returnVar);
         return new ParseOutput(returnVar, modifiedTime);
     }
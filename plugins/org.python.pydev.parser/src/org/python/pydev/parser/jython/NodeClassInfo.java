@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.parser.jython;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.python.pydev.parser.jython.ast.Module;
+
+/**
+ * Information on how to access/create a node class generically (used to write/read/copy ASTs).
+ */
+final class NodeClassInfo {
+
+    static final String AST_PACKAGE = Module.class.getPackage().getName() + ".";
+
+    private static final Map<Class<?>, NodeClassInfo> classInfos = new ConcurrentHashMap<Class<?>, NodeClassInfo>();
+
+    /**
+     * @throws IOException if the given class is not a node from the org.python.pydev.parser.jython.ast package.
+     */
+    static NodeClassInfo get(Class<?> nodeClass) throws IOException {
+        NodeClassInfo info = classInfos.get(nodeClass);
+        if (info == null) {
+            if (!SimpleNode.class.isAssignableFrom(nodeClass) || !nodeClass.getName().startsWith(AST_PACKAGE)) {
+                throw new IOException("Unable to handle node: " + nodeClass);
+            }
+            info = new NodeClassInfo(nodeClass);
+            classInfos.put(nodeClass, info);
+        }
+        return info;
+    }
+
+    /**
+     * The public (non-static, non-final) fields of the node (sorted by name).
+     */
+    final Field[] fields;
+
+    private final Constructor<?> constructor;
+    private final Object[] constructorArgs;
+
+    private NodeClassInfo(Class<?> nodeClass) throws IOException {
+        List<Field> nodeFields = new ArrayList<Field>();
+        for (Field field : nodeClass.getFields()) {
+            int modifiers = field.getModifiers();
+            if (!Modifier.isStatic(modifiers) && !Modifier.isFinal(modifiers)
+                    && field.getDeclaringClass() != SimpleNode.class) {
+                nodeFields.add(field);
+            }
+        }
+        fields = nodeFields.toArray(new Field[nodeFields.size()]);
+        Arrays.sort(fields, new Comparator<Field>() {
+
+            @Override
+            public int compare(Field o1, Field o2) {
+                return o1.getName().compareTo(o2.getName());
+            }
+        });
+
+        //The generated nodes have a single constructor which just sets the fields (which are set again later on).
+        Constructor<?>[] constructors = nodeClass.getConstructors();
+        if (constructors.length != 1) {
+            throw new IOException("Expected a single constructor in: " + nodeClass);
+        }
+        constructor = constructors[0];
+        Class<?>[] parameterTypes = constructor.getParameterTypes();
+        constructorArgs = new Object[parameterTypes.length];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            Class<?> type = parameterTypes[i];
+            if (type == int.class) {
+                constructorArgs[i] = 0;
+            } else if (type == boolean.class) {
+                constructorArgs[i] = false;
+            } else if (type.isPrimitive()) {
+                throw new IOException("Unexpected constructor parameter: " + type + " in: " + nodeClass);
+            }
+        }
+    }
+
+    /**
+     * @return a new node of this class (with its fields still to be filled).
+     */
+    SimpleNode create() throws IOException {
+        try {
+            return (SimpleNode) constructor.newInstance(constructorArgs);
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+}
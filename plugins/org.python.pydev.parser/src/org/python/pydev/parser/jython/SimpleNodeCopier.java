@@ -0,0 +1,105 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.parser.jython;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.math.BigInteger;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.python.pydev.shared_core.structure.LowMemoryArrayList;
+
+/**
+ * Creates deep copies of an AST, optionally moving all the nodes some lines up or down.
+ *
+ * Different from SimpleNode.createCopy(), the copy is exact: all the specials (not only comments) and the references
+ * to the parent nodes are kept.
+ */
+public final class SimpleNodeCopier {
+
+    private final int lineOffset;
+    private final Map<SimpleNode, SimpleNode> copied = new IdentityHashMap<SimpleNode, SimpleNode>();
+
+    private SimpleNodeCopier(int lineOffset) {
+        this.lineOffset = lineOffset;
+    }
+
+    /**
+     * @param lineOffset the number of lines to add to the lines of the nodes (and specials) copied.
+     * @return a copy of the given node.
+     * @throws IOException if the AST has some node/value which can't be copied.
+     */
+    public static SimpleNode copy(SimpleNode node, int lineOffset) throws IOException {
+        return (SimpleNode) new SimpleNodeCopier(lineOffset).copyValue(node);
+    }
+
+    private List<Object> copySpecials(List<Object> specials) throws IOException {
+        if (specials == null) {
+            return null;
+        }
+        List<Object> ret = new LowMemoryArrayList<Object>();
+        for (Object special : specials) {
+            ret.add(copyValue(special));
+        }
+        return ret;
+    }
+
+    private SimpleNode copyNode(SimpleNode node) throws IOException {
+        NodeClassInfo info = NodeClassInfo.get(node.getClass());
+        SimpleNode ret = info.create();
+        copied.put(node, ret);
+
+        ret.beginLine = node.beginLine + lineOffset;
+        ret.beginColumn = node.beginColumn;
+        if (node.parent != null) {
+            //Only references to nodes copied are changed (i.e.: methods referencing the class they're in).
+            SimpleNode parent = copied.get(node.parent);
+            ret.parent = parent != null ? parent : node.parent;
+        }
+        ret.specialsBefore = copySpecials(node.specialsBefore);
+        ret.specialsAfter = copySpecials(node.specialsAfter);
+
+        try {
+            for (Field field : info.fields) {
+                field.set(ret, copyValue(field.get(node)));
+            }
+        } catch (IllegalAccessException | IllegalArgumentException e) {
+            throw new IOException(e);
+        }
+        return ret;
+    }
+
+    private Object copyValue(Object value) throws IOException {
+        if (value == null || value instanceof String || value instanceof Integer || value instanceof Boolean
+                || value instanceof BigInteger || value instanceof Long || value instanceof Float
+                || value instanceof Double) {
+            return value; //immutable
+        }
+        if (value instanceof SimpleNode) {
+            return copyNode((SimpleNode) value);
+        }
+        if (value instanceof SimpleNode[]) {
+            SimpleNode[] array = (SimpleNode[]) value;
+            Object[] ret = (Object[]) Array.newInstance(array.getClass().getComponentType(), array.length);
+            for (int i = 0; i < array.length; i++) {
+                ret[i] = copyValue(array[i]);
+            }
+            return ret;
+        }
+        if (value instanceof int[]) {
+            return ((int[]) value).clone();
+        }
+        if (value instanceof SpecialStr) {
+            SpecialStr specialStr = (SpecialStr) value;
+            return new SpecialStr(specialStr.str, specialStr.beginLine + lineOffset, specialStr.beginCol);
+        }
+        throw new IOException("Unable to copy: " + value.getClass());
+    }
+}
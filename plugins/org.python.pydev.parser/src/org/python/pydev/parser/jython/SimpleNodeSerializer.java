@@ -0,0 +1,365 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.parser.jython;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.python.pydev.shared_core.structure.LowMemoryArrayList;
+
+/**
+ * Writes/reads an AST to/from a compact binary format.
+ *
+ * The nodes are handled generically: the public fields of each node class (in the org.python.pydev.parser.jython.ast
+ * package) are written sorted by name, so, the format only has to change if a new kind of field value is added
+ * (in which case FORMAT_VERSION must be increased).
+ */
+public final class SimpleNodeSerializer {
+
+    /**
+     * Should be increased whenever the format (or the contents of the AST generated by the parser) changes.
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    private static final byte NULL = 0;
+    private static final byte NODE = 1;
+    private static final byte NODE_ARRAY = 2;
+    private static final byte STRING = 3;
+    private static final byte INT = 4;
+    private static final byte BOOLEAN = 5;
+    private static final byte INT_ARRAY = 6;
+    private static final byte BIG_INTEGER = 7;
+    private static final byte LONG = 8;
+    private static final byte FLOAT = 9;
+    private static final byte DOUBLE = 10;
+    private static final byte SPECIAL_STR = 11;
+
+    private SimpleNodeSerializer() {
+    }
+
+    /**
+     * Writes the given AST to the passed stream.
+     *
+     * @throws IOException if there's some error writing or if the AST has some node/value which can't be written.
+     */
+    public static void write(SimpleNode ast, DataOutputStream out) throws IOException {
+        new Writer(out).writeValue(ast);
+    }
+
+    /**
+     * Reads an AST from the current position of the given buffer.
+     *
+     * @throws IOException if the contents of the buffer are not valid.
+     */
+    public static SimpleNode read(ByteBuffer buffer) throws IOException {
+        try {
+            Object ret = new Reader(buffer).readValue();
+            if (ret != null && !(ret instanceof SimpleNode)) {
+                throw new IOException("Expected node. Found: " + ret);
+            }
+            return (SimpleNode) ret;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | ClassCastException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static final class Writer {
+
+        private final DataOutputStream out;
+        private final Map<String, Integer> strings = new HashMap<String, Integer>();
+        private final Map<Class<?>, Integer> classes = new HashMap<Class<?>, Integer>();
+        private final Map<SimpleNode, Integer> nodes = new IdentityHashMap<SimpleNode, Integer>();
+
+        private Writer(DataOutputStream out) {
+            this.out = out;
+        }
+
+        /**
+         * Strings are written only once (afterwards only the index is written).
+         */
+        private void writeString(String s) throws IOException {
+            if (s == null) {
+                out.writeInt(-1);
+                return;
+            }
+            Integer index = strings.get(s);
+            if (index != null) {
+                out.writeInt(index);
+                return;
+            }
+            int newIndex = strings.size();
+            strings.put(s, newIndex);
+            out.writeInt(newIndex);
+            out.writeInt(s.length());
+            out.writeChars(s);
+        }
+
+        private void writeSpecials(List<Object> specials) throws IOException {
+            if (specials == null) {
+                out.writeInt(-1);
+                return;
+            }
+            out.writeInt(specials.size());
+            for (Object special : specials) {
+                writeValue(special);
+            }
+        }
+
+        private void writeNode(SimpleNode node) throws IOException {
+            Class<? extends SimpleNode> nodeClass = node.getClass();
+            NodeClassInfo info = NodeClassInfo.get(nodeClass);
+            Integer classIndex = classes.get(nodeClass);
+            if (classIndex != null) {
+                out.writeInt(classIndex);
+            } else {
+                int newIndex = classes.size();
+                classes.put(nodeClass, newIndex);
+                out.writeInt(newIndex);
+                writeString(nodeClass.getName());
+            }
+            nodes.put(node, nodes.size());
+
+            out.writeInt(node.beginLine);
+            out.writeInt(node.beginColumn);
+            //Only references to nodes already written are kept (i.e.: methods referencing the class they're in).
+            Integer parentIndex = node.parent != null ? nodes.get(node.parent) : null;
+            out.writeInt(parentIndex != null ? parentIndex : -1);
+            writeSpecials(node.specialsBefore);
+            writeSpecials(node.specialsAfter);
+
+            try {
+                for (Field field : info.fields) {
+                    writeValue(field.get(node));
+                }
+            } catch (IllegalAccessException e) {
+                throw new IOException(e);
+            }
+        }
+
+        private void writeValue(Object value) throws IOException {
+            if (value == null) {
+                out.writeByte(NULL);
+
+            } else if (value instanceof SimpleNode) {
+                out.writeByte(NODE);
+                writeNode((SimpleNode) value);
+
+            } else if (value instanceof SimpleNode[]) {
+                SimpleNode[] array = (SimpleNode[]) value;
+                out.writeByte(NODE_ARRAY);
+                writeString(array.getClass().getComponentType().getName());
+                out.writeInt(array.length);
+                for (SimpleNode node : array) {
+                    writeValue(node);
+                }
+
+            } else if (value instanceof String) {
+                out.writeByte(STRING);
+                writeString((String) value);
+
+            } else if (value instanceof Integer) {
+                out.writeByte(INT);
+                out.writeInt((Integer) value);
+
+            } else if (value instanceof Boolean) {
+                out.writeByte(BOOLEAN);
+                out.writeBoolean((Boolean) value);
+
+            } else if (value instanceof int[]) {
+                int[] array = (int[]) value;
+                out.writeByte(INT_ARRAY);
+                out.writeInt(array.length);
+                for (int i : array) {
+                    out.writeInt(i);
+                }
+
+            } else if (value instanceof BigInteger) {
+                out.writeByte(BIG_INTEGER);
+                writeString(value.toString());
+
+            } else if (value instanceof Long) {
+                out.writeByte(LONG);
+                out.writeLong((Long) value);
+
+            } else if (value instanceof Float) {
+                out.writeByte(FLOAT);
+                out.writeFloat((Float) value);
+
+            } else if (value instanceof Double) {
+                out.writeByte(DOUBLE);
+                out.writeDouble((Double) value);
+
+            } else if (value instanceof SpecialStr) {
+                SpecialStr specialStr = (SpecialStr) value;
+                out.writeByte(SPECIAL_STR);
+                writeString(specialStr.str);
+                out.writeInt(specialStr.beginLine);
+                out.writeInt(specialStr.beginCol);
+
+            } else {
+                throw new IOException("Unable to write: " + value.getClass());
+            }
+        }
+    }
+
+    private static final class Reader {
+
+        private final ByteBuffer buffer;
+        private final List<String> strings = new ArrayList<String>();
+        private final List<NodeClassInfo> classes = new ArrayList<NodeClassInfo>();
+        private final List<SimpleNode> nodes = new ArrayList<SimpleNode>();
+
+        private Reader(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        private String readString() throws IOException {
+            int index = buffer.getInt();
+            if (index < 0) {
+                return null;
+            }
+            if (index < strings.size()) {
+                return strings.get(index);
+            }
+            if (index != strings.size()) {
+                throw new IOException("Unexpected string index: " + index);
+            }
+            int length = buffer.getInt();
+            char[] chars = new char[length];
+            for (int i = 0; i < length; i++) {
+                chars[i] = buffer.getChar();
+            }
+            String s = new String(chars);
+            strings.add(s);
+            return s;
+        }
+
+        private Class<?> loadClass(String name) throws IOException {
+            if (name == null || !name.startsWith(NodeClassInfo.AST_PACKAGE)) {
+                throw new IOException("Unexpected class: " + name);
+            }
+            try {
+                return Class.forName(name, false, SimpleNode.class.getClassLoader());
+            } catch (ClassNotFoundException e) {
+                throw new IOException(e);
+            }
+        }
+
+        private List<Object> readSpecials() throws IOException {
+            int size = buffer.getInt();
+            if (size < 0) {
+                return null;
+            }
+            List<Object> specials = new LowMemoryArrayList<Object>();
+            for (int i = 0; i < size; i++) {
+                specials.add(readValue());
+            }
+            return specials;
+        }
+
+        private SimpleNode readNode() throws IOException {
+            int classIndex = buffer.getInt();
+            NodeClassInfo info;
+            if (classIndex < classes.size()) {
+                info = classes.get(classIndex);
+            } else if (classIndex == classes.size()) {
+                info = NodeClassInfo.get(loadClass(readString()));
+                classes.add(info);
+            } else {
+                throw new IOException("Unexpected class index: " + classIndex);
+            }
+
+            SimpleNode node = info.create();
+            nodes.add(node);
+
+            node.beginLine = buffer.getInt();
+            node.beginColumn = buffer.getInt();
+            int parentIndex = buffer.getInt();
+            if (parentIndex >= 0) {
+                node.parent = nodes.get(parentIndex);
+            }
+            node.specialsBefore = readSpecials();
+            node.specialsAfter = readSpecials();
+
+            try {
+                for (Field field : info.fields) {
+                    field.set(node, readValue());
+                }
+            } catch (IllegalAccessException | IllegalArgumentException e) {
+                throw new IOException(e);
+            }
+            return node;
+        }
+
+        private Object readValue() throws IOException {
+            byte type = buffer.get();
+            switch (type) {
+                case NULL:
+                    return null;
+
+                case NODE:
+                    return readNode();
+
+                case NODE_ARRAY:
+                    Class<?> componentType = loadClass(readString());
+                    int length = buffer.getInt();
+                    Object[] array = (Object[]) Array.newInstance(componentType, length);
+                    for (int i = 0; i < length; i++) {
+                        array[i] = readValue();
+                    }
+                    return array;
+
+                case STRING:
+                    return readString();
+
+                case INT:
+                    return buffer.getInt();
+
+                case BOOLEAN:
+                    return buffer.get() != 0;
+
+                case INT_ARRAY:
+                    int[] ints = new int[buffer.getInt()];
+                    for (int i = 0; i < ints.length; i++) {
+                        ints[i] = buffer.getInt();
+                    }
+                    return ints;
+
+                case BIG_INTEGER:
+                    return new BigInteger(readString());
+
+                case LONG:
+                    return buffer.getLong();
+
+                case FLOAT:
+                    return buffer.getFloat();
+
+                case DOUBLE:
+                    return buffer.getDouble();
+
+                case SPECIAL_STR:
+                    String str = readString();
+                    int beginLine = buffer.getInt();
+                    int beginCol = buffer.getInt();
+                    return new SpecialStr(str, beginLine, beginCol);
+
+                default:
+                    throw new IOException("Unexpected value type: " + type);
+            }
+        }
+    }
+}
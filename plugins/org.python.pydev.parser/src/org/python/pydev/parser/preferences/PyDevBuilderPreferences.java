@@ -26,6 +26,9 @@ public class PyDevBuilderPreferences {
     public static final int PYC_NEVER_DELETE = 2;
     public static final int DEFAULT_PYC_DELETE_HANDLING = PYC_ALWAYS_DELETE;
 
+    public static final String PARALLEL_FULL_BUILD = "PARALLEL_FULL_BUILD";
+    public static final boolean DEFAULT_PARALLEL_FULL_BUILD = false;
+
     public static boolean usePydevBuilders() {
         return PydevPrefs.getEclipsePreferences().getBoolean(USE_PYDEV_BUILDERS, DEFAULT_USE_PYDEV_BUILDERS);
     }
@@ -56,4 +59,12 @@ public class PyDevBuilderPreferences {
         return PydevPrefs.getEclipsePreferences().getInt(PYC_DELETE_HANDLING, DEFAULT_PYC_DELETE_HANDLING);
     }
 
+    /**
+     * @return whether the resources in a full build should be visited in parallel (by the visitors which are
+     * thread-safe).
+     */
+    public static boolean useParallelFullBuild() {
+        return PydevPrefs.getEclipsePreferences().getBoolean(PARALLEL_FULL_BUILD, DEFAULT_PARALLEL_FULL_BUILD);
+    }
+
 }
@@ -0,0 +1,179 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.parser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.eclipse.jface.text.Document;
+import org.python.pydev.core.IGrammarVersionProvider;
+import org.python.pydev.parser.PyParser.ParserInfo;
+import org.python.pydev.parser.jython.SimpleNode;
+import org.python.pydev.parser.jython.SimpleNodeSerializer;
+import org.python.pydev.parser.jython.ast.Module;
+import org.python.pydev.shared_core.parsing.BaseParser.ParseOutput;
+
+public class IncrementalReparserTest extends PyParserTestBase {
+
+    private static final String CODE = ""
+            + "'''Module docstring'''\n"
+            + "import os\n"
+            + "\n"
+            + "\n"
+            + "@decorator(1,\n"
+            + "           2)\n"
+            + "class MyClass(object):\n"
+            + "    attr = 10  # comment after\n"
+            + "\n"
+            + "    def method(self, a):\n"
+            + "        x = (a,\n"
+            + "             a)\n"
+            + "        return x\n"
+            + "\n"
+            + "\n"
+            + "def func():\n"
+            + "    '''\n"
+            + "    docstring\n"
+            + "    '''\n"
+            + "    # comment\n"
+            + "    return 1\n"
+            + "\n"
+            + "# comment before\n"
+            + "def func2(): pass\n"
+            + "a = 1; b = 2\n"
+            + "if a:\n"
+            + "    b = 3\n"
+            + "else:\n"
+            + "    b = 4\n"
+            + "c = a + \\\n"
+            + "    b\n"
+            + "print(c)\n";
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        setDefaultVersion(IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_3_6);
+    }
+
+    private static byte[] toBytes(SimpleNode ast) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            SimpleNodeSerializer.write(ast, out);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return the AST for the given contents (or null if it has errors).
+     */
+    private static Module parseFully(String contents) {
+        ParseOutput output = PyParser.reparseDocument(new ParserInfo(new Document(contents), getDefaultVersion(),
+                true, null));
+        return output.error == null ? (Module) output.ast : null;
+    }
+
+    /**
+     * Checks that the incremental reparse (if done) gives the same results as a full parse.
+     *
+     * @return the AST from the incremental reparse (or null if it wasn't possible to do it).
+     */
+    private static Module check(Module previous, String before, String after) throws IOException {
+        IncrementalReparser.Snapshot snapshot = new IncrementalReparser.Snapshot(before, previous,
+                getDefaultVersion());
+        Module incremental = IncrementalReparser.reparse(snapshot, after, getDefaultVersion());
+        if (incremental != null) {
+            Module full = parseFully(after);
+            assertNotNull("The incremental reparse should fail when the full parse fails.", full);
+            assertEquals(full, incremental);
+            assertEquals(full.toString(), incremental.toString());
+            //Compares what's not compared in equals (positions, specials, parents).
+            assertTrue("Different AST for:\n" + after, Arrays.equals(toBytes(full), toBytes(incremental)));
+        }
+        return incremental;
+    }
+
+    public void testChangeInSingleStatement() throws Exception {
+        Module previous = (Module) parseLegalDocStr(CODE);
+        String after = CODE.replace("        return x\n", "        return x + 1\n");
+        Module incremental = check(previous, CODE, after);
+        assertNotNull(incremental);
+
+        //Statements before and after the change are reused as is.
+        assertSame(previous.body[0], incremental.body[0]);
+        assertSame(previous.body[1], incremental.body[1]);
+        assertNotSame(previous.body[2], incremental.body[2]);
+        assertSame(previous.body[previous.body.length - 1], incremental.body[incremental.body.length - 1]);
+    }
+
+    public void testLinesAdded() throws Exception {
+        Module previous = (Module) parseLegalDocStr(CODE);
+        String after = CODE.replace("        return x\n", "        y = 10\n\n        return x\n");
+        Module incremental = check(previous, CODE, after);
+        assertNotNull(incremental);
+
+        //Statements after the change have to be moved (so, they're copied).
+        assertSame(previous.body[1], incremental.body[1]);
+        SimpleNode last = incremental.body[incremental.body.length - 1];
+        assertNotSame(previous.body[previous.body.length - 1], last);
+        assertEquals(previous.body[previous.body.length - 1].beginLine + 2, last.beginLine);
+    }
+
+    public void testErrorInRegion() throws Exception {
+        Module previous = (Module) parseLegalDocStr(CODE);
+        assertNull(check(previous, CODE, CODE.replace("        return x\n", "        return x +\n")));
+    }
+
+    public void testChangesAllOver() throws Exception {
+        Module previous = (Module) parseLegalDocStr(CODE);
+        String[] lines = CODE.split("\n");
+        int incrementalCount = 0;
+        for (int i = 0; i < lines.length; i++) {
+            //Remove each line, duplicate it, indent it, dedent it and add a comment to it.
+            String[] changes = new String[] { "", lines[i] + "\n" + lines[i], "    " + lines[i], lines[i].trim(),
+                    lines[i] + " #new comment", "#" + lines[i] };
+            for (String change : changes) {
+                StringBuilder buf = new StringBuilder();
+                for (int j = 0; j < lines.length; j++) {
+                    buf.append(j == i ? change : lines[j]).append('\n');
+                }
+                if (check(previous, CODE, buf.toString()) != null) {
+                    incrementalCount++;
+                }
+            }
+        }
+        assertTrue(incrementalCount > 0);
+    }
+
+    public void testNoTrailingNewLine() throws Exception {
+        String before = "a = 1\n\nb = 2\n\nc = 3";
+        Module previous = (Module) parseLegalDocStr(before);
+        assertNotNull(check(previous, before, "a = 1\n\nb = 2\n\nc = 4"));
+        assertNotNull(check(previous, before, "a = 1\n\nb = 22\n\nc = 3"));
+        check(previous, before, "a = 1\n\nb = 2\n\nc = 3\n#comment");
+    }
+
+    public void testPython2FutureImports() throws Exception {
+        setDefaultVersion(IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_2_7);
+        String before = "from __future__ import print_function\n\nprint(1, file=None)\n";
+        Module previous = (Module) parseLegalDocStr(before);
+        assertNull(check(previous, before, "from __future__ import print_function\n\nprint(2, file=None)\n"));
+    }
+
+    public void testEditorParser() throws Exception {
+        Document doc = new Document(CODE);
+        parser.setDocument(doc, false, null);
+        ParseOutput output = parser.reparseDocument();
+        assertNull(output.error);
+
+        doc.replace(CODE.indexOf("return 1"), "return 1".length(), "return 2");
+        output = parser.reparseDocument();
+        assertNull(output.error);
+        assertTrue(Arrays.equals(toBytes(parseFully(doc.get())), toBytes((SimpleNode) output.ast)));
+    }
+}
@@ -16,8 +16,10 @@ import java.util.List;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.Document;
 import org.python.pydev.core.IGrammarVersionProvider;
+import org.python.pydev.core.IGrammarVersionProvider.AdditionalGrammarVersionsToCheck;
 import org.python.pydev.core.IPythonNature;
 import org.python.pydev.core.TestDependent;
+import org.python.pydev.parser.PyParser.ParserInfo;
 import org.python.pydev.parser.jython.SimpleNode;
 import org.python.pydev.parser.jython.SpecialStr;
 import org.python.pydev.parser.jython.ast.ClassDef;
@@ -918,6 +920,29 @@ public class PyParserTest extends PyParserTestBase {
         parseLegalDocStr(s);
     }
 
+    public void testAdditionalGrammarVersions() throws Throwable {
+        AdditionalGrammarVersionsToCheck additionalGrammarVersions = new AdditionalGrammarVersionsToCheck();
+        additionalGrammarVersions.add(IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_2_7);
+        additionalGrammarVersions.add(IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_3_5);
+        additionalGrammarVersions.add(IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_3_6);
+        int grammarVersion = IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_3_6;
+
+        //f-strings are not valid in 2.7 nor 3.5.
+        Document doc = new Document("print('a')\nx = f'{a}'\n");
+        ParseOutput output = PyParser.reparseDocument(new ParserInfo(doc, grammarVersion, additionalGrammarVersions));
+        assertNotNull(output.ast);
+        assertNotNull(output.error);
+
+        //The document wasn't changed: the checks of the additional grammar versions are reused.
+        ParseOutput output2 = PyParser.reparseDocument(new ParserInfo(doc, grammarVersion, additionalGrammarVersions));
+        assertSame(output.error, output2.error);
+
+        doc.set("print('a')\n");
+        output = PyParser.reparseDocument(new ParserInfo(doc, grammarVersion, additionalGrammarVersions));
+        assertNotNull(output.ast);
+        assertNull(output.error);
+    }
+
     public void testThreadingInParser() throws Exception {
         // fails on Python >= 2.7 because unittest became a dir instead of one file.
         if (SharedCorePlugin.skipKnownFailures()) {
@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.parser.jython;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.python.pydev.core.IGrammarVersionProvider;
+import org.python.pydev.parser.PyParserTestBase;
+import org.python.pydev.parser.jython.ast.ClassDef;
+import org.python.pydev.parser.jython.ast.FunctionDef;
+import org.python.pydev.parser.jython.ast.Module;
+
+public class SimpleNodeSerializerTest extends PyParserTestBase {
+
+    private static byte[] toBytes(SimpleNode ast) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            SimpleNodeSerializer.write(ast, out);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Checks that the AST read is equal to the original one (and that it generates the same contents when written
+     * again, which also checks what's not compared in equals, such as positions and comments).
+     */
+    private SimpleNode checkRoundTrip(String code) throws IOException {
+        SimpleNode ast = parseLegalDocStr(code);
+        byte[] bytes = toBytes(ast);
+        SimpleNode read = SimpleNodeSerializer.read(ByteBuffer.wrap(bytes));
+        assertEquals(ast, read);
+        assertEquals(ast.toString(), read.toString());
+        assertTrue(Arrays.equals(bytes, toBytes(read)));
+        return read;
+    }
+
+    public void testRoundTrip36() throws Exception {
+        setDefaultVersion(IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_3_6);
+        String code = ""
+                + "'''Module docstring'''\n"
+                + "import os.path as p, sys\n"
+                + "from a.b import (c, d as e)\n"
+                + "from . import f\n"
+                + "#comment before\n"
+                + "@decorator(1, key='value')\n"
+                + "class MyClass(Base, metaclass=Meta):\n"
+                + "    attr = 10  # comment after\n"
+                + "\n"
+                + "    def method(self, a, b=2.5, *args, c: str='', **kwargs) -> None:\n"
+                + "        x = [i ** 2 for i in range(10) if i % 2]\n"
+                + "        y = {k: v for k, v in kwargs.items()}\n"
+                + "        z = {1, 2, 3j, 0xFF, 123456789012345678901234567890}\n"
+                + "        w = lambda q, *r: q if r else not q\n"
+                + "        s = f'{a!r:>10} and {b}' + r'raw' + b'bytes'\n"
+                + "        try:\n"
+                + "            with open(p) as stream, other():\n"
+                + "                yield from stream[1:2, ::3]\n"
+                + "        except (IOError, ValueError) as err:\n"
+                + "            raise RuntimeError() from err\n"
+                + "        finally:\n"
+                + "            del x\n"
+                + "        return (a, *args)\n"
+                + "\n"
+                + "    async def other(self):\n"
+                + "        global g\n"
+                + "        await self.method(1)\n"
+                + "        async for i in aiter():\n"
+                + "            nonlocal_val = ...\n"
+                + "\n"
+                + "while True:\n"
+                + "    if a < b <= c != d:\n"
+                + "        break\n"
+                + "    elif a is not b and c in d:\n"
+                + "        continue\n"
+                + "    else:\n"
+                + "        a += -b << 2 | ~c\n"
+                + "assert a, 'message'\n";
+
+        Module module = (Module) checkRoundTrip(code);
+
+        //The reference from methods to the class they're in must be kept.
+        ClassDef classDef = (ClassDef) module.body[4];
+        FunctionDef method = (FunctionDef) classDef.body[1];
+        assertSame(classDef, method.parent);
+    }
+
+    public void testRoundTrip27() throws Exception {
+        setDefaultVersion(IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_2_7);
+        checkRoundTrip(""
+                + "print >> sys.stderr, 'a', 10L\n"
+                + "exec 'code' in globals()\n"
+                + "x = `y`\n"
+                + "def f((a, b), c=u'unicode'):\n"
+                + "    pass\n");
+    }
+
+    public void testInvalidContents() throws Exception {
+        setDefaultVersion(IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_3_6);
+        byte[] bytes = toBytes(parseLegalDocStr("class A:\n    def m(self): pass\n"));
+        try {
+            SimpleNodeSerializer.read(ByteBuffer.wrap(bytes, 0, bytes.length / 2));
+            fail("Expected IOException");
+        } catch (IOException e) {
+            //expected
+        }
+    }
+}
@@ -78,6 +78,7 @@ public class IndexApi {
     private SearcherFactory searcherFactory;
     private int maxMatches = Integer.MAX_VALUE;
     private CodeAnalyzer analyzer;
+    private boolean applyAllDeletes;
     private final Object lock = new Object();
 
     protected IndexApi(Object /*Directory*/ indexDirObj, boolean applyAllDeletes) throws IOException {
@@ -113,6 +114,7 @@ public class IndexApi {
     }
 
     public void init(boolean applyAllDeletes) throws IOException {
+        this.applyAllDeletes = applyAllDeletes;
         this.analyzer = new CodeAnalyzer();
         IndexWriterConfig config = new IndexWriterConfig(analyzer);
         config.setCommitOnClose(true);
@@ -437,25 +439,39 @@ public class IndexApi {
         } catch (Exception e) {
             Log.log(e);
         }
+        if (applyAllDeletes == this.applyAllDeletes) {
+            // Reuse the searcher from the SearcherManager (which is only reopened if the index changed).
+            searchManager.maybeRefreshBlocking();
+            IndexSearcher searcher = searchManager.acquire();
+            try {
+                return search(searcher, query, visitor, fields);
+            } finally {
+                searchManager.release(searcher);
+            }
+        }
         try (IndexReader reader = DirectoryReader.open(writer, applyAllDeletes, false);) {
-            IndexSearcher searcher = searcherFactory.newSearcher(reader, null);
+            return search(searcherFactory.newSearcher(reader, null), query, visitor, fields);
+        }
+    }
 
-            TopDocs search = searcher.search(query, maxMatches);
-            ScoreDoc[] scoreDocs = search.scoreDocs;
-
-            if (visitor != null) {
-                int length = scoreDocs.length;
-                for (int i = 0; i < length; i++) {
-                    ScoreDoc scoreDoc = scoreDocs[i];
-                    DocumentStoredFieldVisitor fieldVisitor = new DocumentStoredFieldVisitor(fields);
-                    reader.document(scoreDoc.doc, fieldVisitor);
-                    Document document = fieldVisitor.getDocument();
-                    visitor.visit(new DocumentInfo(document, scoreDoc.doc));
-                }
-            }
+    private SearchResult search(IndexSearcher searcher, Query query, IDocumentsVisitor visitor, String... fields)
+            throws IOException {
+        TopDocs search = searcher.search(query, maxMatches);
+        ScoreDoc[] scoreDocs = search.scoreDocs;
 
-            return new SearchResult(scoreDocs);
+        if (visitor != null) {
+            IndexReader reader = searcher.getIndexReader();
+            int length = scoreDocs.length;
+            for (int i = 0; i < length; i++) {
+                ScoreDoc scoreDoc = scoreDocs[i];
+                DocumentStoredFieldVisitor fieldVisitor = new DocumentStoredFieldVisitor(fields);
+                reader.document(scoreDoc.doc, fieldVisitor);
+                Document document = fieldVisitor.getDocument();
+                visitor.visit(new DocumentInfo(document, scoreDoc.doc));
+            }
         }
+
+        return new SearchResult(scoreDocs);
     }
 
     public void removeDocs(Map<String, Collection<String>> fieldToValuesToRemove) throws IOException {
@@ -11,10 +11,12 @@
 ******************************************************************************/
 package org.python.pydev.shared_core.utils;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -26,8 +28,11 @@ import org.eclipse.jface.text.ISynchronizable;
 import org.python.pydev.shared_core.callbacks.ICallback;
 import org.python.pydev.shared_core.log.Log;
 import org.python.pydev.shared_core.string.FastStringBuffer;
+import org.python.pydev.shared_core.string.StringUtils;
 import org.python.pydev.shared_core.string.TextSelectionUtils;
-import org.python.pydev.shared_core.utils.diff_match_patch.Patch;
+import org.python.pydev.shared_core.utils.LinesDiff.Hunk;
+import org.python.pydev.shared_core.utils.diff_match_patch.Diff;
+import org.python.pydev.shared_core.utils.diff_match_patch.Operation;
 
 public class DocUtils {
 
@@ -130,24 +135,121 @@ public class DocUtils {
     }
 
     /**
+     * Lines added/removed above this amount make the whole changed region be handled as a single hunk.
+     */
+    private static final int MAX_LINES_EDITS = 2000;
+
+    /**
+     * The changed lines are computed first and the char-level diff is only done inside each changed hunk (so, for a
+     * formatter output, where few lines usually change, this is fast even in big documents).
+     *
      * @param docUpdateAPI any document mutation is done through this parameter (so, it's possible to record any changes done).
      * @throws BadLocationException
      */
     public static void updateDocRangeWithContents(final IDocumentUpdateAPI docUpdateAPI, final IDocument docToUpdate,
             final String docContents, final String newDocContents, final String endLineDelimiter) {
+        if (docContents.equals(newDocContents)) {
+            return;
+        }
+        List<String> oldLines = StringUtils.splitInLines(docContents);
+        List<String> newLines = StringUtils.splitInLines(newDocContents);
+        List<Hunk> hunks = LinesDiff.diff(oldLines, newLines, MAX_LINES_EDITS);
+        if (hunks == null) {
+            // Too many changes: a single hunk from the first to the last changed line.
+            hunks = new ArrayList<Hunk>();
+            int start = 0;
+            while (start < oldLines.size() && start < newLines.size()
+                    && oldLines.get(start).equals(newLines.get(start))) {
+                start++;
+            }
+            int oldEnd = oldLines.size();
+            int newEnd = newLines.size();
+            while (oldEnd > start && newEnd > start && oldLines.get(oldEnd - 1).equals(newLines.get(newEnd - 1))) {
+                oldEnd--;
+                newEnd--;
+            }
+            hunks.add(new Hunk(start, oldEnd, start, newEnd));
+        }
+
+        int[] oldLineOffsets = new int[oldLines.size() + 1];
+        for (int i = 0; i < oldLines.size(); i++) {
+            oldLineOffsets[i + 1] = oldLineOffsets[i] + oldLines.get(i).length();
+        }
+
         diff_match_patch diff_match_patch = new diff_match_patch();
         diff_match_patch.Diff_Timeout = 0.5f;
-        diff_match_patch.Match_Distance = 200;
-        diff_match_patch.Patch_Margin = 10;
         diff_match_patch.Diff_EditCost = 8;
-        LinkedList<Patch> patches = diff_match_patch.patch_make(docContents, newDocContents);
+        FastStringBuffer buf = new FastStringBuffer();
         try {
-            diff_match_patch.patch_apply(patches, docContents, docUpdateAPI);
+            // Apply from the end so that the offsets of the previous hunks are still valid.
+            for (int i = hunks.size() - 1; i >= 0; i--) {
+                Hunk hunk = hunks.get(i);
+                buf.clear();
+                for (int j = hunk.newStart; j < hunk.newEnd; j++) {
+                    buf.append(newLines.get(j));
+                }
+                int offset = oldLineOffsets[hunk.oldStart];
+                String oldText = docContents.substring(offset, oldLineOffsets[hunk.oldEnd]);
+                applyCharsDiff(diff_match_patch, docUpdateAPI, offset, oldText, buf.toString());
+            }
         } catch (BadLocationException e) {
             Log.log(e);
         }
     }
 
+    /**
+     * Replaces oldText (at the given offset) with newText changing only the chars which are different.
+     */
+    private static void applyCharsDiff(diff_match_patch diff_match_patch, IDocumentUpdateAPI docUpdateAPI,
+            int offset, String oldText, String newText) throws BadLocationException {
+        if (oldText.isEmpty() || newText.isEmpty()) {
+            docUpdateAPI.replace(offset, oldText.length(), newText);
+            return;
+        }
+        LinkedList<Diff> diffs = diff_match_patch.diff_main(oldText, newText, false);
+        if (diffs.size() > 2) {
+            diff_match_patch.diff_cleanupSemantic(diffs);
+            diff_match_patch.diff_cleanupEfficiency(diffs);
+        }
+
+        // A delete followed by an insert is a single replace.
+        List<CharsEdit> edits = new ArrayList<CharsEdit>();
+        int pos = 0;
+        CharsEdit current = null;
+        for (Diff diff : diffs) {
+            if (diff.operation == Operation.EQUAL) {
+                current = null;
+                pos += diff.text.length();
+                continue;
+            }
+            if (current == null) {
+                current = new CharsEdit(pos);
+                edits.add(current);
+            }
+            if (diff.operation == Operation.DELETE) {
+                current.length += diff.text.length();
+                pos += diff.text.length();
+            } else {
+                current.text.append(diff.text);
+            }
+        }
+        for (int i = edits.size() - 1; i >= 0; i--) {
+            CharsEdit edit = edits.get(i);
+            docUpdateAPI.replace(offset + edit.offset, edit.length, edit.text.toString());
+        }
+    }
+
+    private static final class CharsEdit {
+
+        private final int offset;
+        private int length;
+        private final FastStringBuffer text = new FastStringBuffer();
+
+        private CharsEdit(int offset) {
+            this.offset = offset;
+        }
+    }
+
     public static class EmptyLinesComputer {
 
         private final IDocument doc;
@@ -0,0 +1,194 @@
+/******************************************************************************
+* Copyright (C) 2013  Fabio Zadrozny
+*
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*
+* Contributors:
+*     Fabio Zadrozny <fabiofz@gmail.com> - initial API and implementation
+******************************************************************************/
+package org.python.pydev.shared_core.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes the lines which changed between 2 versions of a text (Myers' diff over line ids).
+ *
+ * The time is O((N + M) * D) where D is the number of lines added/removed, so, it's fast when few lines change (as
+ * is usually the case for the output of a formatter).
+ */
+public final class LinesDiff {
+
+    /**
+     * The lines [oldStart, oldEnd) of the old text are replaced by the lines [newStart, newEnd) of the new text.
+     */
+    public static final class Hunk {
+
+        public final int oldStart;
+        public final int oldEnd;
+        public final int newStart;
+        public final int newEnd;
+
+        public Hunk(int oldStart, int oldEnd, int newStart, int newEnd) {
+            this.oldStart = oldStart;
+            this.oldEnd = oldEnd;
+            this.newStart = newStart;
+            this.newEnd = newEnd;
+        }
+
+        @Override
+        public String toString() {
+            return "Hunk[" + oldStart + ", " + oldEnd + " -> " + newStart + ", " + newEnd + "]";
+        }
+    }
+
+    private LinesDiff() {
+    }
+
+    /**
+     * @param maxEdits the maximum number of lines added/removed to be considered.
+     * @return the hunks which changed (in order) or null if more than maxEdits lines were added/removed.
+     */
+    public static List<Hunk> diff(List<String> oldLines, List<String> newLines, int maxEdits) {
+        // Compare ints instead of strings.
+        Map<String, Integer> ids = new HashMap<String, Integer>();
+        int[] a = toIds(oldLines, ids);
+        int[] b = toIds(newLines, ids);
+
+        // Skip the common prefix/suffix (usually most of the lines).
+        int start = 0;
+        while (start < a.length && start < b.length && a[start] == b[start]) {
+            start++;
+        }
+        int aEnd = a.length;
+        int bEnd = b.length;
+        while (aEnd > start && bEnd > start && a[aEnd - 1] == b[bEnd - 1]) {
+            aEnd--;
+            bEnd--;
+        }
+
+        int n = aEnd - start;
+        int m = bEnd - start;
+        boolean[] removed = new boolean[n];
+        boolean[] added = new boolean[m];
+        if (!computeEdits(a, b, start, n, m, removed, added, maxEdits)) {
+            return null;
+        }
+
+        List<Hunk> hunks = new ArrayList<Hunk>();
+        int i = 0;
+        int j = 0;
+        while (i < n || j < m) {
+            if (i < n && j < m && !removed[i] && !added[j]) {
+                i++;
+                j++;
+                continue;
+            }
+            int i0 = i;
+            int j0 = j;
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                while (i < n && removed[i]) {
+                    i++;
+                    changed = true;
+                }
+                while (j < m && added[j]) {
+                    j++;
+                    changed = true;
+                }
+            }
+            hunks.add(new Hunk(start + i0, start + i, start + j0, start + j));
+        }
+        return hunks;
+    }
+
+    private static int[] toIds(List<String> lines, Map<String, Integer> ids) {
+        int[] ret = new int[lines.size()];
+        for (int i = 0; i < ret.length; i++) {
+            String line = lines.get(i);
+            Integer id = ids.get(line);
+            if (id == null) {
+                id = ids.size();
+                ids.put(line, id);
+            }
+            ret[i] = id;
+        }
+        return ret;
+    }
+
+    /**
+     * Myers' greedy algorithm (keeping the furthest reaching paths of each step to backtrack the edits).
+     *
+     * @return false if more than maxEdits would be needed.
+     */
+    private static boolean computeEdits(int[] a, int[] b, int start, int n, int m, boolean[] removed,
+            boolean[] added, int maxEdits) {
+        int max = n + m;
+        if (max == 0) {
+            return true;
+        }
+        int offset = max + 1;
+        int[] v = new int[2 * max + 3];
+        List<int[]> trace = new ArrayList<int[]>();
+        int limit = Math.min(max, maxEdits);
+        for (int d = 0; d <= limit; d++) {
+            // Keep the paths of the previous step (only k in [-d, d] may be used).
+            int[] snapshot = new int[2 * d + 3];
+            System.arraycopy(v, offset - d - 1, snapshot, 0, snapshot.length);
+            trace.add(snapshot);
+
+            for (int k = -d; k <= d; k += 2) {
+                int x;
+                if (k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1])) {
+                    x = v[offset + k + 1];
+                } else {
+                    x = v[offset + k - 1] + 1;
+                }
+                int y = x - k;
+                while (x < n && y < m && a[start + x] == b[start + y]) {
+                    x++;
+                    y++;
+                }
+                v[offset + k] = x;
+                if (x >= n && y >= m) {
+                    backtrack(trace, d, n, m, removed, added);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static void backtrack(List<int[]> trace, int d, int x, int y, boolean[] removed, boolean[] added) {
+        for (; d > 0; d--) {
+            int[] v = trace.get(d);
+            int vOffset = d + 1; // v[vOffset + k] is the furthest x for k in the previous step.
+            int k = x - y;
+            int prevK;
+            if (k == -d || (k != d && v[vOffset + k - 1] < v[vOffset + k + 1])) {
+                prevK = k + 1;
+            } else {
+                prevK = k - 1;
+            }
+            int prevX = v[vOffset + prevK];
+            int prevY = prevX - prevK;
+            while (x > prevX && y > prevY) {
+                x--;
+                y--;
+            }
+            if (x == prevX) {
+                added[prevY] = true;
+            } else {
+                removed[prevX] = true;
+            }
+            x = prevX;
+            y = prevY;
+        }
+    }
+}
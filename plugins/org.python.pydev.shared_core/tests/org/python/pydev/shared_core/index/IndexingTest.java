@@ -150,6 +150,27 @@ public class IndexingTest extends TestCase {
         assertEquals(1, found.size());
     }
 
+    public void testSearchAfterIncrementalChanges() throws Exception {
+        indexApi.index(new Path("a.py"), 0L, "aAaAaAaA");
+        SearchResult result = indexApi.searchExact("aaaaaaaa", IFields.GENERAL_CONTENTS, true);
+        assertEquals(1, result.getNumberOfDocumentMatches());
+
+        // The same index is kept open: new searches must see what changed in the meanwhile.
+        indexApi.index(new Path("b.py"), 1L, "aAaAaAaA");
+        result = indexApi.searchExact("aaaaaaaa", IFields.GENERAL_CONTENTS, true);
+        assertEquals(2, result.getNumberOfDocumentMatches());
+
+        HashMap<String, Collection<String>> map = new HashMap<>();
+        map.put(IFields.MODIFIED_TIME, Arrays.asList("0"));
+        indexApi.removeDocs(map);
+        result = indexApi.searchExact("aaaaaaaa", IFields.GENERAL_CONTENTS, true);
+        assertEquals(1, result.getNumberOfDocumentMatches());
+
+        // A search with a different applyAllDeletes doesn't use the shared searcher.
+        result = indexApi.searchExact("aaaaaaaa", IFields.GENERAL_CONTENTS, false);
+        assertEquals(1, result.getNumberOfDocumentMatches());
+    }
+
     public void testExactMatch() throws Exception {
         indexApi.index(new Path("a.py"), 0L, "aAaAaAaA");
         indexApi.index(new Path("b.py"), 1L, "bBbBbBb");
@@ -118,6 +118,9 @@ public class PyDevBuilderPrefPage extends FieldEditorPreferencePage implements I
         addField(new ComboFieldEditor(PyDevBuilderPreferences.PYC_DELETE_HANDLING, "How to handle .pyc/$py.class deletion?",
                 ENTRIES_AND_VALUES, p));
 
+        addField(new BooleanFieldEditor(PyDevBuilderPreferences.PARALLEL_FULL_BUILD,
+                "Visit files in parallel on a full build?", p));
+
     }
 
     /* (non-Javadoc)
@@ -28,6 +28,20 @@ import org.python.pydev.shared_ui.log.ToLogFile;
  */
 public class PySyntaxChecker extends PyDevBuilderVisitor {
 
+    /**
+     * The markers of a resource are only changed while visiting it (the parser error markers are also created
+     * from the parser threads of the editors).
+     */
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    @Override
+    public PyDevBuilderVisitor createWorkerInstance() {
+        return new PySyntaxChecker();
+    }
+
     @Override
     public void visitChangedResource(IResource resource, ICallback0<IDocument> document, IProgressMonitor monitor) {
         PythonNature nature = getPythonNature(resource);
@@ -35,6 +35,19 @@ import org.python.pydev.shared_core.markers.PyMarkerUtils.MarkerInfo;
  */
 public class PyTodoVisitor extends PyDevBuilderVisitor {
 
+    /**
+     * The markers are replaced in a workspace runnable (so, it's safe to visit resources in other threads).
+     */
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    @Override
+    public PyDevBuilderVisitor createWorkerInstance() {
+        return new PyTodoVisitor();
+    }
+
     /*
      * (non-Javadoc)
      *
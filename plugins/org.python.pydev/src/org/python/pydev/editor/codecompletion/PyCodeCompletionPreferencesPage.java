@@ -48,6 +48,9 @@ public class PyCodeCompletionPreferencesPage extends FieldEditorPreferencePage i
         addField(new IntegerFieldEditor(PyCodeCompletionPreferences.ATTEMPTS_CODECOMPLETION,
                 "Maximum attempts to connect to shell (5 secs each):", p));
 
+        addField(new IntegerFieldEditor(PyCodeCompletionPreferences.SHELLS_FOR_OTHER_THREADS,
+                "Shells for background requests (per interpreter):", p));
+
         addField(new IntegerFieldEditor(PyCodeCompletionPreferences.AUTOCOMPLETE_DELAY, "Autocompletion delay: ", p));
 
         String tooltip = WrapAndCaseUtils
@@ -71,6 +71,7 @@ import org.python.pydev.consoles.MessageConsoles;
 import org.python.pydev.core.CorePlugin;
 import org.python.pydev.core.IInterpreterInfo;
 import org.python.pydev.core.IPythonNature;
+import org.python.pydev.core.cache.CompiledModulesPack;
 import org.python.pydev.core.log.Log;
 import org.python.pydev.core.preferences.PydevPrefs;
 import org.python.pydev.core.proposals.CompletionProposalFactory;
@@ -474,6 +475,7 @@ public class PydevPlugin extends AbstractUIPlugin {
                     Log.log(e);
                 }
             }
+            CompiledModulesPack.closeAll();
         } finally {
             super.stop(context);
         }
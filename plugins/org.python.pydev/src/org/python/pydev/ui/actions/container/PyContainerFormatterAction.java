@@ -8,6 +8,8 @@
 package org.python.pydev.ui.actions.container;
 
 import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
 import org.eclipse.core.resources.IContainer;
@@ -97,7 +99,7 @@ abstract class PyContainerFormatterAction extends PyContainerAction {
 
     /**
      * Applies source code formatting to the files... 
-     * Recursively pass the folders and delete the files (and sum them so that we know how many
+     * Recursively pass the folders and collect the files to be formatted (and sum them so that we know how many
      * files were formatted).
      * 
      * @param container the folder from where we want to remove the files
@@ -105,7 +107,15 @@ abstract class PyContainerFormatterAction extends PyContainerAction {
      */
     @Override
     protected int doActionOnContainer(IContainer container, IProgressMonitor monitor) {
-        int formatted = 0;
+        List<IFile> files = new ArrayList<IFile>();
+        collectFiles(container, monitor, files);
+        if (monitor.isCanceled()) {
+            return 0;
+        }
+        return formatFiles(files, monitor);
+    }
+
+    private void collectFiles(IContainer container, IProgressMonitor monitor, List<IFile> files) {
         try {
             IResource[] members = container.members();
 
@@ -113,55 +123,71 @@ abstract class PyContainerFormatterAction extends PyContainerAction {
                 if (monitor.isCanceled()) {
                     break;
                 }
-                monitor.worked(1);
                 if (c instanceof IContainer) {
-                    formatted += this.doActionOnContainer((IContainer) c, monitor);
+                    this.collectFiles((IContainer) c, monitor, files);
 
                 } else if (c instanceof IFile) {
                     final String name = c.getName();
-                    if (name != null) {
-                        monitor.setTaskName("Formatting: " + name);
-                        if (PythonPathHelper.isValidSourceFile(name)) {
-                            IFile file = (IFile) c;
-                            final IDocument doc = FileUtilsFileBuffer.getDocFromResource(c);
+                    if (name != null && PythonPathHelper.isValidSourceFile(name)) {
+                        files.add((IFile) c);
+                    }
+                }
+            }
+        } catch (CoreException e) {
+            Log.log(e);
+        }
+    }
 
-                            final boolean isOpenedFile = openFiles.contains(file);
+    /**
+     * Formats the given files (one at a time).
+     * 
+     * @return the number of files formatted
+     */
+    protected int formatFiles(List<IFile> files, IProgressMonitor monitor) {
+        int formatted = 0;
+        for (final IFile file : files) {
+            if (monitor.isCanceled()) {
+                break;
+            }
+            monitor.worked(1);
+            final String name = file.getName();
+            monitor.setTaskName("Formatting: " + name);
+            final IDocument doc = FileUtilsFileBuffer.getDocFromResource(file);
+
+            final boolean isOpenedFile = openFiles.contains(file);
+            try {
+                if (isOpenedFile) {
+                    RunInUiThread.async(new Runnable() {
+
+                        @Override
+                        public void run() {
                             try {
-                                if (isOpenedFile) {
-                                    RunInUiThread.async(new Runnable() {
-
-                                        @Override
-                                        public void run() {
-                                            try {
-                                                formatter.formatAll(doc, null, (IFile) c, isOpenedFile, true);
-                                            } catch (SyntaxErrorException e) {
-                                                Log.log(IStatus.ERROR, "Could not " + verbPresentMsg + " file: " + name
-                                                        + " (invalid syntax).", e);
-                                            }
-                                        }
-                                    });
-                                } else {
-                                    formatter.formatAll(doc, null, (IFile) c, isOpenedFile, true);
-                                }
+                                formatter.formatAll(doc, null, file, isOpenedFile, true);
                             } catch (SyntaxErrorException e) {
                                 Log.log(IStatus.ERROR, "Could not " + verbPresentMsg + " file: " + name
-                                        + " (invalid syntax).",
-                                        e);
-                            }
-                            formatted += 1;
-                            if (isOpenedFile) {
-                                //This means that it's an open buffer (let the user save it when he wants).
-                                continue;
+                                        + " (invalid syntax).", e);
                             }
-                            file.setContents(new ByteArrayInputStream(doc.get().getBytes()), true, true, monitor);
                         }
-                    }
+                    });
+                } else {
+                    formatter.formatAll(doc, null, file, isOpenedFile, true);
                 }
+            } catch (SyntaxErrorException e) {
+                Log.log(IStatus.ERROR, "Could not " + verbPresentMsg + " file: " + name
+                        + " (invalid syntax).",
+                        e);
+            }
+            formatted += 1;
+            if (isOpenedFile) {
+                //This means that it's an open buffer (let the user save it when he wants).
+                continue;
+            }
+            try {
+                file.setContents(new ByteArrayInputStream(doc.get().getBytes()), true, true, monitor);
+            } catch (CoreException e) {
+                Log.log(e);
             }
-        } catch (CoreException e) {
-            Log.log(e);
         }
-
         return formatted;
     }
 
@@ -6,6 +6,21 @@
  */
 package org.python.pydev.ui.actions.container;
 
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.jface.text.IDocument;
+import org.python.pydev.ast.formatter.PyBatchFormatter;
+import org.python.pydev.ast.formatter.PyBatchFormatter.FormatRequest;
+import org.python.pydev.ast.formatter.PyBatchFormatter.FormatResult;
+import org.python.pydev.core.FileUtilsFileBuffer;
+import org.python.pydev.core.formatter.PyFormatterPreferences;
+import org.python.pydev.core.log.Log;
 import org.python.pydev.editor.actions.PyFormatAction;
 import org.python.pydev.parser.prettyprinterv2.IFormatter;
 
@@ -25,4 +40,58 @@ public class PySourceFormatAction extends PyContainerFormatterAction {
         return new PyFormatAction().getFormatter();
     }
 
+    /**
+     * Files which are not opened in an editor are formatted in parallel (when using the default formatter).
+     */
+    @Override
+    protected int formatFiles(List<IFile> files, IProgressMonitor monitor) {
+        if (!(formatter instanceof PyFormatAction)) {
+            //A formatter contributed by another plugin may not be thread-safe.
+            return super.formatFiles(files, monitor);
+        }
+        List<IFile> openedFiles = new ArrayList<IFile>();
+        List<IFile> closedFiles = new ArrayList<IFile>();
+        List<FormatRequest> requests = new ArrayList<FormatRequest>();
+        for (IFile file : files) {
+            if (openFiles.contains(file)) {
+                openedFiles.add(file);
+                continue;
+            }
+            IDocument doc = FileUtilsFileBuffer.getDocFromResource(file);
+            if (doc != null) {
+                closedFiles.add(file);
+                requests.add(new FormatRequest(file.getFullPath().toString(), doc.get(),
+                        PyFormatterPreferences.getFormatStd(file), null, null));
+            }
+        }
+        int formatted = super.formatFiles(openedFiles, monitor);
+
+        List<FormatResult> results = PyBatchFormatter.format(requests, monitor);
+        for (int i = 0; i < results.size(); i++) {
+            FormatResult result = results.get(i);
+            IFile file = closedFiles.get(i);
+            switch (result.status) {
+                case FORMATTED:
+                    try {
+                        file.setContents(new ByteArrayInputStream(result.formatted.getBytes()), true, true,
+                                monitor);
+                    } catch (CoreException e) {
+                        Log.log(e);
+                    }
+                    formatted += 1;
+                    break;
+                case UNCHANGED:
+                    formatted += 1;
+                    break;
+                case SYNTAX_ERROR:
+                    Log.log(IStatus.ERROR, "Could not format file: " + file.getName() + " (invalid syntax).", null);
+                    formatted += 1;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return formatted;
+    }
+
 }
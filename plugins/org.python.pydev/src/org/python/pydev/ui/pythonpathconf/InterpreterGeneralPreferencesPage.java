@@ -13,6 +13,7 @@ package org.python.pydev.ui.pythonpathconf;
 
 import org.eclipse.jface.preference.BooleanFieldEditor;
 import org.eclipse.jface.preference.FieldEditorPreferencePage;
+import org.eclipse.jface.preference.IntegerFieldEditor;
 import org.eclipse.swt.events.SelectionEvent;
 import org.eclipse.swt.events.SelectionListener;
 import org.eclipse.swt.widgets.Composite;
@@ -81,6 +82,10 @@ public class InterpreterGeneralPreferencesPage extends FieldEditorPreferencePage
         addField(new BooleanFieldEditor(InterpreterGeneralPreferences.UPDATE_INTERPRETER_INFO_ON_FILESYSTEM_CHANGES,
                 "Check consistency when related files (i.e.: .py, .pth) in the PYTHONPATH change?",
                 p));
+        addField(new IntegerFieldEditor(InterpreterGeneralPreferences.INDEXING_PARALLELISM,
+                "Threads used to parse modules when indexing (0 = number of processors):", p));
+        addField(new IntegerFieldEditor(InterpreterGeneralPreferences.MODULES_CACHE_SIZE_MB,
+                "Size of the modules cache in MB (0 = 1/8 of the heap, requires restart):", p));
         addField(new ButtonFieldEditor(
                 "NOT_USED",
                 "Check if interpreters are synchronized with environment.",
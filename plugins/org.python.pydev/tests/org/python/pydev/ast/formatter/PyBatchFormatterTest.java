@@ -0,0 +1,98 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.ast.formatter;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.python.pydev.ast.formatter.PyBatchFormatter.FormatResult;
+import org.python.pydev.ast.formatter.PyBatchFormatter.Status;
+import org.python.pydev.core.formatter.FormatStd;
+import org.python.pydev.shared_core.io.FileUtils;
+
+import junit.framework.TestCase;
+
+public class PyBatchFormatterTest extends TestCase {
+
+    private File baseDir;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        baseDir = FileUtils.getTempFileAt(new File("."), "data_py_batch_formatter_test");
+        if (baseDir.exists()) {
+            FileUtils.deleteDirectoryTree(baseDir);
+        }
+        new File(baseDir, "pkg").mkdirs();
+        FileUtils.writeStrToFile("a=1\n", new File(baseDir, "a.py"));
+        FileUtils.writeStrToFile("b = 1\n", new File(baseDir, "pkg/b.py"));
+        FileUtils.writeStrToFile("c = (1,\n", new File(baseDir, "pkg/c.py"));
+        FileUtils.writeStrToFile("d=1\n", new File(baseDir, "pkg/d.txt"));
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        if (baseDir.exists()) {
+            FileUtils.deleteDirectoryTree(baseDir);
+        }
+        super.tearDown();
+    }
+
+    public void testFormatFiles() throws Exception {
+        FormatStd std = new FormatStd();
+        std.operatorsWithSpace = true;
+
+        List<File> files = PyBatchFormatter.collectFiles(Arrays.asList(baseDir), new NullProgressMonitor());
+        assertEquals(3, files.size());
+
+        List<FormatResult> results = PyBatchFormatter.formatFiles(files, std, new NullProgressMonitor());
+        Map<String, Status> statuses = new HashMap<String, Status>();
+        for (FormatResult result : results) {
+            statuses.put(new File(result.request.name).getName(), result.status);
+            assertTrue(result.nanos > 0);
+        }
+        assertEquals(Status.FORMATTED, statuses.get("a.py"));
+        assertEquals(Status.UNCHANGED, statuses.get("b.py"));
+        assertEquals(Status.SYNTAX_ERROR, statuses.get("c.py"));
+
+        assertEquals("a = 1\n", FileUtils.getFileContents(new File(baseDir, "a.py")));
+        assertEquals("c = (1,\n", FileUtils.getFileContents(new File(baseDir, "pkg/c.py")));
+        assertEquals("d=1\n", FileUtils.getFileContents(new File(baseDir, "pkg/d.txt")));
+    }
+
+    public void testFormatFilesNotUtf8() throws Exception {
+        FormatStd std = new FormatStd();
+        std.operatorsWithSpace = true;
+
+        //No coding cookie: decoded as utf-8 (which fails for latin-1 contents).
+        File notUtf8 = new File(baseDir, "not_utf8.py");
+        byte[] notUtf8Bytes = "e=1  # caf\u00e9\n".getBytes("latin-1");
+        Files.write(notUtf8.toPath(), notUtf8Bytes);
+
+        File latin1 = new File(baseDir, "latin1.py");
+        Files.write(latin1.toPath(), "# coding: latin-1\nf=1  # caf\u00e9\n".getBytes("latin-1"));
+
+        List<FormatResult> results = PyBatchFormatter.formatFiles(Arrays.asList(notUtf8, latin1), std,
+                new NullProgressMonitor());
+        Map<String, Status> statuses = new HashMap<String, Status>();
+        for (FormatResult result : results) {
+            statuses.put(new File(result.request.name).getName(), result.status);
+        }
+        assertEquals(Status.ERROR, statuses.get("not_utf8.py"));
+        assertEquals(Status.FORMATTED, statuses.get("latin1.py"));
+
+        //The file which couldn't be decoded must be kept as is.
+        assertTrue(Arrays.equals(notUtf8Bytes, Files.readAllBytes(notUtf8.toPath())));
+        assertTrue(Arrays.equals("# coding: latin-1\nf = 1  # caf\u00e9\n".getBytes("latin-1"),
+                Files.readAllBytes(latin1.toPath())));
+    }
+}
@@ -107,6 +107,21 @@ public class InterpreterInfoTest extends TestCase {
         assertNotEquals(info, info2);
     }
 
+    public void testInfoCompactTokensIndex() throws Exception {
+        InterpreterInfo info = new InterpreterInfo("3.7", "C:\\bin\\python3.7.exe", new ArrayList<String>());
+        InterpreterInfo info2 = new InterpreterInfo("3.7", "C:\\bin\\python3.7.exe", new ArrayList<String>());
+        assertEquals(info, info2);
+        assertFalse(info.toString().contains("compact_tokens_index"));
+
+        info.setUseCompactTokensIndex(true);
+        assertNotEquals(info, info2);
+
+        InterpreterInfo fromString = InterpreterInfo.fromString(info.toString(), false);
+        assertEquals(info, fromString);
+        assertTrue(fromString.getUseCompactTokensIndex());
+        assertTrue(info.makeCopy().getUseCompactTokensIndex());
+    }
+
     /**
      * 
      */
@@ -0,0 +1,166 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.ast.listing_utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.python.pydev.ast.listing_utils.PyFileListing.IPyFileListingFilter;
+import org.python.pydev.ast.listing_utils.PyFileListing.PyFileInfo;
+import org.python.pydev.shared_core.io.FileUtils;
+import org.python.pydev.shared_core.string.FastStringBuffer;
+
+import junit.framework.TestCase;
+
+public class PyFileListingTest extends TestCase {
+
+    private File baseDir;
+    private long oldTime;
+
+    private final IPyFileListingFilter filter = new IPyFileListingFilter() {
+
+        @Override
+        public boolean accept(File file, boolean isDirectory) {
+            if (isDirectory) {
+                return file.getName().indexOf('-') == -1;
+            }
+            return file.getName().endsWith(".py");
+        }
+    };
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        baseDir = FileUtils.getTempFileAt(new File("."), "data_py_file_listing_test");
+        if (baseDir.exists()) {
+            FileUtils.deleteDirectoryTree(baseDir);
+        }
+        new File(baseDir, "pkg/sub/deep").mkdirs();
+        new File(baseDir, "not-valid").mkdirs();
+        for (String f : new String[] { "a.py", "pkg/__init__.py", "pkg/b.py", "pkg/sub/c.py", "pkg/sub/deep/d.py",
+                "pkg/x.txt", "not-valid/e.py" }) {
+            FileUtils.writeStrToFile("", new File(baseDir, f));
+        }
+        oldTime = System.currentTimeMillis() - 100000;
+        for (String d : new String[] { "", "pkg", "pkg/sub", "pkg/sub/deep" }) {
+            new File(baseDir, d).setLastModified(oldTime);
+        }
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        if (baseDir.exists()) {
+            FileUtils.deleteDirectoryTree(baseDir);
+        }
+        super.tearDown();
+    }
+
+    private static Set<String> getModules(PyFileListing listing) {
+        Set<String> ret = new TreeSet<String>();
+        FastStringBuffer temp = new FastStringBuffer();
+        for (PyFileInfo info : listing.getFoundPyFileInfos()) {
+            ret.add(info.getModuleName(temp));
+        }
+        return ret;
+    }
+
+    public void testListing() throws Exception {
+        PyFileListing listing = PyFileListing.getPyFilesBelow(baseDir, filter, null, null);
+        assertEquals("[a, pkg.__init__, pkg.b, pkg.sub.c, pkg.sub.deep.d]", getModules(listing).toString());
+        assertEquals(4, listing.getFoundFolders().size());
+    }
+
+    public void testSnapshots() throws Exception {
+        File snapshotsFile = new File(baseDir.getParentFile(), baseDir.getName() + ".snapshots");
+        try {
+            DirectorySnapshots snapshots = new DirectorySnapshots(snapshotsFile);
+            PyFileListing listing = PyFileListing.getPyFilesBelow(baseDir, filter, null,
+                    snapshots.getRootSnapshots(baseDir, "filter"));
+            assertEquals("[a, pkg.__init__, pkg.b, pkg.sub.c, pkg.sub.deep.d]", getModules(listing).toString());
+            assertEquals(4, snapshots.size());
+
+            //Only the entries accepted by the filter are kept.
+            File pkg = new File(baseDir, "pkg");
+            DirectorySnapshots.Snapshot snapshot = snapshots.getRootSnapshots(baseDir, "filter").get(pkg.getPath(),
+                    pkg.lastModified());
+            assertEquals("[__init__.py, b.py]", new TreeSet<String>(Arrays.asList(snapshot.files)).toString());
+            snapshots.save();
+
+            //A directory whose modification time didn't change is not listed again (so, the removal isn't seen).
+            new File(baseDir, "pkg/sub/deep/d.py").delete();
+            new File(baseDir, "pkg/sub/deep").setLastModified(oldTime);
+
+            //A directory whose modification time changed is listed again.
+            FileUtils.writeStrToFile("", new File(baseDir, "pkg/sub/e.py"));
+            new File(baseDir, "pkg/sub").setLastModified(oldTime + 5000);
+
+            snapshots = new DirectorySnapshots(snapshotsFile);
+            assertEquals(4, snapshots.size());
+            listing = PyFileListing.getPyFilesBelow(baseDir, filter, null,
+                    snapshots.getRootSnapshots(baseDir, "filter"));
+            assertEquals("[a, pkg.__init__, pkg.b, pkg.sub.c, pkg.sub.deep.d, pkg.sub.e]",
+                    getModules(listing).toString());
+
+            listing = PyFileListing.getPyFilesBelow(baseDir, filter, null, null);
+            assertEquals("[a, pkg.__init__, pkg.b, pkg.sub.c, pkg.sub.e]", getModules(listing).toString());
+        } finally {
+            snapshotsFile.delete();
+        }
+    }
+
+    public void testSnapshotsPruned() throws Exception {
+        File snapshotsFile = new File(baseDir.getParentFile(), baseDir.getName() + ".snapshots");
+        try {
+            DirectorySnapshots snapshots = new DirectorySnapshots(snapshotsFile);
+            PyFileListing.getPyFilesBelow(baseDir, filter, null, snapshots.getRootSnapshots(baseDir, "filter"));
+            assertEquals(4, snapshots.size());
+
+            //The snapshot of a directory which was removed is dropped in the next listing.
+            FileUtils.deleteDirectoryTree(new File(baseDir, "pkg/sub/deep"));
+            new File(baseDir, "pkg/sub").setLastModified(oldTime + 5000);
+            PyFileListing.getPyFilesBelow(baseDir, filter, null, snapshots.getRootSnapshots(baseDir, "filter"));
+            assertEquals(3, snapshots.size());
+
+            //A root which no longer exists is dropped when saving.
+            File otherRoot = new File(baseDir, "other-root");
+            new File(otherRoot, "mod").mkdirs();
+            otherRoot.setLastModified(oldTime);
+            new File(otherRoot, "mod").setLastModified(oldTime);
+            PyFileListing.getPyFilesBelow(otherRoot, filter, null, snapshots.getRootSnapshots(otherRoot, "filter"));
+            assertEquals(5, snapshots.size());
+            FileUtils.deleteDirectoryTree(otherRoot);
+            snapshots.save();
+            assertEquals(3, snapshots.size());
+            assertEquals(3, new DirectorySnapshots(snapshotsFile).size());
+        } finally {
+            snapshotsFile.delete();
+        }
+    }
+
+    public void testSymlinkAndRealPath() throws Exception {
+        try {
+            Files.createSymbolicLink(new File(baseDir, "alias").toPath(), new File(baseDir, "pkg").getAbsoluteFile()
+                    .toPath());
+        } catch (IOException | UnsupportedOperationException e) {
+            return; //Symlinks not supported.
+        }
+        baseDir.setLastModified(oldTime);
+
+        //The directory reached through a symlink and through its real path is listed in the real path (also when
+        //the entries come from the snapshots).
+        DirectorySnapshots snapshots = new DirectorySnapshots(null);
+        for (int i = 0; i < 3; i++) {
+            PyFileListing listing = PyFileListing.getPyFilesBelow(baseDir, filter, null,
+                    i == 0 ? null : snapshots.getRootSnapshots(baseDir, "filter"));
+            assertEquals("[a, pkg.__init__, pkg.b, pkg.sub.c, pkg.sub.deep.d]", getModules(listing).toString());
+        }
+    }
+}
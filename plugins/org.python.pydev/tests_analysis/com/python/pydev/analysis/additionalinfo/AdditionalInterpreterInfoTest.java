@@ -19,6 +19,7 @@ import java.util.Set;
 
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.jface.text.Document;
+import org.python.pydev.ast.codecompletion.revisited.PyPublicTreeMap;
 import org.python.pydev.ast.codecompletion.revisited.modules.AbstractModule;
 import org.python.pydev.ast.codecompletion.revisited.modules.SourceModule;
 import org.python.pydev.ast.interpreter_managers.InterpreterInfo;
@@ -57,17 +58,70 @@ public class AdditionalInterpreterInfoTest extends AdditionalInfoTestsBase {
     @Override
     public void setUp() throws Exception {
         super.setUp();
+        info = createInfo();
+
+        baseDir = FileUtils.getTempFileAt(new File("."), "data_temp_additional_info_test");
+        if (baseDir.exists()) {
+            FileUtils.deleteDirectoryTree(baseDir);
+        }
+        baseDir.mkdir();
+    }
+
+    /**
+     * An info which isn't persisted (and has no deltas).
+     */
+    private class StubInfo extends AdditionalProjectInterpreterInfo {
+
+        private StubInfo() throws MisconfigurationException {
+            super(new AdditionalInfoProjectStub("empty"));
+        }
+
+        @Override
+        protected File getPersistingLocation() {
+            return null;
+        }
+
+        @Override
+        protected File getPersistingFolder() {
+            return null;
+        }
+
+        @Override
+        protected Set<String> getPythonPathFolders() {
+            return new HashSet<>(Arrays.asList(baseDir.getAbsolutePath()));
+        }
+
+        @Override
+        protected String getUIRepresentation() {
+            return "Stub for: " + baseDir;
+        }
+
+        @Override
+        protected DeltaSaver<Object> createDeltaSaver() {
+            return null;
+        }
+    }
+
+    private AdditionalProjectInterpreterInfo createInfo() throws MisconfigurationException {
+        return new StubInfo();
+    }
+
+    /**
+     * @return an info which is persisted at the given location (and which keeps its deltas in the baseDir).
+     */
+    private AdditionalProjectInterpreterInfo createPersistedInfo(final File persistingLocation)
+            throws MisconfigurationException {
         AdditionalInfoProjectStub project = new AdditionalInfoProjectStub("empty");
-        info = new AdditionalProjectInterpreterInfo(project) {
+        return new AdditionalProjectInterpreterInfo(project) {
 
             @Override
             protected File getPersistingLocation() {
-                return null;
+                return persistingLocation;
             }
 
             @Override
             protected File getPersistingFolder() {
-                return null;
+                return baseDir;
             }
 
             @Override
@@ -79,19 +133,7 @@ public class AdditionalInterpreterInfoTest extends AdditionalInfoTestsBase {
             protected String getUIRepresentation() {
                 return "Stub for: " + baseDir;
             }
-
-            @Override
-            protected DeltaSaver<Object> createDeltaSaver() {
-                return null;
-            }
-
         };
-
-        baseDir = FileUtils.getTempFileAt(new File("."), "data_temp_additional_info_test");
-        if (baseDir.exists()) {
-            FileUtils.deleteDirectoryTree(baseDir);
-        }
-        baseDir.mkdir();
     }
 
     @Override
@@ -333,6 +375,87 @@ public class AdditionalInterpreterInfoTest extends AdditionalInfoTestsBase {
     //        }
     //    }
 
+    public void testParallelIndexingSameAsSequential() throws Exception {
+        PyPublicTreeMap<ModulesKey, ModulesKey> keysFound = new PyPublicTreeMap<>();
+        for (int i = 0; i < 50; i++) {
+            File f = new File(baseDir, "mod" + i + ".py");
+            FileUtils.writeStrToFile(""
+                    + "class Class" + i + ":\n"
+                    + "    def method" + i + "(self):\n"
+                    + "        self.attr" + i + " = 1\n"
+                    + "\n"
+                    + "    class Inner:\n"
+                    + "        pass\n"
+                    + "\n"
+                    + "def func" + i + "():\n"
+                    + "    pass\n"
+                    + "\n"
+                    + "GLOBAL" + (i % 5) + " = 1\n", f);
+            ModulesKey key = new ModulesKey("mod" + i, f);
+            keysFound.put(key, key);
+        }
+
+        //updateKeysIfNeededAndSave saves the info at the end (which the stub can't do: it has no deltas).
+        AdditionalProjectInterpreterInfo sequential = new StubInfo() {
+            @Override
+            public void save() {
+            }
+        };
+        sequential.updateKeysIfNeededAndSave(keysFound, null, new NullProgressMonitor(), 1);
+
+        AdditionalProjectInterpreterInfo parallel = new StubInfo() {
+            @Override
+            public void save() {
+            }
+        };
+        parallel.updateKeysIfNeededAndSave(keysFound, null, new NullProgressMonitor(), 4);
+
+        Collection<IInfo> expected = sequential.getAllTokens();
+        assertTrue(expected.size() >= 50 * 5);
+        Collection<IInfo> found = parallel.getAllTokens();
+        assertEquals(expected.size(), found.size());
+        assertEquals(new HashSet<IInfo>(expected), new HashSet<IInfo>(found));
+
+        for (int getWhat : new int[] { AbstractAdditionalTokensInfo.TOP_LEVEL, AbstractAdditionalTokensInfo.INNER }) {
+            assertEquals(new HashSet<IInfo>(sequential.getTokensStartingWith("", getWhat)),
+                    new HashSet<IInfo>(parallel.getTokensStartingWith("", getWhat)));
+        }
+        assertEquals(sequential.completeIndex.keys(), parallel.completeIndex.keys());
+    }
+
+    public void testSaveAndLoadBinaryTrees() throws Exception {
+        File location = new File(baseDir, "info.pydevinfo");
+        AdditionalProjectInterpreterInfo saved = createPersistedInfo(location);
+        saved.add(new ClassInfo("cls1", "mod1", null, null, null, 0, 0), AbstractAdditionalTokensInfo.TOP_LEVEL);
+        saved.save();
+
+        //Left by a previous save which wasn't able to remove it (i.e.: still mapped on Windows).
+        File stale = new File(baseDir, location.getName() + ".trees1");
+        FileUtils.writeStrToFile("", stale);
+
+        //The index type selected must be used even when restored from the binary format.
+        AdditionalProjectInterpreterInfo loaded = createPersistedInfo(location);
+        loaded.setUseCompactTokensIndex(true);
+        assertTrue(loaded.load());
+        assertFalse(stale.exists());
+        assertTrue(loaded.topLevelIndex instanceof CompactTokensIndex);
+        assertIsIn("cls1", loaded.getTokensStartingWith("cls", AbstractAdditionalTokensInfo.TOP_LEVEL));
+
+        //The changes done after loading must be folded in the binary trees when saved.
+        loaded = createPersistedInfo(location);
+        assertTrue(loaded.load());
+        assertTrue(loaded.topLevelIndex instanceof MappedTokensIndex);
+        loaded.removeInfoFromModule("mod1", false);
+        loaded.add(new ClassInfo("cls2", "mod2", null, null, null, 0, 0), AbstractAdditionalTokensInfo.TOP_LEVEL);
+        ITokensIndex before = loaded.topLevelIndex;
+        loaded.save();
+        assertNotSame(before, loaded.topLevelIndex);
+        assertTrue(loaded.topLevelIndex instanceof MappedTokensIndex);
+        Collection<IInfo> tokens = loaded.getTokensStartingWith("cls", AbstractAdditionalTokensInfo.TOP_LEVEL);
+        assertEquals(1, tokens.size());
+        assertIsIn("cls2", tokens);
+    }
+
     @SuppressWarnings("unchecked")
     public void testForcedBuiltinsInAdditionalInfo() throws Exception {
         IInterpreterManager interpreterManager = getInterpreterManager();
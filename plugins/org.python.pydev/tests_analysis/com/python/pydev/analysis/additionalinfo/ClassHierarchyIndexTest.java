@@ -0,0 +1,101 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.eclipse.jface.text.Document;
+import org.python.pydev.core.FastBufferedReader;
+import org.python.pydev.core.IGrammarVersionProvider;
+import org.python.pydev.parser.PyParser;
+import org.python.pydev.parser.PyParser.ParserInfo;
+import org.python.pydev.parser.fastparser.FastDefinitionsParser;
+import org.python.pydev.parser.jython.SimpleNode;
+import org.python.pydev.shared_core.parsing.BaseParser.ParseOutput;
+import org.python.pydev.shared_core.string.FastStringBuffer;
+
+import junit.framework.TestCase;
+
+public class ClassHierarchyIndexTest extends TestCase {
+
+    private static SimpleNode parse(String contents) {
+        ParseOutput output = PyParser.reparseDocument(new ParserInfo(new Document(contents),
+                IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_3_6, null));
+        assertNull(output.error);
+        return (SimpleNode) output.ast;
+    }
+
+    private static HashSet<String> set(String... strings) {
+        return new HashSet<String>(Arrays.asList(strings));
+    }
+
+    public void testAddAndRemove() throws Exception {
+        ClassHierarchyIndex index = new ClassHierarchyIndex();
+        index.addModule("mod1", parse("class A(object):\n    class B(models.Model): pass\n"));
+        index.addModule("mod2", parse("import models\nclass C(models.Model, A): pass\n"));
+
+        assertEquals(set("mod1", "mod2"), index.getModulesWithBase("Model"));
+        assertEquals(set("mod2"), index.getModulesWithBase("A"));
+        assertEquals(set("mod1"), index.getModulesWithBase("object"));
+        assertEquals(set(), index.getModulesWithBase("C"));
+
+        index.addModule("mod2", parse("class C(object): pass\n"));
+        assertEquals(set("mod1"), index.getModulesWithBase("Model"));
+        assertEquals(set(), index.getModulesWithBase("A"));
+
+        index.removeModule("mod1");
+        assertEquals(set(), index.getModulesWithBase("Model"));
+        assertEquals(set("mod2"), index.getModulesWithBase("object"));
+        assertEquals(set(), index.getModulesWithUnknownBases());
+    }
+
+    public void testUnknownBases() throws Exception {
+        ClassHierarchyIndex index = new ClassHierarchyIndex();
+        index.addModule("mod1", FastDefinitionsParser.parse("class A(B): pass\n", "mod1", null));
+        index.addModule("mod2", parse("def foo(): pass\n"));
+        assertEquals(set(), index.getModulesWithBase("B"));
+        assertEquals(set("mod1"), index.getModulesWithUnknownBases());
+
+        index.addModule("mod1", parse("class A(B): pass\n"));
+        assertEquals(set("mod1"), index.getModulesWithBase("B"));
+        assertEquals(set(), index.getModulesWithUnknownBases());
+    }
+
+    public void testAliasedBases() throws Exception {
+        ClassHierarchyIndex index = new ClassHierarchyIndex();
+        index.addModule("mod1", parse("from models import Model as M\nclass X(M): pass\n"));
+        index.addModule("mod2", parse("import models\nBase = models.Model\nOther = Base\nclass Y(Other): pass\n"));
+        index.addModule("mod3", parse("from models import Model as Model\nclass Z(Model): pass\n"));
+        index.addModule("mod4", parse("Base = create_base()\nclass W(Base): pass\n"));
+
+        assertEquals(set("mod1", "mod2", "mod3"), index.getModulesWithBase("Model"));
+        assertEquals(set("mod1"), index.getModulesWithBase("M"));
+        assertEquals(set("mod2"), index.getModulesWithBase("Other"));
+        assertEquals(set("mod4"), index.getModulesWithUnknownBases());
+    }
+
+    public void testWriteAndLoad() throws Exception {
+        ClassHierarchyIndex index = new ClassHierarchyIndex();
+        index.addModule("pack.mod1", parse("class A(object):\n    pass\nclass B(A, pack.Base): pass\n"));
+        index.markUnknown("mod2");
+
+        FastStringBuffer buf = new FastStringBuffer();
+        index.writeTo(buf);
+        FastBufferedReader reader = new FastBufferedReader(new StringReader(buf.toString() + "-- END TREE\n"));
+        FastStringBuffer line = reader.readLine();
+        assertTrue(ClassHierarchyIndex.isCurrentVersion(line));
+
+        ClassHierarchyIndex loaded = ClassHierarchyIndex.loadFrom(reader);
+        assertEquals(set("pack.mod1"), loaded.getModulesWithBase("A"));
+        assertEquals(set("pack.mod1"), loaded.getModulesWithBase("Base"));
+        assertEquals(set("pack.mod1"), loaded.getModulesWithBase("object"));
+        assertEquals(set("mod2"), loaded.getModulesWithUnknownBases());
+        assertEquals("-- END TREE", reader.readLine().toString());
+    }
+}
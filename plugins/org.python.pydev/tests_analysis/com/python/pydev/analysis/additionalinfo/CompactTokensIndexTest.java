@@ -0,0 +1,143 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+
+import org.python.pydev.core.IInfo;
+
+import junit.framework.TestCase;
+
+public class CompactTokensIndexTest extends TestCase {
+
+    private static final String[] NAMES = new String[] { "Foo", "foo", "FooBar", "foobar", "fo", "bar", "Bar", "baz",
+            "bazinga", "a", "ab", "abc", "MyClass", "my_func", "my_attr" };
+
+    private static final String[] QUALIFIERS = new String[] { "", "f", "fo", "foo", "Foo", "FOOB", "b", "ba", "baz",
+            "a", "ab", "abc", "abcd", "my", "MyC", "my_", "x" };
+
+    private InitialsTokensIndex initialsIndex;
+    private CompactTokensIndex compactIndex;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        initialsIndex = new InitialsTokensIndex();
+        compactIndex = new CompactTokensIndex();
+    }
+
+    private List<IInfo> createInfos(String moduleName) {
+        List<IInfo> ret = new ArrayList<IInfo>();
+        for (String name : NAMES) {
+            ret.add(new ClassInfo(name, moduleName, null, false, null, null, 1, 1));
+            ret.add(new FuncInfo(name, moduleName, null, false, null, null, 2, 1));
+            ret.add(new AttrInfo(name, moduleName, null, false, null, null, 3, 1));
+        }
+        return ret;
+    }
+
+    private void addModule(String moduleName) {
+        for (IInfo info : createInfos(moduleName)) {
+            initialsIndex.add(info);
+            compactIndex.add(info);
+        }
+    }
+
+    private void removeModule(String moduleName) {
+        initialsIndex.removeInfoFromModule(moduleName);
+        compactIndex.removeInfoFromModule(moduleName);
+    }
+
+    private void assertSameTokens(Collection<IInfo> expected, Collection<IInfo> found) {
+        assertEquals(expected.size(), found.size());
+        assertEquals(new HashSet<IInfo>(expected), new HashSet<IInfo>(found));
+    }
+
+    private void checkSameResults() {
+        List<IInfo> expected = new ArrayList<IInfo>();
+        List<IInfo> found = new ArrayList<IInfo>();
+        initialsIndex.getAllTokens(expected);
+        compactIndex.getAllTokens(found);
+        assertSameTokens(expected, found);
+
+        for (String qualifier : QUALIFIERS) {
+            expected.clear();
+            found.clear();
+            initialsIndex.getTokensStartingWith(qualifier, expected);
+            compactIndex.getTokensStartingWith(qualifier, found);
+            assertSameTokens(expected, found);
+
+            expected.clear();
+            found.clear();
+            initialsIndex.getTokensEqualTo(qualifier, expected);
+            compactIndex.getTokensEqualTo(qualifier, found);
+            assertSameTokens(expected, found);
+        }
+
+        assertEquals(initialsIndex.getInitialsToInfo(), compactIndex.getInitialsToInfo());
+    }
+
+    public void testSameResultsAsInitialsIndex() throws Exception {
+        checkSameResults();
+        for (int i = 0; i < 20; i++) {
+            addModule("mod" + i);
+        }
+        checkSameResults();
+
+        //Adding the same info again must not duplicate it.
+        addModule("mod1");
+        checkSameResults();
+
+        removeModule("mod1");
+        removeModule("mod5");
+        removeModule("not_there");
+        checkSameResults();
+
+        addModule("mod5");
+        checkSameResults();
+    }
+
+    public void testSameResultsAfterCompacting() throws Exception {
+        List<IInfo> infos = new ArrayList<IInfo>();
+        for (int i = 0; i < 20; i++) {
+            infos.addAll(createInfos("mod" + i));
+        }
+        compactIndex = new CompactTokensIndex(infos);
+        for (IInfo info : infos) {
+            initialsIndex.add(info);
+        }
+        checkSameResults();
+
+        removeModule("mod3");
+        addModule("mod3");
+        removeModule("mod3");
+        addModule("mod20");
+        checkSameResults();
+
+        compactIndex.compact();
+        checkSameResults();
+
+        addModule("mod3");
+        addModule("mod20");
+        compactIndex.compact();
+        checkSameResults();
+    }
+
+    public void testClear() throws Exception {
+        addModule("mod1");
+        compactIndex.clear();
+        initialsIndex.clear();
+        checkSameResults();
+
+        List<IInfo> found = new ArrayList<IInfo>();
+        compactIndex.getAllTokens(found);
+        assertEquals(0, found.size());
+    }
+}
@@ -0,0 +1,146 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+
+import org.python.pydev.core.IInfo;
+
+import junit.framework.TestCase;
+
+public class MappedTokensIndexTest extends TestCase {
+
+    private static final String[] NAMES = new String[] { "Foo", "foo", "FooBar", "fo", "bar", "Bar", "bazinga", "a",
+            "ab", "MyClass", "my_func" };
+
+    private static final String[] QUALIFIERS = new String[] { "", "f", "fo", "foo", "Foo", "FOOB", "b", "baz", "a",
+            "ab", "abc", "my", "MyC", "x" };
+
+    private File file;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        file = File.createTempFile("pydev_mapped_tokens", ".trees");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        file.delete();
+        super.tearDown();
+    }
+
+    private void addModule(ITokensIndex index, String moduleName) {
+        for (String name : NAMES) {
+            index.add(new ClassInfo(name, moduleName, null, false, null, "/tmp/" + moduleName + ".py", 1, 2));
+            index.add(new FuncInfo(name, moduleName, "Parent", false, null, null, 3, 4));
+            index.add(new AttrInfo(name, moduleName, "Parent.method", false, null, null, 5, 6));
+            index.add(new NameInfo(name, moduleName, null, false, null, null, 7, 8));
+        }
+        index.add(new ModInfo(moduleName, false, null, null, 0, 0));
+    }
+
+    private void assertSameTokens(Collection<IInfo> expected, Collection<IInfo> found) {
+        assertEquals(expected.size(), found.size());
+        assertEquals(new HashSet<IInfo>(expected), new HashSet<IInfo>(found));
+    }
+
+    private void checkSameResults(ITokensIndex expectedIndex, ITokensIndex index) {
+        List<IInfo> expected = new ArrayList<IInfo>();
+        List<IInfo> found = new ArrayList<IInfo>();
+        expectedIndex.getAllTokens(expected);
+        index.getAllTokens(found);
+        assertSameTokens(expected, found);
+
+        for (String qualifier : QUALIFIERS) {
+            expected.clear();
+            found.clear();
+            expectedIndex.getTokensStartingWith(qualifier, expected);
+            index.getTokensStartingWith(qualifier, found);
+            assertSameTokens(expected, found);
+
+            expected.clear();
+            found.clear();
+            expectedIndex.getTokensEqualTo(qualifier, expected);
+            index.getTokensEqualTo(qualifier, found);
+            assertSameTokens(expected, found);
+        }
+    }
+
+    public void testDumpAndLoad() throws Exception {
+        CompactTokensIndex topLevel = new CompactTokensIndex();
+        InitialsTokensIndex inner = new InitialsTokensIndex();
+        for (int i = 0; i < 10; i++) {
+            addModule(topLevel, "mod" + i);
+            addModule(inner, "pack.mod" + i);
+        }
+
+        TreeIO.dumpTreesToBinaryFile(file, topLevel, inner);
+        ITokensIndex[] trees = TreeIO.loadTreesFromBinaryFile(file, null);
+        assertEquals(2, trees.length);
+        checkSameResults(topLevel, trees[0]);
+        checkSameResults(inner, trees[1]);
+
+        //Changes after loading must be reflected.
+        topLevel.removeInfoFromModule("mod3");
+        trees[0].removeInfoFromModule("mod3");
+        addModule(topLevel, "mod3");
+        addModule(trees[0], "mod3");
+        addModule(topLevel, "mod1");
+        addModule(trees[0], "mod1");
+        topLevel.removeInfoFromModule("mod5");
+        trees[0].removeInfoFromModule("mod5");
+        addModule(topLevel, "mod20");
+        addModule(trees[0], "mod20");
+        checkSameResults(topLevel, trees[0]);
+        assertEquals(topLevel.getInitialsToInfo(), trees[0].getInitialsToInfo());
+
+        trees[1].clear();
+        List<IInfo> found = new ArrayList<IInfo>();
+        trees[1].getAllTokens(found);
+        assertEquals(0, found.size());
+    }
+
+    public void testDumpMapped() throws Exception {
+        InitialsTokensIndex topLevel = new InitialsTokensIndex();
+        InitialsTokensIndex inner = new InitialsTokensIndex();
+        for (int i = 0; i < 10; i++) {
+            addModule(topLevel, "mod" + i);
+            addModule(inner, "pack.mod" + i);
+        }
+        TreeIO.dumpTreesToBinaryFile(file, topLevel, inner);
+        ITokensIndex[] trees = TreeIO.loadTreesFromBinaryFile(file, null);
+
+        topLevel.removeInfoFromModule("mod3");
+        trees[0].removeInfoFromModule("mod3");
+        addModule(topLevel, "mod20");
+        addModule(trees[0], "mod20");
+
+        //The mapped indexes (with the changes done after loading) are saved from their records.
+        File file2 = File.createTempFile("pydev_mapped_tokens", ".trees");
+        try {
+            TreeIO.dumpTreesToBinaryFile(file2, trees);
+            ITokensIndex[] trees2 = TreeIO.loadTreesFromBinaryFile(file2, null);
+            checkSameResults(topLevel, trees2[0]);
+            checkSameResults(inner, trees2[1]);
+            assertEquals(topLevel.getInitialsToInfo(), trees2[0].getInitialsToInfo());
+        } finally {
+            file2.delete();
+        }
+    }
+
+    public void testDumpEmpty() throws Exception {
+        TreeIO.dumpTreesToBinaryFile(file, new InitialsTokensIndex(), new InitialsTokensIndex());
+        ITokensIndex[] trees = TreeIO.loadTreesFromBinaryFile(file, null);
+        assertEquals(2, trees.length);
+        checkSameResults(new InitialsTokensIndex(), trees[0]);
+    }
+}
@@ -34,6 +34,7 @@ import org.python.pydev.core.IPythonNature;
 import org.python.pydev.core.ISystemModulesManager;
 import org.python.pydev.core.MisconfigurationException;
 import org.python.pydev.core.TestDependent;
+import org.python.pydev.core.cache.CompiledModulesPack;
 import org.python.pydev.core.concurrency.RunnableAsJobsPoolThread;
 import org.python.pydev.core.structure.CompletionRecursionException;
 import org.python.pydev.editor.codecompletion.proposals.OverrideMethodCompletionProposal;
@@ -604,8 +605,9 @@ public class PythonCompletionWithBuiltinsTest extends CodeCompletionTestsBase {
         ISystemModulesManager systemModulesManager = nature.getAstManager().getModulesManager()
                 .getSystemModulesManager();
         RunnableAsJobsPoolThread.getSingleton().waitToFinishCurrent();
-        File file = systemModulesManager.getCompiledModuleCacheFile(module.getName());
-        assertTrue(file.exists());
+        CompiledModulesPack pack = systemModulesManager.getCompiledModulesPack();
+        assertTrue(pack.getFile().exists());
+        assertTrue(pack.contains(module.getName()));
     }
 
     public void testAssignToFuncCompletion() throws Exception {
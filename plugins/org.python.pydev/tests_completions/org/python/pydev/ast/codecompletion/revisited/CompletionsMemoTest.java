@@ -0,0 +1,87 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.ast.codecompletion.revisited;
+
+import java.lang.ref.WeakReference;
+
+import org.python.pydev.ast.codecompletion.revisited.modules.CompiledToken;
+import org.python.pydev.ast.codecompletion.revisited.modules.EmptyModule;
+import org.python.pydev.core.ICompletionState;
+import org.python.pydev.core.IToken;
+import org.python.pydev.core.ModulesKey;
+import org.python.pydev.core.TokensList;
+import org.python.pydev.core.TupleN;
+import org.python.pydev.core.structure.CompletionRecursionException;
+
+import junit.framework.TestCase;
+
+public class CompletionsMemoTest extends TestCase {
+
+    private static TokensList createTokens() {
+        return new TokensList(new IToken[] { new CompiledToken("tok", "", "", "mod1", IToken.TYPE_ATTR, null) });
+    }
+
+    public void testMemo() throws Exception {
+        CompletionsMemo.invalidate();
+        EmptyModule module = new EmptyModule("mod1", null);
+        TupleN lookup = new TupleN("getCompletionsForModule", "mod1", "tok");
+
+        long generation = CompletionsMemo.getGeneration();
+        assertNull(CompletionsMemo.get(module, lookup));
+        CompletionsMemo.put(module, lookup, createTokens(), generation);
+
+        TokensList found = CompletionsMemo.get(module, new TupleN("getCompletionsForModule", "mod1", "tok"));
+        assertEquals(1, found.size());
+        assertEquals("tok", found.getFirst().getRepresentation());
+
+        //Keyed by the module instance (a module which changed is a new instance).
+        assertNull(CompletionsMemo.get(new EmptyModule("mod1", null), lookup));
+        assertNull(CompletionsMemo.get(module, new TupleN("getCompletionsForModule", "mod1", "other")));
+
+        //Any change in a modules manager invalidates it.
+        new ProjectModulesManager().addModule(new ModulesKey("mod2", null));
+        assertNull(CompletionsMemo.get(module, lookup));
+
+        //Completions computed before the invalidation are not kept.
+        CompletionsMemo.put(module, lookup, createTokens(), generation);
+        assertNull(CompletionsMemo.get(module, lookup));
+    }
+
+    public void testModuleNotKeptAlive() throws Exception {
+        CompletionsMemo.invalidate();
+        EmptyModule module = new EmptyModule("mod1", null);
+        TupleN lookup = new TupleN("getCompletionsForModule", "mod1", "tok");
+        CompletionsMemo.put(module, lookup, createTokens(), CompletionsMemo.getGeneration());
+        assertNotNull(CompletionsMemo.get(module, lookup));
+
+        WeakReference<EmptyModule> ref = new WeakReference<EmptyModule>(module);
+        module = null;
+        for (int i = 0; i < 50 && ref.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(ref.get());
+    }
+
+    public void testCutOffsCount() throws Exception {
+        ICompletionState state = CompletionStateFactory.getEmptyCompletionState("tok", null, new CompletionCache());
+        EmptyModule module = new EmptyModule("mod1", null);
+        try {
+            for (int i = 0; i < 20; i++) {
+                state.checkMemory(module, "tok");
+            }
+            fail("Expected recursion to be found.");
+        } catch (CompletionRecursionException e) {
+            //expected
+        }
+        assertEquals(1, state.getCutOffsCount());
+
+        //Shared with the copies.
+        state.getCopy().addCutOff();
+        assertEquals(2, state.getCutOffsCount());
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.ast.codecompletion.revisited;
+
+import java.io.File;
+
+import org.eclipse.jface.text.Document;
+import org.python.pydev.core.IGrammarVersionProvider;
+import org.python.pydev.parser.PyParser;
+import org.python.pydev.parser.PyParser.ParserInfo;
+import org.python.pydev.parser.jython.SimpleNode;
+import org.python.pydev.shared_core.io.FileUtils;
+import org.python.pydev.shared_core.parsing.BaseParser.ParseOutput;
+
+import junit.framework.TestCase;
+
+public class ModulesAstDiskCacheTest extends TestCase {
+
+    private static final int GRAMMAR = IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_3_6;
+
+    private File baseDir;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        baseDir = FileUtils.getTempFileAt(new File("."), "data_modules_ast_disk_cache_test");
+        if (baseDir.exists()) {
+            FileUtils.deleteDirectoryTree(baseDir);
+        }
+        baseDir.mkdirs();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        if (baseDir.exists()) {
+            FileUtils.deleteDirectoryTree(baseDir);
+        }
+        super.tearDown();
+    }
+
+    private static SimpleNode parse(String contents) {
+        ParseOutput output = PyParser.reparseDocument(new ParserInfo(new Document(contents), GRAMMAR, null));
+        assertNull(output.error);
+        return (SimpleNode) output.ast;
+    }
+
+    private File[] getCacheFiles(File cacheDir) {
+        File[] files = cacheDir.listFiles();
+        return files != null ? files : new File[0];
+    }
+
+    public void testSameHash() throws Exception {
+        ModulesAstDiskCache cache = new ModulesAstDiskCache(new File(baseDir, "cache"));
+        File f1 = new File(baseDir, "Aa.py");
+        File f2 = new File(baseDir, "BB.py");
+        assertEquals(FileUtils.getFileAbsolutePath(f1).hashCode(), FileUtils.getFileAbsolutePath(f2).hashCode());
+
+        SimpleNode ast1 = parse("a = 1\n");
+        SimpleNode ast2 = parse("b = 2\n");
+        cache.put(f1, GRAMMAR, 10, 6, ast1);
+        cache.put(f2, GRAMMAR, 20, 6, ast2);
+
+        //Both are kept (paths with the same hash don't overwrite each other).
+        assertEquals(ast1, cache.get(f1, GRAMMAR, 10, 6));
+        assertEquals(ast2, cache.get(f2, GRAMMAR, 20, 6));
+        assertNull(cache.get(f1, GRAMMAR, 11, 6));
+
+        //Updating one of them keeps using the same file.
+        cache.put(f1, GRAMMAR, 11, 6, ast2);
+        assertEquals(ast2, cache.get(f1, GRAMMAR, 11, 6));
+        assertEquals(ast2, cache.get(f2, GRAMMAR, 20, 6));
+        assertEquals(2, getCacheFiles(new File(baseDir, "cache")).length);
+    }
+
+    public void testRemoveOldEntries() throws Exception {
+        File cacheDir = new File(baseDir, "cache");
+        SimpleNode ast = parse("a = 1\n");
+        ModulesAstDiskCache cache = new ModulesAstDiskCache(cacheDir);
+        for (int i = 0; i < 10; i++) {
+            cache.put(new File(baseDir, "mod" + i + ".py"), GRAMMAR, 10, 6, ast);
+        }
+        File[] files = getCacheFiles(cacheDir);
+        assertEquals(10, files.length);
+        long entrySize = files[0].length();
+
+        //Entries not used for a long time are removed when the cache is opened.
+        long now = System.currentTimeMillis();
+        for (File f : files) {
+            f.setLastModified(now - 60 * 1000);
+        }
+        File unused = files[0];
+        unused.setLastModified(now - 100L * 24 * 60 * 60 * 1000);
+        new ModulesAstDiskCache(cacheDir);
+        assertFalse(unused.exists());
+        assertEquals(9, getCacheFiles(cacheDir).length);
+
+        //The oldest entries are removed if the total size is above the maximum.
+        File newest = files[1];
+        newest.setLastModified(now);
+        new ModulesAstDiskCache(cacheDir, entrySize * 4);
+        assertEquals(3, getCacheFiles(cacheDir).length);
+        assertTrue(newest.exists());
+    }
+}
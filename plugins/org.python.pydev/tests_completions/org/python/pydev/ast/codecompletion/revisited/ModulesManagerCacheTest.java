@@ -0,0 +1,69 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.ast.codecompletion.revisited;
+
+import org.python.pydev.ast.codecompletion.revisited.modules.AbstractModule;
+import org.python.pydev.ast.codecompletion.revisited.modules.EmptyModule;
+import org.python.pydev.core.ModulesKey;
+
+import junit.framework.TestCase;
+
+public class ModulesManagerCacheTest extends TestCase {
+
+    private static final long EMPTY_MODULE_SIZE = ModulesManagerCache.estimateSize(new EmptyModule("a", null));
+
+    public void testHitsAndMisses() throws Exception {
+        ModulesManagerCache cache = new ModulesManagerCache(1024 * 1024);
+        ProjectModulesManager manager = new ProjectModulesManager();
+        manager.addModule(new ModulesKey("mod1", null));
+
+        assertNull(cache.getObj(new ModulesKey("not_there", null), manager));
+        assertEquals(1, cache.getMisses());
+
+        AbstractModule module = cache.getObj(new ModulesKey("mod1", null), manager);
+        assertTrue(module instanceof EmptyModule);
+        assertEquals(2, cache.getMisses());
+        assertEquals(0, cache.getHits());
+
+        assertSame(module, cache.getObj(new ModulesKey("mod1", null), manager));
+        assertEquals(1, cache.getHits());
+        assertEquals(EMPTY_MODULE_SIZE, cache.getSize());
+
+        //The same key in another manager is another entry.
+        ProjectModulesManager manager2 = new ProjectModulesManager();
+        assertNull(cache.getObj(new ModulesKey("mod1", null), manager2));
+
+        cache.remove(new ModulesKey("mod1", null), manager);
+        assertEquals(0, cache.getSize());
+        AbstractModule recreated = cache.getObj(new ModulesKey("mod1", null), manager);
+        assertNotSame(module, recreated);
+
+        cache.clear();
+        assertEquals(0, cache.getSize());
+    }
+
+    public void testEvictionBySize() throws Exception {
+        long maxSize = 16 * EMPTY_MODULE_SIZE * 4;
+        ModulesManagerCache cache = new ModulesManagerCache(maxSize);
+        ProjectModulesManager manager = new ProjectModulesManager();
+        for (int i = 0; i < 500; i++) {
+            ModulesKey key = new ModulesKey("mod" + i, null);
+            manager.addModule(key);
+            cache.add(key, new EmptyModule(key.name, null), manager);
+            assertTrue(cache.getSize() <= maxSize);
+        }
+        assertTrue(cache.getEvictions() > 0);
+        assertEquals(500 * EMPTY_MODULE_SIZE, cache.getSize() + cache.getEvictions() * EMPTY_MODULE_SIZE);
+
+        //Modules evicted are recreated (empty) as they're still in the manager.
+        for (int i = 0; i < 500; i++) {
+            assertNotNull(cache.getObj(new ModulesKey("mod" + i, null), manager));
+        }
+        assertTrue(cache.getMisses() > 0);
+        assertTrue(cache.getSize() <= maxSize);
+    }
+}
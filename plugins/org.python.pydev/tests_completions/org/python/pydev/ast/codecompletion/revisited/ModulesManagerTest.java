@@ -25,14 +25,23 @@ import org.python.pydev.ast.codecompletion.revisited.ProjectModulesManager;
 import org.python.pydev.ast.codecompletion.revisited.PyPublicTreeMap;
 import org.python.pydev.ast.codecompletion.revisited.PythonPathHelper;
 import org.python.pydev.ast.codecompletion.revisited.SystemModulesManager;
+import org.python.pydev.ast.listing_utils.PyFileListing;
+import org.python.pydev.ast.listing_utils.PyFileListing.IPyFileListingFilter;
+import org.python.pydev.ast.listing_utils.PyFileListing.PyFileInfo;
 import org.python.pydev.core.ModulesKey;
 import org.python.pydev.core.ModulesKeyForZip;
 import org.python.pydev.shared_core.io.FileUtils;
+import org.python.pydev.shared_core.string.FastStringBuffer;
 import org.python.pydev.shared_core.structure.Tuple;
 
 public class ModulesManagerTest extends CodeCompletionTestsBase {
 
     public static void main(String[] args) {
+        if (args.length > 0) {
+            //i.e.: pass the Lib folder of an interpreter to measure the heap used by the keys.
+            measureKeysHeap(new File(args[0]), 4);
+            return;
+        }
         try {
             ModulesManagerTest test = new ModulesManagerTest();
             test.setUp();
@@ -144,6 +153,135 @@ public class ModulesManagerTest extends CodeCompletionTestsBase {
 
     }
 
+    /**
+     * Measures the heap used by the keys of the given folder when it's in the pythonpath of many interpreters
+     * (with and without sharing the keys).
+     */
+    private static void measureKeysHeap(File folder, int interpreters) {
+        PyFileListing listing = PyFileListing.getPyFilesBelow(folder, new IPyFileListingFilter() {
+
+            @Override
+            public boolean accept(File file, boolean isDirectory) {
+                return isDirectory || PythonPathHelper.isValidSourceFile(file.getName());
+            }
+        }, null, null);
+        List<PyFileInfo> infos = new ArrayList<PyFileInfo>(listing.getFoundPyFileInfos());
+
+        for (boolean shared : new boolean[] { false, true }) {
+            long initial = usedHeap();
+            List<PyPublicTreeMap<ModulesKey, ModulesKey>> managers = new ArrayList<>();
+            for (int i = 0; i < interpreters; i++) {
+                PyPublicTreeMap<ModulesKey, ModulesKey> keys = new PyPublicTreeMap<>();
+                FastStringBuffer temp = new FastStringBuffer();
+                for (PyFileInfo info : infos) {
+                    //New strings/files as they'd be created when listing each interpreter.
+                    String name = new String(info.getModuleName(temp));
+                    File file = new File(info.getFile().getPath());
+                    ModulesKey key = shared ? ModulesKeysPool.getKey(name, file) : new ModulesKey(name, file);
+                    keys.put(key, key);
+                }
+                managers.add(keys);
+            }
+            long used = usedHeap() - initial;
+            System.out.println(String.format("%s keys x %s interpreters (shared: %s): %s KB", infos.size(),
+                    managers.size(), shared, used / 1024));
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    public void testSaveSharesFolders() throws Exception {
+        File f = new File("modules_manager_testing.temporary_dir");
+        try {
+            FileUtils.deleteDirectoryTree(f);
+        } catch (Exception e1) {
+            //ignore
+        }
+        File folder = new File(f, "lib").getAbsoluteFile();
+        SystemModulesManager manager = new SystemModulesManager(null);
+        manager.addModule(new ModulesKey("pack.__init__", new File(folder, "pack/__init__.py")));
+        manager.addModule(new ModulesKey("pack.mod1", new File(folder, "pack/mod1.py")));
+        manager.addModule(new ModulesKey("pack.mod2", new File(folder, "pack/mod2.py")));
+        manager.addModule(new ModulesKey("mod3", new File(folder, "mod3.py")));
+        manager.getPythonPathHelper().setPythonPath(folder.toString());
+        try {
+            manager.saveToFile(f);
+            String contents = FileUtils.getFileContents(new File(f, "modulesKeys"));
+            //Each folder is written only once.
+            assertEquals(contents, contents.indexOf(new File(folder, "pack").toString()),
+                    contents.lastIndexOf(new File(folder, "pack").toString()));
+            assertTrue(contents, contents.contains("pack.mod1|*"));
+
+            SystemModulesManager loaded = new SystemModulesManager(null);
+            SystemModulesManager.loadFromFile(loaded, f);
+            //The keys are only created when some module in the same top-level package is requested.
+            assertEquals(0, loaded.modulesKeys.size());
+            assertEquals(4, loaded.getSize(false));
+            assertTrue(loaded.hasModule(new ModulesKey("pack.mod1", null)));
+            assertEquals(3, loaded.modulesKeys.size());
+            assertEquals(1, loaded.getAllDirectModulesStartingWith("mod").size());
+            assertEquals(4, loaded.modulesKeys.size());
+            assertEquals(4, loaded.getSize(false));
+
+            ModulesKey mod1 = loaded.modulesKeys.get(new ModulesKey("pack.mod1", null));
+            ModulesKey mod2 = loaded.modulesKeys.get(new ModulesKey("pack.mod2", null));
+            assertEquals(new File(folder, "pack/mod1.py"), mod1.file);
+            assertEquals(new File(folder, "mod3.py"), loaded.modulesKeys.get(new ModulesKey("mod3", null)).file);
+            assertEquals(mod1.file.getParentFile(), mod2.file.getParentFile());
+
+            //Keys with the same name/file are shared among the managers.
+            SystemModulesManager loaded2 = new SystemModulesManager(null);
+            SystemModulesManager.loadFromFile(loaded2, f);
+            loaded2.removeModules(Arrays.asList(new ModulesKey("pack.mod2", null)));
+            assertSame(mod1, loaded2.modulesKeys.get(new ModulesKey("pack.mod1", null)));
+            assertEquals(3, loaded2.getOnlyDirectModules().length);
+            assertEquals(3, loaded2.getSize(false));
+        } finally {
+            FileUtils.deleteDirectoryTree(f);
+        }
+    }
+
+    public void testLoadV2() throws Exception {
+        File f = new File("modules_manager_testing.temporary_dir");
+        try {
+            FileUtils.deleteDirectoryTree(f);
+        } catch (Exception e1) {
+            //ignore
+        }
+        SystemModulesManager manager = new SystemModulesManager(null);
+        manager.getPythonPathHelper().setPythonPath("rara|boo");
+        try {
+            manager.saveToFile(f);
+            FileUtils.writeStrToFile("MODULES_MANAGER_V2\n" +
+                    "--COMMON--\n" +
+                    "0=zip.zip\n" +
+                    "--END-COMMON--\n" +
+                    "MODULES_MANAGER_V2\n" +
+                    "bar|bar.py\n" +
+                    "empty\r\n" +
+                    "zip|0|path|1\n", new File(f, "modulesKeys"));
+
+            SystemModulesManager loaded = new SystemModulesManager(null);
+            SystemModulesManager.loadFromFile(loaded, f);
+            assertEquals(3, loaded.getSize(false));
+            loaded.loadAllPendingKeys();
+            assertEquals(3, loaded.modulesKeys.size());
+            assertEquals(new File("bar.py"), loaded.modulesKeys.get(new ModulesKey("bar", null)).file);
+            assertNull(loaded.modulesKeys.get(new ModulesKey("empty", null)).file);
+            ModulesKeyForZip z = (ModulesKeyForZip) loaded.modulesKeys.get(new ModulesKey("zip", null));
+            assertEquals(new File("zip.zip"), z.file);
+            assertEquals("path", z.zipModulePath);
+        } finally {
+            FileUtils.deleteDirectoryTree(f);
+        }
+    }
+
     public void testRestoreContents() throws Exception {
         String contents = "" +
                 "A|A.py\n" +
@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) 2005-2013 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.ast.codecompletion.shell;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.runtime.CoreException;
+import org.python.pydev.ast.codecompletion.shell.AbstractShell.ShellReservation;
+import org.python.pydev.core.IInterpreterInfo;
+import org.python.pydev.shared_core.io.FileUtils;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks how the requests from other threads are distributed among the pool of shells (without actually starting
+ * the shells).
+ */
+public class ShellsContainerTest extends TestCase {
+
+    private static class NotStartedShell extends AbstractShell {
+
+        private NotStartedShell(File f) throws IOException, CoreException {
+            super(f);
+        }
+
+        @Override
+        protected ProcessCreationInfo createServerProcess(IInterpreterInfo interpreter, int port)
+                throws IOException {
+            throw new IOException("Shells are not started in this test.");
+        }
+    }
+
+    private File serverFile;
+    private Map<Integer, AbstractShell> typeToShell;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        serverFile = FileUtils.getTempFileAt(new File("."), "data_shells_container_test");
+        FileUtils.writeStrToFile("", serverFile);
+        typeToShell = new HashMap<Integer, AbstractShell>();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        serverFile.delete();
+        super.tearDown();
+    }
+
+    private AbstractShell createShell(int id) throws Exception {
+        AbstractShell shell = new NotStartedShell(serverFile);
+        typeToShell.put(id, shell);
+        return shell;
+    }
+
+    public void testChooseShell() throws Exception {
+        int pooledId = AbstractShell.POOLED_SHELLS_BASE_ID + 1;
+
+        //No shell created yet.
+        assertEquals(AbstractShell.OTHER_THREADS_SHELL, ShellsContainer.chooseShellIdForOtherThreads(typeToShell, 2));
+        AbstractShell shell0 = createShell(AbstractShell.OTHER_THREADS_SHELL);
+
+        //Idle shell.
+        assertEquals(AbstractShell.OTHER_THREADS_SHELL, ShellsContainer.chooseShellIdForOtherThreads(typeToShell, 2));
+
+        //Busy: a new shell is chosen.
+        ShellReservation reservation0 = AbstractShell.reserve(shell0);
+        assertEquals(pooledId, ShellsContainer.chooseShellIdForOtherThreads(typeToShell, 2));
+        AbstractShell shell1 = createShell(pooledId);
+
+        //The idle one is chosen.
+        shell1.acquire("test").close();
+        AutoCloseable permit = shell0.acquire("test");
+        assertEquals(2, shell0.getPendingRequests());
+        assertEquals(pooledId, ShellsContainer.chooseShellIdForOtherThreads(typeToShell, 2));
+        permit.close();
+        assertEquals(1, shell0.getPendingRequests());
+        assertEquals(pooledId, ShellsContainer.chooseShellIdForOtherThreads(typeToShell, 2));
+
+        //Released when closed (even if no request was done).
+        reservation0.close();
+        reservation0.close();
+        assertEquals(0, shell0.getPendingRequests());
+        assertEquals(AbstractShell.OTHER_THREADS_SHELL, ShellsContainer.chooseShellIdForOtherThreads(typeToShell, 2));
+    }
+
+    public void testConcurrentRequestsUseDifferentShells() throws Exception {
+        final int shellsForOtherThreads = 4;
+        for (int i = 0; i < shellsForOtherThreads; i++) {
+            createShell(i == 0 ? AbstractShell.OTHER_THREADS_SHELL : AbstractShell.POOLED_SHELLS_BASE_ID + i);
+        }
+
+        //Each thread chooses a shell (as done in ShellsContainer.getServerShell) but doesn't do its request yet.
+        final Set<AbstractShell> chosen = new HashSet<AbstractShell>();
+        final List<ShellReservation> reservations = new ArrayList<ShellReservation>();
+        Thread[] threads = new Thread[shellsForOtherThreads];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    synchronized (typeToShell) {
+                        int id = ShellsContainer.chooseShellIdForOtherThreads(typeToShell, shellsForOtherThreads);
+                        AbstractShell shell = typeToShell.get(id);
+                        reservations.add(AbstractShell.reserve(shell));
+                        chosen.add(shell);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(shellsForOtherThreads, chosen.size());
+        for (AbstractShell shell : chosen) {
+            assertEquals(1, shell.getPendingRequests());
+        }
+        for (ShellReservation reservation : reservations) {
+            reservation.close();
+        }
+        for (AbstractShell shell : chosen) {
+            assertEquals(0, shell.getPendingRequests());
+        }
+    }
+}